@@ -137,6 +137,13 @@ public class BrooklynFeatureEnablement {
      */
     public static final String FEATURE_DISALLOW_REPARENTING = "brooklyn.disallowReparenting";
 
+    /**
+     * Whether entity attributes are stored in {@link org.apache.brooklyn.core.sensor.AttributeSlots},
+     * which allows reads without locking or allocation, rather than in a synchronized map.
+     * Applies to entities created after it is set. Defaults to false.
+     */
+    public static final String FEATURE_ATTRIBUTE_SLOTS = FEATURE_PROPERTY_PREFIX+".attributeSlots";
+
     /**
      * Values explicitly set by Java calls.
      */
@@ -175,6 +182,7 @@ public class BrooklynFeatureEnablement {
         setDefault(FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND, false);
         setDefault(FEATURE_SSH_ASYNC_EXEC, false);
         setDefault(FEATURE_VALIDATE_LOCATION_SSH_KEYS, true);
+        setDefault(FEATURE_ATTRIBUTE_SLOTS, false);
     }
     
     static {
@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -168,6 +169,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
      * A longer term improvement is to focus on our YAML parsing, to make that faster and better!
      */
     private final SpecCache specCache;
+    private final AtomicLong changeVersion = new AtomicLong();
 
     public BasicBrooklynCatalog(ManagementContext mgmt) {
         this(mgmt, CatalogDto.newNamedInstance("empty catalog", "empty catalog", "empty catalog, expected to be reset later"));
@@ -232,7 +234,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
             
             mgmt.getRebindManager().getChangeListener().onManaged(entry);
         }
-
+        changeVersion.incrementAndGet();
     }
 
     /**
@@ -344,6 +346,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         // Ensure the caches are de-populated
         specCache.invalidate();
         getCatalog().deleteEntry(itemDto);
+        changeVersion.incrementAndGet();
 
         // And indicate to the management context that it should be removed.
         if (log.isTraceEnabled()) {
@@ -2176,6 +2179,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
 
         // Ensure the cache is populated and it is persisted by the management context
         getCatalog().addEntry(itemDto);
+        changeVersion.incrementAndGet();
 
         // Request that the management context persist the item.
         if (log.isTraceEnabled()) {
@@ -2223,6 +2227,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         CatalogUtils.installLibraries(mgmt, item.getLibraries(), false);
         if (manualAdditionsCatalog==null) loadManualAdditionsCatalog();
         manualAdditionsCatalog.addEntry(getAbstractCatalogItem(item));
+        changeVersion.incrementAndGet();
     }
 
     @Override @Deprecated /** @deprecated see super */
@@ -2259,6 +2264,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
             catalog.addEntry((CatalogItemDtoAbstract<?,?>)item);
         }
         catalog.load(mgmt, null, failOnLoadError);
+        changeVersion.incrementAndGet();
     }
 
     @Override @Deprecated /** @deprecated see super */
@@ -2272,6 +2278,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         
         // Clear spec-cache (in-case overwriting)
         specCache.invalidate();
+        changeVersion.incrementAndGet();
         
         return result;
     }
@@ -2423,6 +2430,16 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         };
     }
 
+    /**
+     * A number which increases whenever items are added to or removed from this catalog,
+     * so callers can tell cheaply whether what they have read from it may be out of date.
+     * See {@link org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry#getChangeVersion()}.
+     */
+    @Beta
+    public long getChangeVersion() {
+        return changeVersion.get();
+    }
+
     private static class SpecCache {
         private final Map<String, AbstractBrooklynObjectSpec<?,?>> cache = Collections.synchronizedMap(
                 Maps.<String, AbstractBrooklynObjectSpec<?,?>>newLinkedHashMap());
@@ -730,6 +730,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             getApplication();
             
             if (changed) {
+                getManagementSupport().noteChangedForVersion();
                 sensors().emit(AbstractEntity.GROUP_ADDED, group);
             }
         }
@@ -740,6 +741,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             getApplication();
             
             if (changed) {
+                getManagementSupport().noteChangedForVersion();
                 sensors().emit(AbstractEntity.GROUP_REMOVED, group);
             }
         }
@@ -1070,6 +1072,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
                 attributesInternal.remove(attribute);
                 entityType.removeSensor(attribute);
             });
+            getManagementSupport().noteChangedForVersion();
         }
 
         @Override
@@ -23,6 +23,8 @@ import java.net.URL;
 import org.apache.brooklyn.api.mgmt.classloading.BrooklynClassLoadingContext;
 import org.apache.brooklyn.util.guava.Maybe;
 
+import com.google.common.base.Objects;
+
 public class ClassLoaderFromBrooklynClassLoadingContext extends ClassLoader {
 
     /** Constructs a {@link ClassLoader} which delegates to the given {@link BrooklynClassLoadingContext} */
@@ -63,5 +65,18 @@ public class ClassLoaderFromBrooklynClassLoadingContext extends ClassLoader {
         }
         return null;
     }
-    
+
+    /** Equal to another such class loader for an equal context, as it loads the same classes; so can be used as a cache key. */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || obj.getClass() != getClass()) return false;
+        return Objects.equal(clc, ((ClassLoaderFromBrooklynClassLoadingContext) obj).clc);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(clc);
+    }
+
 }
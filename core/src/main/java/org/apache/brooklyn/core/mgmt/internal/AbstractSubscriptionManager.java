@@ -98,6 +98,11 @@ public abstract class AbstractSubscriptionManager implements SubscriptionManager
      * <li>subscriberExecutionManagerTag - a tag to pass to execution manager (without setting any execution semantics / TaskPreprocessor);
      *      if not supplied and there is a subscriber, this will be inferred from the subscriber and set up with SingleThreadedScheduler
      * <li>eventFilter - a Predicate&lt;SensorEvent&gt; instance to filter what events are delivered
+     * <li>batchEvents - if true, events published while a delivery for this subscription is pending are delivered
+     *      together in one task, in order (and to a single call if the listener is a
+     *      {@link org.apache.brooklyn.core.sensor.BatchSensorEventListener})
+     * <li>coalesceEvents - as batchEvents, but only the latest pending event per producer and sensor is delivered;
+     *      for subscribers which only care about the current value
      * </ul>
      * 
      * @see SubscriptionManager#subscribe(Map, Entity, Sensor, SensorEventListener)
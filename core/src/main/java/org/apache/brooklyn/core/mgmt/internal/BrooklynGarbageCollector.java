@@ -29,12 +29,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.stream.Collectors;
 import org.apache.brooklyn.api.entity.Entity;
@@ -57,6 +60,7 @@ import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.core.task.ExecutionListener;
 import org.apache.brooklyn.util.core.task.TaskTags;
 import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.core.text.TemplateProcessor;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe.SoftlyPresent;
 import org.apache.brooklyn.util.javalang.MemoryUsageTracker;
@@ -154,7 +158,35 @@ public class BrooklynGarbageCollector {
             "brooklyn.gc.maxTaskAge", 
             "the duration after which a completed task will be automatically deleted", 
             Duration.days(30));
-    
+
+    @Beta
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+        "brooklyn.gc.incremental",
+        "whether to apply the per-tag, per-entity and global task limits incrementally as each task completes, "
+        + "so that the full sweep of all tasks is only needed occasionally as a fallback",
+        false);
+
+    @Beta
+    public static final ConfigKey<Duration> INCREMENTAL_FULL_SWEEP_PERIOD = ConfigKeys.newDurationConfigKey(
+        "brooklyn.gc.incremental.fullSweepPeriod",
+        "when incremental, how often to run the full sweep of all tasks (checked every brooklyn.gc.period); "
+        + "in other periods only the checks which need not scan all tasks are run",
+        Duration.minutes(30));
+
+    @Beta
+    public static final ConfigKey<Double> INCREMENTAL_HIGH_MEMORY_USAGE_LEVEL = ConfigKeys.newDoubleConfigKey(
+        "brooklyn.gc.incremental.highMemoryUsageLevel",
+        "when incremental, the fraction of heap in use after collection above which task limits are reduced "
+        + "by brooklyn.gc.incremental.highMemoryRetentionFactor and a full sweep is run every period "
+        + "(>1 means never)",
+        0.8);
+
+    @Beta
+    public static final ConfigKey<Double> INCREMENTAL_HIGH_MEMORY_RETENTION_FACTOR = ConfigKeys.newDoubleConfigKey(
+        "brooklyn.gc.incremental.highMemoryRetentionFactor",
+        "when incremental and memory usage is high, the factor applied to the task limits",
+        0.25);
+
     protected final static Comparator<Task<?>> TASKS_OLDEST_FIRST_COMPARATOR = new Comparator<Task<?>>() {
         @Override public int compare(Task<?> t1, Task<?> t2) {
             long end1 = t1.getEndTimeUtc();
@@ -175,6 +207,17 @@ public class BrooklynGarbageCollector {
     private Duration gcPeriod;
     private volatile boolean running = true;
 
+    // for incremental mode: completed root tasks, oldest first, per tag (and globally), removed when deleted
+    private final Map<Object, CompletedTaskQueue> completedTasksByTag = new ConcurrentHashMap<Object, CompletedTaskQueue>();
+    private final CompletedTaskQueue completedTasks = new CompletedTaskQueue();
+    private final Map<Task<?>, CompletedTaskRecord> completedTaskRecords = new ConcurrentHashMap<Task<?>, CompletedTaskRecord>();
+    private final AtomicLong completedTaskSequence = new AtomicLong();
+    // entity tags with tasks completed since the last check of the per-name limit
+    private final Set<Object> entityTagsWithCompletedTasks = ConcurrentHashMap.newKeySet();
+    private volatile long lastFullSweepUtc = -1;
+    private volatile long lastMemoryCheckUtc = -1;
+    private volatile boolean memoryUsageHigh = false;
+
     public BrooklynGarbageCollector(BrooklynProperties brooklynProperties, BasicExecutionManager executionManager, BrooklynStorage storage) {
         this.executionManager = executionManager;
         this.storage = storage;
@@ -191,6 +234,9 @@ public class BrooklynGarbageCollector {
         executionManager.addListener(new ExecutionListener() {
                 @Override public void onTaskDone(Task<?> task) {
                     BrooklynGarbageCollector.this.onTaskDone(task);
+                }
+                @Override public void onTaskDeleted(Task<?> task) {
+                    untrackCompletedTask(task);
                 }});
     
         scheduleCollector(true);
@@ -204,7 +250,7 @@ public class BrooklynGarbageCollector {
             activeCollector = executor.scheduleWithFixedDelay(
                 new Runnable() {
                     @Override public void run() {
-                        gcIteration();
+                        periodicGcIteration();
                     }
                 }, 
                 gcPeriod.toMillisecondsRoundingUp(), 
@@ -213,11 +259,31 @@ public class BrooklynGarbageCollector {
         }
     }
 
+    /** runs a full round of garbage collection, unless in {@link #INCREMENTAL} mode and a full sweep is not yet due,
+     * in which case the task checks are those which need not scan all tasks (see {@link #gcTasksIncrementally()}) */
+    protected void periodicGcIteration() {
+        if (!isIncremental()) {
+            gcIteration();
+            return;
+        }
+        Duration fullSweepPeriod = brooklynProperties.getConfig(INCREMENTAL_FULL_SWEEP_PERIOD);
+        gcIteration(lastFullSweepUtc < 0 || isMemoryUsageHigh() || fullSweepPeriod==null
+                || fullSweepPeriod.isShorterThan(Duration.sinceUtc(lastFullSweepUtc)));
+    }
+
     /** force a round of Brooklyn garbage collection */
     public void gcIteration() {
+        gcIteration(true);
+    }
+
+    private void gcIteration(boolean fullSweep) {
         try {
             logUsage("brooklyn gc (before)");
-            gcTasks();
+            if (fullSweep) {
+                gcTasks();
+            } else {
+                gcTasksIncrementally();
+            }
             logUsage("brooklyn gc (after)");
             
             double memUsage = 1.0 - 1.0*Runtime.getRuntime().freeMemory() / Runtime.getRuntime().maxMemory();
@@ -266,7 +332,8 @@ public class BrooklynGarbageCollector {
             executionManager.getNumActiveTasks()+" active, "+
             executionManager.getNumIncompleteTasks()+" unfinished; "+
             executionManager.getNumInMemoryTasks()+" remembered, "+
-            executionManager.getTotalTasksSubmitted()+" total submitted";
+            executionManager.getTotalTasksSubmitted()+" total submitted; "+
+            "templates: "+TemplateProcessor.getTemplateCacheMetrics();
     }
     
     public void shutdownNow() {
@@ -290,6 +357,10 @@ public class BrooklynGarbageCollector {
         executionManager.deleteDoneInTag(BrooklynTaskTags.tagForContextEntity(entity));
         executionManager.deleteDoneInTag(BrooklynTaskTags.tagForCallerEntity(entity));
         executionManager.deleteDoneInTag(BrooklynTaskTags.tagForTargetEntity(entity));
+        completedTasksByTag.remove(entity);
+        completedTasksByTag.remove(BrooklynTaskTags.tagForContextEntity(entity));
+        completedTasksByTag.remove(BrooklynTaskTags.tagForCallerEntity(entity));
+        completedTasksByTag.remove(BrooklynTaskTags.tagForTargetEntity(entity));
     }
     
     public void onUnmanaged(Location loc) {
@@ -299,7 +370,231 @@ public class BrooklynGarbageCollector {
     public void onTaskDone(Task<?> task) {
         if (shouldDeleteTaskImmediately(task)) {
             executionManager.deleteTask(task);
+        } else if (isIncremental()) {
+            recordCompletedTaskAndExpireOverCapacity(task);
+        }
+    }
+
+    protected boolean isIncremental() {
+        return Boolean.TRUE.equals(brooklynProperties.getConfig(INCREMENTAL));
+    }
+
+    /** whether memory usage is high enough to shorten retention; only applies in {@link #INCREMENTAL} mode; checked at most every second */
+    protected boolean isMemoryUsageHigh() {
+        if (!isIncremental()) return false;
+        long now = System.currentTimeMillis();
+        if (now - lastMemoryCheckUtc > 1000) {
+            lastMemoryCheckUtc = now;
+            boolean high = MemoryUsageTracker.getUsedHeapFraction() > brooklynProperties.getConfig(INCREMENTAL_HIGH_MEMORY_USAGE_LEVEL);
+            if (high != memoryUsageHigh) {
+                LOG.info("brooklyn-gc "+(high ? "reducing task retention due to high memory usage" : "restoring task retention as memory usage no longer high")+": "+getUsageString());
+                memoryUsageHigh = high;
+            }
+        }
+        return memoryUsageHigh;
+    }
+
+    /** the configured limit for the given key, reduced if {@link #isMemoryUsageHigh()} */
+    protected int getTaskLimit(ConfigKey<Integer> key) {
+        int limit = brooklynProperties.getConfig(key);
+        if (isMemoryUsageHigh()) {
+            limit = (int) Math.max(1, limit * brooklynProperties.getConfig(INCREMENTAL_HIGH_MEMORY_RETENTION_FACTOR));
+        }
+        return limit;
+    }
+
+    /** completed root tasks recorded against a tag (or globally) in {@link #INCREMENTAL} mode */
+    private static class CompletedTaskQueue {
+        /** tasks which may yet be expired for this tag, oldest first, keyed by the sequence they were recorded in */
+        final ConcurrentSkipListMap<Long, Task<?>> queue = new ConcurrentSkipListMap<Long, Task<?>>();
+        /** tasks passed over under the grace rule, with their sequence; still counted against the tag,
+         * but not considered for it again until the next full sweep */
+        final Map<Task<?>, Long> retained = new ConcurrentHashMap<Task<?>, Long>();
+        final AtomicInteger size = new AtomicInteger();
+
+        void add(long sequence, Task<?> task) {
+            queue.put(sequence, task);
+            size.incrementAndGet();
+        }
+        void remove(long sequence, Task<?> task) {
+            if (queue.remove(sequence, task) || retained.remove(task, sequence)) size.decrementAndGet();
+        }
+        void retain(long sequence, Task<?> task) {
+            if (queue.remove(sequence, task)) retained.put(task, sequence);
+        }
+        /** removes tasks which were deleted while being recorded or retained, and puts retained tasks back in the queue */
+        void removeUnrecordedAndRequeue(Set<Task<?>> recorded) {
+            for (Entry<Long, Task<?>> entry: queue.entrySet()) {
+                if (!recorded.contains(entry.getValue())) remove(entry.getKey(), entry.getValue());
+            }
+            for (Entry<Task<?>, Long> entry: retained.entrySet()) {
+                if (!retained.remove(entry.getKey(), entry.getValue())) continue;
+                if (recorded.contains(entry.getKey())) {
+                    queue.put(entry.getValue(), entry.getKey());
+                } else {
+                    size.decrementAndGet();
+                }
+            }
+        }
+        int size() {
+            return size.get();
+        }
+    }
+
+    /** what a completed task was recorded against; kept as a task's entity tags are cleared when it is deleted */
+    private static class CompletedTaskRecord {
+        final long sequence;
+        final List<Object> tags;
+        CompletedTaskRecord(long sequence, List<Object> tags) {
+            this.sequence = sequence;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Records a completed task against its tags, then deletes the oldest tasks in any tag (or globally) now over capacity,
+     * applying the same rules as {@link #gcTasks()} but in amortized constant time per task.
+     */
+    protected void recordCompletedTaskAndExpireOverCapacity(Task<?> task) {
+        if (!task.isDone(true)) return;
+        if (BrooklynTaskTags.isSubTask(task)) return;
+        // children are deleted along with their parent
+        if (Tasks.isChildOfSubmitter(task, executionManager::getTask)) return;
+
+        int maxPerTag = getTaskLimit(MAX_TASKS_PER_TAG);
+        int maxPerEntity = getTaskLimit(MAX_TASKS_PER_ENTITY);
+
+        List<Object> tags = MutableList.copyOf(Iterables.filter(TaskTags.getTagsFast(task), tag -> !isTagIgnoredForGc(tag)));
+        CompletedTaskRecord record = new CompletedTaskRecord(completedTaskSequence.incrementAndGet(), tags);
+        if (completedTaskRecords.putIfAbsent(task, record)!=null) return;
+        for (Object tag: tags) {
+            completedTasksByTag.computeIfAbsent(tag, k -> new CompletedTaskQueue()).add(record.sequence, task);
+            if (tag instanceof WrappedEntity) entityTagsWithCompletedTasks.add(tag);
         }
+        completedTasks.add(record.sequence, task);
+
+        for (Object tag: tags) {
+            CompletedTaskQueue tasksForTag = completedTasksByTag.get(tag);
+            if (tasksForTag!=null) {
+                expireOldestOverCapacity(tag, tasksForTag, tag instanceof WrappedEntity ? maxPerEntity : maxPerTag);
+            }
+        }
+        expireOldestOverCapacity(null, completedTasks, getTaskLimit(MAX_TASKS_GLOBAL));
+    }
+
+    private void expireOldestOverCapacity(Object tag, CompletedTaskQueue tasks, int max) {
+        while (tasks.size() > max) {
+            Entry<Long, Task<?>> oldest = tasks.queue.firstEntry();
+            // the rest are retained under the grace rule
+            if (oldest==null) return;
+            Task<?> task = oldest.getValue();
+            if (executionManager.getTask(task.getId()) == task) {
+                if (tag!=null && !isOverCapacityInAllTagsOfCategory(task, tag)) {
+                    // as in the full sweep, retained if under capacity for another tag in the same category
+                    tasks.retain(oldest.getKey(), task);
+                    continue;
+                }
+                if (LOG.isTraceEnabled()) LOG.trace("brooklyn-gc incrementally deleting "+task+" as over capacity for "+(tag==null ? "global limit" : tag));
+                executionManager.deleteTask(task);
+            }
+            untrackCompletedTask(task);
+            // in case it was deleted before being recorded
+            tasks.remove(oldest.getKey(), task);
+        }
+    }
+
+    /** removes a deleted task from the incremental structures */
+    private void untrackCompletedTask(Task<?> task) {
+        CompletedTaskRecord record = completedTaskRecords.remove(task);
+        if (record==null) return;
+        for (Object tag: record.tags) {
+            CompletedTaskQueue tasksForTag = completedTasksByTag.get(tag);
+            if (tasksForTag!=null) tasksForTag.remove(record.sequence, task);
+        }
+        completedTasks.remove(record.sequence, task);
+    }
+
+    /** the number of completed tasks recorded against the tag in {@link #INCREMENTAL} mode */
+    @VisibleForTesting
+    public int getCompletedTaskCount(Object tag) {
+        CompletedTaskQueue tasksForTag = completedTasksByTag.get(tag);
+        return tasksForTag==null ? 0 : tasksForTag.size();
+    }
+
+    /** deletes completed tasks older than {@link #MAX_TASK_AGE}, from the oldest recorded in {@link #INCREMENTAL} mode, returning the count */
+    protected int expireAgedTasksIncrementally() {
+        Duration maxTaskAge = brooklynProperties.getConfig(MAX_TASK_AGE);
+        int count = 0;
+        while (true) {
+            Entry<Long, Task<?>> oldest = completedTasks.queue.firstEntry();
+            if (oldest==null) return count;
+            Task<?> task = oldest.getValue();
+            if (executionManager.getTask(task.getId()) == task) {
+                // recorded as they complete, so the rest are younger
+                if (!maxTaskAge.isShorterThan(Duration.sinceUtc(task.getEndTimeUtc()))) return count;
+                if (executionManager.deleteTask(task)) count++;
+            }
+            untrackCompletedTask(task);
+            completedTasks.remove(oldest.getKey(), task);
+        }
+    }
+
+    private boolean isOverCapacityInAllTagsOfCategory(Task<?> task, Object overCapacityTag) {
+        TagCategory category = overCapacityTag instanceof WrappedEntity ? TagCategory.ENTITY : TagCategory.NON_ENTITY_NORMAL;
+        for (Object tag: TaskTags.getTagsFast(task)) {
+            if (tag.equals(overCapacityTag) || !category.acceptsTag(tag)) continue;
+            CompletedTaskQueue tasksForTag = completedTasksByTag.get(tag);
+            if (tasksForTag==null) return false;
+            int max = getTaskLimit(tag instanceof WrappedEntity ? MAX_TASKS_PER_ENTITY : MAX_TASKS_PER_TAG);
+            // this task is still counted in the other tag
+            if (tasksForTag.size() <= max) return false;
+        }
+        return true;
+    }
+
+    /**
+     * In {@link #INCREMENTAL} mode, runs the checks of {@link #gcTasks()} which need not scan all tasks:
+     * unmanaged entities, transient tasks, task age (from the oldest recorded), and the per-name limit
+     * (for entities with tasks completed since the last check); the per-tag, per-entity and global limits
+     * are applied as each task completes.
+     */
+    @VisibleForTesting
+    public synchronized int gcTasksIncrementally() {
+        if (!running) return 0;
+
+        Duration newPeriod = brooklynProperties.getConfig(GC_PERIOD);
+        if (!Objects.equal(gcPeriod, newPeriod)) {
+            // caller has changed period, reschedule on next run
+            scheduleCollector(false);
+        }
+
+        expireUnmanagedEntityTasks();
+        expireTransientTasks();
+        int deletedCount = expireAgedTasksIncrementally();
+
+        Set<Object> entityTags = MutableSet.of();
+        Iterator<Object> ti = entityTagsWithCompletedTasks.iterator();
+        while (ti.hasNext()) {
+            entityTags.add(ti.next());
+            ti.remove();
+        }
+        deletedCount += expireOverCapacityNamesInCategory(entityTags, TagCategory.ENTITY);
+        return deletedCount;
+    }
+
+    /** removes any records of deleted tasks missed as they were deleted, and empty tags, from the incremental structures;
+     * and lets tasks retained under the grace rule be considered again, as the other tags may have changed */
+    protected void pruneIncrementalRecords() {
+        for (Task<?> task: MutableList.copyOf(completedTaskRecords.keySet())) {
+            if (executionManager.getTask(task.getId()) != task) untrackCompletedTask(task);
+        }
+        Iterator<Entry<Object, CompletedTaskQueue>> ei = completedTasksByTag.entrySet().iterator();
+        while (ei.hasNext()) {
+            CompletedTaskQueue tasks = ei.next().getValue();
+            tasks.removeUnrecordedAndRequeue(completedTaskRecords.keySet());
+            if (tasks.size() == 0) ei.remove();
+        }
+        completedTasks.removeUnrecordedAndRequeue(completedTaskRecords.keySet());
     }
     
     /** whether this task should be deleted on completion,
@@ -381,8 +676,8 @@ public class BrooklynGarbageCollector {
         int deletedCount = 0;
         deletedCount += expireOverCapacityNamesInCategory(taskTags, TagCategory.ENTITY);
 
-        int maxTasksPerEntity = brooklynProperties.getConfig(MAX_TASKS_PER_ENTITY);
-        int maxTasksPerTag = brooklynProperties.getConfig(MAX_TASKS_PER_TAG);
+        int maxTasksPerEntity = getTaskLimit(MAX_TASKS_PER_ENTITY);
+        int maxTasksPerTag = getTaskLimit(MAX_TASKS_PER_TAG);
         
         Map<Object,AtomicInteger> taskNonEntityTagsOverCapacity = MutableMap.of();
         Map<Object,AtomicInteger> taskEntityTagsOverCapacity = MutableMap.of();
@@ -434,6 +729,12 @@ public class BrooklynGarbageCollector {
             if (LOG.isTraceEnabled()) LOG.trace("GC history post=-capacity-deletion loop deleted "+deletedHere+" this time, count now "+deletedCount);
         }
 
+        if (isIncremental()) {
+            pruneIncrementalRecords();
+            entityTagsWithCompletedTasks.clear();
+        }
+        lastFullSweepUtc = System.currentTimeMillis();
+
         return deletedCount;
 
         // or not to run in a loop
@@ -718,8 +1019,9 @@ public class BrooklynGarbageCollector {
 
     protected int expireOverCapacityNamesInCategory(Set<Object> taskTags, TagCategory category) {
         List<Object> entityTags = taskTags.stream().filter(tag -> category.acceptsTag(tag)).collect(Collectors.toList());
-        Integer maxPerName = brooklynProperties.getConfig(MAX_TASKS_PER_NAME);
-        if (maxPerName==null || maxPerName<=0) return 0;
+        Integer maxPerNameConfigured = brooklynProperties.getConfig(MAX_TASKS_PER_NAME);
+        if (maxPerNameConfigured==null || maxPerNameConfigured<=0) return 0;
+        int maxPerName = getTaskLimit(MAX_TASKS_PER_NAME);
         Set<Task<?>> tasksToDelete = MutableSet.of();
 
         try {
@@ -774,8 +1076,9 @@ public class BrooklynGarbageCollector {
     }
 
     protected int expireIfOverCapacityGlobally() {
+        int maxTasksGlobal = getTaskLimit(MAX_TASKS_GLOBAL);
         Collection<Task<?>> tasksLive = executionManager.allTasksLive();
-        if (tasksLive.size() <= brooklynProperties.getConfig(MAX_TASKS_GLOBAL))
+        if (tasksLive.size() <= maxTasksGlobal)
             return 0;
         LOG.debug("brooklyn-gc detected "+tasksLive.size()+" tasks in memory, over global limit, looking at deleting some");
         
@@ -787,7 +1090,7 @@ public class BrooklynGarbageCollector {
 
         List<Task<?>> tasks = tasksLive.stream().filter(t -> t.isDone(true)).collect(Collectors.toList());
 
-        int numToDelete = tasks.size() - brooklynProperties.getConfig(MAX_TASKS_GLOBAL);
+        int numToDelete = tasks.size() - maxTasksGlobal;
         if (numToDelete <= 0) {
             LOG.debug("brooklyn-gc detected only "+tasks.size()+" completed tasks in memory, not over global limit, so not deleting any");
             return 0;
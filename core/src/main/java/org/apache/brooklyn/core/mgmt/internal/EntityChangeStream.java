@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
+import org.apache.brooklyn.core.sensor.BatchSensorEventListener;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.ExecutionListener;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.WildcardGlobs;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes changes to entities to subscribers as they happen: entities added, removed and renamed,
+ * sensor and config values changing, and effector and workflow tasks starting and ending.
+ * <p>
+ * Sensor changes come from a wildcard subscription with the {@link org.apache.brooklyn.core.mgmt.internal.LocalSubscriptionManager},
+ * coalesced so a sensor changing rapidly gives its latest value rather than every value;
+ * entity changes come from the entity manager and the {@link EntityManagementSupport}, and task changes from the execution manager.
+ * These are only listened to while there are subscribers.
+ * <p>
+ * Each subscriber sees only the changes allowed by the entitlement context it subscribed with, for the entities, sensors and config
+ * in its filter. Each has a bounded buffer; if it does not keep up, the buffer is cleared and the subscriber is told to
+ * {@link Subscription#isResyncNeeded() resync}, i.e. get the current state afresh, rather than changes being held or silently lost.
+ * <p>
+ * Renames, config changes and task changes, which are noted on the thread making them, are matched against the subscriptions and buffered
+ * by a single dispatcher thread, so that config and task paths are not held up by the filters and entitlement checks;
+ * if more than {@link #MAX_PENDING_CHANGES} are waiting for it, they are dropped and all subscribers are told to resync.
+ */
+@Beta
+public class EntityChangeStream {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityChangeStream.class);
+
+    public static final ConfigKey<EntityChangeStream> ENTITY_CHANGE_STREAM_INSTANCE = ConfigKeys.newConfigKey(EntityChangeStream.class, "internals.brooklyn.entity.changeStream");
+
+    @Beta
+    public static final ConfigKey<Duration> ENTITY_CHANGE_STREAM_MAX_TIMEOUT = ConfigKeys.builder(Duration.class, "brooklyn.entity.changeStream.maxTimeout")
+            .description("Longest a client can follow entity changes in one request; longer timeouts requested are reduced to this")
+            .defaultValue(Duration.ONE_HOUR)
+            .build();
+
+    /** the most changes which can be waiting for the dispatcher thread */
+    public static final int MAX_PENDING_CHANGES = 10000;
+
+    public enum ChangeType { ENTITY_ADDED, ENTITY_REMOVED, ENTITY_RENAMED, SENSOR, CONFIG, TASK_STARTED, TASK_ENDED }
+
+    /** The shared instance for the management context */
+    public static EntityChangeStream get(ManagementContext mgmt) {
+        EntityChangeStream sharedInstance = mgmt.getScratchpad().get(ENTITY_CHANGE_STREAM_INSTANCE);
+        if (sharedInstance==null) {
+            synchronized (ENTITY_CHANGE_STREAM_INSTANCE) {
+                sharedInstance = mgmt.getScratchpad().get(ENTITY_CHANGE_STREAM_INSTANCE);
+                if (sharedInstance==null) {
+                    sharedInstance = new EntityChangeStream(mgmt);
+                    mgmt.getScratchpad().put(ENTITY_CHANGE_STREAM_INSTANCE, sharedInstance);
+                }
+            }
+        }
+        return sharedInstance;
+    }
+
+    /** Notes that the entity may have changed, e.g. been renamed; does nothing if there is no change stream in use */
+    static void onEntityChanged(ManagementContext mgmt, Entity entity) {
+        EntityChangeStream instance = mgmt.getScratchpad().get(ENTITY_CHANGE_STREAM_INSTANCE);
+        if (instance!=null && !instance.subscriptions.isEmpty()) instance.noteEntityChanged(entity);
+    }
+
+    /** Notes that config on the entity has changed; does nothing if there is no change stream in use */
+    static void onConfigChanged(ManagementContext mgmt, Entity entity, ConfigKey<?> key) {
+        EntityChangeStream instance = mgmt.getScratchpad().get(ENTITY_CHANGE_STREAM_INSTANCE);
+        if (instance!=null && !instance.subscriptions.isEmpty()) instance.publishLater(ChangeType.CONFIG, entity, key.getName(), null, null);
+    }
+
+    private final ManagementContext mgmt;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    /** display names of entities, to tell when one is renamed */
+    private final Map<String, String> displayNames = new ConcurrentHashMap<>();
+    private final CollectionChangeListener<Entity> entitySetListener = new EntitySetListener();
+    private final ExecutionListener taskListener = new TaskListener();
+    private SubscriptionHandle sensorSubscription;
+    /** publishes changes noted on other threads; set while there are subscribers */
+    private volatile ExecutorService dispatcher;
+
+    protected EntityChangeStream(ManagementContext mgmt) {
+        this.mgmt = Preconditions.checkNotNull(mgmt, "mgmt");
+    }
+
+    /**
+     * Subscribes to changes from now on which match the filter and which are visible in the given entitlement context.
+     *
+     * @param entityIds the entities of interest, including their descendants; all entities if empty
+     * @param sensorGlobs the names of sensors whose changes are of interest, accepting globs (* and ?); none if empty
+     * @param configGlobs likewise for config
+     * @param includeTasks whether effector and workflow tasks starting and ending are of interest
+     */
+    public Subscription subscribe(EntitlementContext entitlementContext, Collection<String> entityIds, Collection<String> sensorGlobs, Collection<String> configGlobs,
+            boolean includeTasks, int bufferSize) {
+        Preconditions.checkArgument(bufferSize > 0, "bufferSize must be positive");
+        Subscription subscription = new Subscription(entitlementContext, entityIds, sensorGlobs, configGlobs, includeTasks, bufferSize);
+        synchronized (this) {
+            if (subscriptions.isEmpty()) start();
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        if (subscriptions.remove(subscription) && subscriptions.isEmpty()) stop();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void start() {
+        dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_CHANGES),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("brooklyn-entity-change-stream-%d")
+                        .setDaemon(true)
+                        .build());
+        for (Entity entity : mgmt.getEntityManager().getEntities()) {
+            displayNames.put(entity.getId(), entity.getDisplayName());
+        }
+        ((ManagementContextInternal) mgmt).addEntitySetListener(entitySetListener);
+        sensorSubscription = mgmt.getSubscriptionManager().subscribe(MutableMap.<String, Object>of(
+                "subscriber", this,
+                "subscriptionDescription", "entity change stream",
+                "coalesceEvents", true),
+                null, null, (BatchSensorEventListener) new SensorListener());
+        ((BasicExecutionManager) mgmt.getExecutionManager()).addListener(taskListener);
+    }
+
+    private void stop() {
+        ((BasicExecutionManager) mgmt.getExecutionManager()).removeListener(taskListener);
+        if (sensorSubscription != null) {
+            mgmt.getSubscriptionManager().unsubscribe(sensorSubscription);
+            sensorSubscription = null;
+        }
+        ((ManagementContextInternal) mgmt).removeEntitySetListener(entitySetListener);
+        displayNames.clear();
+        dispatcher.shutdownNow();
+        dispatcher = null;
+    }
+
+    private void noteEntityChanged(Entity entity) {
+        String name = entity.getDisplayName();
+        String oldName = displayNames.put(entity.getId(), name);
+        if (oldName!=null && !Objects.equals(oldName, name)) {
+            publishLater(ChangeType.ENTITY_RENAMED, entity, name, null, null);
+        }
+    }
+
+    /** publishes the change on the dispatcher thread, telling all subscribers to resync if too many are waiting */
+    private void publishLater(ChangeType type, Entity entity, String name, Object value, Task<?> task) {
+        ExecutorService d = dispatcher;
+        if (d == null) return;
+        try {
+            d.execute(() -> {
+                try {
+                    publish(type, entity, name, value, task);
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.debug("Unable to publish " + type + " change for " + entity + " to entity change stream subscribers: " + e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // too many waiting, or no longer subscribed to
+            for (Subscription subscription : subscriptions) {
+                subscription.resyncNeeded.set(true);
+            }
+        }
+    }
+
+    private void publish(ChangeType type, Entity entity, String name, Object value, Task<?> task) {
+        Change change = null;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.matches(type, entity, name)) {
+                if (change == null) change = new Change(sequence.incrementAndGet(), type, entity, name, value, task);
+                subscription.offer(change);
+            }
+        }
+    }
+
+    private class EntitySetListener implements CollectionChangeListener<Entity> {
+        @Override
+        public void onItemAdded(Entity item) {
+            displayNames.put(item.getId(), item.getDisplayName());
+            publish(ChangeType.ENTITY_ADDED, item, item.getDisplayName(), null, null);
+        }
+        @Override
+        public void onItemRemoved(Entity item) {
+            displayNames.remove(item.getId());
+            publish(ChangeType.ENTITY_REMOVED, item, item.getDisplayName(), null, null);
+        }
+    }
+
+    private class SensorListener implements BatchSensorEventListener<Object> {
+        @Override
+        public void onEvent(SensorEvent<Object> event) {
+            onEvents(MutableList.of(event));
+        }
+        @Override
+        public void onEvents(List<SensorEvent<Object>> events) {
+            for (SensorEvent<Object> event : events) {
+                // notifications such as children being added are not state, and are covered by the other changes
+                if (!(event.getSensor() instanceof AttributeSensor) || event.getSource()==null) continue;
+                try {
+                    publish(ChangeType.SENSOR, event.getSource(), event.getSensor().getName(), event.getValue(), null);
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.debug("Unable to publish change for " + event + " to entity change stream subscribers: " + e);
+                }
+            }
+        }
+    }
+
+    private class TaskListener implements ExecutionListener {
+        @Override
+        public void onTaskStarting(Task<?> task) {
+            publishTask(ChangeType.TASK_STARTED, task);
+        }
+        @Override
+        public void onTaskDone(Task<?> task) {
+            publishTask(ChangeType.TASK_ENDED, task);
+        }
+        private void publishTask(ChangeType type, Task<?> task) {
+            if (!BrooklynTaskTags.isEffectorTask(task) && !BrooklynTaskTags.hasTag(task, BrooklynTaskTags.WORKFLOW_TAG)) return;
+            Entity entity = BrooklynTaskTags.getTargetOrContextEntity(task);
+            if (entity == null) return;
+            publishLater(type, entity, task.getDisplayName(), null, task);
+        }
+    }
+
+    /** A change to an entity; the value is set for sensor changes, and the task for task changes */
+    public static class Change {
+        private final long sequence;
+        private final ChangeType type;
+        private final Entity entity;
+        private final String name;
+        private final Object value;
+        private final Task<?> task;
+
+        protected Change(long sequence, ChangeType type, Entity entity, String name, Object value, Task<?> task) {
+            this.sequence = sequence;
+            this.type = type;
+            this.entity = entity;
+            this.name = name;
+            this.value = value;
+            this.task = task;
+        }
+
+        /** Increasing number identifying the change, unique within this server */
+        public long getSequence() { return sequence; }
+        public ChangeType getType() { return type; }
+        public Entity getEntity() { return entity; }
+        /** The new display name for entity changes, the sensor or config key name, or the task name */
+        public String getName() { return name; }
+        /** The new value, for sensor changes; config values should be read from the entity */
+        public Object getValue() { return value; }
+        public Task<?> getTask() { return task; }
+
+        @Override
+        public String toString() {
+            return "Change[" + sequence + ": " + type + " " + entity + " " + name + "]";
+        }
+    }
+
+    /** The changes since subscribing which match a filter, up to the buffer size; close to unsubscribe */
+    public class Subscription implements AutoCloseable {
+        private final EntitlementContext entitlementContext;
+        private final Set<String> entityIds;
+        private final List<String> sensorGlobs;
+        private final List<String> configGlobs;
+        private final boolean includeTasks;
+        private final BlockingQueue<Change> buffer;
+        private final AtomicBoolean resyncNeeded = new AtomicBoolean();
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private Subscription(EntitlementContext entitlementContext, Collection<String> entityIds, Collection<String> sensorGlobs, Collection<String> configGlobs,
+                boolean includeTasks, int bufferSize) {
+            this.entitlementContext = entitlementContext;
+            this.entityIds = MutableSet.copyOf(entityIds);
+            this.sensorGlobs = MutableList.copyOf(sensorGlobs);
+            this.configGlobs = MutableList.copyOf(configGlobs);
+            this.includeTasks = includeTasks;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private void offer(Change change) {
+            if (!buffer.offer(change)) {
+                // the changes buffered are no use without the ones being dropped; the subscriber must start again from current state
+                droppedCount.addAndGet(buffer.size() + 1);
+                buffer.clear();
+                resyncNeeded.set(true);
+            }
+        }
+
+        private boolean matches(ChangeType type, Entity entity, String name) {
+            switch (type) {
+                case SENSOR:
+                    if (sensorGlobs.stream().noneMatch(g -> WildcardGlobs.isGlobMatched(g, name))) return false;
+                    break;
+                case CONFIG:
+                    if (configGlobs.stream().noneMatch(g -> WildcardGlobs.isGlobMatched(g, name))) return false;
+                    break;
+                case TASK_STARTED:
+                case TASK_ENDED:
+                    if (!includeTasks) return false;
+                    break;
+                default:
+            }
+            if (!isInScope(entity)) return false;
+            if (!mgmt.getEntitlementManager().isEntitled(entitlementContext, Entitlements.SEE_ENTITY, entity)) return false;
+            if (type == ChangeType.SENSOR) {
+                return mgmt.getEntitlementManager().isEntitled(entitlementContext, Entitlements.SEE_SENSOR, EntityAndItem.of(entity, name));
+            }
+            if (type == ChangeType.CONFIG) {
+                return mgmt.getEntitlementManager().isEntitled(entitlementContext, Entitlements.SEE_CONFIG, EntityAndItem.of(entity, name));
+            }
+            return true;
+        }
+
+        private boolean isInScope(Entity entity) {
+            if (entityIds.isEmpty()) return true;
+            for (Entity e = entity; e != null; e = e.getParent()) {
+                if (entityIds.contains(e.getId())) return true;
+            }
+            return false;
+        }
+
+        /** Waits up to the given time for a change, returning null if there is none */
+        public Change poll(Duration timeout) throws InterruptedException {
+            return buffer.poll(timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+
+        /** Removes and returns the changes buffered */
+        public List<Change> drain() {
+            List<Change> result = MutableList.of();
+            buffer.drainTo(result);
+            return result;
+        }
+
+        /** Whether changes have been dropped since this was last called, so the subscriber should get the current state afresh; clears the flag */
+        public boolean isResyncNeeded() {
+            return resyncNeeded.getAndSet(false);
+        }
+
+        /** The number of matching changes dropped because the buffer was full */
+        public long getDroppedCount() {
+            return droppedCount.get();
+        }
+
+        /** The entitlement context the subscription was made with, which the subscriber should use to get current state */
+        public EntitlementContext getEntitlementContext() {
+            return entitlementContext;
+        }
+
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.brooklyn.api.effector.Effector;
@@ -33,6 +34,7 @@ import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.SubscriptionContext;
 import org.apache.brooklyn.api.mgmt.entitlement.EntitlementManager;
+import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
 import org.apache.brooklyn.api.objs.EntityAdjunct;
 import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
@@ -48,6 +50,7 @@ import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.StringAndArgument;
 import org.apache.brooklyn.core.mgmt.internal.NonDeploymentManagementContext.NonDeploymentManagementContextMode;
+import org.apache.brooklyn.core.mgmt.rebind.FieldChangeListener;
 import org.apache.brooklyn.core.objs.AbstractEntityAdjunct;
 import org.apache.brooklyn.core.workflow.DanglingWorkflowException;
 import org.apache.brooklyn.core.workflow.WorkflowExecutionContext;
@@ -110,6 +113,10 @@ public class EntityManagementSupport {
     
     private volatile EntityChangeListener entityChangeListener = EntityChangeListener.NOOP;
 
+    // starts from the clock so that if the entity is re-created in this JVM (e.g. on rebind) it does not repeat earlier versions,
+    // as that would need more changes than nanoseconds elapsed
+    private final AtomicLong changeVersion = new AtomicLong(System.nanoTime());
+
     /**
      * Whether this entity is managed (i.e. "onManagementStarting" has been called, so the framework knows about it,
      * and it has not been unmanaged).
@@ -571,67 +578,109 @@ public class EntityManagementSupport {
     public EntityChangeListener getEntityChangeListener() {
         return entityChangeListener;
     }
+
+    /**
+     * A number which changes whenever the entity is noted as having changed, e.g. its sensors, config, children, locations or tags,
+     * so callers can tell cheaply whether what they have read from it may be out of date.
+     * It is only meaningful for this entity, so callers comparing versions of different entities must include the entity id;
+     * it is not persisted.
+     */
+    @Beta
+    public long getChangeVersion() {
+        return changeVersion.get();
+    }
+
+    /** Updates the {@link #getChangeVersion()}; to be called after a change has been made */
+    @Beta
+    public void noteChangedForVersion() {
+        changeVersion.incrementAndGet();
+    }
     
     private class EntityChangeListenerImpl implements EntityChangeListener {
         @Override
         public void onChanged() {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            EntityChangeStream.onEntityChanged(getManagementContext(), entity);
         }
         @Override
         public void onChildrenChanged() {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onLocationsChanged() {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onTagsChanged() {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onMembersChanged() {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
         public void onPolicyAdded(Policy policy) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onManaged(policy);
         }
         @Override
         public void onEnricherAdded(Enricher enricher) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onManaged(enricher);
         }
         @Override
         public void onFeedAdded(Feed feed) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onManaged(feed);
         }
         @Override
         public void onPolicyRemoved(Policy policy) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onUnmanaged(policy);
         }
         @Override
         public void onEnricherRemoved(Enricher enricher) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onUnmanaged(enricher);
         }
         @Override
         public void onFeedRemoved(Feed feed) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onUnmanaged(feed);
         }
         @Override
         public void onAttributeChanged(AttributeSensor<?> attribute) {
+            noteChangedForVersion();
             if (attribute.getPersistenceMode() != SensorPersistenceMode.NONE) {
-                getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+                ChangeListener listener = getManagementContext().getRebindManager().getChangeListener();
+                if (listener instanceof FieldChangeListener) {
+                    ((FieldChangeListener)listener).onAttributeChanged(entity, attribute.getName());
+                } else {
+                    listener.onChanged(entity);
+                }
             }
         }
         @Override
         public void onConfigChanged(ConfigKey<?> key) {
-            getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            noteChangedForVersion();
+            ChangeListener listener = getManagementContext().getRebindManager().getChangeListener();
+            if (listener instanceof FieldChangeListener) {
+                ((FieldChangeListener)listener).onConfigChanged(entity, key.getName());
+            } else {
+                listener.onChanged(entity);
+            }
+            EntityChangeStream.onConfigChanged(getManagementContext(), entity, key);
         }
         @Override
         public void onEffectorStarting(Effector<?> effector, Object parameters) {
@@ -639,6 +688,7 @@ public class EntityManagementSupport {
         }
         @Override
         public void onEffectorCompleted(Effector<?> effector) {
+            noteChangedForVersion();
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
     }
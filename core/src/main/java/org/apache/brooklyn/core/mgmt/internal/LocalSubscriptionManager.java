@@ -19,9 +19,10 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.elvis;
-import static org.apache.brooklyn.util.JavaGroovyEquivalents.groovyTruth;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.join;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -38,6 +39,7 @@ import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.SubscriptionManager;
+import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
@@ -47,11 +49,14 @@ import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.sensor.AttributeMap;
 import org.apache.brooklyn.core.sensor.BasicSensorEvent;
+import org.apache.brooklyn.core.sensor.BatchSensorEventListener;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.task.BasicExecutionContext;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.core.task.SingleThreadedScheduler;
+import org.apache.brooklyn.util.core.task.TaskTags;
+import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.text.Identifiers;
 import org.apache.brooklyn.util.text.Strings;
@@ -68,8 +73,11 @@ import com.google.common.collect.Multimaps;
 /**
  * A {@link SubscriptionManager} that stores subscription details locally.
  * 
- * Synchronization model:  methods in this class synch on this object to ensure
- * subscription order and delivery order on publish.
+ * Synchronization model:  subscriptions are indexed by producer and sensor name
+ * in a {@link SubscriptionIndex}, whose per-bucket arrays are replaced (copy-on-write)
+ * when subscribing or unsubscribing; publishing reads them without taking any lock.
+ * Delivery order is preserved because notifications are generated in the publishing thread
+ * and submitted to a single-threaded scheduler per subscriber.
  * <p>
  * Frequently it will be called by a thread holding a lock on a value
  * (eg {@link AttributeMap}, this synchronized methods here should not
@@ -91,8 +99,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     protected final ConcurrentMap<String, Subscription> allSubscriptions = new ConcurrentHashMap<String, Subscription>();
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsBySubscriber = new ConcurrentHashMap<Object, Set<Subscription>>();
-    @SuppressWarnings("rawtypes")
-    protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsByToken = new ConcurrentHashMap<Object, Set<Subscription>>();
+    protected final SubscriptionIndex subscriptionsByProducerAndSensor = new SubscriptionIndex();
     
     public LocalSubscriptionManager(ExecutionManager m) {
         this.em = m;
@@ -115,7 +122,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     
     @Override
     @SuppressWarnings("unchecked")
-    protected synchronized <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
+    protected <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
         Entity producer = s.producer;
         if (producer!=null && Entities.isReadOnly(producer)) {
             LOG.trace("Skipping subscription in read only mode {} {}", s, flags);
@@ -143,6 +150,11 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         }
         s.eventFilter = (Predicate<SensorEvent<T>>) flags.remove("eventFilter");
         boolean notifyOfInitialValue = Boolean.TRUE.equals(flags.remove("notifyOfInitialValue"));
+        boolean coalesceEvents = Boolean.TRUE.equals(flags.remove("coalesceEvents"));
+        boolean batchEvents = Boolean.TRUE.equals(flags.remove("batchEvents"));
+        if (coalesceEvents || batchEvents) {
+            s.pendingEvents = new PendingEvents(coalesceEvents);
+        }
         s.flags = flags;
         
         if (LOG.isDebugEnabled()) LOG.debug("Creating subscription {} for {} on {} {} in {}", new Object[] {s.id, s.subscriber, producer, sensor, this});
@@ -165,13 +177,15 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         } else {
             lastVal = null;  // won't be used
         }
-        addToMapOfSets(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
-        if (s.subscriber!=null) {
-            addToMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
-        }
+        // the scheduler must be in place before the subscription is visible to publishers,
+        // otherwise the first deliveries could run concurrently or out of order
         if (!s.subscriberExecutionManagerTagSupplied && s.subscriberExecutionManagerTag!=null) {
             ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
         }
+        subscriptionsByProducerAndSensor.add(s);
+        if (s.subscriber!=null) {
+            addToMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
+        }
 
         if (notifyOfInitialValue) {
             if (LOG.isTraceEnabled()) LOG.trace("sending initial value of {} -> {} to {}", new Object[] {s.producer, s.sensor, s});
@@ -220,12 +234,13 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     }
 
     @Override
-    public synchronized Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+    public Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+        String sensorName = sensor==null ? null : sensor.getName();
         Set<SubscriptionHandle> subscriptions = new LinkedHashSet<SubscriptionHandle>();
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, null)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, null)), Collections.emptySet()));
+        subscriptions.addAll(Arrays.asList(subscriptionsByProducerAndSensor.get(source, sensorName)));
+        subscriptions.addAll(Arrays.asList(subscriptionsByProducerAndSensor.get(null, sensorName)));
+        subscriptions.addAll(Arrays.asList(subscriptionsByProducerAndSensor.get(source, null)));
+        subscriptions.addAll(Arrays.asList(subscriptionsByProducerAndSensor.get(null, null)));
         return subscriptions;
     }
 
@@ -236,11 +251,11 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
      */
     @Override
     @SuppressWarnings("rawtypes")
-    public synchronized boolean unsubscribe(SubscriptionHandle sh) {
+    public boolean unsubscribe(SubscriptionHandle sh) {
         if (!(sh instanceof Subscription)) throw new IllegalArgumentException("Only subscription handles of type Subscription supported: sh="+sh+"; type="+(sh != null ? sh.getClass().getCanonicalName() : null));
         Subscription s = (Subscription) sh;
         boolean result = allSubscriptions.remove(s.id) != null;
-        boolean b2 = removeFromMapOfCollections(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        boolean b2 = subscriptionsByProducerAndSensor.remove(s);
         assert result==b2;
         if (s.subscriber!=null) {
             boolean b3 = removeFromMapOfCollections(subscriptionsBySubscriber, s.subscriber, s);
@@ -269,15 +284,30 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (LOG.isTraceEnabled()) LOG.trace("{} got event {}", this, event);
         totalEventsPublishedCount.incrementAndGet();
         
-        Set<Subscription> subs = (Set<Subscription>) ((Set<?>) getSubscriptionsForEntitySensor(event.getSource(), event.getSensor()));
-        if (groovyTruth(subs)) {
-            if (LOG.isTraceEnabled()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
-            for (Subscription s : subs) {
-                submitPublishEvent(s, event, false);
-                // excludes initial so only do it here
-                totalEventsDeliveredCount.incrementAndGet();
-            }
+        if (LOG.isTraceEnabled()) {
+            Set<SubscriptionHandle> subs = getSubscriptionsForEntitySensor(event.getSource(), event.getSensor());
+            if (!subs.isEmpty()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
+        }
+
+        // no locking or allocation here unless there are subscribers; each subscription is in exactly one bucket
+        Entity source = event.getSource();
+        String sensorName = event.getSensor()==null ? null : event.getSensor().getName();
+        int count = submitPublishEvents(subscriptionsByProducerAndSensor.get(source, sensorName), event);
+        if (source!=null) count += submitPublishEvents(subscriptionsByProducerAndSensor.get(null, sensorName), event);
+        if (sensorName!=null) {
+            count += submitPublishEvents(subscriptionsByProducerAndSensor.get(source, null), event);
+            if (source!=null) count += submitPublishEvents(subscriptionsByProducerAndSensor.get(null, null), event);
         }
+        // excludes initial so only do it here
+        if (count>0) totalEventsDeliveredCount.addAndGet(count);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private int submitPublishEvents(Subscription[] subs, SensorEvent<?> event) {
+        for (Subscription s : subs) {
+            submitPublishEvent(s, event, false);
+        }
+        return subs.length;
     }
     
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -285,6 +315,13 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (s.eventFilter!=null && !s.eventFilter.apply(event))
             return;
         
+        if (s.pendingEvents!=null && !isInitialPublicationOfOldValueInCorrectScheduledThread) {
+            if (s.pendingEvents.add(event)) {
+                submitPendingEventsDelivery(s, event);
+            }
+            return;
+        }
+        
         List<Object> tags = getPublishTags(s, event.getSource()).asUnmodifiable();
         
         StringBuilder name = new StringBuilder("sensor ");
@@ -385,6 +422,140 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         }
     }
 
+    /**
+     * Submits a single task to deliver all events pending for the subscription. It uses the same tags,
+     * and so the same single-threaded scheduler, as individual deliveries, so delivery stays in order
+     * with respect to initial-value notifications. As for those, the task targets the source of the event
+     * which triggered it, and also any other sources of the events it delivers.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void submitPendingEventsDelivery(final Subscription s, final SensorEvent<?> firstEvent) {
+        List<Object> tags = getPublishTags(s, firstEvent.getSource()).asUnmodifiable();
+        String sensorName = s.sensor==null ? "<all-sensors>" : s.sensor.getName();
+        String sourceName = s.producer==null ? "<all-sources>" : s.producer.getId();
+        StringBuilder description = new StringBuilder("Sensor "+sensorName+" on "+sourceName+" publishing to "+
+                (s.subscriber instanceof Entity ? ((Entity)s.subscriber).getId() : s.subscriber));
+        if (Strings.isNonBlank(s.subscriptionDescription)) {
+            description.append(", ");
+            description.append(s.subscriptionDescription);
+        }
+        description.append(s.pendingEvents.coalesce ? ", latest values only" : ", in batches");
+        Map<String, Object> execFlags = MutableMap.of("tags", tags, 
+            "displayName", "sensor "+sourceName+":"+sensorName+" "+(s.pendingEvents.coalesce ? "coalesced" : "batched"),
+            "description", description.toString());
+        final ExecutionContext ec = BrooklynTaskTags.getExecutionContext(tags);
+        em.submit(execFlags, new Runnable() {
+            @Override
+            public String toString() {
+                return "LSM.publishPending("+s+")";
+            }
+            @Override
+            public void run() {
+                List<SensorEvent<?>> events = s.pendingEvents.drain();
+                if (events.isEmpty()) return;
+                tagWithOtherSources(events, firstEvent.getSource());
+                
+                BasicExecutionContext oldEC = null;
+                boolean setEC;
+                if (ec instanceof BasicExecutionContext) {
+                    oldEC = BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext) ec);
+                    setEC = true;
+                } else {
+                    setEC = false;
+                }
+                try {
+                    int count = s.eventCount.addAndGet(events.size());
+                    if (LOG.isTraceEnabled()) LOG.trace("{} delivering {} pending events, {} in total", new Object[] {s, events.size(), count});
+                    if (s.listener instanceof BatchSensorEventListener) {
+                        ((BatchSensorEventListener) s.listener).onEvents((List) events);
+                    } else {
+                        for (SensorEvent<?> event: events) {
+                            try {
+                                s.listener.onEvent(event);
+                            } catch (Throwable t) {
+                                Exceptions.propagateIfFatal(t);
+                                logDeliveryError(event.getSource(), t);
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    Exceptions.propagateIfFatal(t);
+                    logDeliveryError(s.producer, t);
+                } finally {
+                    if (setEC) {
+                        BasicExecutionContext.setPerThreadExecutionContext(oldEC);
+                    }
+                }
+            }});
+    }
+
+    /** adds target tags to the current task for sources of the events (which may be from several, if the subscription is to all) not yet tagged */
+    private void tagWithOtherSources(List<SensorEvent<?>> events, Entity taggedSource) {
+        Task<?> current = Tasks.current();
+        if (current == null) return;
+        Set<Entity> sources = new LinkedHashSet<Entity>();
+        for (SensorEvent<?> event : events) {
+            if (event.getSource() != null && !event.getSource().equals(taggedSource)) sources.add(event.getSource());
+        }
+        for (Entity source : sources) {
+            TaskTags.addTagDynamically(current, BrooklynTaskTags.tagForTargetEntity(source));
+        }
+    }
+
+    private void logDeliveryError(Entity source, Throwable t) {
+        if (source!=null && Entities.isNoLongerManaged(source)) {
+            LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
+        } else {
+            LOG.warn("Error processing subscriptions to "+this+": "+t, t);
+        }
+    }
+
+    /**
+     * Events waiting to be delivered to a subscription which batches or coalesces its events.
+     * At most one delivery task is outstanding at a time; events published before it runs are
+     * collected here and delivered by that task.
+     */
+    static class PendingEvents {
+        final boolean coalesce;
+        private List<SensorEvent<?>> events = new ArrayList<SensorEvent<?>>();
+        private Map<Object, SensorEvent<?>> latestEvents = new LinkedHashMap<Object, SensorEvent<?>>();
+        private boolean deliveryScheduled = false;
+
+        PendingEvents(boolean coalesce) {
+            this.coalesce = coalesce;
+        }
+
+        /** @return true if a delivery needs to be scheduled, i.e. none is already pending */
+        synchronized boolean add(SensorEvent<?> event) {
+            if (coalesce) {
+                Object token = makeEntitySensorToken(event);
+                // re-insert so order reflects the latest publication
+                latestEvents.remove(token);
+                latestEvents.put(token, event);
+            } else {
+                events.add(event);
+            }
+            if (deliveryScheduled) return false;
+            deliveryScheduled = true;
+            return true;
+        }
+
+        synchronized List<SensorEvent<?>> drain() {
+            deliveryScheduled = false;
+            List<SensorEvent<?>> result;
+            if (coalesce) {
+                if (latestEvents.isEmpty()) return Collections.emptyList();
+                result = new ArrayList<SensorEvent<?>>(latestEvents.values());
+                latestEvents.clear();
+            } else {
+                if (events.isEmpty()) return Collections.emptyList();
+                result = events;
+                events = new ArrayList<SensorEvent<?>>();
+            }
+            return result;
+        }
+    }
+
     private MutableList<Object> getPublishTags(final Subscription<?> s, final Entity source) {
         return MutableList.builder()
             .addAll(s.subscriberExtraExecTags == null ? ImmutableList.of() : s.subscriberExtraExecTags)
@@ -409,6 +580,81 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     public String toString() {
         return tostring;
     }
+
+    /**
+     * Subscriptions keyed by producer then sensor name, where a null producer or sensor
+     * (i.e. a wildcard subscription) is stored under its own key.
+     * <p>
+     * Lookups take no locks and allocate nothing: each bucket is an array which is never modified,
+     * but replaced when a subscription is added or removed. Changes are serialized per producer
+     * (using {@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)}),
+     * so subscribing to one entity does not contend with publishing or subscribing on another.
+     */
+    @SuppressWarnings("rawtypes")
+    protected static class SubscriptionIndex {
+        private static final Object WILDCARD = new Object();
+        private static final Subscription[] NONE = new Subscription[0];
+
+        private final ConcurrentMap<Object, ConcurrentMap<Object, Subscription[]>> byProducer = new ConcurrentHashMap<Object, ConcurrentMap<Object, Subscription[]>>();
+
+        private static Object key(Object producerOrSensorName) {
+            return producerOrSensorName==null ? WILDCARD : producerOrSensorName;
+        }
+
+        private static Object sensorKey(Subscription<?> s) {
+            return key(s.sensor==null ? null : s.sensor.getName());
+        }
+
+        public void add(final Subscription<?> s) {
+            final Object sensorKey = sensorKey(s);
+            byProducer.compute(key(s.producer), (k, bySensor) -> {
+                if (bySensor==null) bySensor = new ConcurrentHashMap<Object, Subscription[]>();
+                Subscription[] old = bySensor.get(sensorKey);
+                if (old==null) {
+                    bySensor.put(sensorKey, new Subscription[] { s });
+                } else {
+                    for (Subscription existing: old) {
+                        if (existing==s) return bySensor;
+                    }
+                    Subscription[] subs = Arrays.copyOf(old, old.length+1);
+                    subs[old.length] = s;
+                    bySensor.put(sensorKey, subs);
+                }
+                return bySensor;
+            });
+        }
+
+        /** @return whether the subscription was present */
+        public boolean remove(final Subscription<?> s) {
+            final Object sensorKey = sensorKey(s);
+            final boolean[] removed = new boolean[1];
+            byProducer.computeIfPresent(key(s.producer), (k, bySensor) -> {
+                Subscription[] old = bySensor.get(sensorKey);
+                if (old==null) return bySensor;
+                int i = Arrays.asList(old).indexOf(s);
+                if (i<0) return bySensor;
+                removed[0] = true;
+                if (old.length==1) {
+                    bySensor.remove(sensorKey);
+                    return bySensor.isEmpty() ? null : bySensor;
+                }
+                Subscription[] subs = new Subscription[old.length-1];
+                System.arraycopy(old, 0, subs, 0, i);
+                System.arraycopy(old, i+1, subs, i, old.length-i-1);
+                bySensor.put(sensorKey, subs);
+                return bySensor;
+            });
+            return removed[0];
+        }
+
+        /** subscriptions registered for exactly this producer and sensor name (null meaning those subscribed to all); never null, and must not be modified */
+        public Subscription[] get(Entity producer, String sensorName) {
+            Map<Object, Subscription[]> bySensor = byProducer.get(key(producer));
+            if (bySensor==null) return NONE;
+            Subscription[] result = bySensor.get(key(sensorName));
+            return result==null ? NONE : result;
+        }
+    }
     
     /**
      * Copied from LanguageUtils.groovy, to remove dependency.
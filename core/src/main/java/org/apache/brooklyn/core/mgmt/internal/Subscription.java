@@ -45,6 +45,8 @@ class Subscription<T> implements SubscriptionHandle {
     public final AtomicInteger eventCount = new AtomicInteger();
     public Map<String,Object> flags;
     public Predicate<SensorEvent<T>> eventFilter;
+    /** set if events are batched or coalesced rather than delivered individually */
+    public LocalSubscriptionManager.PendingEvents pendingEvents;
 
     public Subscription(Entity producer, Sensor<T> sensor, SensorEventListener<? super T> listener) {
         this.producer = producer;
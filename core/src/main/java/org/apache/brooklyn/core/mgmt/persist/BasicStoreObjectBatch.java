@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectBatch;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.io.ByteSource;
+
+/**
+ * Collects the changes for a {@link StoreObjectBatch}, and commits them by making each change in turn
+ * with an accessor from the store; used for stores which cannot do better.
+ * Subclasses can override {@link #commit()} using {@link #getChanges()}.
+ */
+@Beta
+public class BasicStoreObjectBatch implements StoreObjectBatch {
+
+    private final PersistenceObjectStore objectStore;
+    /** in the order made, with null for deletes */
+    private final Map<String, ByteSource> changes = new LinkedHashMap<String, ByteSource>();
+
+    public BasicStoreObjectBatch(PersistenceObjectStore objectStore) {
+        this.objectStore = checkNotNull(objectStore, "objectStore");
+    }
+
+    @Override
+    public void put(String path, ByteSource bytes) {
+        checkNotNull(bytes, "bytes");
+        // remove first so the order is that of the latest change
+        changes.remove(path);
+        changes.put(path, bytes);
+    }
+
+    @Override
+    public void delete(String path) {
+        changes.remove(path);
+        changes.put(path, null);
+    }
+
+    @Override
+    public int size() {
+        return changes.size();
+    }
+
+    /** the changes in the order they should be made, mapping each path to its contents, or to null if it is to be deleted */
+    protected Map<String, ByteSource> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    protected PersistenceObjectStore getObjectStore() {
+        return objectStore;
+    }
+
+    @Override
+    public void commit() {
+        List<Exception> errors = MutableList.of();
+        for (Map.Entry<String, ByteSource> change : changes.entrySet()) {
+            try {
+                StoreObjectAccessor accessor = objectStore.newAccessor(change.getKey());
+                if (change.getValue()!=null) {
+                    accessor.put(change.getValue());
+                } else {
+                    accessor.delete();
+                }
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                errors.add(e);
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw Exceptions.create("Failed to commit "+errors.size()+" of "+changes.size()+" changes to "+objectStore.getSummaryName(), errors);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("objectStore", objectStore.getSummaryName()).add("size", changes.size()).toString();
+    }
+}
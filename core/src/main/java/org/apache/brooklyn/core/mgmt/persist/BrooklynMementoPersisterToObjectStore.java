@@ -25,6 +25,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -35,7 +37,6 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
-import javax.xml.xpath.XPathConstants;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
@@ -57,18 +58,21 @@ import org.apache.brooklyn.core.location.Locations;
 import org.apache.brooklyn.core.mgmt.classloading.BrooklynClassLoadingContextSequential;
 import org.apache.brooklyn.core.mgmt.classloading.ClassLoaderFromBrooklynClassLoadingContext;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.mgmt.persist.MementoManifestIndex.ManifestFields;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessorWithLock;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectBatch;
 import org.apache.brooklyn.core.mgmt.persist.XmlMementoSerializer.XmlMementoSerializerBuilder;
 import org.apache.brooklyn.core.mgmt.rebind.PeriodicDeltaChangeListener;
+import org.apache.brooklyn.core.mgmt.rebind.PersisterDeltaImpl;
 import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
+import org.apache.brooklyn.core.mgmt.rebind.dto.BasicEntityMemento;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoManifestImpl;
 import org.apache.brooklyn.core.typereg.BasicManagedBundle;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
-import org.apache.brooklyn.util.core.xstream.XmlUtil;
 import org.apache.brooklyn.util.exceptions.CompoundRuntimeException;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.RuntimeInterruptedException;
@@ -78,13 +82,18 @@ import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.NodeList;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
 import com.google.common.io.ByteSource;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -102,6 +111,12 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private static final Logger LOG = LoggerFactory.getLogger(BrooklynMementoPersisterToObjectStore.class);
     public static final String PLANE_ID_FILE_NAME = "planeId";
+    /** sub-path for the delta records of entities, one object per entity */
+    @Beta
+    public static final String ENTITY_DELTAS_SUB_PATH = "deltas";
+    /** object for the {@link MementoChangeLog}, written if {@link #PERSISTER_CHANGE_LOG_ENABLED} */
+    @Beta
+    public static final String CHANGE_LOG_FILE_NAME = "mementoChanges";
 
 
     public static final ConfigKey<Integer> PERSISTER_MAX_THREAD_POOL_SIZE = ConfigKeys.newIntegerConfigKey(
@@ -114,11 +129,73 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    @Beta
+    public static final ConfigKey<Boolean> PERSISTER_ENTITY_DELTAS_ENABLED = ConfigKeys.newBooleanConfigKey(
+            "persister.entityDeltas.enabled",
+            "Whether to persist changes to just some config keys and attributes of an entity by appending a delta record for the entity, "
+            + "rather than by rewriting the entity's full memento; the records are merged into the memento when loading", 
+            false);
+
+    @Beta
+    public static final ConfigKey<Integer> PERSISTER_ENTITY_DELTAS_MAX_RECORDS = ConfigKeys.newIntegerConfigKey(
+            "persister.entityDeltas.maxRecords",
+            "Maximum number of delta records to append for an entity, after which its full memento is written and the records deleted", 
+            20);
+
+    @Beta
+    public static final ConfigKey<Boolean> PERSISTER_BATCH_WRITES_ENABLED = ConfigKeys.newBooleanConfigKey(
+            "persister.batchWrites.enabled",
+            "Whether to commit the mementos written and deleted in each checkpoint or delta together, as one batch to the object store, "
+            + "rather than writing each with a separate operation; "
+            + "for the file-based store this syncs all the files together and renames them all-or-nothing", 
+            false);
+
+    @Beta
+    public static final ConfigKey<Boolean> PERSISTER_CHANGE_LOG_ENABLED = ConfigKeys.newBooleanConfigKey(
+            "persister.changeLog.enabled",
+            "Whether to write a log of the ids of the mementos changed in each persistence cycle, "
+            + "so that hot standbys can re-read just those mementos, and skip rebinding when none have changed, "
+            + "rather than re-reading all mementos every time", 
+            false);
+
+    @Beta
+    public static final ConfigKey<Integer> PERSISTER_CHANGE_LOG_MAX_ENTRIES = ConfigKeys.newIntegerConfigKey(
+            "persister.changeLog.maxEntries",
+            "Maximum number of changed ids to keep in the change log; hot standbys which fall further behind re-read all mementos", 
+            10000);
+
+    @Beta
+    public static final ConfigKey<String> PERSISTER_MEMENTO_ENCODING = ConfigKeys.newStringConfigKey(
+            "persister.mementoEncoding",
+            "How to store mementos: 'xml' (the default), 'compact' for a smaller binary encoding of the XML, "
+            + "or the name of a class implementing "+MementoStoreEncoding.class.getSimpleName()+"; "
+            + "mementos in any of these are read, so existing mementos are converted as they are rewritten", 
+            "xml");
+
+    private static final int MAX_CACHED_SERIALIZERS_WITH_CUSTOM_CLASS_LOADER = 100;
+
     private final PersistenceObjectStore objectStore;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
+    /** serializers with custom class loaders, for lookup contexts in use by {@link #loadMemento(BrooklynMementoRawData, LookupContext, RebindExceptionHandler)} */
+    private final Map<LookupContext, Cache<ClassLoader, MementoSerializer<Object>>> serializersWithCustomClassLoader = new ConcurrentHashMap<LookupContext, Cache<ClassLoader, MementoSerializer<Object>>>();
 
     private final Map<String, StoreObjectAccessorWithLock> writers = new LinkedHashMap<String, PersistenceObjectStore.StoreObjectAccessorWithLock>();
 
+    private final boolean batchWritesEnabled;
+    private final boolean entityDeltasEnabled;
+    private final int entityDeltasMaxRecords;
+    private final boolean changeLogEnabled;
+    private final int changeLogMaxEntries;
+    private final MementoStoreEncoding mementoEncoding;
+    /** the change log as last written here; only accessed when holding the write lock */
+    private MementoChangeLog changeLog = MementoChangeLog.newLog();
+    /** whether any change log left by an earlier master has been removed, when not writing one here */
+    private boolean staleChangeLogChecked = false;
+    /** {@link EntityMementoDeltas#fingerprint(String) fingerprints} of entities' full mementos, as last written here, which can have delta records applied to them */
+    private final Map<String, String> entityMementoFingerprints = new ConcurrentHashMap<String, String>();
+    /** number of delta records in the store for entities, where there may be any (from loading or from writes here) */
+    private final Map<String, Integer> entityDeltaRecordCounts = new ConcurrentHashMap<String, Integer>();
+
     private ListeningExecutorService executor;
 
     private volatile boolean writesAllowed = false;
@@ -127,6 +204,12 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     private ManagementContext mgmt = null;
     
     private List<Delta> queuedDeltas = new CopyOnWriteArrayList<BrooklynMementoPersister.Delta>();
+    private final List<AuxiliaryWriter> auxiliaryWriters = new CopyOnWriteArrayList<AuxiliaryWriter>();
+
+    /** manifest fields extracted when raw data was last loaded, kept until the manifest is loaded from that data */
+    private volatile RawDataManifestIndex lastManifestIndex;
+    /** raw data last loaded when not writing, and the change log it reflects, for loading just the changes next time */
+    private volatile IncrementalLoadState incrementalLoadState;
     
     /**
      * Lock used on writes (checkpoint + delta) so that {@link #waitForWritesCompleted(Duration)} can block
@@ -155,6 +238,12 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                 .withBrooklynDeserializingClassRenames()
                 .withClassLoader(classLoader).build();
         this.serializerWithStandardClassLoader = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
+        this.batchWritesEnabled = brooklynProperties.getConfig(PERSISTER_BATCH_WRITES_ENABLED);
+        this.entityDeltasEnabled = brooklynProperties.getConfig(PERSISTER_ENTITY_DELTAS_ENABLED);
+        this.entityDeltasMaxRecords = brooklynProperties.getConfig(PERSISTER_ENTITY_DELTAS_MAX_RECORDS);
+        this.changeLogEnabled = brooklynProperties.getConfig(PERSISTER_CHANGE_LOG_ENABLED);
+        this.changeLogMaxEntries = brooklynProperties.getConfig(PERSISTER_CHANGE_LOG_MAX_ENTRIES);
+        this.mementoEncoding = MementoStoreEncodings.of(brooklynProperties.getConfig(PERSISTER_MEMENTO_ENCODING), classLoader);
 
         objectStore.createSubPath("entities");
         objectStore.createSubPath("locations");
@@ -163,6 +252,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         objectStore.createSubPath("feeds");
         objectStore.createSubPath("catalog");
 
+        if (entityDeltasEnabled) {
+            objectStore.createSubPath(ENTITY_DELTAS_SUB_PATH);
+        }
+
         // FIXME does it belong here or to ManagementPlaneSyncRecordPersisterToObjectStore ?
         objectStore.createSubPath("plane");
         
@@ -187,7 +280,30 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return getSerializerWithCustomClassLoader(lookupContext, cl);
     }
     
-    protected MementoSerializer<Object> getSerializerWithCustomClassLoader(LookupContext lookupContext, ClassLoader classLoader) {
+    /**
+     * Returns a serializer using the given class loader. While {@link #loadMemento(BrooklynMementoRawData, LookupContext, RebindExceptionHandler)}
+     * is using the lookup context, serializers are cached for it, keyed by class loader, as each is expensive to create
+     * (with its own xstream instance, and caches of reflection and converters which warm up as it is used);
+     * equivalent class loaders for catalog items (see {@link ClassLoaderFromBrooklynClassLoadingContext}) share one.
+     */
+    protected MementoSerializer<Object> getSerializerWithCustomClassLoader(final LookupContext lookupContext, final ClassLoader classLoader) {
+        Cache<ClassLoader, MementoSerializer<Object>> cache = serializersWithCustomClassLoader.get(lookupContext);
+        if (cache==null) {
+            return newSerializerWithCustomClassLoader(lookupContext, classLoader);
+        }
+        try {
+            return cache.get(classLoader, new Callable<MementoSerializer<Object>>() {
+                @Override
+                public MementoSerializer<Object> call() {
+                    return newSerializerWithCustomClassLoader(lookupContext, classLoader);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+    
+    protected MementoSerializer<Object> newSerializerWithCustomClassLoader(LookupContext lookupContext, ClassLoader classLoader) {
         int maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
         MementoSerializer<Object> rawSerializer = XmlMementoSerializerBuilder.from(brooklynProperties)
                 .withBrooklynDeserializingClassRenames()
@@ -230,6 +346,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     @Override public void enableWriteAccess() {
         writesAllowed = true;
+        clearIncrementalLoadState();
     }
     
     @Override
@@ -257,6 +374,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     @Override
     public void reset() {
         resetExecutor();
+        clearIncrementalLoadState();
     }
 
     public void resetExecutor() {
@@ -288,13 +406,114 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return objectStore;
     }
 
+    /**
+     * Supplies writes of objects kept in the store alongside the mementos (such as workflows),
+     * so that they are made with each delta, with the same executor, batching, encoding, error handling and change log.
+     */
+    @Beta
+    public interface AuxiliaryWriter {
+        /** Whether there are writes pending, in which case a delta is made even if no mementos have changed. */
+        boolean hasPendingWrites();
+
+        /**
+         * Returns the writes pending, which are then no longer pending, with at most one for any path.
+         * Called by each delta holding the persister's write lock, so writes from one call are completed before the next call.
+         *
+         * @param appendSupported whether {@link AuxiliaryWrite#append(String, String, String, Runnable)} can be used;
+         *        false if objects are stored with an encoding, in which case they must be put in full
+         */
+        List<AuxiliaryWrite> takePendingWrites(boolean appendSupported);
+    }
+
+    /**
+     * A write of an object returned by an {@link AuxiliaryWriter}; failures are reported to the {@link PersistenceExceptionHandler}
+     * against the entity owning the object, and that entity is recorded as changed in the change log.
+     */
+    @Beta
+    public static class AuxiliaryWrite {
+        private enum Kind { PUT, APPEND, DELETE }
+
+        private final Kind kind;
+        private final String path;
+        private final String ownerId;
+        private final String content;
+        private final Runnable onFailure;
+
+        private AuxiliaryWrite(Kind kind, String path, String ownerId, @Nullable String content, @Nullable Runnable onFailure) {
+            this.kind = checkNotNull(kind, "kind");
+            this.path = checkNotNull(path, "path");
+            this.ownerId = checkNotNull(ownerId, "ownerId");
+            this.content = content;
+            this.onFailure = onFailure;
+        }
+
+        /** Writes the object in full, with the configured {@link MementoStoreEncoding}. */
+        public static AuxiliaryWrite put(String path, String ownerId, String content, @Nullable Runnable onFailure) {
+            return new AuxiliaryWrite(Kind.PUT, path, ownerId, checkNotNull(content, "content"), onFailure);
+        }
+
+        /** Appends to the object; only permitted where the writer was told appends are supported. */
+        public static AuxiliaryWrite append(String path, String ownerId, String content, @Nullable Runnable onFailure) {
+            return new AuxiliaryWrite(Kind.APPEND, path, ownerId, checkNotNull(content, "content"), onFailure);
+        }
+
+        public static AuxiliaryWrite delete(String path, String ownerId) {
+            return new AuxiliaryWrite(Kind.DELETE, path, ownerId, null, null);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        void onFailed(PersistenceExceptionHandler exceptionHandler, Exception e) {
+            if (kind==Kind.DELETE) {
+                exceptionHandler.onDeleteMementoFailed(path, e);
+            } else {
+                exceptionHandler.onPersistRawMementoFailed(BrooklynObjectType.ENTITY, ownerId, e);
+            }
+            if (onFailure!=null) {
+                try {
+                    onFailure.run();
+                } catch (Exception e2) {
+                    Exceptions.propagateIfFatal(e2);
+                    LOG.warn("Problem handling failure writing "+path+" (ignoring): "+e2, e2);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind.name().toLowerCase()+" "+path;
+        }
+    }
+
+    /** Adds a writer whose pending writes are made with each subsequent delta. */
+    @Beta
+    public void addAuxiliaryWriter(AuxiliaryWriter writer) {
+        auxiliaryWriters.add(checkNotNull(writer, "writer"));
+    }
+
+    @Beta
+    public boolean hasPendingAuxiliaryWrites() {
+        for (AuxiliaryWriter writer : auxiliaryWriters) {
+            if (writer.hasPendingWrites()) return true;
+        }
+        return false;
+    }
+
+    /** Reads an object written by an {@link AuxiliaryWriter}, decoding it if needed, or returns null if there is none. */
+    @Beta
+    public String readAuxiliary(String path) {
+        return readMemento(path);
+    }
+
     protected StoreObjectAccessorWithLock getWriter(String path) {
-        String id = path.substring(path.lastIndexOf('/')+1);
+        // keyed by path, as an entity's memento and its deltas have the same id
         synchronized (writers) {
-            StoreObjectAccessorWithLock writer = writers.get(id);
+            StoreObjectAccessorWithLock writer = writers.get(path);
             if (writer == null) {
                 writer = new StoreObjectAccessorLocking( objectStore.newAccessor(path) );
-                writers.put(id, writer);
+                writers.put(path, writer);
             }
             return writer;
         }
@@ -338,9 +557,42 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return subPathData;
     }
     
+    /**
+     * Loads the raw data of all mementos.
+     * <p>
+     * When not writing, if the master writes a {@link MementoChangeLog} (see {@link #PERSISTER_CHANGE_LOG_ENABLED}),
+     * the data loaded is kept, and the next load re-reads only the mementos which the log shows have changed since.
+     */
     @Override
     public BrooklynMementoRawData loadMementoRawData(final RebindExceptionHandler exceptionHandler) {
+        // read the log before the mementos, so that anything changed while reading them is in the log next time
+        MementoChangeLog storeChangeLog = writesAllowed ? null : readChangeLog();
+        IncrementalLoadState previous = incrementalLoadState;
+        
+        BrooklynMementoRawData result = null;
+        // extracting the manifest fields as each memento is read saves parsing it again when loading the manifest
+        MementoManifestIndex manifestIndex = new MementoManifestIndex();
+        if (storeChangeLog!=null && previous!=null) {
+            Maybe<SetMultimap<BrooklynObjectType, String>> changes = storeChangeLog.getChangesSince(previous.changeLog);
+            if (changes.isPresent()) {
+                result = loadChangedMementoRawData(previous, changes.get(), manifestIndex, exceptionHandler);
+            } else {
+                LOG.debug("Loading all mementos, as cannot load changes since {}: {}", previous.changeLog, Maybe.getException(changes));
+            }
+        }
+        if (result==null) {
+            result = loadAllMementoRawData(manifestIndex, exceptionHandler);
+        }
+        
+        incrementalLoadState = (storeChangeLog!=null) ? new IncrementalLoadState(storeChangeLog, result, manifestIndex) : null;
+        lastManifestIndex = new RawDataManifestIndex(result, manifestIndex);
+        return result;
+    }
+
+    private BrooklynMementoRawData loadAllMementoRawData(final MementoManifestIndex manifestIndex, final RebindExceptionHandler exceptionHandler) {
         BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
+        // read even if deltas are not enabled, in case they were when last persisted
+        final Map<String, String> entityDeltaSubPaths = makeIdSubPathMap(objectStore.listContentsWithSubPath(ENTITY_DELTAS_SUB_PATH));
         
         final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
         
@@ -352,31 +604,9 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     return;
                 }
                 
-                String contents = null;
-                try {
-                    contents = read(contentsSubpath);
-                } catch (Exception e) {
-                    Exceptions.propagateIfFatal(e);
-                    exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
-                }
+                String contents = loadRawMemento(type, id, contentsSubpath, entityDeltaSubPaths.get(id), builder, manifestIndex, exceptionHandler);
                 if (contents==null) {
                     LOG.warn("No contents for "+contentsSubpath+" in persistence store; ignoring");
-
-                } else {
-                    String xmlId = (String) XmlUtil.xpathHandlingIllegalChars(contents, "/" + type.toCamelCase() + "/id");
-                    String safeXmlId = Strings.makeValidFilename(xmlId);
-                    if (!Objects.equal(id, safeXmlId))
-                        LOG.warn("ID mismatch on " + type.toCamelCase() + ", " + id + " from path, " + safeXmlId + " from xml");
-
-                    if (type == BrooklynObjectType.MANAGED_BUNDLE) {
-                        // TODO could R/W to cache space directly, rather than memory copy then extra file copy
-                        byte[] jarData = readBytes(contentsSubpath + ".jar");
-                        if (jarData == null) {
-                            throw new IllegalStateException("No bundle data for " + contentsSubpath);
-                        }
-                        builder.bundleJar(id, ByteSource.wrap(jarData));
-                    }
-                    builder.put(type, xmlId, contents);
                 }
             }
         };
@@ -399,29 +629,135 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return result;
     }
 
-    private static class XPathHelper {
-        private String contents;
-        private String prefix;
-
-        public XPathHelper(String contents, String prefix) {
-            this.contents = contents;
-            this.prefix = prefix;
+    /** Loads the raw data by copying that previously loaded, except for the given ids which are re-read (or dropped if no longer in the store). */
+    private BrooklynMementoRawData loadChangedMementoRawData(IncrementalLoadState previous, SetMultimap<BrooklynObjectType, String> changedIds,
+            MementoManifestIndex manifestIndex, RebindExceptionHandler exceptionHandler) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
+        builder.planeId(Strings.emptyToNull(read(PLANE_ID_FILE_NAME)));
+        
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            Set<String> changedOfType = changedIds.get(type);
+            for (Map.Entry<String, String> entry : previous.rawData.getObjectsOfType(type).entrySet()) {
+                String id = entry.getKey();
+                if (changedOfType.contains(id)) continue;
+                builder.put(type, id, entry.getValue());
+                ManifestFields fields = previous.manifestIndex.get(type, id);
+                if (fields!=null) manifestIndex.put(type, id, fields);
+                if (type == BrooklynObjectType.MANAGED_BUNDLE && previous.rawData.getBundleJars().containsKey(id)) {
+                    builder.bundleJar(id, previous.rawData.getBundleJars().get(id));
+                }
+            }
+            for (String id : changedOfType) {
+                String deltasSubPath = null;
+                if (type == BrooklynObjectType.ENTITY && objectStore.newAccessor(getPath(ENTITY_DELTAS_SUB_PATH, id)).exists()) {
+                    deltasSubPath = getPath(ENTITY_DELTAS_SUB_PATH, id);
+                }
+                String contents = loadRawMemento(type, id, getPath(type.getSubPathName(), id), deltasSubPath, builder, manifestIndex, exceptionHandler);
+                if (contents==null) {
+                    LOG.trace("No contents for changed {} {} in persistence store; treating as removed", type.toCamelCase(), id);
+                }
+            }
         }
+        
+        BrooklynMementoRawData result = builder.build();
+        LOG.debug("Loaded rebind raw data changes; took {}; re-read {} changed mementos, from {}", new Object[] {
+                Time.makeTimeStringRounded(stopwatch), changedIds.size(), objectStore.getSummaryName() });
+        return result;
+    }
 
-        private String get(String innerPath) {
-            return (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix+innerPath);
+    /**
+     * Reads one memento (and, for an entity, applies any delta records; and for a bundle, reads its jar),
+     * adding it to the builder and the manifest index.
+     * 
+     * @return the contents, or null if there are none
+     */
+    private String loadRawMemento(BrooklynObjectType type, String id, String contentsSubpath, @Nullable String entityDeltasSubPath,
+            BrooklynMementoRawData.Builder builder, MementoManifestIndex manifestIndex, RebindExceptionHandler exceptionHandler) {
+        String contents = null;
+        try {
+            contents = readMemento(contentsSubpath);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
+        }
+        if (contents==null) {
+            return null;
         }
-        private List<String> getStringList(String innerPath) {
-            List<String> result = MutableList.of();
-            final NodeList nodeList =
-                (NodeList) XmlUtil.xpathHandlingIllegalChars(contents, prefix + innerPath + "//string", XPathConstants.NODESET);
-            for(int c = 0 ; c < nodeList.getLength() ; c++) {
-                result.add(nodeList.item(c).getFirstChild().getNodeValue());
+        if (type == BrooklynObjectType.ENTITY && entityDeltasSubPath!=null) {
+            contents = applyEntityDeltas(id, contents, entityDeltasSubPath, exceptionHandler);
+        }
+        String xmlId = manifestIndex.index(type, contents).getId();
+        String safeXmlId = Strings.makeValidFilename(xmlId);
+        if (!Objects.equal(id, safeXmlId))
+            LOG.warn("ID mismatch on " + type.toCamelCase() + ", " + id + " from path, " + safeXmlId + " from xml");
+
+        if (type == BrooklynObjectType.MANAGED_BUNDLE) {
+            // TODO could R/W to cache space directly, rather than memory copy then extra file copy
+            byte[] jarData = readBytes(contentsSubpath + ".jar");
+            if (jarData == null) {
+                throw new IllegalStateException("No bundle data for " + contentsSubpath);
             }
-            return result;
+            builder.bundleJar(id, ByteSource.wrap(jarData));
         }
+        builder.put(type, xmlId, contents);
+        return contents;
     }
 
+    /** Reads the change log written by the master, or returns null if there is none (or it cannot be read). */
+    @Nullable
+    private MementoChangeLog readChangeLog() {
+        try {
+            String contents = read(CHANGE_LOG_FILE_NAME);
+            return Strings.isBlank(contents) ? null : MementoChangeLog.parse(contents);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.debug("Unable to read memento change log from "+objectStore.getSummaryName()+"; will load all mementos: "+e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether the change log written by the master shows that no mementos have changed since the raw data was last loaded;
+     * false if that is not known, e.g. if no change log is written or the raw data has not been loaded since writes were disabled.
+     */
+    @Beta
+    public boolean isUnchangedSinceLastLoad() {
+        IncrementalLoadState previous = incrementalLoadState;
+        if (previous==null || writesAllowed) return false;
+        return previous.changeLog.isSameVersion(readChangeLog());
+    }
+
+    /** Discards the raw data kept from the last load, so that the next load reads all mementos. */
+    @Beta
+    public void clearIncrementalLoadState() {
+        incrementalLoadState = null;
+    }
+
+    private static class IncrementalLoadState {
+        final MementoChangeLog changeLog;
+        final BrooklynMementoRawData rawData;
+        final MementoManifestIndex manifestIndex;
+        IncrementalLoadState(MementoChangeLog changeLog, BrooklynMementoRawData rawData, MementoManifestIndex manifestIndex) {
+            this.changeLog = changeLog;
+            this.rawData = rawData;
+            this.manifestIndex = manifestIndex;
+        }
+    }
+
+    private String applyEntityDeltas(String id, String contents, String deltasSubPath, RebindExceptionHandler exceptionHandler) {
+        try {
+            String deltas = read(deltasSubPath);
+            List<String> records = deltas == null ? ImmutableList.<String>of() : EntityMementoDeltas.splitRecords(deltas);
+            // note them, so that the next full write removes them
+            entityDeltaRecordCounts.put(id, records.size());
+            return EntityMementoDeltas.applyDeltaRecords(contents, records);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            exceptionHandler.onLoadMementoFailed(BrooklynObjectType.ENTITY, "memento "+id+" deltas read error", e);
+            return contents;
+        }
+    }
 
     @Override
     public BrooklynMementoManifest loadMementoManifest(BrooklynMementoRawData mementoDataR,
@@ -429,24 +765,26 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         final BrooklynMementoRawData mementoData = mementoDataR==null ? loadMementoRawData(exceptionHandler) : mementoDataR;
         
         final BrooklynMementoManifestImpl.Builder builder = BrooklynMementoManifestImpl.builder();
+        final MementoManifestIndex manifestIndex = takeManifestIndex(mementoData);
 
         builder.planeId(mementoData.getPlaneId());
 
         Visitor visitor = new Visitor() {
             @Override
             public void visit(BrooklynObjectType type, String objectId, final String contents) throws Exception {
-                XPathHelper x = new XPathHelper(contents, "/"+type.toCamelCase()+"/");
                 switch (type) {
                     case ENTITY:
-                        builder.entity(x.get("id"), x.get("type"), Strings.emptyToNull(x.get("parent")),
-                            Strings.emptyToNull(x.get("catalogItemId")),
-                            x.getStringList("searchPath"));
+                        ManifestFields entityFields = getManifestFields(manifestIndex, type, objectId, contents);
+                        builder.entity(entityFields.getId(), entityFields.getType(), Strings.emptyToNull(entityFields.getParent()),
+                            Strings.emptyToNull(entityFields.getCatalogItemId()),
+                            entityFields.getSearchPath());
                         break;
                     case LOCATION:
                     case POLICY:
                     case ENRICHER:
                     case FEED:
-                        builder.putType(type, x.get("id"), x.get("type"));
+                        ManifestFields fields = getManifestFields(manifestIndex, type, objectId, contents);
+                        builder.putType(type, fields.getId(), fields.getType());
                         break;
                     case CATALOG_ITEM:
                         try {
@@ -494,6 +832,28 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return result;
     }
     
+    /** Returns the index of manifest fields extracted when the given raw data was loaded, if it was the last loaded, and discards it. */
+    @Nullable
+    private MementoManifestIndex takeManifestIndex(BrooklynMementoRawData mementoData) {
+        RawDataManifestIndex last = lastManifestIndex;
+        lastManifestIndex = null;
+        return (last != null && last.rawData == mementoData) ? last.index : null;
+    }
+
+    private static ManifestFields getManifestFields(@Nullable MementoManifestIndex manifestIndex, BrooklynObjectType type, String objectId, String contents) {
+        ManifestFields result = manifestIndex == null ? null : manifestIndex.get(type, objectId);
+        return result != null ? result : MementoManifestIndex.extract(type, contents);
+    }
+
+    private static class RawDataManifestIndex {
+        final BrooklynMementoRawData rawData;
+        final MementoManifestIndex index;
+        RawDataManifestIndex(BrooklynMementoRawData rawData, MementoManifestIndex index) {
+            this.rawData = rawData;
+            this.index = index;
+        }
+    }
+
     @Override
     public BrooklynMemento loadMemento(BrooklynMementoRawData mementoData, final LookupContext lookupContext, final RebindExceptionHandler exceptionHandler) throws IOException {
         LOG.debug("Loading mementos");
@@ -532,9 +892,14 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
         // TODO not convinced this is single threaded on reads; maybe should get a new one each time?
         getSerializerWithStandardClassLoader().setLookupContext(lookupContext);
+        serializersWithCustomClassLoader.put(lookupContext, CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_SERIALIZERS_WITH_CUSTOM_CLASS_LOADER)
+                .<ClassLoader, MementoSerializer<Object>>build());
         try {
             visitMemento("deserialization", mementoData, visitor, exceptionHandler);
         } finally {
+            // discarded after use, as they refer to the lookup context (and so to everything being rebinded)
+            serializersWithCustomClassLoader.remove(lookupContext);
             getSerializerWithStandardClassLoader().unsetLookupContext();
         }
 
@@ -657,12 +1022,18 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             
             Stopwatch stopwatch = Stopwatch.createStarted();
             List<ListenableFuture<?>> futures = Lists.newArrayList();
+            BatchedWrites batch = batchWritesEnabled ? new BatchedWrites() : null;
 
             futures.add(asyncUpdatePlaneId(newMemento.getPlaneId(), exceptionHandler));
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                 for (Map.Entry<String, String> entry : newMemento.getObjectsOfType(type).entrySet()) {
                     addPersistContentIfManagedBundle(type, entry.getKey(), entry.getValue(), futures, exceptionHandler, contextDetails);
-                    futures.add(asyncPersist(type.getSubPathName(), type, entry.getKey(), entry.getValue(), exceptionHandler));
+                    if (batch!=null) {
+                        // already serialized, so nothing to do in the executor
+                        persist(type.getSubPathName(), type, entry.getKey(), entry.getValue(), exceptionHandler, batch);
+                    } else {
+                        futures.add(asyncPersist(type.getSubPathName(), type, entry.getKey(), entry.getValue(), exceptionHandler));
+                    }
                 }
             }
             
@@ -674,8 +1045,13 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            if (batch!=null) {
+                batch.commit(exceptionHandler);
+            }
             if (LOG.isDebugEnabled()) LOG.debug("Checkpointed memento in {} (for {})", Time.makeTimeStringRounded(stopwatch), context);
         } finally {
+            // also if the writes failed, as some may have been made
+            writeChangeLog(null);
             lastErrors = exceptionHandler.getRecentErrors();
             lock.writeLock().unlock();
         }
@@ -730,11 +1106,14 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         } catch (InterruptedException e) {
             throw Exceptions.propagate(e);
         }
+        Set<String> auxiliaryOwnerIds = MutableSet.of();
         try {
             exceptionHandler.clearRecentErrors();
             objectStore.prepareForMasterUse();
 
             List<ListenableFuture<?>> futures = Lists.newArrayList();
+            // when batching, the executor is still used to serialize the mementos, but they are written after
+            BatchedWrites batch = batchWritesEnabled ? new BatchedWrites() : null;
             
             Set<String> deletedIds = MutableSet.of();
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
@@ -748,18 +1127,49 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                 for (Memento item : delta.getObjectsOfType(type)) {
                     if (!deletedIds.contains(item.getId())) {
                         addPersistContentIfManagedBundle(type, item.getId(), ""+item.getCatalogItemId()+"/"+item.getDisplayName(), futures, exceptionHandler, null);
-                        futures.add(asyncPersist(type.getSubPathName(), item, exceptionHandler));
+                        if (entityDeltasEnabled && type==BrooklynObjectType.ENTITY && delta instanceof PersisterDeltaImpl 
+                                && ((PersisterDeltaImpl)delta).hasChangedEntityFields(item.getId())) {
+                            futures.add(asyncPersistEntityFields((EntityMemento) item, 
+                                    ((PersisterDeltaImpl)delta).getChangedEntityConfigNames(item.getId()), 
+                                    ((PersisterDeltaImpl)delta).getChangedEntityAttributeNames(item.getId()), 
+                                    exceptionHandler, batch));
+                        } else {
+                            futures.add(asyncPersist(type.getSubPathName(), item, exceptionHandler, batch));
+                        }
                     }
                 }
             }
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                 for (String id : delta.getRemovedIdsOfType(type)) {
-                    futures.add(asyncDelete(type.getSubPathName(), id, exceptionHandler));
+                    if (batch!=null) {
+                        batch.delete(type.getSubPathName(), type, id);
+                    } else {
+                        futures.add(asyncDelete(type.getSubPathName(), id, exceptionHandler));
+                    }
+                    if (type==BrooklynObjectType.ENTITY) {
+                        entityMementoFingerprints.remove(id);
+                        if (entityDeltaRecordCounts.remove(id) != null) {
+                            if (batch!=null) {
+                                batch.delete(ENTITY_DELTAS_SUB_PATH, type, id);
+                            } else {
+                                futures.add(asyncDelete(ENTITY_DELTAS_SUB_PATH, id, exceptionHandler));
+                            }
+                        }
+                    }
                     if (type==BrooklynObjectType.MANAGED_BUNDLE) {
                         futures.add(asyncDelete(type.getSubPathName(), id+".jar", exceptionHandler));
                     }
                 }
             }
+            for (AuxiliaryWrite write : takeAuxiliaryWrites()) {
+                auxiliaryOwnerIds.add(write.ownerId);
+                // appends are made directly, as for entity delta records
+                if (batch!=null && write.kind!=AuxiliaryWrite.Kind.APPEND) {
+                    batch.add(write);
+                } else {
+                    futures.add(asyncAuxiliaryWrite(write, exceptionHandler));
+                }
+            }
             
             try {
                 // Wait for all the tasks to complete or fail, rather than aborting on the first failure.
@@ -769,14 +1179,78 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            if (batch!=null) {
+                batch.commit(exceptionHandler);
+            }
             
         } finally {
+            // also if the writes failed, as some may have been made
+            Multimap<BrooklynObjectType, String> changedIds = getChangedIds(delta);
+            changedIds.putAll(BrooklynObjectType.ENTITY, auxiliaryOwnerIds);
+            writeChangeLog(changedIds);
             lastErrors = exceptionHandler.getRecentErrors();
             lock.writeLock().unlock();
         }
         return lastErrors;
     }
 
+    private List<AuxiliaryWrite> takeAuxiliaryWrites() {
+        List<AuxiliaryWrite> result = MutableList.of();
+        boolean appendSupported = mementoEncoding == MementoStoreEncodings.XML;
+        for (AuxiliaryWriter writer : auxiliaryWriters) {
+            try {
+                result.addAll(writer.takePendingWrites(appendSupported));
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.warn("Problem getting writes from "+writer+" (continuing): "+e, e);
+            }
+        }
+        return result;
+    }
+
+    private static Multimap<BrooklynObjectType, String> getChangedIds(Delta delta) {
+        Multimap<BrooklynObjectType, String> result = LinkedHashMultimap.create();
+        for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            for (Memento item : delta.getObjectsOfType(type)) {
+                result.put(type, item.getId());
+            }
+            result.putAll(type, delta.getRemovedIdsOfType(type));
+        }
+        return result;
+    }
+
+    /**
+     * Records the ids changed (or, if null, that all mementos may have changed) in the {@link MementoChangeLog}, if enabled,
+     * for hot standbys to read; must be called holding the write lock, after the mementos are written.
+     */
+    private void writeChangeLog(@Nullable Multimap<BrooklynObjectType, String> changedIds) {
+        if (!changeLogEnabled) {
+            if (!staleChangeLogChecked) {
+                // a log left by an earlier master would make hot standbys think nothing was changing
+                staleChangeLogChecked = true;
+                try {
+                    StoreObjectAccessor accessor = objectStore.newAccessor(CHANGE_LOG_FILE_NAME);
+                    if (accessor.exists()) accessor.delete();
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    LOG.warn("Unable to delete stale memento change log from "+objectStore.getSummaryName()+": "+Exceptions.collapseText(e));
+                }
+            }
+            return;
+        }
+        if (changedIds!=null && changedIds.isEmpty()) {
+            return;
+        }
+        changeLog = (changedIds==null) ? changeLog.withAllChanged(changeLogMaxEntries) : changeLog.withChanges(changedIds, changeLogMaxEntries);
+        try {
+            getWriter(CHANGE_LOG_FILE_NAME).put(changeLog.toContents());
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            // the changes are still included the next time it is written; until then hot standbys may not see them
+            LOG.warn("Unable to write memento change log to "+objectStore.getSummaryName()+": "+Exceptions.collapseText(e));
+        }
+    }
+
     private void addPersistContentIfManagedBundle(final BrooklynObjectType type, final String id, final String summaryOrContents, List<ListenableFuture<?>> futures, final PersistenceExceptionHandler exceptionHandler, final @Nullable RebindManager deltaContext) {
         if (type==BrooklynObjectType.MANAGED_BUNDLE) {
             if (mgmt==null) {
@@ -869,10 +1343,36 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return objectAccessor.getBytes();
     }
 
-    private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler) {
+    /** Reads a memento stored with any {@link MementoStoreEncoding}, returning its XML, or null if there is none. */
+    private String readMemento(String subPath) {
+        byte[] stored = readBytes(subPath);
+        return stored==null ? null : MementoStoreEncodings.decode(mementoEncoding, stored);
+    }
+
+    /** Writes a memento with the configured {@link MementoStoreEncoding}. */
+    private void writeMemento(String path, String content) {
+        if (mementoEncoding == MementoStoreEncodings.XML || content == null) {
+            getWriter(path).put(content);
+        } else {
+            getWriter(path).put(ByteSource.wrap(mementoEncoding.encode(content)));
+        }
+    }
+
+    private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler, @Nullable BatchedWrites batch) {
         try {
             checkMementoForProblemsAndWarn(memento);
-            getWriter(getPath(subPath, memento.getId())).put(getSerializerWithStandardClassLoader().toString(memento));
+            String content = getSerializerWithStandardClassLoader().toString(memento);
+            if (memento instanceof EntityMemento) {
+                entityMementoFingerprints.remove(memento.getId());
+            }
+            if (batch!=null) {
+                batch.put(subPath, memento instanceof EntityMemento ? BrooklynObjectType.ENTITY : null, memento.getId(), memento, content);
+                return;
+            }
+            writeMemento(getPath(subPath, memento.getId()), content);
+            if (memento instanceof EntityMemento) {
+                onFullEntityMementoWritten(memento.getId(), (EntityMemento) memento, content);
+            }
 
         } catch (Exception e) {
             exceptionHandler.onPersistMementoFailed(memento, e);
@@ -916,15 +1416,83 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         }
     }
 
-    private void persist(String subPath, BrooklynObjectType type, String id, String content, PersistenceExceptionHandler exceptionHandler) {
+    private void persist(String subPath, BrooklynObjectType type, String id, String content, PersistenceExceptionHandler exceptionHandler, @Nullable BatchedWrites batch) {
         try {
             if (content==null) LOG.warn("Null content for "+type+" "+id);
-            getWriter(getPath(subPath, id)).put(content);
+            if (type==BrooklynObjectType.ENTITY) {
+                entityMementoFingerprints.remove(id);
+            }
+            if (batch!=null) {
+                batch.put(subPath, type, id, null, content);
+                return;
+            }
+            writeMemento(getPath(subPath, id), content);
+            if (type==BrooklynObjectType.ENTITY) {
+                // without the memento we cannot tell whether deltas can be applied, so the next change writes it in full again
+                onFullEntityMementoWritten(id, null, null);
+            }
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
     }
     
+    /**
+     * Writes a delta record with the given config and attributes of the entity, if its last full memento was written here
+     * and can take deltas and it does not have too many records already; otherwise writes the full memento.
+     */
+    private void persistEntityFields(EntityMemento memento, Set<String> configNames, Set<String> attributeNames, PersistenceExceptionHandler exceptionHandler, @Nullable BatchedWrites batch) {
+        String id = memento.getId();
+        Integer recordCount = entityDeltaRecordCounts.get(id);
+        String fingerprint = entityMementoFingerprints.get(id);
+        if (fingerprint!=null && (recordCount==null || recordCount < entityDeltasMaxRecords)) {
+            try {
+                EntityMemento partial = BasicEntityMemento.newPartialMemento(memento, configNames, attributeNames);
+                if (EntityMementoDeltas.isSafeForDeltas(partial)) {
+                    String partialContent = getSerializerWithStandardClassLoader().toString(partial);
+                    // counted before appending, so it is deleted after the next full write even if this fails
+                    entityDeltaRecordCounts.put(id, recordCount==null ? 1 : recordCount+1);
+                    getWriter(getPath(ENTITY_DELTAS_SUB_PATH, id)).append(EntityMementoDeltas.newDeltaRecord(fingerprint, configNames, attributeNames, partialContent));
+                    return;
+                }
+            } catch (Exception e) {
+                // a failed append might leave a partial record, so write the full memento next time
+                entityMementoFingerprints.remove(id);
+                exceptionHandler.onPersistMementoFailed(memento, e);
+                return;
+            }
+        }
+        // compacts any deltas
+        persist(BrooklynObjectType.ENTITY.getSubPathName(), memento, exceptionHandler, batch);
+    }
+
+    /**
+     * Deletes any delta records for the entity, now that its full memento has been written;
+     * this is only done after the write succeeds, so that the changes are not lost if it fails.
+     * Records which are not deleted (if the server stops first, or the delete fails) are ignored when loading,
+     * as they name the fingerprint of an earlier full memento.
+     *
+     * @param memento the memento written, if known; deltas are written against it only if it is {@link EntityMementoDeltas#isSafeForDeltas(EntityMemento) safe}
+     */
+    private void onFullEntityMementoWritten(String id, @Nullable EntityMemento memento, @Nullable String content) {
+        if (entityDeltaRecordCounts.containsKey(id)) {
+            String path = getPath(ENTITY_DELTAS_SUB_PATH, id);
+            try {
+                getWriter(path).delete();
+                synchronized (writers) {
+                    writers.remove(path);
+                }
+                entityDeltaRecordCounts.remove(id);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                // keep the count so the delete is retried after the next full write
+                LOG.debug("Failed to delete delta records for entity "+id+" after writing its full memento (will be ignored on rebind): "+e);
+            }
+        }
+        if (entityDeltasEnabled && memento!=null && content!=null && EntityMementoDeltas.isSafeForDeltas(memento)) {
+            entityMementoFingerprints.put(id, EntityMementoDeltas.fingerprint(content));
+        }
+    }
+
     private void persist(String subPath, BrooklynObjectType type, String id, ByteSource content, PersistenceExceptionHandler exceptionHandler) {
         try {
             getWriter(getPath(subPath, id)).put(content);
@@ -935,10 +1503,11 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private void delete(String subPath, String id, PersistenceExceptionHandler exceptionHandler) {
         try {
-            StoreObjectAccessorWithLock w = getWriter(getPath(subPath, id));
+            String path = getPath(subPath, id);
+            StoreObjectAccessorWithLock w = getWriter(path);
             w.delete();
             synchronized (writers) {
-                writers.remove(id);
+                writers.remove(path);
             }
         } catch (Exception e) {
             exceptionHandler.onDeleteMementoFailed(id, e);
@@ -964,11 +1533,44 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         }
     }
 
-    private ListenableFuture<?> asyncPersist(final String subPath, final Memento memento, final PersistenceExceptionHandler exceptionHandler) {
+    private ListenableFuture<?> asyncPersist(final String subPath, final Memento memento, final PersistenceExceptionHandler exceptionHandler, final @Nullable BatchedWrites batch) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                persist(subPath, memento, exceptionHandler, batch);
+            }});
+    }
+
+    private ListenableFuture<?> asyncAuxiliaryWrite(final AuxiliaryWrite write, final PersistenceExceptionHandler exceptionHandler) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    switch (write.kind) {
+                    case PUT:
+                        writeMemento(write.path, write.content);
+                        break;
+                    case APPEND:
+                        getWriter(write.path).append(write.content);
+                        break;
+                    case DELETE:
+                        getWriter(write.path).delete();
+                        synchronized (writers) {
+                            writers.remove(write.path);
+                        }
+                        break;
+                    }
+                } catch (Exception e) {
+                    write.onFailed(exceptionHandler, e);
+                }
+            }});
+    }
+
+    private ListenableFuture<?> asyncPersistEntityFields(final EntityMemento memento, final Set<String> configNames, final Set<String> attributeNames, final PersistenceExceptionHandler exceptionHandler, final @Nullable BatchedWrites batch) {
         return executor.submit(new Runnable() {
             @Override
             public void run() {
-                persist(subPath, memento, exceptionHandler);
+                persistEntityFields(memento, configNames, attributeNames, exceptionHandler, batch);
             }});
     }
 
@@ -976,7 +1578,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return executor.submit(new Runnable() {
             @Override
             public void run() {
-                persist(subPath, type, id, content, exceptionHandler);
+                persist(subPath, type, id, content, exceptionHandler, null);
             }});
     }
 
@@ -996,6 +1598,119 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             }});
     }
 
+    /**
+     * The mementos written and deleted in one {@link #checkpoint} or delta, when {@link #PERSISTER_BATCH_WRITES_ENABLED},
+     * which are committed together as a {@link StoreObjectBatch} once all have been serialized.
+     * Changes can be added concurrently, as mementos are serialized in the executor.
+     */
+    private class BatchedWrites {
+        private final StoreObjectBatch batch = objectStore.newBatch();
+        private final Map<String, BatchedChange> changes = MutableMap.of();
+
+        /**
+         * @param type required for entities; otherwise only used for reporting failures where there is no memento
+         * @param memento if available, used for reporting failures 
+         */
+        synchronized void put(String subPath, @Nullable BrooklynObjectType type, String id, @Nullable Memento memento, @Nullable String content) {
+            String path = getPath(subPath, id);
+            batch.put(path, ByteSource.wrap(content==null ? new byte[0] : mementoEncoding.encode(content)));
+            changes.remove(path);
+            changes.put(path, new BatchedChange(subPath, type, id, memento, content, false));
+        }
+
+        synchronized void delete(String subPath, BrooklynObjectType type, String id) {
+            String path = getPath(subPath, id);
+            batch.delete(path);
+            changes.remove(path);
+            changes.put(path, new BatchedChange(subPath, type, id, null, null, true));
+        }
+
+        synchronized void add(AuxiliaryWrite write) {
+            boolean delete = write.kind==AuxiliaryWrite.Kind.DELETE;
+            if (delete) {
+                batch.delete(write.path);
+            } else {
+                batch.put(write.path, ByteSource.wrap(mementoEncoding.encode(write.content)));
+            }
+            changes.remove(write.path);
+            changes.put(write.path, new BatchedChange(write, delete));
+        }
+
+        /** commits the changes, reporting each to the exception handler if the batch fails; should be called once all changes are added */
+        synchronized void commit(PersistenceExceptionHandler exceptionHandler) {
+            if (changes.isEmpty()) return;
+            try {
+                batch.commit();
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.debug("Failed to commit batch of "+changes.size()+" changes to "+objectStore.getSummaryName()+" (reporting for each): "+e);
+                for (Map.Entry<String, BatchedChange> change : changes.entrySet()) {
+                    change.getValue().onFailed(change.getKey(), exceptionHandler, e);
+                }
+                return;
+            }
+            for (Map.Entry<String, BatchedChange> change : changes.entrySet()) {
+                change.getValue().onCommitted(change.getKey());
+            }
+        }
+    }
+
+    private class BatchedChange {
+        private final String subPath;
+        private final BrooklynObjectType type;
+        private final String id;
+        private final Memento memento;
+        private final String content;
+        private final boolean delete;
+        private final AuxiliaryWrite auxiliaryWrite;
+
+        BatchedChange(String subPath, BrooklynObjectType type, String id, Memento memento, String content, boolean delete) {
+            this.subPath = subPath;
+            this.type = type;
+            this.id = id;
+            this.memento = memento;
+            this.content = content;
+            this.delete = delete;
+            this.auxiliaryWrite = null;
+        }
+
+        BatchedChange(AuxiliaryWrite auxiliaryWrite, boolean delete) {
+            this.subPath = null;
+            this.type = null;
+            this.id = auxiliaryWrite.ownerId;
+            this.memento = null;
+            this.content = null;
+            this.delete = delete;
+            this.auxiliaryWrite = auxiliaryWrite;
+        }
+
+        void onCommitted(String path) {
+            if (delete) {
+                synchronized (writers) {
+                    writers.remove(path);
+                }
+            } else if (type==BrooklynObjectType.ENTITY) {
+                onFullEntityMementoWritten(id, memento instanceof EntityMemento ? (EntityMemento) memento : null, content);
+            }
+        }
+
+        void onFailed(String path, PersistenceExceptionHandler exceptionHandler, Exception e) {
+            if (auxiliaryWrite!=null) {
+                auxiliaryWrite.onFailed(exceptionHandler, e);
+            } else if (delete) {
+                if (ENTITY_DELTAS_SUB_PATH.equals(subPath)) {
+                    // the records may still be there, so should be deleted if the entity is written again
+                    entityDeltaRecordCounts.putIfAbsent(id, 0);
+                }
+                exceptionHandler.onDeleteMementoFailed(id, e);
+            } else if (memento!=null) {
+                exceptionHandler.onPersistMementoFailed(memento, e);
+            } else {
+                exceptionHandler.onPersistRawMementoFailed(type, id, e);
+            }
+        }
+    }
+
     private String getPath(String subPath, String id) {
         return subPath+"/"+Strings.makeValidFilename(id);
     }
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+
+/**
+ * A compact binary {@link MementoStoreEncoding}: the XML is stored as a deflated stream of element, attribute and text tokens,
+ * with each element name, attribute name and attribute value written in full only the first time it occurs in a memento,
+ * and thereafter as an index into the table of names seen so far.
+ * As XStream writes class names as element names and <code>class</code> attributes, that table is in effect a type-name table,
+ * so large mementos with many objects of the same types are much smaller.
+ * <p>
+ * The XML is reproduced on decode in the same (indented) layout XStream writes, so mementos round-trip
+ * (apart from ignorable whitespace and comments); class names in it are resolved as for XML,
+ * including {@link org.apache.brooklyn.core.mgmt.persist.DeserializingClassRenamesProvider renames}.
+ * XML which cannot be parsed as a well-formed document (e.g. with characters not allowed in XML 1.0) is stored unchanged.
+ */
+@Beta
+public class CompactXmlMementoStoreEncoding implements MementoStoreEncoding {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactXmlMementoStoreEncoding.class);
+
+    public static final String NAME = "compact";
+
+    /** Starts with a zero byte, which cannot start an XML document. */
+    private static final byte[] MAGIC = new byte[] { 0, 'B', 'M', 'C' };
+    private static final int VERSION = 1;
+
+    private static final int START_ELEMENT = 1;
+    private static final int END_ELEMENT = 2;
+    private static final int TEXT = 3;
+    private static final int END_DOCUMENT = 0;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEncoded(byte[] stored) {
+        return stored != null && stored.length > MAGIC.length && Arrays.equals(Arrays.copyOf(stored, MAGIC.length), MAGIC);
+    }
+
+    @Override
+    public byte[] encode(String xml) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(xml.length() / 4 + 16);
+            bytes.write(MAGIC);
+            bytes.write(VERSION);
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+            writeTokens(xml, out);
+            out.close();
+            return bytes.toByteArray();
+        } catch (XMLStreamException e) {
+            if (LOG.isDebugEnabled()) LOG.debug("Unable to parse memento for compact encoding, storing as XML: "+e);
+            return xml.getBytes(Charsets.UTF_8);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private void writeTokens(String xml, DataOutputStream out) throws XMLStreamException, IOException {
+        Map<String, Integer> names = MutableMap.of();
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+        try {
+            // text is held back until we know whether it is in a leaf element, as indentation between elements is dropped
+            String pendingText = null;
+            boolean hadChildElement = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (pendingText != null && !pendingText.trim().isEmpty()) writeText(out, pendingText);
+                    pendingText = null;
+                    hadChildElement = false;
+                    out.writeByte(START_ELEMENT);
+                    writeName(out, names, reader.getLocalName());
+                    writeVarInt(out, reader.getAttributeCount());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        writeName(out, names, reader.getAttributeLocalName(i));
+                        writeName(out, names, reader.getAttributeValue(i));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    pendingText = (pendingText == null) ? reader.getText() : pendingText + reader.getText();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (pendingText != null && (!hadChildElement || !pendingText.trim().isEmpty())) writeText(out, pendingText);
+                    pendingText = null;
+                    hadChildElement = true;
+                    out.writeByte(END_ELEMENT);
+                    break;
+                default:
+                    // comments, processing instructions etc are not needed in mementos
+                }
+            }
+            out.writeByte(END_DOCUMENT);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void writeName(DataOutputStream out, Map<String, Integer> names, String name) throws IOException {
+        Integer index = names.get(name);
+        if (index != null) {
+            writeVarInt(out, index);
+        } else {
+            // the next index means a new name follows
+            writeVarInt(out, names.size());
+            names.put(name, names.size());
+            writeString(out, name);
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        out.writeByte(TEXT);
+        writeString(out, text);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        // not writeUTF, which is limited to 64k
+        byte[] utf8 = s.getBytes(Charsets.UTF_8);
+        writeVarInt(out, utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    @Override
+    public String decode(byte[] stored) {
+        if (!isEncoded(stored)) {
+            throw new IllegalArgumentException("Not a compact memento");
+        }
+        int version = stored[MAGIC.length];
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported compact memento version "+version);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new InflaterInputStream(
+                    new ByteArrayInputStream(stored, MAGIC.length+1, stored.length-MAGIC.length-1)));
+            try {
+                return readTokens(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid compact memento: "+e, e);
+        }
+    }
+
+    private String readTokens(DataInputStream in) throws IOException {
+        List<String> names = MutableList.of();
+        StringBuilder result = new StringBuilder();
+        int depth = 0;
+        // whether the current element's start tag is not yet closed, i.e. it has no content so far
+        boolean openTag = false;
+        // whether the current element has child elements, so its end tag goes on a new line
+        boolean hadChildren = false;
+        List<String> elements = MutableList.of();
+        while (true) {
+            int token = in.readUnsignedByte();
+            switch (token) {
+            case START_ELEMENT:
+                if (openTag) result.append(">");
+                if (depth > 0) result.append("\n");
+                indent(result, depth);
+                String name = readName(in, names);
+                result.append("<").append(name);
+                int attributeCount = readVarInt(in);
+                for (int i = 0; i < attributeCount; i++) {
+                    result.append(" ").append(readName(in, names)).append("=\"");
+                    escapeAttribute(result, readName(in, names));
+                    result.append("\"");
+                }
+                elements.add(name);
+                depth++;
+                openTag = true;
+                hadChildren = false;
+                break;
+            case TEXT:
+                if (openTag) result.append(">");
+                openTag = false;
+                escapeText(result, readString(in));
+                break;
+            case END_ELEMENT:
+                depth--;
+                String element = elements.remove(elements.size()-1);
+                if (openTag) {
+                    result.append("/>");
+                } else {
+                    if (hadChildren) {
+                        result.append("\n");
+                        indent(result, depth);
+                    }
+                    result.append("</").append(element).append(">");
+                }
+                openTag = false;
+                hadChildren = true;
+                break;
+            case END_DOCUMENT:
+                if (depth != 0) throw new IOException("Unexpected end of compact memento");
+                return result.toString();
+            default:
+                throw new IOException("Unknown token "+token);
+            }
+        }
+    }
+
+    private static String readName(DataInputStream in, List<String> names) throws IOException {
+        int index = readVarInt(in);
+        if (index < names.size()) return names.get(index);
+        if (index > names.size()) throw new IOException("Invalid name index "+index);
+        String name = readString(in);
+        names.add(name);
+        return name;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[readVarInt(in)];
+        in.readFully(utf8);
+        return new String(utf8, Charsets.UTF_8);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private static void indent(StringBuilder result, int depth) {
+        for (int i = 0; i < depth; i++) result.append("  ");
+    }
+
+    private static void escapeText(StringBuilder result, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&': result.append("&amp;"); break;
+            case '<': result.append("&lt;"); break;
+            case '>': result.append("&gt;"); break;
+            case '\r': result.append("&#xd;"); break;
+            default: result.append(c);
+            }
+        }
+    }
+
+    private static void escapeAttribute(StringBuilder result, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '&': result.append("&amp;"); break;
+            case '<': result.append("&lt;"); break;
+            case '"': result.append("&quot;"); break;
+            case '\n': result.append("&#xa;"); break;
+            case '\r': result.append("&#xd;"); break;
+            case '\t': result.append("&#x9;"); break;
+            default: result.append(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.brooklyn.api.mgmt.rebind.mementos.EntityMemento;
+import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.escape.Escaper;
+import com.google.common.hash.Hashing;
+import com.google.common.xml.XmlEscapers;
+
+/**
+ * Reads and writes the delta records which {@link BrooklynMementoPersisterToObjectStore} appends for an entity
+ * when only some of its config and attributes have changed, and merges them into the entity's full memento.
+ * <p>
+ * Each record is an <code>entity-delta</code> element listing the names of the config keys and attributes which changed,
+ * followed by a partial entity memento containing the current value (and any dynamic key) for each of those names;
+ * a name listed but absent from the partial memento has been removed.
+ * Records for an entity are appended to one object, in the order written, and applied in that order.
+ * Each record names the {@link #fingerprint(String) fingerprint} of the full memento it was written against,
+ * and is ignored if applied to another, e.g. if the server stopped after writing a new full memento but before deleting the records.
+ * <p>
+ * The merge works on the XML elements, so it requires that neither the full memento nor the records
+ * use xstream references (which are paths relative to other elements) or escaped characters which are not valid XML;
+ * see {@link #isSafeForDeltas(EntityMemento)}. The persister writes full mementos when that does not hold.
+ */
+@Beta
+public class EntityMementoDeltas {
+
+    private static final String RECORD_ELEMENT = "entity-delta";
+    private static final String RECORD_END = "</" + RECORD_ELEMENT + ">";
+    private static final String CHANGED_CONFIG_ELEMENT = "changed-config";
+    private static final String CHANGED_ATTRIBUTES_ELEMENT = "changed-attributes";
+    private static final String BASE_ATTRIBUTE = "base";
+
+    // immutable to xstream, so written in full wherever they occur rather than as references
+    private static final Set<Class<?>> SCALAR_TYPES = ImmutableSet.<Class<?>>of(Boolean.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class);
+
+    // as written by StringKeyMapConverter for keys which are not valid element names
+    private static final String MAP_ENTRY_ELEMENT = "entry";
+    private static final String MAP_ENTRY_KEY_ATTRIBUTE = "key";
+
+    private EntityMementoDeltas() {}
+
+    /**
+     * Whether the given memento (or partial memento) can have deltas merged into it, or be merged as part of a delta,
+     * judging by the types of its config and attribute values (and dynamic config key defaults):
+     * they must be strings, numbers, booleans, enums, durations, or brooklyn objects (written by id),
+     * or collections and maps of these with no collection or map appearing twice,
+     * so that xstream writes no references between elements; and strings must have no characters invalid in XML,
+     * which xstream would write as character references.
+     */
+    public static boolean isSafeForDeltas(EntityMemento memento) {
+        Set<Object> visited = Sets.newIdentityHashSet();
+        for (ConfigKey<?> key : memento.getDynamicConfigKeys()) {
+            if (!isSafeForDeltas(key.getDefaultValue(), visited)) return false;
+        }
+        return isSafeForDeltas(memento.getConfig().values(), visited)
+                && isSafeForDeltas(memento.getConfigUnmatched().values(), visited)
+                && isSafeForDeltas(memento.getAttributes().values(), visited);
+    }
+
+    private static boolean isSafeForDeltas(Object value, Set<Object> visited) {
+        if (value == null || value instanceof Enum || SCALAR_TYPES.contains(value.getClass())) return true;
+        if (value instanceof String) return isValidXmlText((String) value);
+        if (value instanceof Character) return isValidXmlChar((Character) value);
+        // anything else may be written as a reference if it appears again
+        if (!visited.add(value)) return false;
+        if (value instanceof BrooklynObject || value instanceof Duration) return true;
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                if (!isSafeForDeltas(item, visited)) return false;
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!isSafeForDeltas(entry.getKey(), visited) || !isSafeForDeltas(entry.getValue(), visited)) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isValidXmlText(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isValidXmlChar(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isValidXmlChar(char c) {
+        return c >= 0x20 ? c != 0xFFFE && c != 0xFFFF : (c == '\t' || c == '\n' || c == '\r');
+    }
+
+    /** Identifies the full memento which delta records are written against, see {@link #newDeltaRecord(String, Collection, Collection, String)}. */
+    public static String fingerprint(String entityMementoXml) {
+        return Hashing.murmur3_128().hashString(entityMementoXml, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Creates a record for appending to the entity's deltas.
+     *
+     * @param baseFingerprint the {@link #fingerprint(String)} of the full memento in the store, which the record applies to;
+     *        if null the record applies to any
+     * @param partialEntityMementoXml the serialized partial memento, with just the changed config and attributes
+     */
+    public static String newDeltaRecord(@Nullable String baseFingerprint, Collection<String> changedConfigNames, Collection<String> changedAttributeNames, String partialEntityMementoXml) {
+        StringBuilder result = new StringBuilder();
+        result.append("<").append(RECORD_ELEMENT);
+        if (baseFingerprint != null) result.append(" ").append(BASE_ATTRIBUTE).append("=\"").append(baseFingerprint).append("\"");
+        result.append(">\n");
+        appendNames(result, CHANGED_CONFIG_ELEMENT, changedConfigNames);
+        appendNames(result, CHANGED_ATTRIBUTES_ELEMENT, changedAttributeNames);
+        result.append(partialEntityMementoXml).append("\n");
+        result.append(RECORD_END).append("\n");
+        return result.toString();
+    }
+
+    private static void appendNames(StringBuilder result, String element, Collection<String> names) {
+        Escaper escaper = XmlEscapers.xmlContentEscaper();
+        result.append("<").append(element).append(">");
+        for (String name : names) {
+            result.append("<string>").append(escaper.escape(name)).append("</string>");
+        }
+        result.append("</").append(element).append(">\n");
+    }
+
+    /**
+     * Splits the contents of an entity's deltas into records; an incomplete record at the end
+     * (e.g. if the server stopped while appending) is ignored.
+     */
+    public static List<String> splitRecords(String deltas) {
+        List<String> result = MutableList.of();
+        int start = 0;
+        while (true) {
+            int end = deltas.indexOf(RECORD_END, start);
+            if (end < 0) break;
+            end += RECORD_END.length();
+            result.add(deltas.substring(start, end).trim());
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the full memento with the given records (as from {@link #splitRecords(String)}) applied in order,
+     * skipping those written against a different full memento.
+     */
+    public static String applyDeltaRecords(String entityMementoXml, List<String> records) {
+        if (records.isEmpty()) return entityMementoXml;
+        try {
+            String fingerprint = fingerprint(entityMementoXml);
+            Document base = parse(entityMementoXml);
+            boolean applied = false;
+            for (String record : records) {
+                Element recordElement = parse(record).getDocumentElement();
+                String recordBase = recordElement.getAttribute(BASE_ATTRIBUTE);
+                if (!recordBase.isEmpty() && !recordBase.equals(fingerprint)) continue;
+                applyDeltaRecord(base, recordElement);
+                applied = true;
+            }
+            return applied ? toXml(base) : entityMementoXml;
+        } catch (Exception e) {
+            throw Exceptions.propagateAnnotated("Unable to apply " + records.size() + " delta record(s) to entity memento", e);
+        }
+    }
+
+    private static void applyDeltaRecord(Document base, Element record) {
+        Element partial = findChild(record, "entity");
+        if (partial == null) throw new IllegalStateException("Delta record has no entity memento");
+        Set<String> changedConfig = getNames(findChild(record, CHANGED_CONFIG_ELEMENT));
+        Set<String> changedAttributes = getNames(findChild(record, CHANGED_ATTRIBUTES_ELEMENT));
+        Element baseEntity = base.getDocumentElement();
+        mergeMapSection(baseEntity, partial, "config", changedConfig);
+        mergeMapSection(baseEntity, partial, "configKeys", changedConfig);
+        mergeMapSection(baseEntity, partial, "attributes", changedAttributes);
+        mergeMapSection(baseEntity, partial, "attributeKeys", changedAttributes);
+    }
+
+    /**
+     * For each name, replaces the entry in the base's map section with that from the partial memento,
+     * or removes it if not in the partial memento. Empty sections are removed, as they are not written for full mementos.
+     */
+    private static void mergeMapSection(Element baseEntity, Element partialEntity, String section, Set<String> names) {
+        if (names.isEmpty()) return;
+        Element baseSection = findChild(baseEntity, section);
+        Element partialSection = findChild(partialEntity, section);
+        for (String name : names) {
+            Element baseEntry = baseSection == null ? null : findMapEntry(baseSection, name);
+            Element partialEntry = partialSection == null ? null : findMapEntry(partialSection, name);
+            if (partialEntry != null) {
+                if (baseSection == null) {
+                    baseSection = (Element) baseEntity.getOwnerDocument().importNode(partialSection, false);
+                    baseEntity.appendChild(baseSection);
+                }
+                Node replacement = baseEntity.getOwnerDocument().importNode(partialEntry, true);
+                if (baseEntry != null) {
+                    baseSection.replaceChild(replacement, baseEntry);
+                } else {
+                    baseSection.appendChild(replacement);
+                }
+            } else if (baseEntry != null) {
+                baseSection.removeChild(baseEntry);
+            }
+        }
+        if (baseSection != null && findFirstChildElement(baseSection) == null) {
+            baseEntity.removeChild(baseSection);
+        }
+    }
+
+    private static Element findMapEntry(Element section, String name) {
+        for (Node n = section.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && name.equals(getMapEntryName((Element) n))) return (Element) n;
+        }
+        return null;
+    }
+
+    private static String getMapEntryName(Element entry) {
+        if (MAP_ENTRY_ELEMENT.equals(entry.getTagName()) && entry.hasAttribute(MAP_ENTRY_KEY_ATTRIBUTE)) {
+            return entry.getAttribute(MAP_ENTRY_KEY_ATTRIBUTE);
+        }
+        return entry.getTagName();
+    }
+
+    private static Set<String> getNames(Element element) {
+        Set<String> result = MutableSet.of();
+        if (element == null) return result;
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) result.add(n.getTextContent());
+        }
+        return result;
+    }
+
+    private static Element findChild(Element parent, String name) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && name.equals(((Element) n).getTagName())) return (Element) n;
+        }
+        return null;
+    }
+
+    private static Element findFirstChildElement(Element parent) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) return (Element) n;
+        }
+        return null;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static String toXml(Document doc) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter result = new StringWriter();
+        transformer.transform(new DOMSource(doc), new StreamResult(result));
+        return result.toString();
+    }
+
+}
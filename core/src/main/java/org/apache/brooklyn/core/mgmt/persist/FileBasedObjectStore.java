@@ -103,6 +103,9 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
 
                 deferredBackupNeeded = false;
             }
+            if (basedir.exists()) {
+                FileBasedStoreObjectBatch.recoverIncompleteCommits(basedir);
+            }
             doneFirstContentiousWrite = true;
         } catch (Exception e) {
             throw Exceptions.propagate(e);
@@ -131,9 +134,26 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
     public StoreObjectAccessor newAccessor(String path) {
         if (!prepared) throw new IllegalStateException("Not yet prepared: "+this);
         
+        return new FileBasedStoreObjectAccessor(new File(Os.mergePaths(getBaseDir().getAbsolutePath(), path)), getTmpExtension());
+    }
+
+    private String getTmpExtension() {
         String tmpExt = ".tmp";
         if (mgmt!=null && mgmt.getManagementNodeId()!=null) tmpExt = "."+mgmt.getManagementNodeId()+tmpExt;
-        return new FileBasedStoreObjectAccessor(new File(Os.mergePaths(getBaseDir().getAbsolutePath(), path)), tmpExt);
+        return tmpExt;
+    }
+
+    /**
+     * Returns a {@link FileBasedStoreObjectBatch}, which syncs the files for all its writes together,
+     * then renames them using a journal so that either all or none of the changes are made.
+     */
+    @Override
+    public StoreObjectBatch newBatch() {
+        if (!prepared) throw new IllegalStateException("Not yet prepared: "+this);
+        
+        String journalName = FileBasedStoreObjectBatch.JOURNAL_FILE_PREFIX;
+        if (mgmt!=null && mgmt.getManagementNodeId()!=null) journalName += "."+mgmt.getManagementNodeId();
+        return new FileBasedStoreObjectBatch(this, new File(getBaseDir(), journalName), ".batch"+getTmpExtension());
     }
 
     @Override
@@ -266,6 +286,11 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
                 throw new FatalConfigurationRuntimeException("Unexpected persist mode "+persistMode+"; modified during initialization?!");
             };
 
+            if (dir.exists() && (haMode==HighAvailabilityMode.MASTER || haMode==HighAvailabilityMode.DISABLED)) {
+                // no other server should be writing, so complete any interrupted batch before the state is read
+                FileBasedStoreObjectBatch.recoverIncompleteCommits(dir);
+            }
+
             if (!dir.exists()) {
                 boolean success = dir.mkdirs();
                 if (success) {
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.io.FileUtil;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.stream.Streams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+
+/**
+ * Commits a batch of changes to a {@link FileBasedObjectStore} together.
+ * The contents for all the writes are written to temporary files and then synced to disk,
+ * so the file system can flush them together rather than one file at a time;
+ * then a journal listing the changes is written, then each temporary file is atomically renamed over its target
+ * and the deletes done, and finally the journal is removed.
+ * <p>
+ * If the server stops before the journal is complete none of the changes are made; if it stops after,
+ * {@link #recoverIncompleteCommits(File)} completes them when the store is next prepared for writing.
+ * Readers of the directory while the renames are being done may see some but not all of the changes,
+ * each of which is atomic as for {@link FileBasedStoreObjectAccessor#put(ByteSource)}.
+ */
+@Beta
+public class FileBasedStoreObjectBatch extends BasicStoreObjectBatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileBasedStoreObjectBatch.class);
+
+    /** prefix for the name of the journal files, in the base directory of the store */
+    public static final String JOURNAL_FILE_PREFIX = "batch-journal";
+
+    private static final String PUT = "P ";
+    private static final String DELETE = "D ";
+    private static final String END = "END";
+
+    private final File basedir;
+    private final File journalFile;
+    private final String tmpExtension;
+
+    /**
+     * @param journalFile where to write the journal, in the base directory and named with {@link #JOURNAL_FILE_PREFIX}
+     * @param tmpExtension for the temporary files; must end with <code>.tmp</code> so they are not listed by the store
+     */
+    public FileBasedStoreObjectBatch(FileBasedObjectStore objectStore, File journalFile, String tmpExtension) {
+        super(objectStore);
+        this.basedir = objectStore.getBaseDir();
+        this.journalFile = journalFile;
+        this.tmpExtension = tmpExtension;
+    }
+
+    @Override
+    public void commit() {
+        if (journalFile.exists()) {
+            // left by a previous commit which failed part-way through applying changes
+            recover(basedir, journalFile);
+        }
+
+        Map<String, ByteSource> changes = getChanges();
+        if (changes.size() <= 1) {
+            // a single change is atomic without the journal
+            super.commit();
+            return;
+        }
+
+        List<File> tmpFiles = MutableList.of();
+        StringBuilder journal = new StringBuilder(tmpExtension).append("\n");
+        try {
+            for (Map.Entry<String, ByteSource> change : changes.entrySet()) {
+                if (change.getValue()!=null) {
+                    File tmpFile = getFile(basedir, change.getKey()+tmpExtension);
+                    tmpFiles.add(tmpFile);
+                    write(tmpFile, change.getValue());
+                    journal.append(PUT);
+                } else {
+                    journal.append(DELETE);
+                }
+                journal.append(change.getKey()).append("\n");
+            }
+            journal.append(END).append("\n");
+
+            for (File tmpFile : tmpFiles) {
+                sync(tmpFile);
+            }
+            write(journalFile, ByteSource.wrap(journal.toString().getBytes(Charsets.UTF_8)));
+            sync(journalFile);
+        } catch (Exception e) {
+            for (File tmpFile : tmpFiles) {
+                tmpFile.delete();
+            }
+            journalFile.delete();
+            throw Exceptions.propagateAnnotated("Problem writing batch of "+changes.size()+" changes to "+basedir+"; no changes made", e);
+        }
+
+        try {
+            applyJournal(basedir, journal.toString());
+        } catch (Exception e) {
+            // keep the journal, so that the changes are completed by the next commit or on recovery
+            throw Exceptions.propagateAnnotated("Problem applying batch of "+changes.size()+" changes to "+basedir, e);
+        }
+        if (!journalFile.delete()) {
+            LOG.warn("Unable to delete "+journalFile+" after committing batch of changes; changes will be re-applied on next use");
+        }
+    }
+
+    /**
+     * Completes the changes of any batch which was interrupted after its journal was written,
+     * and discards the temporary files of any which was interrupted before.
+     * Should only be called when no other process is writing to the store.
+     */
+    public static void recoverIncompleteCommits(File basedir) {
+        File[] journalFiles = basedir.listFiles(new FileFilter() {
+            @Override public boolean accept(File file) {
+                return file.isFile() && file.getName().startsWith(JOURNAL_FILE_PREFIX);
+            }
+        });
+        if (journalFiles==null) return;
+        for (File journalFile : journalFiles) {
+            recover(basedir, journalFile);
+        }
+    }
+
+    private static void recover(File basedir, File journalFile) {
+        try {
+            String journal = Files.asCharSource(journalFile, Charsets.UTF_8).read();
+            if (isComplete(journal)) {
+                LOG.info("Completing batch of persisted changes which was interrupted, from "+journalFile);
+                applyJournal(basedir, journal);
+            } else {
+                // the temporary files will be overwritten by subsequent writes, and are ignored when listing the store
+                LOG.debug("Discarding incomplete journal "+journalFile+"; none of its changes were made");
+            }
+            if (!journalFile.delete()) {
+                throw new IOException("Unable to delete "+journalFile);
+            }
+        } catch (Exception e) {
+            throw Exceptions.propagateAnnotated("Problem completing batch of persisted changes from "+journalFile, e);
+        }
+    }
+
+    private static boolean isComplete(String journal) {
+        List<String> lines = Splitter.on('\n').omitEmptyStrings().splitToList(journal);
+        return lines.size() >= 2 && END.equals(lines.get(lines.size()-1));
+    }
+
+    private static void applyJournal(File basedir, String journal) throws IOException, InterruptedException {
+        List<String> lines = Splitter.on('\n').omitEmptyStrings().splitToList(journal);
+        String tmpExtension = lines.get(0);
+        for (String line : lines.subList(1, lines.size()-1)) {
+            String path = line.substring(2);
+            File file = getFile(basedir, path);
+            if (line.startsWith(PUT)) {
+                File tmpFile = getFile(basedir, path+tmpExtension);
+                // absent if already renamed, when recovering
+                if (tmpFile.exists()) {
+                    FileBasedObjectStore.moveFile(tmpFile, file);
+                }
+            } else if (line.startsWith(DELETE)) {
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Unable to delete "+file);
+                }
+            } else {
+                throw new IllegalStateException("Invalid line in journal: "+line);
+            }
+        }
+    }
+
+    private static File getFile(File basedir, String path) {
+        return new File(Os.mergePaths(basedir.getAbsolutePath(), path));
+    }
+
+    private static void write(File file, ByteSource bytes) throws IOException {
+        FileUtil.setFilePermissionsTo600(file);
+        FileOutputStream out = new FileOutputStream(file);
+        InputStream in = bytes.openStream();
+        try {
+            Streams.copy(in, out);
+        } finally {
+            Streams.closeQuietly(in);
+            Streams.closeQuietly(out);
+        }
+    }
+
+    private static void sync(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.text.Identifiers;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * The log of which mementos have been changed, written by {@link BrooklynMementoPersisterToObjectStore} on the master
+ * after each persistence cycle, so that hot standbys can re-read just the changed mementos
+ * (or nothing, if none have changed) rather than all of them.
+ * <p>
+ * Each persistence cycle which changes anything increments the sequence number, and adds an entry for each id it changed
+ * (or a single entry meaning everything may have changed, for a full checkpoint).
+ * The epoch is random for each persister, so a reader can tell when a different master (or a restarted one) is writing.
+ * Only the most recent entries are kept, so a reader which is too far behind must re-read everything.
+ * <p>
+ * Instances are immutable; the serialized form is:
+ * <pre>
+ * epoch &lt;epoch&gt;
+ * sequence &lt;sequence&gt; &lt;completeSince&gt;
+ * &lt;sequence&gt; &lt;type&gt; &lt;id&gt;
+ * ...
+ * </pre>
+ */
+@Beta
+public class MementoChangeLog {
+
+    private static final String ALL = "*";
+
+    private static class Entry {
+        final long sequence;
+        final String type;
+        final String id;
+        Entry(long sequence, String type, String id) {
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+        }
+    }
+
+    private final String epoch;
+    private final long sequence;
+    /** entries are complete for all sequence numbers after this one */
+    private final long completeSince;
+    private final List<Entry> entries;
+
+    private MementoChangeLog(String epoch, long sequence, long completeSince, List<Entry> entries) {
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.completeSince = completeSince;
+        this.entries = entries;
+    }
+
+    /** A log with a new random epoch, and no changes. */
+    public static MementoChangeLog newLog() {
+        return new MementoChangeLog(Identifiers.makeRandomId(12), 0, 0, MutableList.<Entry>of());
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Whether this is the same log as the given one, with no changes since. */
+    public boolean isSameVersion(MementoChangeLog other) {
+        return other != null && epoch.equals(other.epoch) && sequence == other.sequence;
+    }
+
+    /** Returns a log with a new sequence number, recording the given changed (or removed) ids, keeping at most the given number of entries. */
+    public MementoChangeLog withChanges(Multimap<BrooklynObjectType, String> changedIds, int maxEntries) {
+        long newSequence = sequence + 1;
+        List<Entry> newEntries = MutableList.copyOf(entries);
+        for (Map.Entry<BrooklynObjectType, String> change : changedIds.entries()) {
+            newEntries.add(new Entry(newSequence, change.getKey().name(), change.getValue()));
+        }
+        return trimmed(newSequence, completeSince, newEntries, maxEntries);
+    }
+
+    /** Returns a log with a new sequence number, recording that any memento may have changed, e.g. after a full checkpoint. */
+    public MementoChangeLog withAllChanged(int maxEntries) {
+        long newSequence = sequence + 1;
+        List<Entry> newEntries = MutableList.copyOf(entries);
+        newEntries.add(new Entry(newSequence, ALL, ALL));
+        return trimmed(newSequence, completeSince, newEntries, maxEntries);
+    }
+
+    private MementoChangeLog trimmed(long newSequence, long newCompleteSince, List<Entry> newEntries, int maxEntries) {
+        int excess = newEntries.size() - Math.max(maxEntries, 0);
+        if (excess > 0) {
+            // entries for the last sequence removed may be only partly removed, so it is no longer complete
+            newCompleteSince = Math.max(newCompleteSince, newEntries.get(excess - 1).sequence);
+            newEntries = MutableList.copyOf(newEntries.subList(excess, newEntries.size()));
+        }
+        return new MementoChangeLog(epoch, newSequence, newCompleteSince, newEntries);
+    }
+
+    /**
+     * Returns the ids changed since the given log was current, if known:
+     * absent if the given log is from another epoch, or is older than the entries kept, or if everything may have changed since.
+     * The result is empty if the logs are the same version.
+     */
+    public Maybe<SetMultimap<BrooklynObjectType, String>> getChangesSince(MementoChangeLog previous) {
+        if (previous == null || !epoch.equals(previous.epoch)) {
+            return Maybe.absent("Change log epoch changed");
+        }
+        if (previous.sequence > sequence || previous.sequence < completeSince) {
+            return Maybe.absent("Change log does not cover sequence "+previous.sequence);
+        }
+        SetMultimap<BrooklynObjectType, String> result = LinkedHashMultimap.create();
+        for (Entry entry : entries) {
+            if (entry.sequence <= previous.sequence) continue;
+            if (ALL.equals(entry.type)) {
+                return Maybe.absent("All mementos changed at sequence "+entry.sequence);
+            }
+            try {
+                result.put(BrooklynObjectType.valueOf(entry.type), entry.id);
+            } catch (IllegalArgumentException e) {
+                return Maybe.absent("Unknown type "+entry.type+" in change log");
+            }
+        }
+        return Maybe.of(result);
+    }
+
+    /** Returns the serialized form, for writing to the store. */
+    public String toContents() {
+        StringBuilder result = new StringBuilder();
+        result.append("epoch ").append(epoch).append("\n");
+        result.append("sequence ").append(sequence).append(" ").append(completeSince).append("\n");
+        for (Entry entry : entries) {
+            result.append(entry.sequence).append(" ").append(entry.type).append(" ").append(entry.id).append("\n");
+        }
+        return result.toString();
+    }
+
+    /** Parses the serialized form, as written by {@link #toContents()}.
+     * @throws IllegalArgumentException if it is malformed */
+    public static MementoChangeLog parse(String contents) {
+        List<String> lines = MutableList.of();
+        for (String line : contents.split("\n")) {
+            if (!line.trim().isEmpty()) lines.add(line.trim());
+        }
+        if (lines.size() < 2 || !lines.get(0).startsWith("epoch ") || !lines.get(1).startsWith("sequence ")) {
+            throw new IllegalArgumentException("Invalid memento change log header");
+        }
+        try {
+            String epoch = lines.get(0).substring("epoch ".length()).trim();
+            String[] sequenceParts = lines.get(1).substring("sequence ".length()).trim().split(" ");
+            long sequence = Long.parseLong(sequenceParts[0]);
+            long completeSince = Long.parseLong(sequenceParts[1]);
+            List<Entry> entries = MutableList.of();
+            for (String line : lines.subList(2, lines.size())) {
+                String[] parts = line.split(" ", 3);
+                entries.add(new Entry(Long.parseLong(parts[0]), parts[1], parts[2]));
+            }
+            return new MementoChangeLog(epoch, sequence, completeSince, entries);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid memento change log: "+e, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("epoch", epoch).add("sequence", sequence).add("entries", entries.size()).toString();
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPathConstants;
+
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.xstream.XmlUtil;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.w3c.dom.NodeList;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Index of the fields of serialized mementos which are needed for the memento manifest
+ * (id, type, parent, catalog item id and search path), extracted when the mementos are read.
+ * <p>
+ * The fields are extracted with one streaming pass over the XML, rather than parsing it once per field with XPath;
+ * XPath is used only if the XML cannot be streamed, e.g. because it has escaped characters which are not valid XML.
+ */
+@Beta
+public class MementoManifestIndex {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return result;
+    }
+
+    /** The manifest fields of one memento; absent fields are empty strings, as for XPath. */
+    public static class ManifestFields {
+        private final String id;
+        private final String type;
+        private final String parent;
+        private final String catalogItemId;
+        private final List<String> searchPath;
+
+        ManifestFields(String id, String type, String parent, String catalogItemId, List<String> searchPath) {
+            this.id = id;
+            this.type = type;
+            this.parent = parent;
+            this.catalogItemId = catalogItemId;
+            this.searchPath = Collections.unmodifiableList(searchPath);
+        }
+
+        public String getId() {
+            return id;
+        }
+        public String getType() {
+            return type;
+        }
+        public String getParent() {
+            return parent;
+        }
+        public String getCatalogItemId() {
+            return catalogItemId;
+        }
+        public List<String> getSearchPath() {
+            return searchPath;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).omitNullValues().add("id", id).add("type", type).add("parent", parent)
+                    .add("catalogItemId", catalogItemId).add("searchPath", searchPath).toString();
+        }
+    }
+
+    private final Map<BrooklynObjectType, Map<String, ManifestFields>> index = new ConcurrentHashMap<BrooklynObjectType, Map<String, ManifestFields>>();
+
+    /** Extracts the fields from the given memento and adds them to this index, keyed by the id in the memento; safe to call concurrently. */
+    public ManifestFields index(BrooklynObjectType type, String contents) {
+        ManifestFields result = extract(type, contents);
+        put(type, result.getId(), result);
+        return result;
+    }
+
+    /** Adds fields already extracted, e.g. from another index; safe to call concurrently. */
+    public void put(BrooklynObjectType type, String id, ManifestFields fields) {
+        Map<String, ManifestFields> ofType = index.get(type);
+        if (ofType == null) {
+            index.putIfAbsent(type, new ConcurrentHashMap<String, ManifestFields>());
+            ofType = index.get(type);
+        }
+        ofType.put(id, fields);
+    }
+
+    /** Returns the fields indexed for the given memento, or null if not indexed. */
+    public ManifestFields get(BrooklynObjectType type, String id) {
+        Map<String, ManifestFields> ofType = index.get(type);
+        return ofType == null ? null : ofType.get(id);
+    }
+
+    public int size() {
+        int result = 0;
+        for (Map<String, ManifestFields> ofType : index.values()) {
+            result += ofType.size();
+        }
+        return result;
+    }
+
+    /** Extracts the fields from the given memento, which should have a root element named for the type. */
+    public static ManifestFields extract(BrooklynObjectType type, String contents) {
+        try {
+            return extractStreaming(type.toCamelCase(), contents);
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            return extractWithXPath(type.toCamelCase(), contents);
+        }
+    }
+
+    private static ManifestFields extractStreaming(String rootName, String contents) throws XMLStreamException {
+        String id = "", type = "", parent = "", catalogItemId = "";
+        List<String> searchPath = MutableList.of();
+
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(contents));
+        try {
+            int depth = 0;
+            boolean rootMatches = false;
+            // the child of the root currently being read, and its text
+            String field = null;
+            StringBuilder text = null;
+            // a string in the search path currently being read
+            StringBuilder searchPathItem = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (depth == 1) {
+                        rootMatches = rootName.equals(reader.getLocalName());
+                    } else if (depth == 2 && rootMatches) {
+                        field = reader.getLocalName();
+                        text = new StringBuilder();
+                    } else if (field != null && field.equals("searchPath") && reader.getLocalName().equals("string")) {
+                        searchPathItem = new StringBuilder();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if (text != null) text.append(reader.getText());
+                    if (searchPathItem != null) searchPathItem.append(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (searchPathItem != null) {
+                        searchPath.add(searchPathItem.toString());
+                        searchPathItem = null;
+                    } else if (depth == 2 && field != null) {
+                        // as XPath, use the first element of each name
+                        if (field.equals("id") && id.isEmpty()) id = text.toString();
+                        else if (field.equals("type") && type.isEmpty()) type = text.toString();
+                        else if (field.equals("parent") && parent.isEmpty()) parent = text.toString();
+                        else if (field.equals("catalogItemId") && catalogItemId.isEmpty()) catalogItemId = text.toString();
+                        field = null;
+                        text = null;
+                    }
+                    depth--;
+                    break;
+                default:
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new ManifestFields(id, type, parent, catalogItemId, searchPath);
+    }
+
+    private static ManifestFields extractWithXPath(String rootName, String contents) {
+        String prefix = "/"+rootName+"/";
+        List<String> searchPath = MutableList.of();
+        NodeList nodeList = (NodeList) XmlUtil.xpathHandlingIllegalChars(contents, prefix + "searchPath//string", XPathConstants.NODESET);
+        for (int c = 0 ; c < nodeList.getLength() ; c++) {
+            searchPath.add(nodeList.item(c).getFirstChild().getNodeValue());
+        }
+        return new ManifestFields(
+                (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix + "id"),
+                (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix + "type"),
+                (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix + "parent"),
+                (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix + "catalogItemId"),
+                searchPath);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("size", size()).toString();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * How {@link BrooklynMementoPersisterToObjectStore} stores the serialized (XML) mementos in the object store.
+ * <p>
+ * Mementos are always serialized and deserialized as XML, by {@link XmlMementoSerializer}
+ * (so class renames, transformers and manifest extraction all work as before);
+ * the encoding only changes the bytes written to and read from the store.
+ * Implementations must be thread-safe, and must have a public no-arg constructor to be configured by class name
+ * (see {@link MementoStoreEncodings#of(String, ClassLoader)}).
+ */
+@Beta
+public interface MementoStoreEncoding {
+
+    /** Short name, as used in {@link BrooklynMementoPersisterToObjectStore#PERSISTER_MEMENTO_ENCODING}. */
+    String getName();
+
+    /** The bytes to store for the given serialized memento. */
+    byte[] encode(String xml);
+
+    /** Whether the given stored bytes were written by this encoding (as opposed to plain XML, or another encoding). */
+    boolean isEncoded(byte[] stored);
+
+    /** The serialized memento from bytes for which {@link #isEncoded(byte[])} is true. */
+    String decode(byte[] stored);
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.core.workflow.store.WorkflowStatePersistenceViaObjectStore;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteSource;
+
+/**
+ * The available {@link MementoStoreEncoding}s, and a tool to rewrite an existing store with a different encoding.
+ * <p>
+ * Mementos are read with whichever encoding they were written in (see {@link #decode(byte[])}),
+ * so a store can be switched to another encoding by changing
+ * {@link BrooklynMementoPersisterToObjectStore#PERSISTER_MEMENTO_ENCODING}:
+ * existing mementos are converted as they are next written, or all at once with {@link #rewrite(PersistenceObjectStore, MementoStoreEncoding)}.
+ */
+@Beta
+public class MementoStoreEncodings {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MementoStoreEncodings.class);
+
+    /** Plain (UTF-8) XML, as written by {@link XmlMementoSerializer}; the default. */
+    public static final MementoStoreEncoding XML = new MementoStoreEncoding() {
+        @Override
+        public String getName() {
+            return "xml";
+        }
+        @Override
+        public byte[] encode(String xml) {
+            return xml.getBytes(Charsets.UTF_8);
+        }
+        @Override
+        public boolean isEncoded(byte[] stored) {
+            return stored != null && !COMPACT.isEncoded(stored);
+        }
+        @Override
+        public String decode(byte[] stored) {
+            return new String(stored, Charsets.UTF_8);
+        }
+        @Override
+        public String toString() {
+            return "MementoStoreEncoding[xml]";
+        }
+    };
+
+    public static final MementoStoreEncoding COMPACT = new CompactXmlMementoStoreEncoding();
+
+    private MementoStoreEncodings() {}
+
+    /**
+     * Returns the encoding with the given name ({@code xml} or {@code compact}),
+     * or an instance of the given class, which must implement {@link MementoStoreEncoding}, loaded from the given class loader.
+     */
+    public static MementoStoreEncoding of(String nameOrClassName, ClassLoader classLoader) {
+        if (Strings.isBlank(nameOrClassName) || XML.getName().equalsIgnoreCase(nameOrClassName.trim())) return XML;
+        if (COMPACT.getName().equalsIgnoreCase(nameOrClassName.trim())) return COMPACT;
+        try {
+            Class<?> clazz = classLoader.loadClass(nameOrClassName.trim());
+            if (!MementoStoreEncoding.class.isAssignableFrom(clazz)) {
+                throw new IllegalArgumentException("Memento encoding "+nameOrClassName+" does not implement "+MementoStoreEncoding.class.getSimpleName());
+            }
+            return (MementoStoreEncoding) clazz.newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown memento encoding "+nameOrClassName, e);
+        } catch (Exception e) {
+            throw Exceptions.propagateAnnotated("Unable to create memento encoding "+nameOrClassName, e);
+        }
+    }
+
+    /**
+     * Returns the serialized memento from stored bytes in any known encoding;
+     * anything not recognised as {@link #COMPACT} is taken to be plain XML.
+     * (An encoding configured by class name is used in preference by the persister, if it recognises the bytes.)
+     */
+    public static String decode(byte[] stored) {
+        if (COMPACT.isEncoded(stored)) return COMPACT.decode(stored);
+        return XML.decode(stored);
+    }
+
+    static String decode(MementoStoreEncoding preferred, byte[] stored) {
+        if (preferred != XML && preferred != COMPACT && preferred.isEncoded(stored)) return preferred.decode(stored);
+        return decode(stored);
+    }
+
+    /**
+     * Rewrites all the mementos in the given store with the given encoding, returning the number rewritten
+     * (mementos already in that encoding are left as they are).
+     * Workflow records (see {@link WorkflowStatePersistenceViaObjectStore}) are rewritten in the same way,
+     * each with any delta records appended to it (which together are not one XML document, so may be left as plain XML).
+     * The store must be prepared, and must not be in use by a running persister.
+     * Bundle jars, entity delta records, and the other files in the store are not changed.
+     * <p>
+     * To read the mementos with a different {@link MementoStoreEncoding} configured by class name,
+     * the {@code source} encoding must be given; otherwise the {@code xml} and {@code compact} encodings are detected.
+     */
+    public static int rewrite(PersistenceObjectStore store, MementoStoreEncoding target) {
+        return rewrite(store, null, target);
+    }
+
+    public static int rewrite(PersistenceObjectStore store, MementoStoreEncoding source, MementoStoreEncoding target) {
+        int count = 0;
+        for (BrooklynObjectType type : BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            for (String path : store.listContentsWithSubPath(type.getSubPathName())) {
+                if (type == BrooklynObjectType.MANAGED_BUNDLE && path.endsWith(".jar")) continue;
+                if (rewrite(store.newAccessor(path), source, target)) count++;
+            }
+        }
+        for (String path : store.listContentsWithSubPath(WorkflowStatePersistenceViaObjectStore.WORKFLOWS_SUB_PATH)) {
+            if (rewrite(store.newAccessor(path), source, target)) count++;
+        }
+        LOG.info("Rewrote "+count+" memento"+Strings.s(count)+" in "+store.getSummaryName()+" with encoding "+target.getName());
+        return count;
+    }
+
+    private static boolean rewrite(StoreObjectAccessor accessor, MementoStoreEncoding source, MementoStoreEncoding target) {
+        byte[] stored = accessor.getBytes();
+        if (stored == null) return false;
+        boolean fromSource = source != null && source != target && source.isEncoded(stored);
+        if (!fromSource && target.isEncoded(stored)) return false;
+        String xml = fromSource ? source.decode(stored) : decode(stored);
+        byte[] encoded = target.encode(xml);
+        if (Arrays.equals(encoded, stored)) return false;
+        accessor.put(ByteSource.wrap(encoded));
+        return true;
+    }
+
+    /**
+     * Rewrites all the mementos in the given persistence directory with the given encoding, as {@link #rewrite(PersistenceObjectStore, MementoStoreEncoding)};
+     * the management context is used only to prepare the store, and must not be persisting to that directory.
+     */
+    public static int rewrite(ManagementContext mgmt, File persistenceDir, MementoStoreEncoding target) {
+        FileBasedObjectStore store = new FileBasedObjectStore(persistenceDir);
+        try {
+            store.injectManagementContext(mgmt);
+            store.prepareForSharedUse(PersistMode.REBIND, HighAvailabilityMode.MASTER);
+            // completes any interrupted batch commit (and takes a backup, if configured) before rewriting
+            store.prepareForMasterUse();
+            return rewrite(store, target);
+        } finally {
+            store.close();
+        }
+    }
+
+}
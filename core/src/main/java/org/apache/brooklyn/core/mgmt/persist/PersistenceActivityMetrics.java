@@ -32,6 +32,7 @@ public class PersistenceActivityMetrics {
     long count=0, failureCount=0;
     Long lastSuccessTime, lastDuration, lastFailureTime;
     List<Map<String,Object>> errorMessages = MutableList.of();
+    Map<String,Long> lastStageDurations = MutableMap.of();
 
     public void noteSuccess(Duration duration) {
         count++;
@@ -46,6 +47,15 @@ public class PersistenceActivityMetrics {
         lastDuration = duration!=null ? duration.toMilliseconds() : -1;
     }
 
+    /** records the duration in each stage of the last activity, e.g. each phase of a rebind, replacing those previously noted */
+    public synchronized void noteStageDurations(Map<String,Duration> stageDurations) {
+        Map<String,Long> result = MutableMap.of();
+        for (Map.Entry<String,Duration> entry : stageDurations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMilliseconds());
+        }
+        lastStageDurations = result;
+    }
+
     public void noteError(String error) {
         noteErrorObject(error);
     }
@@ -68,6 +78,7 @@ public class PersistenceActivityMetrics {
         result.put("lastSuccessTimeUtc", lastSuccessTime);
         result.put("lastSuccessTimeMillisSince", since(lastSuccessTime));
         result.put("lastDuration", lastDuration);
+        result.put("lastStageDurations", MutableMap.copyOf(lastStageDurations));
         result.put("failureCount", failureCount);
         result.put("lastFailureTimeUtc", lastFailureTime);
         result.put("lastFailureTimeMillisSince", since(lastFailureTime));
@@ -71,6 +71,23 @@ public interface PersistenceObjectStore {
         ReadWriteLock getLockObject();
     }
 
+    /**
+     * A set of writes and deletes of objects in a {@link PersistenceObjectStore}, to be committed together.
+     * Paths are as for {@link PersistenceObjectStore#newAccessor(String)}; a later change to a path replaces an earlier one.
+     * Changes are made in the order given, and implementations may commit them as one transaction or bundle.
+     * <p>
+     * Not thread safe. Callers must ensure the paths are not written by other means while the batch is committed.
+     */
+    @Beta
+    public interface StoreObjectBatch {
+        void put(String path, ByteSource bytes);
+        void delete(String path);
+        /** the number of changes in this batch */
+        int size();
+        /** makes all the changes, throwing if any could not be made; the batch should not be used subsequently */
+        void commit();
+    }
+
     /** human-readable name of this object store */
     public String getSummaryName();
     
@@ -126,6 +143,16 @@ public interface PersistenceObjectStore {
     // but we've already been doing it this way above for now (Jun 2014)
     StoreObjectAccessor newAccessor(String path);
 
+    /**
+     * Creates a batch of changes to commit together, e.g. all the objects written in a persistence cycle.
+     * The default makes each change in turn with {@link #newAccessor(String)};
+     * stores should override where they can commit several changes more efficiently or atomically.
+     */
+    @Beta
+    default StoreObjectBatch newBatch() {
+        return new BasicStoreObjectBatch(this);
+    }
+
     /** create the directory at the given subPath relative to the base of this store */
     void createSubPath(String subPath);
 
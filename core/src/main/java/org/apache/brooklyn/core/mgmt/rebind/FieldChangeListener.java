@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link ChangeListener} which is also told which config key or attribute of an entity changed,
+ * so that persistence can write just those rather than the entity's whole memento.
+ * Any other change to the entity is still notified with {@link #onChanged(org.apache.brooklyn.api.objs.BrooklynObject)}.
+ */
+@Beta
+public interface FieldChangeListener extends ChangeListener {
+
+    void onConfigChanged(Entity entity, String configKeyName);
+
+    void onAttributeChanged(Entity entity, String sensorName);
+
+}
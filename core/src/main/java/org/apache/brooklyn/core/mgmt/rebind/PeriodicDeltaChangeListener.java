@@ -19,7 +19,9 @@
 package org.apache.brooklyn.core.mgmt.rebind;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
@@ -33,7 +35,6 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
-import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
 import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
 import org.apache.brooklyn.api.mgmt.rebind.RebindManager;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
@@ -49,6 +50,7 @@ import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityAdjuncts;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.location.Locations;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
@@ -70,6 +72,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -85,7 +88,7 @@ import com.google.common.collect.Sets;
  * @author aled
  *
  */
-public class PeriodicDeltaChangeListener implements ChangeListener {
+public class PeriodicDeltaChangeListener implements FieldChangeListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(PeriodicDeltaChangeListener.class);
     public static final String TASK_NAME = "periodic-persister";
@@ -113,6 +116,12 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         private Set<String> removedCatalogItemIds = Sets.newLinkedHashSet();
         private Set<String> removedBundleIds = Sets.newLinkedHashSet();
 
+        // entities in the set above which have changed in ways other than config and attributes, so need all persisted
+        private Set<String> entityIdsChangedEntirely = Sets.newLinkedHashSet();
+        // for other entities in the set above, the config and attribute names which have changed
+        private Map<String, Set<String>> changedEntityConfigNames = Maps.newLinkedHashMap();
+        private Map<String, Set<String>> changedEntityAttributeNames = Maps.newLinkedHashMap();
+
         public boolean isEmpty() {
             return planeId == null &&
                     locations.isEmpty() && entities.isEmpty() && policies.isEmpty() && 
@@ -133,19 +142,59 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             if (type==BrooklynObjectType.CATALOG_ITEM) {
                 removedCatalogItemIds.remove(instance.getId());
             }
+            if (type==BrooklynObjectType.ENTITY) {
+                markEntityChangedEntirely(instance.getId());
+            }
         }
         
         public void addIfNotRemoved(BrooklynObject instance) {
             BrooklynObjectType type = BrooklynObjectType.of(instance);
             if (!getRemovedIdsOfType(type).contains(instance.getId())) {
                 getUnsafeCollectionOfType(type).add(instance);
+                if (type==BrooklynObjectType.ENTITY) {
+                    markEntityChangedEntirely(instance.getId());
+                }
+            }
+        }
+
+        public void addConfigChange(Entity entity, String configKeyName) {
+            addFieldChange(entity, changedEntityConfigNames, configKeyName);
+        }
+
+        public void addAttributeChange(Entity entity, String sensorName) {
+            addFieldChange(entity, changedEntityAttributeNames, sensorName);
+        }
+
+        private void addFieldChange(Entity entity, Map<String, Set<String>> changedNames, String name) {
+            if (entityIdsChangedEntirely.contains(entity.getId())) return;
+            entities.add(entity);
+            Set<String> names = changedNames.get(entity.getId());
+            if (names == null) {
+                names = Sets.newLinkedHashSet();
+                changedNames.put(entity.getId(), names);
             }
+            names.add(name);
+        }
+
+        private void markEntityChangedEntirely(String id) {
+            entityIdsChangedEntirely.add(id);
+            changedEntityConfigNames.remove(id);
+            changedEntityAttributeNames.remove(id);
+        }
+
+        public boolean isEntityChangedEntirely(String id) {
+            return entityIdsChangedEntirely.contains(id);
         }
 
         public void remove(BrooklynObject instance) {
             BrooklynObjectType type = BrooklynObjectType.of(instance);
             getUnsafeCollectionOfType(type).remove(instance);
             getRemovedIdsOfType(type).add(instance.getId());
+            if (type==BrooklynObjectType.ENTITY) {
+                entityIdsChangedEntirely.remove(instance.getId());
+                changedEntityConfigNames.remove(instance.getId());
+                changedEntityAttributeNames.remove(instance.getId());
+            }
         }
 
         @SuppressWarnings("unchecked")
@@ -323,7 +372,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         if (persistingMutex.tryAcquire(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS)) {
             try {
                 // now no one else is writing
-                if (!deltaCollector.isEmpty()) {
+                if (!deltaCollector.isEmpty() || hasPendingAuxiliaryWrites()) {
                     if (canTrigger) {
                         // but there is data that needs to be written
                         persistNowSafely(true);
@@ -362,7 +411,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             if (persistingMutex.tryAcquire(0, TimeUnit.MILLISECONDS)) {
                 try {
                     // now no one else is writing
-                    return !deltaCollector.isEmpty();
+                    return !deltaCollector.isEmpty() || hasPendingAuxiliaryWrites();
                 } finally {
                     persistingMutex.release();
                 }
@@ -374,6 +423,11 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
 
+    /** Whether the persister has writes of other objects (e.g. workflows) to make, which are made with a delta. */
+    private boolean hasPendingAuxiliaryWrites() {
+        return persister instanceof BrooklynMementoPersisterToObjectStore && ((BrooklynMementoPersisterToObjectStore)persister).hasPendingAuxiliaryWrites();
+    }
+
     /**
      * Indicates whether persistence is active. 
      * Even when not active, changes will still be tracked unless {@link #isStopped()}.
@@ -499,7 +553,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                             prevDeltaCollector.removedEntityIds.size(), prevDeltaCollector.removedLocationIds.size(), prevDeltaCollector.removedPolicyIds.size(), prevDeltaCollector.removedEnricherIds.size(), prevDeltaCollector.removedCatalogItemIds.size(), prevDeltaCollector.removedBundleIds.size()});
             }
             // Generate mementos for everything that has changed in this time period
-            if (prevDeltaCollector.isEmpty()) {
+            if (prevDeltaCollector.isEmpty() && !hasPendingAuxiliaryWrites()) {
                 if (LOG.isTraceEnabled()) LOG.trace("No changes to persist since last delta");
             } else {
                 PersisterDeltaImpl persisterDelta = new PersisterDeltaImpl();
@@ -530,6 +584,13 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
 
                             } else {
                                 persisterDelta.add(type, ((BrooklynObjectInternal) instance).getRebindSupport().getMemento());
+                                if (type==BrooklynObjectType.ENTITY && !prevDeltaCollector.isEntityChangedEntirely(instance.getId())) {
+                                    Set<String> configNames = prevDeltaCollector.changedEntityConfigNames.get(instance.getId());
+                                    Set<String> attributeNames = prevDeltaCollector.changedEntityAttributeNames.get(instance.getId());
+                                    persisterDelta.changedEntityFields(instance.getId(),
+                                            configNames != null ? configNames : Collections.<String>emptySet(),
+                                            attributeNames != null ? attributeNames : Collections.<String>emptySet());
+                                }
                             }
                         } catch (Exception e) {
                             exceptionHandler.onGenerateMementoFailed(type, instance, e);
@@ -650,6 +711,22 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             deltaCollector.add(instance);
         }
     }
+
+    @Override
+    public synchronized void onConfigChanged(Entity entity, String configKeyName) {
+        if (LOG.isTraceEnabled()) LOG.trace("onConfigChanged: {} {}", entity, configKeyName);
+        if (!isStopped() && !rebindManager.isReadOnly()) {
+            deltaCollector.addConfigChange(entity, configKeyName);
+        }
+    }
+
+    @Override
+    public synchronized void onAttributeChanged(Entity entity, String sensorName) {
+        if (LOG.isTraceEnabled()) LOG.trace("onAttributeChanged: {} {}", entity, sensorName);
+        if (!isStopped() && !rebindManager.isReadOnly()) {
+            deltaCollector.addAttributeChange(entity, sensorName);
+        }
+    }
     
     public PersistenceExceptionHandler getExceptionHandler() {
         return exceptionHandler;
@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.mgmt.rebind;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.Delta;
@@ -35,7 +36,9 @@ import org.apache.brooklyn.api.mgmt.rebind.mementos.PolicyMemento;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
 
 import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class PersisterDeltaImpl implements Delta, MutableDelta {
@@ -60,6 +63,10 @@ public class PersisterDeltaImpl implements Delta, MutableDelta {
     Collection<String> removedCatalogItemIds = Sets.newLinkedHashSet();
     Collection<String> removedBundleIds = Sets.newLinkedHashSet();
     
+    // for entities where only these config keys and attributes have changed, their names keyed by entity id
+    Map<String, Set<String>> changedEntityConfigNames = Maps.newLinkedHashMap();
+    Map<String, Set<String>> changedEntityAttributeNames = Maps.newLinkedHashMap();
+    
     @Override
     public String planeId() {
         return planeId;
@@ -195,4 +202,32 @@ public class PersisterDeltaImpl implements Delta, MutableDelta {
         getRemovedIdsOfTypeMutable(type).addAll(removedIdsOfType);    
     }
 
+    /**
+     * Records that the only changes to the entity with the given memento are to these config keys and attributes,
+     * so the persister may write just those.
+     */
+    @Beta
+    public void changedEntityFields(String entityId, Set<String> configNames, Set<String> attributeNames) {
+        changedEntityConfigNames.put(entityId, ImmutableSet.copyOf(configNames));
+        changedEntityAttributeNames.put(entityId, ImmutableSet.copyOf(attributeNames));
+    }
+
+    /** Whether {@link #changedEntityFields(String, Set, Set)} was recorded for the entity. */
+    @Beta
+    public boolean hasChangedEntityFields(String entityId) {
+        return changedEntityConfigNames.containsKey(entityId);
+    }
+
+    @Beta
+    public Set<String> getChangedEntityConfigNames(String entityId) {
+        Set<String> result = changedEntityConfigNames.get(entityId);
+        return result == null ? ImmutableSet.<String>of() : result;
+    }
+
+    @Beta
+    public Set<String> getChangedEntityAttributeNames(String entityId) {
+        Set<String> result = changedEntityAttributeNames.get(entityId);
+        return result == null ? ImmutableSet.<String>of() : result;
+    }
+
 }
@@ -21,6 +21,8 @@ package org.apache.brooklyn.core.mgmt.rebind;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import static org.apache.brooklyn.core.BrooklynFeatureEnablement.FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND;
 import static org.apache.brooklyn.core.BrooklynFeatureEnablement.FEATURE_BACKWARDS_COMPATIBILITY_INFER_CATALOG_ITEM_ON_REBIND;
@@ -28,6 +30,10 @@ import static org.apache.brooklyn.core.catalog.internal.CatalogUtils.newClassLoa
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -124,6 +130,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Multi-phase deserialization:
@@ -133,6 +140,7 @@ import com.google.common.collect.Sets;
  * <li> 2. install bundles, instantiate and reconstruct catalog items
  * <li> 3. instantiate entities+locations -- so that inter-entity references can subsequently
  * be set during deserialize (and entity config/state is set).
+ * These (and the adjuncts in 5) are instantiated on several threads, and registered in order as they are instantiated.
  * <li> 4. deserialize the manifests to instantiate the mementos
  * <li> 5. instantiate policies+enrichers+feeds
  * (could probably merge this with (3), depending how they are implemented)
@@ -191,6 +199,12 @@ public abstract class RebindIteration {
     // set on run start
 
     protected Stopwatch timer;
+    /** times each stage of the run, for {@link #stageDurations} */
+    protected Stopwatch stageTimer;
+    /** duration of each stage completed, in order, reported in the rebind metrics */
+    protected final Map<String,Duration> stageDurations = MutableMap.of();
+    /** threads for {@link #instantiateInParallel(Iterable, Function, BiConsumer, BiConsumer)}, shared by all its calls in the run; created when first needed */
+    private ExecutorService instantiationExecutor;
     /**
      * phase is used to ensure our steps are run as we've expected, and documented (in javadoc at top).
      * it's worth the extra effort due to the complication and the subtleties.
@@ -257,20 +271,36 @@ public abstract class RebindIteration {
             rebindManager.stopEntityTasksAndCleanUp("before next read-only rebind", Duration.seconds(10), Duration.seconds(20));
         }
 
+        stageTimer = Stopwatch.createStarted();
+        // notes the raw data and manifest stages
         loadManifestFiles();
         initPlaneId();
         installBundlesAndRebuildCatalog();
+        noteStageCompleted("installBundlesAndRebuildCatalog");
         instantiateLocationsAndEntities();
+        noteStageCompleted("instantiateLocationsAndEntities");
         instantiateMementos();
+        noteStageCompleted("instantiateMementos");
         // adjuncts depend on actual mementos; whereas entity works off special memento manifest, 
         // and location, bundles etc just take type and id
         instantiateAdjuncts(instantiator);
+        noteStageCompleted("instantiateAdjuncts");
         reconstructEverything();
+        noteStageCompleted("reconstructEverything");
         associateAdjunctsWithEntities();
+        noteStageCompleted("associateAdjunctsWithEntities");
         manageTheObjects();
+        noteStageCompleted("manageTheObjects");
         finishingUp();
     }
 
+    /** records the time since the previous stage completed (or the run started) against the given stage */
+    protected void noteStageCompleted(String stage) {
+        if (stageTimer == null) return;
+        stageDurations.put(stage, Duration.of(stageTimer));
+        stageTimer.reset().start();
+    }
+
     protected abstract void loadManifestFiles() throws Exception;
 
     public void run() {
@@ -296,16 +326,23 @@ public abstract class RebindIteration {
             exceptionHandler.onDone();
 
             rebindMetrics.noteSuccess(Duration.of(timer));
+            rebindMetrics.noteStageDurations(stageDurations);
+            logRebindingDebug("Rebind stage durations: {}", stageDurations);
             noteErrors(exceptionHandler, null);
 
         } catch (Exception e) {
             rebindMetrics.noteFailure(Duration.of(timer));
+            rebindMetrics.noteStageDurations(stageDurations);
 
             Exceptions.propagateIfFatal(e);
             noteErrors(exceptionHandler, e);
             throw exceptionHandler.onFailed(e);
 
         } finally {
+            if (instantiationExecutor != null) {
+                instantiationExecutor.shutdownNow();
+                instantiationExecutor = null;
+            }
             rebindActive.release();
             RebindTracker.reset();
         }
@@ -327,9 +364,11 @@ public abstract class RebindIteration {
         Preconditions.checkState(mementoRawData != null, "Memento raw data should be set when calling this");
         Preconditions.checkState(mementoManifest == null, "Memento data should not yet be set when calling this");
 
+        noteStageCompleted("loadRawData");
         // TODO building the manifests should be part of this class (or parent)
         // it does not have anything to do with the persistence store!
         mementoManifest = persistenceStoreAccess.loadMementoManifest(mementoRawData, exceptionHandler);
+        noteStageCompleted("loadMementoManifest");
 
         overwritingMaster = false;
         isEmpty = mementoManifest.isEmpty();
@@ -449,38 +488,101 @@ public abstract class RebindIteration {
 
         // Instantiate locations
         logRebindingDebug("RebindManager instantiating locations: {}", mementoManifest.getLocationIdToType().keySet());
-        for (Map.Entry<String, String> entry : mementoManifest.getLocationIdToType().entrySet()) {
-            String locId = entry.getKey();
-            String locType = entry.getValue();
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
-
-            try {
-                Location location = instantiator.newLocation(locId, locType);
-                rebindContext.registerLocation(locId, location);
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
-            }
-        }
+        instantiateInParallel(mementoManifest.getLocationIdToType().entrySet(),
+                entry -> {
+                    if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", entry.getKey());
+                    return instantiator.newLocation(entry.getKey(), entry.getValue());
+                },
+                (entry, location) -> rebindContext.registerLocation(entry.getKey(), location),
+                (entry, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, entry.getKey(), entry.getValue(), e));
 
         // Instantiate entities
         logRebindingDebug("RebindManager instantiating entities: {}", mementoManifest.getEntityIdToManifest().keySet());
-        for (Map.Entry<String, EntityMementoManifest> entry : mementoManifest.getEntityIdToManifest().entrySet()) {
-            String entityId = entry.getKey();
-            EntityMementoManifest entityManifest = entry.getValue();
-
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
+        instantiateInParallel(mementoManifest.getEntityIdToManifest().values(),
+                entityManifest -> {
+                    if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityManifest.getId());
+                    return instantiator.newEntity(entityManifest);
+                },
+                (entityManifest, entity) -> {
+                    ((EntityInternal) entity).getManagementSupport().setReadOnly(rebindContext.isReadOnly(entity));
+                    rebindContext.registerEntity(entityManifest.getId(), entity);
+                },
+                (entityManifest, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityManifest.getId(), entityManifest.getType(), e));
+    }
 
-            try {
-                Entity entity = instantiator.newEntity(entityManifest);
-                ((EntityInternal) entity).getManagementSupport().setReadOnly(rebindContext.isReadOnly(entity));
-                rebindContext.registerEntity(entityId, entity);
+    /**
+     * Instantiates each of the given items with {@code create} on a pool of {@link RebindManagerImpl#REBIND_INSTANTIATION_THREADS} daemon threads
+     * (one pool for the run, shut down when it ends),
+     * and passes them to {@code register} on this thread, in the order given, as they are instantiated
+     * (or to {@code onFailure} if that failed). Registration overlaps instantiation, which runs at most a few items per thread ahead of it.
+     * <p>
+     * Instantiating an object needs only its manifest or memento and the catalog, not the objects it refers to,
+     * so any order is safe; whereas registering updates the rebind context, which is not designed for concurrent use,
+     * and keeps the order the objects are later visited in.
+     */
+    protected <I,T> void instantiateInParallel(Iterable<I> items, Function<I,T> create, BiConsumer<I,T> register, BiConsumer<I,Exception> onFailure) {
+        Integer threads = managementContext.getConfig().getConfig(RebindManagerImpl.REBIND_INSTANTIATION_THREADS);
+        if (threads == null || threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+        if (threads <= 1) {
+            for (I item : items) {
+                try {
+                    register.accept(item, create.apply(item));
+                } catch (Exception e) {
+                    onFailure.accept(item, e);
+                }
+            }
+            return;
+        }
 
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
+        int maxAhead = threads * 4;
+        if (instantiationExecutor == null) {
+            instantiationExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setNameFormat("brooklyn-rebind-instantiator-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        ExecutorService executor = instantiationExecutor;
+        Deque<Map.Entry<I,Future<T>>> pending = new ArrayDeque<>();
+        try {
+            for (I item : items) {
+                pending.add(Maps.immutableEntry(item, executor.submit(() -> {
+                    // the rebinding marker is thread-local, and is checked by some constructors
+                    RebindTracker.setRebinding();
+                    try {
+                        return create.apply(item);
+                    } finally {
+                        RebindTracker.reset();
+                    }
+                })));
+                while (pending.size() >= maxAhead) {
+                    registerInstantiated(pending.removeFirst(), register, onFailure);
+                }
+            }
+            while (!pending.isEmpty()) {
+                registerInstantiated(pending.removeFirst(), register, onFailure);
+            }
+        } finally {
+            // if registering failed, the pool is kept for later calls, so stop what this call started
+            for (Map.Entry<I,Future<T>> instantiating : pending) {
+                instantiating.getValue().cancel(true);
             }
         }
     }
 
+    private <I,T> void registerInstantiated(Map.Entry<I,Future<T>> instantiating, BiConsumer<I,T> register, BiConsumer<I,Exception> onFailure) {
+        try {
+            register.accept(instantiating.getKey(), instantiating.getValue().get());
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Exceptions.propagateIfFatal(cause);
+            onFailure.accept(instantiating.getKey(), cause instanceof Exception ? (Exception) cause : e);
+        } catch (Exception e) {
+            onFailure.accept(instantiating.getKey(), e);
+        }
+    }
+
     // creation of adjuncts can be called from different threads; it should be rare however, so easiest to synchronize
     protected Map<String,EntityAdjunct> adjunctProxies = Collections.synchronizedMap(MutableMap.of());
     protected <T extends EntityAdjunct> T createAdjunctProxy(Class<T> adjunctType, String id) {
@@ -523,19 +625,16 @@ public abstract class RebindIteration {
         // Instantiate policies
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager instantiating policies: {}", memento.getPolicyIds());
-            for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
-
-                try {
-                    Policy policy = instantiator.newPolicy(policyMemento);
-
-                    EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(policy.getId()) , policy);
-
-                    rebindContext.registerPolicy(policyMemento.getId(), policy);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e);
-                }
-            }
+            instantiateInParallel(memento.getPolicyMementos().values(),
+                    policyMemento -> {
+                        logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
+                        return instantiator.newPolicy(policyMemento);
+                    },
+                    (policyMemento, policy) -> {
+                        EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(policy.getId()) , policy);
+                        rebindContext.registerPolicy(policyMemento.getId(), policy);
+                    },
+                    (policyMemento, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e));
         } else {
             logRebindingDebug("Not rebinding policies; feature disabled: {}", memento.getPolicyIds());
         }
@@ -543,17 +642,16 @@ public abstract class RebindIteration {
         // Instantiate enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager instantiating enrichers: {}", memento.getEnricherIds());
-            for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
-
-                try {
-                    Enricher enricher = instantiator.newEnricher(enricherMemento);
-                    EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(enricher.getId()) , enricher);
-                    rebindContext.registerEnricher(enricherMemento.getId(), enricher);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e);
-                }
-            }
+            instantiateInParallel(memento.getEnricherMementos().values(),
+                    enricherMemento -> {
+                        logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
+                        return instantiator.newEnricher(enricherMemento);
+                    },
+                    (enricherMemento, enricher) -> {
+                        EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(enricher.getId()) , enricher);
+                        rebindContext.registerEnricher(enricherMemento.getId(), enricher);
+                    },
+                    (enricherMemento, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e));
         } else {
             logRebindingDebug("Not rebinding enrichers; feature disabled: {}", memento.getEnricherIds());
         }
@@ -562,18 +660,17 @@ public abstract class RebindIteration {
         // Instantiate feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager instantiating feeds: {}", memento.getFeedIds());
-            for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
-
-                try {
-                    Feed feed = instantiator.newFeed(feedMemento);
-                    EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(feed.getId()) , feed);
-                    rebindContext.registerFeed(feedMemento.getId(), feed);
-                    // started during associateAdjunctsWithEntities by RebindAdjuncts
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e);
-                }
-            }
+            instantiateInParallel(memento.getFeedMementos().values(),
+                    feedMemento -> {
+                        if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
+                        return instantiator.newFeed(feedMemento);
+                    },
+                    (feedMemento, feed) -> {
+                        EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(feed.getId()) , feed);
+                        rebindContext.registerFeed(feedMemento.getId(), feed);
+                        // started during associateAdjunctsWithEntities by RebindAdjuncts
+                    },
+                    (feedMemento, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e));
         } else {
             logRebindingDebug("Not rebinding feeds; feature disabled: {}", memento.getFeedIds());
         }
@@ -118,6 +118,22 @@ public class RebindManagerImpl implements RebindManager {
                 + "then linear regression to allow max 5% at 100 items and above", 
                 QuorumChecks.newLinearRange("[[0,-2],[10,8],[100,95],[200,190]]"));
 
+    @Beta
+    public static final ConfigKey<Duration> READ_ONLY_FULL_RESYNC_PERIOD =
+        ConfigKeys.newDurationConfigKey("rebind.readOnly.fullResyncPeriod",
+                "Maximum time between read-only rebinds (e.g. in hot standby) which re-read all persisted state; "
+                + "in between, if the master writes a change log (persister.changeLog.enabled), "
+                + "only the changed mementos are re-read, and the rebind is skipped if none have changed",
+                Duration.minutes(10));
+
+    @Beta
+    public static final ConfigKey<Integer> REBIND_INSTANTIATION_THREADS =
+        ConfigKeys.newIntegerConfigKey("rebind.instantiation.threads",
+                "Number of threads on which locations, entities and adjuncts are instantiated during rebind, "
+                + "while those already instantiated are registered in order; "
+                + "0 for the number of processors, 1 to instantiate them all on the rebind thread",
+                0);
+
     public static final Logger LOG = LoggerFactory.getLogger(RebindManagerImpl.class);
 
     private final ManagementContextInternal managementContext;
@@ -133,6 +149,9 @@ public class RebindManagerImpl implements RebindManager {
     private volatile ScheduledTask readOnlyTask = null;
     private transient Semaphore rebindActive = new Semaphore(1);
     private transient AtomicInteger readOnlyRebindCount = new AtomicInteger(Integer.MIN_VALUE);
+    private final Duration readOnlyFullResyncPeriod;
+    private volatile CountdownTimer readOnlyFullResyncTimer;
+    private volatile boolean readOnlyLastRebindSucceeded;
     
     private volatile BrooklynMementoPersister persistenceStoreAccess;
 
@@ -204,6 +223,7 @@ public class RebindManagerImpl implements RebindManager {
         loadPolicyFailureMode = managementContext.getConfig().getConfig(LOAD_POLICY_FAILURE_MODE);
         
         danglingRefsQuorumRequiredHealthy = managementContext.getConfig().getConfig(DANGLING_REFERENCES_MIN_REQUIRED_HEALTHY);
+        readOnlyFullResyncPeriod = managementContext.getConfig().getConfig(READ_ONLY_FULL_RESYNC_PERIOD);
 
         LOG.debug("{} initialized, settings: policies={}, enrichers={}, feeds={}, catalog={}",
                 new Object[]{this, persistPoliciesEnabled, persistEnrichersEnabled, persistFeedsEnabled, persistCatalogItemsEnabled});
@@ -341,7 +361,10 @@ public class RebindManagerImpl implements RebindManager {
         readOnlyRebindCount.set(0);
 
         try {
+            readOnlyLastRebindSucceeded = false;
+            startReadOnlyFullResync();
             rebind(null, null, mode);
+            readOnlyLastRebindSucceeded = true;
         } catch (Exception e) {
             throw Exceptions.propagate(e);
         }
@@ -352,7 +375,12 @@ public class RebindManagerImpl implements RebindManager {
                     @Override
                     public Void call() {
                         try {
+                            if (isReadOnlyRebindUnnecessary()) {
+                                return null;
+                            }
+                            readOnlyLastRebindSucceeded = false;
                             rebind(null, null, mode);
+                            readOnlyLastRebindSucceeded = true;
                             return null;
                         } catch (RuntimeInterruptedException e) {
                             LOG.debug("Interrupted rebinding (re-interrupting): "+e);
@@ -384,6 +412,33 @@ public class RebindManagerImpl implements RebindManager {
             ScheduledTask.builder(taskFactory).displayName("scheduled:[periodic-read-only-rebind]").period(periodicPersistPeriod).build() );
     }
     
+    /**
+     * Whether the persisted state is known to be unchanged since the last (successful) read-only rebind,
+     * from the change log written by the master, so the periodic rebind can be skipped.
+     * Also arranges for all state to be re-read when {@link #READ_ONLY_FULL_RESYNC_PERIOD} has elapsed.
+     */
+    private boolean isReadOnlyRebindUnnecessary() {
+        if (!(persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore)) {
+            return false;
+        }
+        if (readOnlyFullResyncTimer==null || readOnlyFullResyncTimer.isExpired()) {
+            startReadOnlyFullResync();
+            return false;
+        }
+        if (readOnlyLastRebindSucceeded && ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).isUnchangedSinceLastLoad()) {
+            LOG.trace("Skipping read-only rebind, as persisted state unchanged: {}", this);
+            return true;
+        }
+        return false;
+    }
+    
+    private void startReadOnlyFullResync() {
+        if (persistenceStoreAccess instanceof BrooklynMementoPersisterToObjectStore) {
+            ((BrooklynMementoPersisterToObjectStore)persistenceStoreAccess).clearIncrementalLoadState();
+        }
+        readOnlyFullResyncTimer = readOnlyFullResyncPeriod.countdownTimer();
+    }
+    
     @Override
     public void stopReadOnly() {
         readOnlyRunning = false;
@@ -717,7 +772,7 @@ public class RebindManagerImpl implements RebindManager {
      * failed to persist, and we'd expect other threads to throw the OutOfMemoryError so
      * we shouldn't lose anything.
      */
-    private static class SafeChangeListener implements ChangeListener {
+    private static class SafeChangeListener implements FieldChangeListener {
         private final ChangeListener delegate;
         
         public SafeChangeListener(ChangeListener delegate) {
@@ -750,6 +805,32 @@ public class RebindManagerImpl implements RebindManager {
                 LOG.error("Error persisting mememento onUnmanaged("+instance+"); continuing.", t);
             }
         }
+
+        @Override
+        public void onConfigChanged(Entity entity, String configKeyName) {
+            try {
+                if (delegate instanceof FieldChangeListener) {
+                    ((FieldChangeListener)delegate).onConfigChanged(entity, configKeyName);
+                } else {
+                    delegate.onChanged(entity);
+                }
+            } catch (Throwable t) {
+                LOG.error("Error persisting mememento onConfigChanged("+entity+", "+configKeyName+"); continuing.", t);
+            }
+        }
+
+        @Override
+        public void onAttributeChanged(Entity entity, String sensorName) {
+            try {
+                if (delegate instanceof FieldChangeListener) {
+                    ((FieldChangeListener)delegate).onAttributeChanged(entity, sensorName);
+                } else {
+                    delegate.onChanged(entity);
+                }
+            } catch (Throwable t) {
+                LOG.error("Error persisting mememento onAttributeChanged("+entity+", "+sensorName+"); continuing.", t);
+            }
+        }
     }
 
     public int getReadOnlyRebindCount() {
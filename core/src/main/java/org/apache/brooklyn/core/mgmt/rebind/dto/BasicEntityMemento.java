@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Entity;
@@ -40,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.google.common.annotations.Beta;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -66,6 +68,31 @@ public class BasicEntityMemento extends AbstractTreeNodeMemento implements Entit
         return new Builder();
     }
 
+    /**
+     * Creates a memento with the identity and type of the given one, but only the named config and attributes
+     * (and any dynamic keys for them), for persisting changes to those alone.
+     */
+    @Beta
+    public static EntityMemento newPartialMemento(EntityMemento other, Set<String> configNames, Set<String> attributeNames) {
+        Builder builder = builder();
+        builder.id = other.getId();
+        builder.type = other.getType();
+        builder.typeClass = other.getTypeClass();
+        for (ConfigKey<?> key : other.getDynamicConfigKeys()) {
+            if (configNames.contains(key.getName())) builder.configKeys.add(key);
+        }
+        for (Map.Entry<ConfigKey<?>, Object> entry : other.getConfig().entrySet()) {
+            if (configNames.contains(entry.getKey().getName())) builder.config.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Object> entry : other.getConfigUnmatched().entrySet()) {
+            if (configNames.contains(entry.getKey())) builder.configUnmatched.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<AttributeSensor<?>, Object> entry : other.getAttributes().entrySet()) {
+            if (attributeNames.contains(entry.getKey().getName())) builder.attributes.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
     public static class Builder extends AbstractTreeNodeMemento.Builder<Builder> {
         protected Boolean isTopLevelApp;
         protected List<ConfigKey<?>> configKeys = Lists.newArrayList();
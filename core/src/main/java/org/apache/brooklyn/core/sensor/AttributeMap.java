@@ -29,6 +29,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.entity.AbstractEntity;
 import org.apache.brooklyn.util.concurrent.Locks;
@@ -60,17 +61,29 @@ public final class AttributeMap {
 
     // Assumed to be something like a ConcurrentMap passed in.
     private final Map<Collection<String>, Object> values;
+    // same as values, if that supports lock-free access by sensor name; otherwise null
+    private final AttributeSlots slots;
 
     /**
      * Creates a new AttributeMap.
+     * <p>
+     * Storage is an {@link AttributeSlots} if {@link BrooklynFeatureEnablement#FEATURE_ATTRIBUTE_SLOTS} is enabled,
+     * otherwise a synchronized {@link java.util.LinkedHashMap}.
      *
      * @param entity the Entity this AttributeMap belongs to.
      * @throws NullPointerException if entity is null
      */
     public AttributeMap(AbstractEntity entity) {
+        this(entity, newDefaultStorage());
+    }
+
+    private static Map<Collection<String>, Object> newDefaultStorage() {
+        if (BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_ATTRIBUTE_SLOTS)) {
+            return new AttributeSlots();
+        }
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
-        this(entity, Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()));
+        return Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap());
     }
 
     /**
@@ -83,6 +96,7 @@ public final class AttributeMap {
     public AttributeMap(AbstractEntity entity, Map<Collection<String>, Object> storage) {
         this.entity = checkNotNull(entity, "entity must be specified");
         this.values = checkNotNull(storage, "storage map must not be null");
+        this.slots = storage instanceof AttributeSlots ? (AttributeSlots) storage : null;
     }
 
     /** 
@@ -114,6 +128,9 @@ public final class AttributeMap {
     }
     
     public Map<Collection<String>, Object> asRawMap() {
+        if (slots != null) {
+            return ImmutableMap.copyOf(slots);
+        }
         synchronized (values) {
             return ImmutableMap.copyOf(values);
         }
@@ -121,6 +138,10 @@ public final class AttributeMap {
 
     public Map<String, Object> asMap() {
         Map<String, Object> result = Maps.newLinkedHashMap();
+        if (slots != null) {
+            slots.forEachByName((sensorName, val) -> result.put(sensorName, isNull(val) ? null : val));
+            return result;
+        }
         synchronized (values) {
             for (Map.Entry<Collection<String>, Object> entry : values.entrySet()) {
                 String sensorName = Joiner.on('.').join(entry.getKey());
@@ -195,19 +216,32 @@ public final class AttributeMap {
     
     @Beta
     public <T> T updateInternalWithoutLockOrPublish(AttributeSensor<T> attribute, T newValue) {
+        if (slots != null) {
+            // slots are safe for concurrent use without the values monitor
+            return updateInternalWithoutAnyLock(attribute, newValue);
+        }
         synchronized (values) {
-            if (log.isTraceEnabled()) {
-                Object oldValue = getValue(attribute);
-                if (!Objects.equal(oldValue, newValue != null)) {
-                    log.trace("setting attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
-                } else {
-                    log.trace("setting attribute {} to {} (unchanged) on {}", new Object[] {attribute.getName(), newValue, this});
-                }
+            return updateInternalWithoutAnyLock(attribute, newValue);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T updateInternalWithoutAnyLock(AttributeSensor<T> attribute, T newValue) {
+        if (log.isTraceEnabled()) {
+            Object oldValue = getValue(attribute);
+            if (!Objects.equal(oldValue, newValue != null)) {
+                log.trace("setting attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
+            } else {
+                log.trace("setting attribute {} to {} (unchanged) on {}", new Object[] {attribute.getName(), newValue, this});
             }
-    
-            T oldValue = update(attribute.getNameParts(), newValue);
+        }
+
+        if (slots != null) {
+            T oldValue = (T) slots.putByName(attribute.getName(), newValue == null ? typedNull() : newValue);
             return (isNull(oldValue)) ? null : oldValue;
         }
+        T oldValue = update(attribute.getNameParts(), newValue);
+        return (isNull(oldValue)) ? null : oldValue;
     }
 
     private <T> T withLock(Callable<T> body) { return Locks.withLock(getLockInternal(), body); }
@@ -243,7 +277,13 @@ public final class AttributeMap {
     public void remove(AttributeSensor<?> attribute) {
         BrooklynLogging.log(log, BrooklynLogging.levelDebugOrTraceIfReadOnly(entity),
             "removing attribute {} on {}", attribute.getName(), entity);
-        withLock(() -> remove(attribute.getNameParts()) );
+        withLock(() -> {
+            if (slots != null) {
+                slots.removeByName(attribute.getName());
+            } else {
+                remove(attribute.getNameParts());
+            }
+        });
     }
 
     // TODO path must be ordered(and legal to contain duplicates like "a.b.a"; list would be better
@@ -277,6 +317,13 @@ public final class AttributeMap {
 
     @SuppressWarnings("unchecked")
     public <T> T getValue(AttributeSensor<T> sensor) {
+        if (slots != null) {
+            Object result = slots.getByName(sensor.getName());
+            if (isNull(result)) result = null;
+            // skip coercion (and its allocation) in the usual case where the value is already of the right type
+            if (result != null && sensor.getType().isInstance(result)) return (T) result;
+            return (T) TypeCoercions.coerce(result, sensor.getType());
+        }
         return (T) TypeCoercions.coerce(getValue(sensor.getNameParts()), sensor.getType());
     }
 
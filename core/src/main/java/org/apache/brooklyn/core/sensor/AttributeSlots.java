@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.sensor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Storage for {@link AttributeMap} which keeps each attribute in a slot, found by sensor name.
+ * <p>
+ * Reads by name ({@link #getByName(String)}) take no locks and allocate nothing;
+ * iteration is over a snapshot of the slots in insertion order, also without locking.
+ * Writes synchronize on this object: updating an existing attribute only replaces the slot's value,
+ * whereas adding or removing an attribute replaces the ordered array of slots.
+ * <p>
+ * Values must not be null (callers store a marker instead, as {@link AttributeMap} does).
+ * The {@link Map} methods keyed by name parts are supported for compatibility, but are slower
+ * than the by-name methods as they join the parts.
+ */
+@Beta
+public class AttributeSlots extends AbstractMap<Collection<String>, Object> {
+
+    private static final Joiner DOT_JOINER = Joiner.on('.');
+    private static final Slot[] NO_SLOTS = new Slot[0];
+
+    private static final class Slot {
+        final String name;
+        final List<String> nameParts;
+        volatile Object value;
+        volatile boolean removed;
+
+        Slot(String name, List<String> nameParts, Object value) {
+            this.name = name;
+            this.nameParts = nameParts;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentMap<String, Slot> slotsByName = new ConcurrentHashMap<String, Slot>();
+    /** replaced (never modified) when slots are added or removed, guarded by this for writes */
+    private volatile Slot[] orderedSlots = NO_SLOTS;
+
+    /** @return the value stored for the sensor with this name, or null if none */
+    public Object getByName(String name) {
+        Slot slot = slotsByName.get(name);
+        return slot == null ? null : slot.value;
+    }
+
+    /** @return the previous value stored for the sensor with this name, or null if none */
+    public Object putByName(String name, Object value) {
+        return putInternal(name, null, value);
+    }
+
+    /** @return the value which was stored for the sensor with this name, or null if none */
+    public synchronized Object removeByName(String name) {
+        Slot slot = slotsByName.remove(name);
+        if (slot == null) return null;
+        slot.removed = true;
+        Slot[] old = orderedSlots;
+        int i = Arrays.asList(old).indexOf(slot);
+        if (i >= 0) {
+            Slot[] result = new Slot[old.length - 1];
+            System.arraycopy(old, 0, result, 0, i);
+            System.arraycopy(old, i + 1, result, i, old.length - i - 1);
+            orderedSlots = result;
+        }
+        return slot.value;
+    }
+
+    /** Passes each sensor name and value, in insertion order, to the consumer. */
+    public void forEachByName(BiConsumer<String, Object> consumer) {
+        for (Slot slot : orderedSlots) {
+            if (slot.removed) continue;
+            consumer.accept(slot.name, slot.value);
+        }
+    }
+
+    private synchronized Object putInternal(String name, List<String> nameParts, Object value) {
+        Preconditions.checkNotNull(value, "value");
+        Slot slot = slotsByName.get(name);
+        if (slot != null) {
+            Object old = slot.value;
+            slot.value = value;
+            return old;
+        }
+        if (nameParts == null) nameParts = ImmutableList.copyOf(name.split("\\.", -1));
+        slot = new Slot(name, nameParts, value);
+        slotsByName.put(name, slot);
+        Slot[] old = orderedSlots;
+        Slot[] result = Arrays.copyOf(old, old.length + 1);
+        result[old.length] = slot;
+        orderedSlots = result;
+        return null;
+    }
+
+    private static String toName(Object nameParts) {
+        if (!(nameParts instanceof Collection)) return null;
+        return DOT_JOINER.join((Collection<?>) nameParts);
+    }
+
+    @Override
+    public Object get(Object nameParts) {
+        String name = toName(nameParts);
+        return name == null ? null : getByName(name);
+    }
+
+    @Override
+    public boolean containsKey(Object nameParts) {
+        String name = toName(nameParts);
+        return name != null && slotsByName.containsKey(name);
+    }
+
+    @Override
+    public Object put(Collection<String> nameParts, Object value) {
+        return putInternal(toName(nameParts), ImmutableList.copyOf(nameParts), value);
+    }
+
+    @Override
+    public Object remove(Object nameParts) {
+        String name = toName(nameParts);
+        return name == null ? null : removeByName(name);
+    }
+
+    @Override
+    public int size() {
+        return slotsByName.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (Slot slot : orderedSlots) slot.removed = true;
+        slotsByName.clear();
+        orderedSlots = NO_SLOTS;
+    }
+
+    /** A view in insertion order; its iterator reflects the slots present when it was created (and does not support removal). */
+    @Override
+    public Set<Map.Entry<Collection<String>, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<Collection<String>, Object>>() {
+            @Override
+            public int size() {
+                return AttributeSlots.this.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<Collection<String>, Object>> iterator() {
+                final Slot[] slots = orderedSlots;
+                return new Iterator<Map.Entry<Collection<String>, Object>>() {
+                    int next = advance(0);
+
+                    private int advance(int i) {
+                        while (i < slots.length && slots[i].removed) i++;
+                        return i;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < slots.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Collection<String>, Object> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Slot slot = slots[next];
+                        next = advance(next + 1);
+                        return new AbstractMap.SimpleImmutableEntry<Collection<String>, Object>(slot.nameParts, slot.value);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.sensor;
+
+import java.util.List;
+
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A {@link SensorEventListener} which can accept several events in one callback.
+ * <p>
+ * When subscribed with the <code>batchEvents</code> or <code>coalesceEvents</code> flag
+ * (see {@link org.apache.brooklyn.core.mgmt.internal.LocalSubscriptionManager}),
+ * all events which accumulated while the subscriber was busy are passed to {@link #onEvents(List)},
+ * rather than to {@link #onEvent(SensorEvent)} one at a time.
+ */
+@Beta
+public interface BatchSensorEventListener<T> extends SensorEventListener<T> {
+
+    /** The events, in the order published (for coalesced subscriptions, only the latest per producer and sensor). */
+    void onEvents(List<SensorEvent<T>> events);
+
+}
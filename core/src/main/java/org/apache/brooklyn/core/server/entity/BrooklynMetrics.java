@@ -44,6 +44,12 @@ public interface BrooklynMetrics extends Entity {
     public static final AttributeSensor<Long> NUM_ACTIVE_TASKS = new BasicAttributeSensor<Long>(
             Long.class, "brooklyn.metrics.numActiveTasks", "Number of currently active tasks being executed");
 
+    public static final AttributeSensor<Long> NUM_QUEUED_TASKS = new BasicAttributeSensor<Long>(
+            Long.class, "brooklyn.metrics.numQueuedTasks", "Number of tasks waiting for a thread (only when the execution manager uses a bounded pool)");
+
+    public static final AttributeSensor<Long> MEAN_TASK_QUEUE_WAIT_TIME = new BasicAttributeSensor<Long>(
+            Long.class, "brooklyn.metrics.meanTaskQueueWaitTime", "Mean time (in milliseconds) tasks have waited for a thread (only when the execution manager uses a bounded pool)");
+
     public static final AttributeSensor<Long> TOTAL_EVENTS_PUBLISHED = new BasicAttributeSensor<Long>(
             Long.class, "brooklyn.metrics.totalEventsPublished", "Total number of events published");
     
@@ -77,6 +77,8 @@ public class BrooklynMetricsImpl extends AbstractEntity implements BrooklynMetri
             sensors().set(TOTAL_TASKS_SUBMITTED, execManager.getTotalTasksSubmitted());
             sensors().set(NUM_INCOMPLETE_TASKS, execManager.getNumIncompleteTasks());
             sensors().set(NUM_ACTIVE_TASKS, execManager.getNumActiveTasks());
+            sensors().set(NUM_QUEUED_TASKS, execManager.getNumQueuedTasks());
+            sensors().set(MEAN_TASK_QUEUE_WAIT_TIME, execManager.getMeanTaskQueueWaitTime().toMilliseconds());
         }
         if (subsManager != null) {
             sensors().set(TOTAL_EVENTS_PUBLISHED, subsManager.getTotalEventsPublished());
@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.typereg;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
@@ -85,6 +86,8 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
 
     private CatalogUpgrades catalogUpgrades;
 
+    private final AtomicLong changeVersion = new AtomicLong();
+
     public BasicBrooklynTypeRegistry(ManagementContext mgmt) {
         this.mgmt = mgmt;
     }
@@ -508,6 +511,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                     log.trace(msg.get());
                 }
             });
+        changeVersion.incrementAndGet();
     }
 
     private boolean isWrapperBundle(String bundleNameVersion) { 
@@ -622,6 +626,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                 }
                 return changed;
             });
+        if (changedLocally) changeVersion.incrementAndGet();
         legacyDelete(type, changedLocally);
     }
     
@@ -660,6 +665,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                 }
                 return true;
             });
+        if (changedLocally) changeVersion.incrementAndGet();
         legacyDelete(type.getVersionedName(), changedLocally);
     }
     
@@ -675,9 +681,24 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             localRegisteredTypesAndContainingBundles.clear();
             catalogUpgrades = null;
         });
+        changeVersion.incrementAndGet();
     }
 
     
+    /**
+     * A number which increases whenever types are added to or removed from this registry or the legacy catalog,
+     * so callers can tell cheaply whether what they have read from it may be out of date. It is not persisted.
+     */
+    @Beta
+    public long getChangeVersion() {
+        long result = changeVersion.get();
+        if (mgmt.getCatalog() instanceof BasicBrooklynCatalog) {
+            // both only increase, so the sum does also
+            result += ((BasicBrooklynCatalog) mgmt.getCatalog()).getChangeVersion();
+        }
+        return result;
+    }
+
     @Beta
     public void storeCatalogUpgradesInstructions(CatalogUpgrades catalogUpgrades) {
         this.catalogUpgrades = catalogUpgrades;
@@ -38,6 +38,7 @@ import org.apache.brooklyn.core.resolve.jackson.BeanWithTypeUtils;
 import org.apache.brooklyn.core.resolve.jackson.JsonPassThroughDeserializer;
 import org.apache.brooklyn.core.typereg.RegisteredTypes;
 import org.apache.brooklyn.core.workflow.*;
+import org.apache.brooklyn.core.workflow.store.WorkflowStatePersistenceViaSensors;
 import org.apache.brooklyn.core.workflow.utils.WorkflowConcurrencyParser;
 import org.apache.brooklyn.core.workflow.utils.WorkflowRetentionParser;
 import org.apache.brooklyn.util.collections.MutableList;
@@ -54,6 +55,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -63,6 +68,9 @@ public class CustomWorkflowStep extends WorkflowStepDefinition implements Workfl
 
     private static final Logger LOG = LoggerFactory.getLogger(CustomWorkflowStep.class);
 
+    /** number of sub-workflows created at a time when streaming, so the step state is persisted once for each batch rather than for each launch */
+    private static final int STREAMING_BATCH_SIZE = 50;
+
     private static final String WORKFLOW_SETTING_SHORTHAND = "[ \"replayable\" ${replayable...} ] [ \"retention\" ${retention...} ] ";
 
     public CustomWorkflowStep() {}
@@ -100,6 +108,10 @@ public class CustomWorkflowStep extends WorkflowStepDefinition implements Workfl
     // usually a string; see utils/WorkflowConcurrency
     Object concurrency;
 
+    /** whether, for a list target, to create each sub-workflow only when it is ready to run, rather than all up front;
+     * progress is then tracked in the step state, so that large lists can be processed and resumed without a workflow per element */
+    Object streaming;
+
     Map<String,Object> parameters;
 
     // should be treated as raw json
@@ -143,17 +155,34 @@ public class CustomWorkflowStep extends WorkflowStepDefinition implements Workfl
 
     @Override @JsonIgnore
     public List<WorkflowExecutionContext> getSubWorkflowsForReplay(WorkflowStepInstanceExecutionContext context, boolean forced, boolean peekingOnly, boolean allowInternallyEvenIfDisabled) {
+        StepState state = (StepState) super.getStepState(context);
+        if (state!=null && state.streamingTargets!=null) {
+            // only those in progress need replaying; those completed are recorded in the step state, and the others have not been created
+            return getStreamingSubWorkflowsInProgress(context, state);
+        }
         return WorkflowReplayUtils.getSubWorkflowsForReplay(context, forced, peekingOnly, allowInternallyEvenIfDisabled);
     }
 
     @Override
     public Object doTaskBodyWithSubWorkflowsForReplay(WorkflowStepInstanceExecutionContext context, @Nonnull List<WorkflowExecutionContext> subworkflows, ReplayContinuationInstructions instructions) {
-        boolean wasList = Boolean.TRUE.equals(getStepState(context).wasList);
+        StepState state = getStepState(context);
+        if (state.streamingTargets!=null) {
+            return runSubworkflowsStreaming(context, state, subworkflows, instructions);
+        }
+        boolean wasList = Boolean.TRUE.equals(state.wasList);
         return runSubworkflowsWithConcurrency(context, subworkflows, wasList, true, instructions);
     }
 
     static class StepState {
         Boolean wasList;
+
+        // set if streaming: the targets; the indices of those completed, as an encoded bit set;
+        // the IDs of the sub-workflows completed (absent if skipped), by index, by entity ID, to get their outputs from,
+        // as outputs can be large so are not stored here; and the index of sub-workflows created and not completed, by workflow ID
+        List<Object> streamingTargets;
+        String streamingCompleted;
+        Map<String,Map<Integer,String>> streamingCompletedWorkflows;
+        Map<String,Integer> streamingInProgress;
     }
     void setStepState(WorkflowStepInstanceExecutionContext context, StepState state, boolean persist) {
         context.setStepState(state, persist);
@@ -201,6 +230,18 @@ public class CustomWorkflowStep extends WorkflowStepDefinition implements Workfl
             targetR = MutableList.of(targetR);
         }
 
+        if (wasList && streaming!=null && Boolean.TRUE.equals(context.resolve(WorkflowExpressionResolution.WorkflowExpressionStage.STEP_INPUT, streaming, Boolean.class))) {
+            StepState state = getStepState(context);
+            state.wasList = true;
+            state.streamingTargets = MutableList.copyOf((Iterable<?>) targetR);
+            state.streamingCompleted = null;
+            state.streamingCompletedWorkflows = MutableMap.of();
+            state.streamingInProgress = MutableMap.of();
+            setStepState(context, state, false); // persist in next line
+            WorkflowReplayUtils.setNewSubWorkflows(context, MutableList.of(), Tasks.current().getId());
+            return runSubworkflowsStreaming(context, state, MutableList.of(), null);
+        }
+
         ((Iterable<?>) targetR).forEach(t -> {
             WorkflowExecutionContext nw = newWorkflow(context, t);
             Maybe<Task<Object>> mt = nw.getTask(true);
@@ -229,21 +270,7 @@ public class CustomWorkflowStep extends WorkflowStepDefinition implements Workfl
         LOG.debug("Running sub-workflows "+nestedWorkflowContexts);
         if (nestedWorkflowContexts.isEmpty()) return result;
 
-        long ci = 1;
-        Object c = concurrency;
-        if (c != null && wasList) {
-            c = context.resolve(WorkflowExpressionResolution.WorkflowExpressionStage.STEP_RUNNING, c, Object.class);
-            if (c instanceof Number) {
-                // okay
-            } else if (c instanceof String) {
-                c = WorkflowConcurrencyParser.parse((String) c).apply((double) nestedWorkflowContexts.size());
-            } else {
-                throw new IllegalArgumentException("Unsupported concurrency object: '" + c + "'");
-            }
-            ci = (long) Math.floor(0.000001 + ((Number) c).doubleValue());
-            if (ci <= 0)
-                throw new IllegalArgumentException("Invalid concurrency value: " + ci + " (concurrency " + c + ", target size " + nestedWorkflowContexts.size() + ")");
-        }
+        long ci = getConcurrency(context, wasList, nestedWorkflowContexts.size());
 
         AtomicInteger availableThreads = ci == 1 ? null : new AtomicInteger((int) ci);
         List<Task<?>> submitted = MutableList.of();
@@ -326,6 +353,206 @@ public class CustomWorkflowStep extends WorkflowStepDefinition implements Workfl
         return !wasList ? Iterables.getOnlyElement(result) : result;
     }
 
+    private long getConcurrency(WorkflowStepInstanceExecutionContext context, boolean wasList, int targetSize) {
+        long ci = 1;
+        Object c = concurrency;
+        if (c != null && wasList) {
+            c = context.resolve(WorkflowExpressionResolution.WorkflowExpressionStage.STEP_RUNNING, c, Object.class);
+            if (c instanceof Number) {
+                // okay
+            } else if (c instanceof String) {
+                c = WorkflowConcurrencyParser.parse((String) c).apply((double) targetSize);
+            } else {
+                throw new IllegalArgumentException("Unsupported concurrency object: '" + c + "'");
+            }
+            ci = (long) Math.floor(0.000001 + ((Number) c).doubleValue());
+            if (ci <= 0)
+                throw new IllegalArgumentException("Invalid concurrency value: " + ci + " (concurrency " + c + ", target size " + targetSize + ")");
+        }
+        return ci;
+    }
+
+    /**
+     * Runs a sub-workflow for each of the targets in the step state which has not completed, creating them in batches
+     * as there is capacity to run them (per the concurrency), and recording in the step state as each completes.
+     * The step state is persisted when each batch is created, so that the parent knows about them before they are persisted,
+     * rather than for each launch; outputs are kept in memory, and got from the sub-workflows when resuming.
+     * Any sub-workflows which were in progress are resumed first.
+     */
+    private Object runSubworkflowsStreaming(WorkflowStepInstanceExecutionContext context, StepState state, List<WorkflowExecutionContext> subworkflowsInProgress, WorkflowStepDefinition.ReplayContinuationInstructions instructionsIfReplaying) {
+        List<Object> targets = state.streamingTargets;
+        BitSet completed = decodeIndices(state.streamingCompleted);
+        LOG.debug("Running sub-workflows for "+(targets.size() - completed.cardinality())+" of "+targets.size()+" targets in "+context.getWorkflowStepReference()
+                +(subworkflowsInProgress.isEmpty() ? "" : ", resuming "+subworkflowsInProgress));
+
+        long ci = getConcurrency(context, true, targets.size());
+        // indices completed or in progress
+        BitSet claimed = (BitSet) completed.clone();
+        // created, in the step state, and not yet running
+        Deque<Pair<Integer,Pair<WorkflowExecutionContext,Task<?>>>> pending = new ArrayDeque<>();
+        Map<Integer,Pair<WorkflowExecutionContext,Task<?>>> running = MutableMap.of();
+        Map<Integer,Object> outputs = MutableMap.of();
+        List<Throwable> errors = MutableList.of();
+        Object notifier = new Object();
+        Runnable onTaskEnd = () -> {
+            synchronized (notifier) {
+                notifier.notifyAll();
+            }
+        };
+
+        for (WorkflowExecutionContext w : subworkflowsInProgress) {
+            Integer index = state.streamingInProgress.get(w.getWorkflowId());
+            if (index == null) continue;
+            claimed.set(index);
+            try {
+                Pair<Boolean, Object> check = WorkflowReplayUtils.checkReplayResumingInSubWorkflowAlsoReturningTaskOrResult("nested workflow " + (index + 1), context, w, instructionsIfReplaying,
+                        (w2, e) -> {
+                            throw new IllegalStateException("Sub workflow " + w2 + " is not replayable", e);
+                        }, false);
+                if (check.getLeft()) {
+                    // some may not have started, so resumed within the concurrency
+                    pending.add(Pair.of(index, Pair.of(w, (Task<?>) check.getRight())));
+                } else {
+                    recordStreamingCompleted(context, state, completed, outputs, index, w);
+                }
+            } catch (Exception e) {
+                // left in progress, so a subsequent replay can retry it
+                errors.add(e);
+            }
+        }
+        // any in progress but not found were not persisted so cannot have run; they are created again below
+        state.streamingInProgress.values().removeIf(index -> !claimed.get(index));
+        context.getSubWorkflows().removeIf(tag -> tag.getSupersededByTaskId()==null && !state.streamingInProgress.containsKey(tag.getWorkflowId()));
+
+        int next = claimed.nextClearBit(0);
+        boolean unmanaged = false;
+        while (true) {
+            running.entrySet().removeIf(entry -> {
+                Task<?> task = entry.getValue().getRight();
+                if (!task.isDone()) return false;
+                try {
+                    task.get();
+                    recordStreamingCompleted(context, state, completed, outputs, entry.getKey(), entry.getValue().getLeft());
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+                return true;
+            });
+
+            if (!unmanaged && Entities.isUnmanagingOrNoLongerManaged(context.getEntity())) {
+                // on shutdown don't start any more
+                unmanaged = true;
+                int notStarted = targets.size() - claimed.cardinality() + pending.size();
+                if (notStarted > 0) errors.add(new IllegalStateException("Entity " + context.getEntity() + " no longer managed; sub-workflows not run for " + notStarted + " targets"));
+            }
+
+            if (!unmanaged && running.size() < ci) {
+                if (pending.isEmpty() && next < targets.size()) {
+                    while (pending.size() < STREAMING_BATCH_SIZE && next < targets.size()) {
+                        int index = next;
+                        claimed.set(index);
+                        next = claimed.nextClearBit(index + 1);
+
+                        Object t = targets.get(index);
+                        WorkflowExecutionContext nw = newWorkflow(context, t);
+                        Maybe<Task<Object>> mt = nw.getTask(true);
+                        if (mt.isAbsent()) {
+                            LOG.debug("Step " + context.getWorkflowStepReference() + " skipping nested workflow " + nw.getWorkflowId() + " for target '" + t + "'; condition not met");
+                            completed.set(index);
+                            continue;
+                        }
+                        context.getSubWorkflows().add(BrooklynTaskTags.tagForWorkflow(nw));
+                        state.streamingInProgress.put(nw.getWorkflowId(), index);
+                        pending.add(Pair.of(index, Pair.of(nw, mt.get())));
+                    }
+                    // checkpoint progress, and make sure parent knows about children before they are persisted, as in WorkflowReplayUtils.setNewSubWorkflows
+                    state.streamingCompleted = encodeIndices(completed);
+                    setStepState(context, state, true);
+                    pending.forEach(p -> p.getRight().getLeft().persist());
+                }
+                if (!pending.isEmpty()) {
+                    Pair<Integer,Pair<WorkflowExecutionContext,Task<?>>> p = pending.remove();
+                    WorkflowExecutionContext nw = p.getRight().getLeft();
+                    LOG.debug("Step " + context.getWorkflowStepReference() + " launching nested workflow " + nw.getWorkflowId() + " for target '" + targets.get(p.getLeft()) + "' in task " + p.getRight().getRight().getId());
+                    running.put(p.getLeft(), Pair.of(nw, submitStreaming(context, p.getRight().getRight(), onTaskEnd)));
+                    continue;
+                }
+            }
+
+            if (running.isEmpty()) break;
+
+            int waitingCount = targets.size() - completed.cardinality();
+            try {
+                Tasks.withBlockingDetails("Waiting for " + running.size() + " of " + waitingCount + " remaining instances to complete",
+                        () -> {
+                            synchronized (notifier) {
+                                if (running.values().stream().noneMatch(r -> r.getRight().isDone())) notifier.wait(500);
+                            }
+                            return null;
+                        });
+            } catch (Exception e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+
+        state.streamingCompleted = encodeIndices(completed);
+        setStepState(context, state, false);
+
+        // outputs of those completed before resuming are got from the sub-workflows, which are kept while this workflow is running
+        state.streamingCompletedWorkflows.forEach((entityId, workflowIds) -> {
+            Entity entity = (Entity) context.getManagementContext().lookup(entityId);
+            Map<String, WorkflowExecutionContext> workflows = entity == null ? MutableMap.of() : new WorkflowStatePersistenceViaSensors(context.getManagementContext()).getWorkflows(entity);
+            workflowIds.forEach((index, workflowId) -> {
+                if (outputs.containsKey(index)) return;
+                WorkflowExecutionContext w = workflows.get(workflowId);
+                if (w != null) outputs.put(index, w.getOutput());
+                else errors.add(new IllegalStateException("Output of nested workflow " + workflowId + " for target '" + targets.get(index) + "' is no longer available"));
+            });
+        });
+        List result = MutableList.of();
+        for (int i = 0; i < targets.size(); i++) {
+            if (outputs.containsKey(i)) result.add(outputs.get(i));
+        }
+        context.setOutput(result);
+
+        if (!errors.isEmpty()) {
+            throw Exceptions.propagate("Error running sub-workflows in "+context.getWorkflowStepReference(), errors);
+        }
+        return result;
+    }
+
+    private Task<?> submitStreaming(WorkflowStepInstanceExecutionContext context, Task<?> task, Runnable onTaskEnd) {
+        return ((EntityInternal) context.getEntity()).getExecutionContext().submit(MutableMap.of("newTaskEndCallback", onTaskEnd), task);
+    }
+
+    private void recordStreamingCompleted(WorkflowStepInstanceExecutionContext context, StepState state, BitSet completed, Map<Integer,Object> outputs, int index, WorkflowExecutionContext w) {
+        completed.set(index);
+        outputs.put(index, w.getOutput());
+        state.streamingCompletedWorkflows.computeIfAbsent(w.getEntity().getId(), k -> MutableMap.of()).put(index, w.getWorkflowId());
+        state.streamingInProgress.remove(w.getWorkflowId());
+        // completed sub-workflows are not replayed, so need not be tracked
+        context.getSubWorkflows().removeIf(tag -> w.getWorkflowId().equals(tag.getWorkflowId()));
+    }
+
+    private List<WorkflowExecutionContext> getStreamingSubWorkflowsInProgress(WorkflowStepInstanceExecutionContext context, StepState state) {
+        List<WorkflowExecutionContext> result = MutableList.of();
+        context.getSubWorkflows().stream().filter(tag -> tag.getSupersededByTaskId()==null && state.streamingInProgress.containsKey(tag.getWorkflowId())).forEach(tag -> {
+            Entity targetEntity = (Entity) context.getManagementContext().lookup(tag.getEntityId());
+            WorkflowExecutionContext w = targetEntity == null ? null : new WorkflowStatePersistenceViaSensors(context.getManagementContext()).getWorkflows(targetEntity).get(tag.getWorkflowId());
+            // if not found it was not persisted, so it will be created again
+            if (w != null) result.add(w);
+        });
+        return result;
+    }
+
+    static String encodeIndices(BitSet indices) {
+        return Base64.getEncoder().encodeToString(indices.toByteArray());
+    }
+
+    static BitSet decodeIndices(String encoded) {
+        return encoded == null ? new BitSet() : BitSet.valueOf(Base64.getDecoder().decode(encoded));
+    }
+
     protected Object getTargetFromString(WorkflowStepInstanceExecutionContext context, String target) {
         if ("children".equals(target)) return context.getEntity().getChildren();
 
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.workflow.store;
+
+import com.google.common.annotations.Beta;
+import com.google.common.escape.Escaper;
+import com.google.common.xml.XmlEscapers;
+import org.apache.brooklyn.core.mgmt.persist.EntityMementoDeltas;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes the records {@link WorkflowStatePersistenceViaObjectStore} stores for a workflow.
+ * <p>
+ * The object for a workflow starts with a record containing the full serialized {@link org.apache.brooklyn.core.workflow.WorkflowExecutionContext},
+ * followed by any number of delta records appended at checkpoints, each containing just the top-level fields of the workflow
+ * which changed since the previous record and the names of any which were removed.
+ * As with {@link EntityMementoDeltas}, the merge works on the XML elements, so deltas are only written
+ * where {@link #isSafeForDeltas(String)} holds for the workflow.
+ */
+@Beta
+public class WorkflowRecordDeltas {
+
+    private static final String RECORD_ELEMENT = "workflow-record";
+    private static final String RECORD_END = "</" + RECORD_ELEMENT + ">";
+    private static final String DELTA_ELEMENT = "workflow-delta";
+    private static final String CHANGED_ELEMENT = "changed";
+    private static final String REMOVED_ELEMENT = "removed";
+
+    // as written by xstream for a field which shadows a field of the same name in a superclass
+    private static final String DEFINED_IN_ATTRIBUTE = "defined-in";
+
+    private WorkflowRecordDeltas() {}
+
+    /**
+     * Whether the given serialized workflow can have deltas merged into it: i.e. it has no xstream references between elements,
+     * which would break if the element referred to were replaced, nor character escapes which are invalid XML.
+     * Workflow fields hold arbitrary objects from the steps, so unlike {@link EntityMementoDeltas#isSafeForDeltas}
+     * this checks the serialized form rather than the types.
+     */
+    public static boolean isSafeForDeltas(String workflowXml) {
+        return !workflowXml.contains("reference=") && !workflowXml.contains("&#");
+    }
+
+    /** Creates the record which starts the object for a workflow, from its serialized form. */
+    public static String newFullRecord(String workflowXml) {
+        return "<" + RECORD_ELEMENT + ">\n" + workflowXml.trim() + "\n" + RECORD_END + "\n";
+    }
+
+    /**
+     * Creates a record for appending to the object for a workflow, with the given changed field elements
+     * (from {@link #getFields(Element)}) and the keys of the removed fields.
+     */
+    public static String newDeltaRecord(Collection<Element> changed, Collection<String> removedKeys) {
+        Escaper escaper = XmlEscapers.xmlContentEscaper();
+        StringBuilder result = new StringBuilder();
+        result.append("<").append(RECORD_ELEMENT).append(">\n");
+        result.append("<").append(DELTA_ELEMENT).append(">\n");
+        result.append("<").append(REMOVED_ELEMENT).append(">");
+        for (String key : removedKeys) {
+            result.append("<string>").append(escaper.escape(key)).append("</string>");
+        }
+        result.append("</").append(REMOVED_ELEMENT).append(">\n");
+        result.append("<").append(CHANGED_ELEMENT).append(">");
+        for (Element field : changed) {
+            result.append(toXml(field));
+        }
+        result.append("</").append(CHANGED_ELEMENT).append(">\n");
+        result.append("</").append(DELTA_ELEMENT).append(">\n");
+        result.append(RECORD_END).append("\n");
+        return result.toString();
+    }
+
+    /**
+     * Splits the contents of the object for a workflow into records; an incomplete record at the end
+     * (e.g. if the server stopped while appending) is ignored.
+     */
+    public static List<String> splitRecords(String contents) {
+        List<String> result = MutableList.of();
+        int start = 0;
+        while (true) {
+            int end = contents.indexOf(RECORD_END, start);
+            if (end < 0) break;
+            end += RECORD_END.length();
+            result.add(contents.substring(start, end).trim());
+            start = end;
+        }
+        return result;
+    }
+
+    /** Returns the serialized workflow from a full record, as created by {@link #newFullRecord(String)}. */
+    public static String getFullRecordContents(String record) {
+        String start = "<" + RECORD_ELEMENT + ">";
+        if (!record.startsWith(start) || !record.endsWith(RECORD_END)) {
+            throw new IllegalStateException("Invalid workflow record");
+        }
+        String contents = record.substring(start.length(), record.length() - RECORD_END.length()).trim();
+        if (contents.startsWith("<" + DELTA_ELEMENT + ">")) {
+            throw new IllegalStateException("Workflow record is a delta where a full record is expected");
+        }
+        return contents;
+    }
+
+    /** Returns the root element of the serialized workflow, with the indentation between elements removed, for use in diffs and merges. */
+    public static Element parseWorkflow(String workflowXml) {
+        Element result = parse(workflowXml).getDocumentElement();
+        stripIndentation(result);
+        return result;
+    }
+
+    /** Applies the given delta records (from {@link #splitRecords(String)}) in order to the workflow, in place. */
+    public static void applyDeltaRecords(Element workflow, List<String> records) {
+        for (String record : records) {
+            Element delta = findChild(parse(record).getDocumentElement(), DELTA_ELEMENT);
+            if (delta == null) throw new IllegalStateException("Workflow record is not a delta");
+            Map<String, Element> fields = getFields(workflow);
+            for (String key : getNames(findChild(delta, REMOVED_ELEMENT))) {
+                Element old = fields.get(key);
+                if (old != null) workflow.removeChild(old);
+            }
+            Element changed = findChild(delta, CHANGED_ELEMENT);
+            if (changed == null) continue;
+            for (Element field : getFields(changed).values()) {
+                Node replacement = workflow.getOwnerDocument().importNode(field, true);
+                stripIndentation((Element) replacement);
+                Element old = fields.get(getFieldKey(field));
+                if (old != null) {
+                    workflow.replaceChild(replacement, old);
+                } else {
+                    workflow.appendChild(replacement);
+                }
+            }
+        }
+    }
+
+    /** The top-level field elements of the workflow, keyed by field name (qualified by declaring class if xstream did so). */
+    public static Map<String, Element> getFields(Element workflow) {
+        Map<String, Element> result = MutableMap.of();
+        for (Node n = workflow.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) result.put(getFieldKey((Element) n), (Element) n);
+        }
+        return result;
+    }
+
+    /** The fields of the updated workflow which are new or different to those in the previous version. */
+    public static List<Element> getChangedFields(Map<String, Element> previous, Map<String, Element> updated) {
+        List<Element> result = MutableList.of();
+        updated.forEach((key, field) -> {
+            Element old = previous.get(key);
+            if (old == null || !old.isEqualNode(field)) result.add(field);
+        });
+        return result;
+    }
+
+    /** The keys of the fields of the previous workflow which are not in the updated one. */
+    public static Set<String> getRemovedFields(Map<String, Element> previous, Map<String, Element> updated) {
+        Set<String> result = MutableSet.copyOf(previous.keySet());
+        result.removeAll(updated.keySet());
+        return result;
+    }
+
+    public static String toXml(Node node) {
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            StringWriter result = new StringWriter();
+            transformer.transform(new DOMSource(node), new StreamResult(result));
+            return result.toString();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static String getFieldKey(Element field) {
+        if (field.hasAttribute(DEFINED_IN_ATTRIBUTE)) return field.getTagName() + "@" + field.getAttribute(DEFINED_IN_ATTRIBUTE);
+        return field.getTagName();
+    }
+
+    /** Removes whitespace between elements (but not the content of leaf elements), so equal fields compare equal regardless of indentation. */
+    private static void stripIndentation(Element element) {
+        boolean hasChildElements = false;
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) {
+                hasChildElements = true;
+                break;
+            }
+        }
+        if (!hasChildElements) return;
+        Node n = element.getFirstChild();
+        while (n != null) {
+            Node next = n.getNextSibling();
+            if (n.getNodeType() == Node.TEXT_NODE && n.getNodeValue().trim().isEmpty()) {
+                element.removeChild(n);
+            } else if (n instanceof Element) {
+                stripIndentation((Element) n);
+            }
+            n = next;
+        }
+    }
+
+    private static Set<String> getNames(Element element) {
+        Set<String> result = MutableSet.of();
+        if (element == null) return result;
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element) result.add(n.getTextContent());
+        }
+        return result;
+    }
+
+    private static Element findChild(Element parent, String name) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && name.equals(((Element) n).getTagName())) return (Element) n;
+        }
+        return null;
+    }
+
+    private static Document parse(String xml) {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        } catch (Exception e) {
+            throw Exceptions.propagateAnnotated("Unable to parse workflow record", e);
+        }
+    }
+
+}
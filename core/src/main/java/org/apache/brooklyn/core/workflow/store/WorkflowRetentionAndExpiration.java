@@ -184,6 +184,10 @@ public class WorkflowRetentionAndExpiration {
     }
 
 
+    /**
+     * Removes the workflows on the entity which have expired; if workflows are persisted via the object store
+     * (see {@link WorkflowStatePersistenceViaObjectStore}) their objects are deleted, otherwise the workflows sensor is updated.
+     */
     public static void expireOldWorkflows(Entity entity) {
         new WorkflowStatePersistenceViaSensors(((EntityInternal)entity).getManagementContext()).updateMap(entity, true, true, null);
     }
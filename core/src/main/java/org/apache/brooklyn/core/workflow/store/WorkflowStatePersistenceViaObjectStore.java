@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.workflow.store;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.brooklyn.api.catalog.CatalogItem;
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.rebind.RebindManager;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.LookupContext;
+import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.api.objs.EntityAdjunct;
+import org.apache.brooklyn.api.policy.Policy;
+import org.apache.brooklyn.api.sensor.Enricher;
+import org.apache.brooklyn.api.sensor.Feed;
+import org.apache.brooklyn.api.typereg.ManagedBundle;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore.AuxiliaryWrite;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore.AuxiliaryWriter;
+import org.apache.brooklyn.core.mgmt.persist.MementoSerializer;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.RetryingMementoSerializer;
+import org.apache.brooklyn.core.mgmt.persist.XmlMementoSerializer.XmlMementoSerializerBuilder;
+import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
+import org.apache.brooklyn.core.workflow.WorkflowExecutionContext;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Persists each workflow as its own object in the {@link PersistenceObjectStore} used by the persister,
+ * at <code>workflows/ENTITY_WORKFLOW</code>, rather than in the {@link WorkflowStatePersistenceViaSensors#INTERNAL_WORKFLOWS} sensor,
+ * if {@link #WORKFLOW_PERSISTENCE_OBJECT_STORE_ENABLED} is set.
+ * <p>
+ * A checkpoint marks only the workflow being checkpointed as changed, and expired and deleted workflows as removed;
+ * these are written by the persister with its next delta (as an {@link AuxiliaryWriter}), so with its executor, batching,
+ * encoding and error handling, and the entity is recorded as changed for hot standbys.
+ * Where possible only the fields which changed are appended as a delta record (see {@link WorkflowRecordDeltas}).
+ * Workflows are loaded for an entity the first time they are needed for it (e.g. when the entity is rebinding),
+ * and thereafter kept in memory, as the sensor would be; for read-only entities they are loaded again after each rebind.
+ * Workflows in the sensor from before this was enabled are read, and moved to their own objects when the entity's workflows are next persisted.
+ * <p>
+ * Use {@link WorkflowStatePersistenceViaSensors}, which delegates to this when enabled.
+ */
+@Beta
+public class WorkflowStatePersistenceViaObjectStore implements AuxiliaryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkflowStatePersistenceViaObjectStore.class);
+
+    public static final ConfigKey<Boolean> WORKFLOW_PERSISTENCE_OBJECT_STORE_ENABLED = ConfigKeys.newBooleanConfigKey("workflow.persistence.objectStore.enabled",
+            "Whether to persist each workflow as its own object in the persistence store, appending the changes at each checkpoint and loading it when first needed, "
+            + "rather than in a sensor on its entity which is persisted in full with all the entity's workflows at every checkpoint; "
+            + "note that these objects are not included when the state is copied (e.g. by copy-state, or for promotion and demotion backups), "
+            + "as only mementos are copied, so such copies do not include the workflows", false);
+
+    public static final ConfigKey<Integer> WORKFLOW_PERSISTENCE_OBJECT_STORE_MAX_DELTA_RECORDS = ConfigKeys.newIntegerConfigKey("workflow.persistence.objectStore.maxDeltaRecords",
+            "Maximum number of delta records to append for a workflow, after which the full workflow is written", 50);
+
+    public static final String WORKFLOWS_SUB_PATH = "workflows";
+
+    public static final ConfigKey<WorkflowStatePersistenceViaObjectStore> OBJECT_STORE_WORKFLOW_PERSISTER = ConfigKeys.newConfigKey(WorkflowStatePersistenceViaObjectStore.class, "internals.brooklyn.workflow.object_store_persister");
+
+    /** Returns the shared instance, or null if not enabled or if the persister does not use an object store. */
+    @Nullable
+    public static WorkflowStatePersistenceViaObjectStore getIfEnabled(ManagementContext mgmt) {
+        if (!Boolean.TRUE.equals(mgmt.getConfig().getConfig(WORKFLOW_PERSISTENCE_OBJECT_STORE_ENABLED))) return null;
+        BrooklynMementoPersisterToObjectStore persister = getPersister(mgmt);
+        if (persister==null) return null;
+
+        WorkflowStatePersistenceViaObjectStore sharedInstance = mgmt.getScratchpad().get(OBJECT_STORE_WORKFLOW_PERSISTER);
+        if (sharedInstance==null || sharedInstance.persister!=persister) {
+            synchronized (OBJECT_STORE_WORKFLOW_PERSISTER) {
+                sharedInstance = mgmt.getScratchpad().get(OBJECT_STORE_WORKFLOW_PERSISTER);
+                // replaced if the persister is changed
+                if (sharedInstance==null || sharedInstance.persister!=persister) {
+                    sharedInstance = new WorkflowStatePersistenceViaObjectStore(mgmt, persister);
+                    persister.addAuxiliaryWriter(sharedInstance);
+                    mgmt.getScratchpad().put(OBJECT_STORE_WORKFLOW_PERSISTER, sharedInstance);
+                }
+            }
+        }
+        return sharedInstance;
+    }
+
+    @Nullable
+    private static BrooklynMementoPersisterToObjectStore getPersister(ManagementContext mgmt) {
+        RebindManager rebindManager = mgmt.getRebindManager();
+        BrooklynMementoPersister persister = rebindManager==null ? null : rebindManager.getPersister();
+        if (persister instanceof BrooklynMementoPersisterToObjectStore) return (BrooklynMementoPersisterToObjectStore)persister;
+        return null;
+    }
+
+    private static class EntityWorkflows {
+        Map<String,WorkflowExecutionContext> workflows = MutableMap.of();
+        final Map<String,RecordState> records = MutableMap.of();
+        /** whether there are workflows from the sensor which have not yet been written as records */
+        boolean fromSensor = false;
+    }
+
+    private static class RecordState {
+        /** fields as last written, if a delta can be appended */
+        @Nullable Map<String,Element> fields;
+        int deltaCount;
+        RecordState(@Nullable Map<String,Element> fields, int deltaCount) {
+            this.fields = fields;
+            this.deltaCount = deltaCount;
+        }
+    }
+
+    private final ManagementContext mgmt;
+    private final BrooklynMementoPersisterToObjectStore persister;
+    private final PersistenceObjectStore objectStore;
+    private final MementoSerializer<Object> serializer;
+    private final int maxDeltaRecords;
+
+    /** workflow ids with records, by entity id; null until the store is first listed */
+    private Map<String,Set<String>> recordIdsByEntity = null;
+    /** the read-only rebind count when the store was last listed for read-only entities, so that it is listed once per rebind rather than once per entity */
+    private Integer recordIdsListedAtReadOnlyRebind = null;
+    private final Map<String,EntityWorkflows> loaded = new ConcurrentHashMap<>();
+    /** for read-only entities, keyed by instance (weakly, by identity), as those are replaced when the master's changes are rebound */
+    private final Cache<Entity,EntityWorkflows> loadedReadOnly = CacheBuilder.newBuilder().weakKeys().build();
+    /** ids of workflows whose records need writing or deleting by the persister, by entity id; guarded by itself, and taken after any {@link EntityWorkflows} lock */
+    private final Map<String,Set<String>> pending = MutableMap.of();
+
+    // created and managed by mgmt context scratchpad
+    protected WorkflowStatePersistenceViaObjectStore(ManagementContext mgmt, BrooklynMementoPersisterToObjectStore persister) {
+        this.mgmt = mgmt;
+        this.persister = persister;
+        this.objectStore = persister.getObjectStore();
+        MementoSerializer<Object> rawSerializer = XmlMementoSerializerBuilder.from(mgmt)
+                .withBrooklynDeserializingClassRenames()
+                .withClassLoader(mgmt.getCatalogClassLoader()).build();
+        this.serializer = new RetryingMementoSerializer<Object>(rawSerializer,
+                mgmt.getConfig().getConfig(BrooklynMementoPersisterToObjectStore.PERSISTER_MAX_SERIALIZATION_ATTEMPTS));
+        this.maxDeltaRecords = mgmt.getConfig().getConfig(WORKFLOW_PERSISTENCE_OBJECT_STORE_MAX_DELTA_RECORDS);
+    }
+
+    public Map<String,WorkflowExecutionContext> getWorkflows(Entity entity) {
+        EntityWorkflows ew = getLoaded(entity);
+        synchronized (ew) {
+            return MutableMap.copyOf(ew.workflows);
+        }
+    }
+
+    /**
+     * As {@link WorkflowStatePersistenceViaSensors#updateMap(Entity, boolean, boolean, Consumer)},
+     * marking the given workflow (if it is still retained) to be written, and any workflows removed to have their objects deleted.
+     */
+    int updateMap(Entity entity, boolean doExpiry, Consumer<Map<String,WorkflowExecutionContext>> action, @Nullable WorkflowExecutionContext changed) {
+        EntityWorkflows ew = getLoaded(entity);
+        synchronized (ew) {
+            Map<String,WorkflowExecutionContext> before = MutableMap.copyOf(ew.workflows);
+            if (action!=null) action.accept(ew.workflows);
+            if (doExpiry) ew.workflows = WorkflowRetentionAndExpiration.recomputeExpiration(ew.workflows, null);
+
+            if (isWriting()) {
+                if (ew.fromSensor) {
+                    // written with the same delta as the entity without the sensor
+                    ew.workflows.keySet().forEach(id -> markPending(entity.getId(), id));
+                    ((EntityInternal)entity).sensors().remove(WorkflowStatePersistenceViaSensors.INTERNAL_WORKFLOWS);
+                    ew.fromSensor = false;
+                } else if (changed!=null && ew.workflows.get(changed.getWorkflowId())==changed) {
+                    markPending(entity.getId(), changed.getWorkflowId());
+                }
+                before.keySet().stream().filter(id -> !ew.workflows.containsKey(id)).forEach(id -> markPending(entity.getId(), id));
+            }
+            return ew.workflows.size() - before.size();
+        }
+    }
+
+    void updateWithoutPersist(Entity entity, List<WorkflowExecutionContext> workflows) {
+        EntityWorkflows ew = getLoaded(entity);
+        synchronized (ew) {
+            workflows.forEach(w -> ew.workflows.put(w.getWorkflowId(), w));
+        }
+    }
+
+    /** Marks the objects for workflows of entities which are no longer managed to be deleted, returning the number marked. */
+    int deleteRecordsOfAbsentEntities() {
+        if (!mgmt.isStartupComplete() || !isWriting()) return 0;
+        Map<String,Set<String>> recordIds;
+        synchronized (this) {
+            recordIds = MutableMap.copyOf(getRecordIdsByEntity(false));
+        }
+        int count = 0;
+        for (Map.Entry<String,Set<String>> entry : recordIds.entrySet()) {
+            if (mgmt.getEntityManager().getEntity(entry.getKey())!=null) continue;
+            loaded.remove(entry.getKey());
+            for (String workflowId : entry.getValue()) {
+                markPending(entry.getKey(), workflowId);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void markPending(String entityId, String workflowId) {
+        synchronized (pending) {
+            pending.computeIfAbsent(entityId, id -> MutableSet.of()).add(workflowId);
+        }
+    }
+
+    @Override
+    public boolean hasPendingWrites() {
+        synchronized (pending) {
+            return !pending.isEmpty();
+        }
+    }
+
+    /**
+     * Returns a write for each workflow marked since the last call: its record if it is still retained
+     * (or the changes to it, appended), otherwise a delete of any record.
+     */
+    @Override
+    public List<AuxiliaryWrite> takePendingWrites(boolean appendSupported) {
+        Map<String,Set<String>> toWrite;
+        synchronized (pending) {
+            toWrite = MutableMap.copyOf(pending);
+            pending.clear();
+        }
+        List<AuxiliaryWrite> result = MutableList.of();
+        for (Map.Entry<String,Set<String>> entry : toWrite.entrySet()) {
+            String entityId = entry.getKey();
+            // absent if the entity is no longer managed
+            EntityWorkflows ew = loaded.get(entityId);
+            for (String workflowId : entry.getValue()) {
+                try {
+                    AuxiliaryWrite write;
+                    if (ew==null) {
+                        write = deleteRecord(entityId, null, workflowId);
+                    } else {
+                        synchronized (ew) {
+                            WorkflowExecutionContext w = ew.workflows.get(workflowId);
+                            write = w!=null ? writeRecord(entityId, ew, w, appendSupported) : deleteRecord(entityId, ew, workflowId);
+                        }
+                    }
+                    if (write!=null) result.add(write);
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.warn("Unable to persist workflow "+workflowId+" for entity "+entityId+" (continuing): "+e, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isWriting() {
+        RebindManager rebindManager = mgmt.getRebindManager();
+        if (rebindManager instanceof RebindManagerImpl) return ((RebindManagerImpl)rebindManager).isPersistenceRunning();
+        return !rebindManager.isReadOnly();
+    }
+
+    private EntityWorkflows getLoaded(Entity entity) {
+        if (((EntityInternal)entity).getManagementSupport().isReadOnly()) {
+            // the store may be updated by the master, which records the entity as changed so it is rebound as a new instance
+            return loadedReadOnly.asMap().computeIfAbsent(Entities.deproxy(entity), e -> load(entity, true));
+        }
+        return loaded.computeIfAbsent(entity.getId(), id -> load(entity, false));
+    }
+
+    /** @param readOnly whether the entity is read-only, in which case the store is listed again if there has been a rebind since it was last listed */
+    private EntityWorkflows load(Entity entity, boolean readOnly) {
+        EntityWorkflows result = new EntityWorkflows();
+        Map<String,WorkflowExecutionContext> fromSensor = entity.sensors().get(WorkflowStatePersistenceViaSensors.INTERNAL_WORKFLOWS);
+        if (fromSensor!=null && !fromSensor.isEmpty()) {
+            result.workflows.putAll(fromSensor);
+            result.fromSensor = true;
+        }
+        Set<String> workflowIds;
+        synchronized (this) {
+            workflowIds = MutableSet.copyOf(getRecordIdsByEntity(readOnly && isReboundSinceListed()).get(entity.getId()));
+        }
+        for (String workflowId : workflowIds) {
+            try {
+                loadRecord(entity, workflowId, result);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                log.warn("Unable to load persisted workflow "+workflowId+" for "+entity+" (ignoring): "+e, e);
+            }
+        }
+        if (!workflowIds.isEmpty()) log.debug("Loaded "+result.workflows.size()+" persisted workflows for "+entity);
+        return result;
+    }
+
+    private void loadRecord(Entity entity, String workflowId, EntityWorkflows into) {
+        String contents = persister.readAuxiliary(getPath(entity.getId(), workflowId));
+        List<String> records = contents==null ? null : WorkflowRecordDeltas.splitRecords(contents);
+        if (records==null || records.isEmpty()) return;
+
+        String xml = WorkflowRecordDeltas.getFullRecordContents(records.get(0));
+        Map<String,Element> fields = null;
+        if (records.size() > 1) {
+            Element workflow = WorkflowRecordDeltas.parseWorkflow(xml);
+            WorkflowRecordDeltas.applyDeltaRecords(workflow, records.subList(1, records.size()));
+            xml = WorkflowRecordDeltas.toXml(workflow);
+            fields = WorkflowRecordDeltas.getFields(workflow);
+        }
+
+        Object result;
+        synchronized (serializer) {
+            serializer.setLookupContext(new WorkflowLookupContext(mgmt, entity));
+            try {
+                result = serializer.fromString(xml);
+            } finally {
+                serializer.unsetLookupContext();
+            }
+        }
+        if (!(result instanceof WorkflowExecutionContext)) {
+            throw new IllegalStateException("Persisted workflow "+workflowId+" for "+entity+" is not a workflow: "+result);
+        }
+        into.workflows.put(workflowId, (WorkflowExecutionContext) result);
+        into.records.put(workflowId, new RecordState(fields, records.size()-1));
+    }
+
+    /** Returns the write for the workflow's record, or null if it has not changed; callers must synchronize on the {@link EntityWorkflows}. */
+    @Nullable
+    private AuxiliaryWrite writeRecord(String entityId, EntityWorkflows ew, WorkflowExecutionContext w, boolean appendSupported) {
+        String workflowId = w.getWorkflowId();
+        String path = getPath(entityId, workflowId);
+        // written in full next time
+        Runnable onFailure = () -> {
+            synchronized (ew) {
+                ew.records.remove(workflowId);
+            }
+            markPending(entityId, workflowId);
+        };
+        String xml;
+        synchronized (serializer) {
+            serializer.setLookupContext(new WorkflowLookupContext(mgmt, w.getEntity()));
+            try {
+                xml = serializer.toString(w);
+            } finally {
+                serializer.unsetLookupContext();
+            }
+        }
+        boolean safeForDeltas = appendSupported && WorkflowRecordDeltas.isSafeForDeltas(xml);
+        RecordState state = ew.records.get(workflowId);
+        AuxiliaryWrite result = null;
+
+        if (state!=null && state.fields!=null && state.deltaCount < maxDeltaRecords && safeForDeltas) {
+            Map<String,Element> fields = WorkflowRecordDeltas.getFields(WorkflowRecordDeltas.parseWorkflow(xml));
+            List<Element> changedFields = WorkflowRecordDeltas.getChangedFields(state.fields, fields);
+            Set<String> removedFields = WorkflowRecordDeltas.getRemovedFields(state.fields, fields);
+            if (!changedFields.isEmpty() || !removedFields.isEmpty()) {
+                result = AuxiliaryWrite.append(path, entityId, WorkflowRecordDeltas.newDeltaRecord(changedFields, removedFields), onFailure);
+                state.deltaCount++;
+            }
+            state.fields = fields;
+        } else {
+            result = AuxiliaryWrite.put(path, entityId, WorkflowRecordDeltas.newFullRecord(xml), onFailure);
+            state = new RecordState(safeForDeltas ? WorkflowRecordDeltas.getFields(WorkflowRecordDeltas.parseWorkflow(xml)) : null, 0);
+            ew.records.put(workflowId, state);
+            synchronized (this) {
+                getRecordIdsByEntity(false).computeIfAbsent(entityId, id -> MutableSet.of()).add(workflowId);
+            }
+        }
+
+        if (w.getStatus()!=null && w.getStatus().ended) {
+            // rarely written again once ended (unless replayed), so don't keep the fields in memory; if it is, the full workflow is written
+            state.fields = null;
+        }
+        return result;
+    }
+
+    /** Returns the delete for the workflow's record, or null if there is none; callers must synchronize on the {@link EntityWorkflows}, if there is one. */
+    @Nullable
+    private AuxiliaryWrite deleteRecord(String entityId, @Nullable EntityWorkflows ew, String workflowId) {
+        if (ew!=null) ew.records.remove(workflowId);
+        synchronized (this) {
+            Set<String> ids = getRecordIdsByEntity(false).get(entityId);
+            if (ids==null || !ids.remove(workflowId)) return null;
+            if (ids.isEmpty()) recordIdsByEntity.remove(entityId);
+        }
+        return AuxiliaryWrite.delete(getPath(entityId, workflowId), entityId);
+    }
+
+    /** Whether a read-only rebind has started since the store was last listed for read-only entities, noting it as listed; callers must synchronize on this. */
+    private boolean isReboundSinceListed() {
+        RebindManager rebindManager = mgmt.getRebindManager();
+        if (!(rebindManager instanceof RebindManagerImpl)) return true;
+        int count = ((RebindManagerImpl)rebindManager).getReadOnlyRebindCount();
+        if (recordIdsByEntity!=null && Integer.valueOf(count).equals(recordIdsListedAtReadOnlyRebind)) return false;
+        recordIdsListedAtReadOnlyRebind = count;
+        return true;
+    }
+
+    /** Lists the store (names only) the first time, or if requested; callers must synchronize on this. */
+    private Map<String,Set<String>> getRecordIdsByEntity(boolean refresh) {
+        if (recordIdsByEntity==null || refresh) {
+            objectStore.createSubPath(WORKFLOWS_SUB_PATH);
+            Map<String,Set<String>> result = MutableMap.of();
+            for (String path : objectStore.listContentsWithSubPath(WORKFLOWS_SUB_PATH)) {
+                String name = path.substring(path.lastIndexOf('/')+1);
+                // workflow ids do not contain the separator, but (unusually) entity ids might
+                int separator = name.lastIndexOf('_');
+                if (separator <= 0) continue;
+                result.computeIfAbsent(name.substring(0, separator), id -> MutableSet.of()).add(name.substring(separator+1));
+            }
+            recordIdsByEntity = result;
+        }
+        return recordIdsByEntity;
+    }
+
+    private static String getPath(String entityId, String workflowId) {
+        return WORKFLOWS_SUB_PATH+"/"+entityId+"_"+workflowId;
+    }
+
+    /** Looks up objects in the management context, except for the entity whose workflows are being loaded, which may not yet be managed. */
+    private static class WorkflowLookupContext implements LookupContext {
+        private final ManagementContext mgmt;
+        private final Entity entity;
+        private final Stack<String> description = new Stack<>();
+
+        WorkflowLookupContext(ManagementContext mgmt, Entity entity) {
+            this.mgmt = mgmt;
+            this.entity = Entities.proxy(entity);
+            description.push("workflows of "+entity);
+        }
+
+        @Override public ManagementContext lookupManagementContext() { return mgmt; }
+        @Override public Entity lookupEntity(String id) { return entity.getId().equals(id) ? entity : mgmt.lookup(id, Entity.class); }
+        @Override public Location lookupLocation(String id) { return mgmt.lookup(id, Location.class); }
+        @Override public Policy lookupPolicy(String id) { return mgmt.lookup(id, Policy.class); }
+        @Override public Enricher lookupEnricher(String id) { return mgmt.lookup(id, Enricher.class); }
+        @Override public Feed lookupFeed(String id) { return mgmt.lookup(id, Feed.class); }
+        @Override public EntityAdjunct lookupAnyEntityAdjunct(String id) { return mgmt.lookup(id, EntityAdjunct.class); }
+        @Override public CatalogItem<?, ?> lookupCatalogItem(String id) { return mgmt.lookup(id, CatalogItem.class); }
+        @Override public ManagedBundle lookupBundle(String id) { return mgmt.lookup(id, ManagedBundle.class); }
+
+        @Override
+        public BrooklynObject lookup(@Nullable BrooklynObjectType type, String objectId) {
+            if (type==null) return entity.getId().equals(objectId) ? entity : mgmt.lookup(objectId);
+            if (type==BrooklynObjectType.ENTITY) return lookupEntity(objectId);
+            return mgmt.lookup(objectId, type.getInterfaceType());
+        }
+        @Override
+        public BrooklynObject peek(@Nullable BrooklynObjectType type, String objectId) {
+            return lookup(type, objectId);
+        }
+
+        @Override public String getContextDescription() { return description.peek(); }
+        @Override public String popContextDescription() { return description.pop(); }
+        @Override public void pushContextDescription(String description) { this.description.push(description); }
+    }
+}
@@ -124,6 +124,12 @@ public class WorkflowStatePersistenceViaSensors {
             total.addAndGet(change);
         });
         if (total.get()!=0) log.debug("Global entity workflow persistence update, removed "+(-total.get())+" workflows across all "+entities.size()+" entities");
+
+        WorkflowStatePersistenceViaObjectStore objectStorePersistence = WorkflowStatePersistenceViaObjectStore.getIfEnabled(mgmt);
+        if (objectStorePersistence!=null) {
+            int deleted = objectStorePersistence.deleteRecordsOfAbsentEntities();
+            if (deleted!=0) log.debug("Global entity workflow persistence update, deleted "+deleted+" persisted workflows of entities no longer present");
+        }
     }
 
     public int expireOldWorkflows(Entity entity, @Nullable WorkflowExecutionContext context) {
@@ -131,7 +137,7 @@ public class WorkflowStatePersistenceViaSensors {
         boolean interrupted = Thread.interrupted();
         boolean doExpiry = WorkflowRetentionAndExpiration.isExpirationCheckNeeded(entity);
         try {
-            return updateMap(entity, doExpiry, true, context==null ? null : v -> v.put(context.getWorkflowId(), context));
+            return updateMap(entity, doExpiry, true, context==null ? null : v -> v.put(context.getWorkflowId(), context), context);
 
         } finally {
             if (interrupted) Thread.currentThread().interrupt();
@@ -154,6 +160,17 @@ public class WorkflowStatePersistenceViaSensors {
     }
 
     int updateMap(Entity entity, boolean doExpiry, boolean persist, Consumer<Map<String,WorkflowExecutionContext>> action) {
+        return updateMap(entity, doExpiry, persist, action, null);
+    }
+
+    /** as {@link #updateMap(Entity, boolean, boolean, Consumer)}, where the action puts the given workflow (if not null) */
+    int updateMap(Entity entity, boolean doExpiry, boolean persist, Consumer<Map<String,WorkflowExecutionContext>> action, @Nullable WorkflowExecutionContext changed) {
+        WorkflowStatePersistenceViaObjectStore objectStorePersistence = WorkflowStatePersistenceViaObjectStore.getIfEnabled(mgmt);
+        if (objectStorePersistence!=null) {
+            // writes just the changed workflow, and deletes those removed, immediately
+            return objectStorePersistence.updateMap(entity, doExpiry, action, changed);
+        }
+
         AtomicInteger delta = new AtomicInteger(0);
         entity.sensors().modify(INTERNAL_WORKFLOWS, v -> {
             if (v == null) v = MutableMap.of();
@@ -169,11 +186,21 @@ public class WorkflowStatePersistenceViaSensors {
 
     public Map<String,WorkflowExecutionContext> getWorkflows(Entity entity) {
         MutableMap<String, WorkflowExecutionContext> result = MutableMap.copyOf(WorkflowStateActiveInMemory.get(mgmt).getWorkflows(entity));
-        result.add(entity.sensors().get(INTERNAL_WORKFLOWS));
+        WorkflowStatePersistenceViaObjectStore objectStorePersistence = WorkflowStatePersistenceViaObjectStore.getIfEnabled(mgmt);
+        if (objectStorePersistence!=null) {
+            result.add(objectStorePersistence.getWorkflows(entity));
+        } else {
+            result.add(entity.sensors().get(INTERNAL_WORKFLOWS));
+        }
         return result;
     }
 
     public void updateWithoutPersist(Entity entity, List<WorkflowExecutionContext> workflows) {
+        WorkflowStatePersistenceViaObjectStore objectStorePersistence = WorkflowStatePersistenceViaObjectStore.getIfEnabled(mgmt);
+        if (objectStorePersistence!=null) {
+            if (workflows!=null && !workflows.isEmpty()) objectStorePersistence.updateWithoutPersist(entity, workflows);
+            return;
+        }
         if (workflows!=null && !workflows.isEmpty()) entity.sensors().modify(INTERNAL_WORKFLOWS, v -> {
             if (v == null) {
                 throw new IllegalStateException("Update workflows requested for "+workflows+" when none recorded against "+entity);
@@ -116,11 +116,38 @@ public class DelegatingLogStore implements LogStore {
         return getDelegate().query(params);
     }
 
+    @Override
+    public LogBookQueryPage queryPage(LogBookQueryParams params) throws IOException {
+        return getDelegate().queryPage(params);
+    }
+
+    @Override
+    public void releaseCursor(String cursor) {
+        getDelegate().releaseCursor(cursor);
+    }
+
+    @Override
+    public boolean supportsTail() {
+        return getDelegate().supportsTail();
+    }
+
+    @Override
+    public String getEndCursor() throws IOException {
+        return getDelegate().getEndCursor();
+    }
+
     @Override
     public Set<String> enumerateTaskIds(Set<?> parents, int maxTasks) {
         return getDelegate().enumerateTaskIds(parents, maxTasks);
     }
 
+    @Override
+    public synchronized void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+
     private class PropertiesListener implements ManagementContext.PropertiesReloadListener {
         private static final long serialVersionUID = -8334871795049809213L;
 
@@ -128,7 +155,11 @@ public class DelegatingLogStore implements LogStore {
         public void reloaded() {
             log.debug("{} reloading Logbook log store configuration", DelegatingLogStore.this);
             synchronized (DelegatingLogStore.this) {
+                LogStore previous = delegate;
                 loadDelegate();
+                if (previous != null && previous != delegate) {
+                    previous.close();
+                }
             }
         }
     }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.logbook;
+
+import java.util.List;
+
+/**
+ * A page of logbook query results, and the cursor to continue from.
+ */
+public class LogBookQueryPage {
+
+    /** The log items, in the order they were logged */
+    private List<BrooklynLogEntry> entries;
+
+    /** The cursor to get the next page with, or null if there are no more items */
+    private String cursor;
+
+    public LogBookQueryPage() {
+    }
+
+    public LogBookQueryPage(List<BrooklynLogEntry> entries, String cursor) {
+        this.entries = entries;
+        this.cursor = cursor;
+    }
+
+    public List<BrooklynLogEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<BrooklynLogEntry> entries) {
+        this.entries = entries;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+}
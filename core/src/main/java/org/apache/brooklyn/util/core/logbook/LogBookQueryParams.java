@@ -50,6 +50,25 @@ public class LogBookQueryParams {
 
     private String entityId;
 
+    /** The cursor returned with a previous page of results, to continue from there; see {@link LogStore#queryPage(LogBookQueryParams)} */
+    private String cursor;
+
+    /** A copy of these parameters, e.g. to query for further pages */
+    public LogBookQueryParams copy() {
+        LogBookQueryParams result = new LogBookQueryParams();
+        result.numberOfItems = numberOfItems;
+        result.tail = tail;
+        result.recursive = recursive;
+        result.levels = levels;
+        result.dateTimeFrom = dateTimeFrom;
+        result.dateTimeTo = dateTimeTo;
+        result.searchPhrase = searchPhrase;
+        result.taskId = taskId;
+        result.entityId = entityId;
+        result.cursor = cursor;
+        return result;
+    }
+
     public Integer getNumberOfItems() {
         return numberOfItems;
     }
@@ -121,4 +140,12 @@ public class LogBookQueryParams {
     public void setEntityId(String entityId) {
         this.entityId = entityId;
     }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
 }
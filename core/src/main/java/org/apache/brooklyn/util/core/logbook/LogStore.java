@@ -18,13 +18,19 @@
  */
 package org.apache.brooklyn.util.core.logbook;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -38,9 +44,108 @@ public interface LogStore {
      */
     List<BrooklynLogEntry> query(LogBookQueryParams query) throws IOException;
 
+    /**
+     * Returns a page of up to {@link LogBookQueryParams#getNumberOfItems()} log entries, continuing from
+     * {@link LogBookQueryParams#getCursor()} if set, and a cursor to get the next page.
+     * For 'tail' queries each page is of the entries logged before the previous one, so pages go back through the log.
+     * <p>
+     * The default implementation returns the result of {@link #query(LogBookQueryParams)} as a single page, without a cursor.
+     */
+    default LogBookQueryPage queryPage(LogBookQueryParams query) throws IOException {
+        return new LogBookQueryPage(query(query), null);
+    }
+
+    /**
+     * Indicates that a cursor returned by {@link #queryPage(LogBookQueryParams)} will not be used again,
+     * so anything held for it in the store can be released. The default does nothing.
+     */
+    default void releaseCursor(String cursor) {
+    }
+
+    /**
+     * Whether the log can be followed, using {@link #getEndCursor()}; false by default.
+     */
+    default boolean supportsTail() {
+        return false;
+    }
+
+    /**
+     * Returns a cursor for {@link #queryPage(LogBookQueryParams)} (not 'tail') to get the entries logged after this call,
+     * for following the log; or null if not {@link #supportsTail() supported}, as by default.
+     */
+    default String getEndCursor() throws IOException {
+        return null;
+    }
+
+    /**
+     * Iterates through the log entries matching the query, up to {@link LogBookQueryParams#getNumberOfItems()} if set,
+     * getting them a page at a time with {@link #queryPage(LogBookQueryParams)}, so they need not all be held in memory.
+     * For 'tail' queries the most recent entry is returned first.
+     * The iterator should be {@link QueryIterator#close() closed} if not read to the end, to {@link #releaseCursor(String) release} its cursor.
+     */
+    default QueryIterator queryIterator(LogBookQueryParams query, int pageSize) {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+        Integer limit = query.getNumberOfItems();
+        LogBookQueryParams pageQuery = query.copy();
+        class PageIterator extends AbstractIterator<BrooklynLogEntry> implements QueryIterator {
+            Iterator<BrooklynLogEntry> page = Collections.emptyIterator();
+            boolean morePages = true;
+            int count = 0;
+
+            @Override
+            protected BrooklynLogEntry computeNext() {
+                if (limit != null && count >= limit) {
+                    close();
+                    return endOfData();
+                }
+                while (!page.hasNext()) {
+                    if (!morePages) return endOfData();
+                    int size = limit != null ? Math.min(pageSize, limit - count) : pageSize;
+                    pageQuery.setNumberOfItems(size);
+                    LogBookQueryPage next;
+                    try {
+                        next = queryPage(pageQuery);
+                    } catch (IOException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                    // pages are only short at the end of the log
+                    morePages = next.getCursor() != null && next.getEntries().size() >= size;
+                    if (!morePages && next.getCursor() != null) releaseCursor(next.getCursor());
+                    pageQuery.setCursor(next.getCursor());
+                    page = (Boolean.TRUE.equals(query.isTail()) ? Lists.reverse(next.getEntries()) : next.getEntries()).iterator();
+                }
+                count++;
+                return page.next();
+            }
+
+            @Override
+            public void close() {
+                if (morePages && pageQuery.getCursor() != null) {
+                    morePages = false;
+                    releaseCursor(pageQuery.getCursor());
+                }
+            }
+        }
+        return new PageIterator();
+    }
+
+    /** Iterator returned by {@link #queryIterator(LogBookQueryParams, int)} */
+    interface QueryIterator extends Iterator<BrooklynLogEntry>, AutoCloseable {
+        /** Releases the cursor for the next page, if there is one; further pages are not read. */
+        @Override
+        void close();
+    }
+
     /** Find tasks descended from the given tasks or task IDs, up to {@code maxTasks} */
     Set<String> enumerateTaskIds(Set<?> parents, int maxTasks);
 
+    /**
+     * Releases anything this store holds beyond its queries, such as background tasks; called when it is replaced.
+     * The default does nothing.
+     */
+    default void close() {
+    }
+
     /** Breadth-first recursive enumeration of tasks up to {@code maxTasks} */
     static Set<String> enumerateTaskIdsDefault(ManagementContext mgmt, Set<?> parentTaskOrIds, int maxTasks) {
         Set<String> tasks = MutableSet.of();
@@ -18,8 +18,10 @@
  */
 package org.apache.brooklyn.util.core.logbook;
 
+import com.google.common.annotations.Beta;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.time.Duration;
 
 public class LogbookConfig {
     public final static String BASE_NAME_LOGBOOK = "brooklyn.logbook";
@@ -35,5 +37,20 @@ public class LogbookConfig {
             .description("Maximum number of recursive tasks")
             .defaultValue(100)
             .build();
+    @Beta
+    public final static ConfigKey<Duration> LOGBOOK_TAIL_POLL_PERIOD = ConfigKeys.builder(Duration.class, BASE_NAME_LOGBOOK + ".tail.pollPeriod")
+            .description("How often to check the log store for new entries while anyone is following the log")
+            .defaultValue(Duration.ONE_SECOND)
+            .build();
+    @Beta
+    public final static ConfigKey<Duration> LOGBOOK_TAIL_MAX_TIMEOUT = ConfigKeys.builder(Duration.class, BASE_NAME_LOGBOOK + ".tail.maxTimeout")
+            .description("Longest a client can follow the log in one request; longer timeouts requested are reduced to this")
+            .defaultValue(Duration.ONE_HOUR)
+            .build();
+    @Beta
+    public final static ConfigKey<Integer> LOGBOOK_TAIL_MAX_SUBSCRIBERS = ConfigKeys.builder(Integer.class, BASE_NAME_LOGBOOK + ".tail.maxSubscribers")
+            .description("Maximum number of clients which can follow the log at the same time")
+            .defaultValue(20)
+            .build();
 
 }
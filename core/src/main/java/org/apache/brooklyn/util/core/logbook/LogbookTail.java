@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.logbook;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows the log, publishing new entries to subscribers as they are logged.
+ * <p>
+ * One thread reads what has been logged since it last looked, using {@link LogStore#queryPage(LogBookQueryParams)}
+ * from the {@link LogStore#getEndCursor() end cursor}, and offers each entry to every subscriber whose filter it matches.
+ * Each subscriber has a bounded buffer; if it does not keep up, entries are dropped for it, and counted, rather than held.
+ * The thread runs only while there are subscribers, of which there can be at most {@link LogbookConfig#LOGBOOK_TAIL_MAX_SUBSCRIBERS}.
+ * <p>
+ * Subscribers following a task recursively follow the tasks it starts, as they are logged by the execution manager,
+ * and stop following each once it is logged as ending; at most {@link LogbookConfig#LOGBOOK_MAX_RECURSIVE_TASKS} are followed at once.
+ */
+@Beta
+public class LogbookTail {
+
+    private static final Logger log = LoggerFactory.getLogger(LogbookTail.class);
+
+    public static final ConfigKey<LogbookTail> LOGBOOK_TAIL_INSTANCE = ConfigKeys.newConfigKey(LogbookTail.class, "internals.brooklyn.logbook.tail");
+
+    private static final int PAGE_SIZE = 1000;
+
+    /** The shared instance for the management context, following its configured log store */
+    public static LogbookTail get(ManagementContext mgmt) {
+        LogbookTail sharedInstance = mgmt.getScratchpad().get(LOGBOOK_TAIL_INSTANCE);
+        if (sharedInstance==null) {
+            synchronized (LOGBOOK_TAIL_INSTANCE) {
+                sharedInstance = mgmt.getScratchpad().get(LOGBOOK_TAIL_INSTANCE);
+                if (sharedInstance==null) {
+                    sharedInstance = new LogbookTail(mgmt, new DelegatingLogStore(mgmt), mgmt.getConfig().getConfig(LogbookConfig.LOGBOOK_TAIL_POLL_PERIOD));
+                    mgmt.getScratchpad().put(LOGBOOK_TAIL_INSTANCE, sharedInstance);
+                }
+            }
+        }
+        return sharedInstance;
+    }
+
+    private final ManagementContext mgmt;
+    private final LogStore store;
+    private final Duration pollPeriod;
+    private final int maxTasks;
+    private final int maxSubscribers;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService executor;
+    private String cursor;
+
+    public LogbookTail(LogStore store, Duration pollPeriod) {
+        this(null, store, pollPeriod);
+    }
+
+    /** The management context, if given, is used to find the workflows of tasks followed recursively */
+    public LogbookTail(@Nullable ManagementContext mgmt, LogStore store, Duration pollPeriod) {
+        this.mgmt = mgmt;
+        this.store = Preconditions.checkNotNull(store, "store");
+        this.pollPeriod = Preconditions.checkNotNull(pollPeriod, "pollPeriod");
+        Preconditions.checkArgument(pollPeriod.isPositive(), "pollPeriod must be positive");
+        this.maxTasks = mgmt != null ? mgmt.getConfig().getConfig(LogbookConfig.LOGBOOK_MAX_RECURSIVE_TASKS) : LogbookConfig.LOGBOOK_MAX_RECURSIVE_TASKS.getDefaultValue();
+        this.maxSubscribers = mgmt != null ? mgmt.getConfig().getConfig(LogbookConfig.LOGBOOK_TAIL_MAX_SUBSCRIBERS) : LogbookConfig.LOGBOOK_TAIL_MAX_SUBSCRIBERS.getDefaultValue();
+    }
+
+    /** Whether the log store can be followed; if not, {@link #subscribe(LogBookQueryParams, int)} fails */
+    public boolean isSupported() {
+        return store.supportsTail();
+    }
+
+    /**
+     * Subscribes to entries logged from now on which match the filter: its levels, task id (recursively if requested),
+     * entity id, and search phrase; other parameters are ignored.
+     *
+     * @throws IllegalStateException if the log store does not support following the log, check {@link #isSupported()} first;
+     *         or if there are already the maximum number of subscribers, see {@link #isSubscriberLimitReached()}
+     */
+    public Subscription subscribe(LogBookQueryParams filter, int bufferSize) throws IOException {
+        Preconditions.checkArgument(bufferSize > 0, "bufferSize must be positive");
+        Preconditions.checkState(isSupported(), "Log store %s does not support following the log", store);
+        Preconditions.checkState(!isSubscriberLimitReached(), "Already %s subscribers following the log", maxSubscribers);
+        Set<String> rootIds = MutableSet.of();
+        Set<String> taskIds = MutableSet.of();
+        if (Strings.isNonBlank(filter.getTaskId())) {
+            rootIds.add(filter.getTaskId());
+            if (Boolean.TRUE.equals(filter.isRecursive())) {
+                // as for recursive queries, if the task is a workflow, also include the workflow ID
+                if (mgmt != null) {
+                    BrooklynTaskTags.WorkflowTaskTag wf = BrooklynTaskTags.getWorkflowTaskTag(mgmt.getExecutionManager().getTask(filter.getTaskId()), false);
+                    if (wf != null && wf.getWorkflowId() != null) rootIds.add(wf.getWorkflowId());
+                }
+                taskIds.addAll(store.enumerateTaskIds(rootIds, maxTasks));
+            }
+            taskIds.addAll(rootIds);
+        }
+        Subscription subscription = new Subscription(filter, rootIds, taskIds, bufferSize);
+        synchronized (this) {
+            // checked again, as others may have subscribed while the task ids were enumerated
+            Preconditions.checkState(!isSubscriberLimitReached(), "Already %s subscribers following the log", maxSubscribers);
+            if (executor == null) {
+                cursor = store.getEndCursor();
+                Preconditions.checkState(cursor != null, "Log store %s did not give a cursor to follow the log from", store);
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("brooklyn-logbook-tail-%d")
+                        .setDaemon(true)
+                        .build());
+                executor.scheduleWithFixedDelay(this::publishNewEntries, pollPeriod.toMilliseconds(), pollPeriod.toMilliseconds(), TimeUnit.MILLISECONDS);
+            }
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+        if (subscriptions.isEmpty() && executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /** Whether there are as many subscribers as allowed, so no more can subscribe until one closes */
+    public boolean isSubscriberLimitReached() {
+        return subscriptions.size() >= maxSubscribers;
+    }
+
+    private void publishNewEntries() {
+        try {
+            LogBookQueryParams params = new LogBookQueryParams();
+            params.setTail(false);
+            params.setLevels(ImmutableList.of());
+            params.setNumberOfItems(PAGE_SIZE);
+            LogBookQueryPage page;
+            do {
+                params.setCursor(cursor);
+                page = store.queryPage(params);
+                for (BrooklynLogEntry entry : page.getEntries()) {
+                    for (Subscription subscription : subscriptions) {
+                        subscription.offer(entry);
+                    }
+                }
+                if (page.getCursor() != null) cursor = page.getCursor();
+            } while (page.getEntries().size() >= PAGE_SIZE && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            log.debug("Unable to read new log entries for logbook subscribers (will retry): " + e);
+        }
+    }
+
+    /** The entries logged since subscribing which match a filter, up to the buffer size; close to unsubscribe */
+    public class Subscription implements AutoCloseable {
+        private final LogBookQueryParams filter;
+        /** the task (and workflow) ids requested, which are never removed from {@link #taskIds} */
+        private final Set<String> rootIds;
+        /** the task ids of interest, with children added as they are started and removed as they end if recursive; only used by the publishing thread */
+        private final Set<String> taskIds;
+        private final BlockingQueue<BrooklynLogEntry> buffer;
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private Subscription(LogBookQueryParams filter, Set<String> rootIds, Set<String> taskIds, int bufferSize) {
+            this.filter = filter.copy();
+            this.rootIds = rootIds;
+            this.taskIds = taskIds;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private void offer(BrooklynLogEntry entry) {
+            if (!matches(entry)) return;
+            if (!buffer.offer(entry)) droppedCount.incrementAndGet();
+        }
+
+        private boolean matches(BrooklynLogEntry entry) {
+            List<String> levels = filter.getLevels();
+            if (levels != null && !levels.isEmpty() && !levels.contains("ALL") && !levels.contains(entry.getLevel())) return false;
+
+            String message = entry.getMessage();
+            if (Strings.isNonBlank(filter.getEntityId())) {
+                if ((entry.getEntityIds() == null || !entry.getEntityIds().contains(filter.getEntityId())) &&
+                        (message == null || !message.contains(filter.getEntityId()))) return false;
+            }
+            if (!taskIds.isEmpty()) {
+                if (Boolean.TRUE.equals(filter.isRecursive())) noteChildTask(message);
+                boolean matched = taskIds.contains(entry.getTaskId()) || (message != null && taskIds.stream().anyMatch(message::contains));
+                // after matching, so that the task's last entry is included
+                if (Boolean.TRUE.equals(filter.isRecursive())) noteTaskEnded(message);
+                if (!matched) return false;
+            }
+            if (Strings.isNonBlank(filter.getSearchPhrase())) {
+                if (message == null || !message.contains(filter.getSearchPhrase())) return false;
+            }
+            return true;
+        }
+
+        /** adds a task started from one of those of interest, as logged by the execution manager */
+        private void noteChildTask(String message) {
+            if (message == null || !message.startsWith("Starting task ")) return;
+            int fromTaskIndex = message.lastIndexOf("from task ");
+            if (fromTaskIndex < 0 || !taskIds.contains(Strings.getFirstWord(message.substring(fromTaskIndex + 10)))) return;
+            String child = Strings.getFirstWord(message.substring("Starting task ".length()));
+            if (child == null || taskIds.contains(child)) return;
+            if (taskIds.size() >= maxTasks) {
+                log.debug("Logbook subscriber following " + rootIds + " is already following " + taskIds.size() + " tasks; not following " + child);
+                return;
+            }
+            taskIds.add(child);
+        }
+
+        /** removes a task which has ended, as logged by the execution manager, unless it was requested */
+        private void noteTaskEnded(String message) {
+            if (message == null || !message.startsWith("Ending task ")) return;
+            String task = Strings.getFirstWord(message.substring("Ending task ".length()));
+            if (task != null && !rootIds.contains(task)) taskIds.remove(task);
+        }
+
+        /** Waits up to the given time for an entry, returning null if there is none */
+        public BrooklynLogEntry poll(Duration timeout) throws InterruptedException {
+            return buffer.poll(timeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+
+        /** Removes and returns the entries buffered */
+        public List<BrooklynLogEntry> drain() {
+            List<BrooklynLogEntry> result = MutableList.of();
+            buffer.drainTo(result);
+            return result;
+        }
+
+        /** The number of matching entries dropped because the buffer was full */
+        public long getDroppedCount() {
+            return droppedCount.get();
+        }
+
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+}
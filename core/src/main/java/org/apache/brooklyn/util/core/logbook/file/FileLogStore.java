@@ -18,6 +18,7 @@
  */
 package org.apache.brooklyn.util.core.logbook.file;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
@@ -31,22 +32,35 @@ import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
+import org.apache.brooklyn.util.core.logbook.LogBookQueryPage;
 import org.apache.brooklyn.util.core.logbook.LogBookQueryParams;
 import org.apache.brooklyn.util.core.logbook.LogStore;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
+import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -69,6 +83,8 @@ import static org.apache.brooklyn.util.core.logbook.LogbookConfig.LOGBOOK_MAX_RE
  */
 public class FileLogStore implements LogStore {
 
+    private static final Logger log = LoggerFactory.getLogger(FileLogStore.class);
+
     // Added for having an early warning in case the default configuration is changed and also to detect changes in  future refactors
     static {
         assert FileLogStore.class.getName().equals(LOGBOOK_LOG_STORE_CLASSNAME.getDefaultValue());
@@ -89,8 +105,26 @@ public class FileLogStore implements LogStore {
             .defaultValue("yyyy-MM-dd'T'HH:mm:ss,SSS'Z'")
             .build();
 
+    @Beta
+    public final static ConfigKey<Boolean> LOGBOOK_LOG_STORE_INDEX_ENABLED = ConfigKeys.builder(Boolean.class, BASE_NAME_FILE_LOG_STORE + ".index.enabled")
+            .description("Whether to index the log file incrementally, so queries read only the parts of it which can match "
+                    + "(by time, level, and task or entity id), rather than the whole file every time")
+            .defaultValue(true)
+            .build();
+    @Beta
+    public final static ConfigKey<Duration> LOGBOOK_LOG_STORE_INDEX_REFRESH_PERIOD = ConfigKeys.builder(Duration.class, BASE_NAME_FILE_LOG_STORE + ".index.refreshPeriod")
+            .description("How often to index what has been appended to the log file in the background, if indexing is enabled; "
+                    + "queries also index anything new first; zero or null to index only for queries")
+            .defaultValue(Duration.TEN_SECONDS)
+            .build();
+
     public final static TimeZone UTC_TIMEZONE = TimeZone.getTimeZone("UTC");
 
+    public static final String INDEX_REFRESH_TASK_NAME = "logbook index refresher";
+    static {
+        BasicExecutionManager.registerUninterestingTaskName(INDEX_REFRESH_TASK_NAME, true);
+    }
+
     private final String filePath;
     private final Path path;
     private final String logLinePatternString;
@@ -98,6 +132,8 @@ public class FileLogStore implements LogStore {
     private final DateFormat dateFormat;
     private final ManagementContext mgmt;
     private final Integer maxTasks;
+    private final FileLogStoreIndex index;
+    private Task<?> indexRefresher;
 
 
     @VisibleForTesting
@@ -110,6 +146,7 @@ public class FileLogStore implements LogStore {
         this.logLinePatternCompiled = Pattern.compile(this.logLinePatternString);
         this.dateFormat = new SimpleDateFormat(LOGBOOK_LOG_STORE_DATEFORMAT.getDefaultValue());
         this.dateFormat.setTimeZone(UTC_TIMEZONE);
+        this.index = null;
     }
 
     public FileLogStore(ManagementContext mgmt) {
@@ -122,82 +159,55 @@ public class FileLogStore implements LogStore {
         this.dateFormat.setTimeZone(UTC_TIMEZONE);
         Preconditions.checkNotNull(filePath, "Log file path must be set: " + LOGBOOK_LOG_STORE_PATH.getName());
         this.path = Paths.get(filePath);
+        if (Boolean.TRUE.equals(mgmt.getConfig().getConfig(LOGBOOK_LOG_STORE_INDEX_ENABLED))) {
+            this.index = new FileLogStoreIndex(path, this::parseLogLine, FileLogStoreIndex.DEFAULT_BLOCK_SIZE);
+            startIndexRefresher(mgmt.getConfig().getConfig(LOGBOOK_LOG_STORE_INDEX_REFRESH_PERIOD));
+        } else {
+            this.index = null;
+        }
     }
 
-    @Override
-    public List<BrooklynLogEntry> query(LogBookQueryParams params) {
-
-        // TODO: the read of the file needs to be improved, specially to implement reading the file backwards and
-        //  do a correct multiline log reading
-        try (Stream<String> stream = Files.lines(path)) {
-
-            // Only enumerate child tasks once before preparing predicate
-            final Set<String> childTaskIds = MutableSet.of();
-            if (Strings.isNonBlank(params.getTaskId()) && params.isRecursive()) {
-                if (mgmt != null) {
-                    // if a requested parent task is workflow, also include the workflow ID
-                    Task<?> parent = mgmt.getExecutionManager().getTask(params.getTaskId());
-                    BrooklynTaskTags.WorkflowTaskTag wf = BrooklynTaskTags.getWorkflowTaskTag(parent, false);
-                    String workflowId = wf != null ? wf.getWorkflowId() : null;
-                    childTaskIds.addAll(enumerateTaskIds(MutableSet.of().putIfNotNull(parent).putIfNotNull(workflowId), maxTasks));
-                }
-            }
-
-            Date dateTimeFrom = Strings.isNonBlank(params.getDateTimeFrom()) ? Time.parseDate(params.getDateTimeFrom()) : null;
-            Date dateTimeTo = Strings.isNonBlank(params.getDateTimeTo()) ? Time.parseDate(params.getDateTimeTo()) : null;
-            Predicate<BrooklynLogEntry> filter = brooklynLogEntry -> {
-
-                // Excludes unrecognized items or items without a date, typically they are multiline log messages.
-                if (brooklynLogEntry == null || brooklynLogEntry.getDatetime() == null) {
-                    // TODO: fix the RegEx to process multiline log messages like stack-traces, and remove this condition.
-                    return false;
-                }
-
-                // Check log levels.
-                if (!params.getLevels().isEmpty() && !params.getLevels().contains("ALL")) {
-                    if (!params.getLevels().contains(brooklynLogEntry.getLevel())) return false;
-                }
-
-                // Date-time from.
-                if (!Objects.isNull(dateTimeFrom)) {
-                    if (brooklynLogEntry.getDatetime()==null || brooklynLogEntry.getDatetime().compareTo(dateTimeFrom) < 0) return false;
-                }
-                // Date-time to.
-                if (!Objects.isNull(dateTimeTo)) {
-                    if (brooklynLogEntry.getDatetime()==null || brooklynLogEntry.getDatetime().compareTo(dateTimeTo) > 0) return false;
-                }
+    /** runs as a transient scheduled task, so it stops with the management context (or when this store is {@link #close() closed}) */
+    private void startIndexRefresher(Duration period) {
+        if (period == null || !period.isPositive()) return;
+        Callable<Task<?>> taskFactory = () -> Tasks.builder().dynamic(false).displayName(INDEX_REFRESH_TASK_NAME)
+                .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                .body(() -> {
+                    try {
+                        index.update();
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        log.debug("Unable to index log file " + path + " (will retry): " + e);
+                    }
+                }).build();
+        indexRefresher = mgmt.getExecutionManager().submit(ScheduledTask.builder(taskFactory).period(period)
+                .displayName(ScheduledTask.prefixScheduledName(INDEX_REFRESH_TASK_NAME)).tagTransient().build());
+    }
 
-                // Check search entityId as field or part of the message.
-                if (Strings.isNonBlank(params.getEntityId())) {
-                    if ((Strings.isBlank(brooklynLogEntry.getEntityIds()) || !brooklynLogEntry.getEntityIds().contains(params.getEntityId())) &&
-                        (Strings.isBlank(brooklynLogEntry.getMessage()) || !brooklynLogEntry.getMessage().contains(params.getEntityId()))) return false;
-                }
+    @Override
+    public void close() {
+        if (indexRefresher != null) {
+            indexRefresher.cancel(true);
+            indexRefresher = null;
+        }
+    }
 
-                // Check search taskId as field or part of the message.
-                if (Strings.isNonBlank(params.getTaskId())) {
-                    boolean isSearchTaskIdMatch = false;
+    @Override
+    public List<BrooklynLogEntry> query(LogBookQueryParams params) {
 
-                    isSearchTaskIdMatch =
-                            params.getTaskId().equals(brooklynLogEntry.getTaskId()) ||
-                                    (Strings.isNonBlank(brooklynLogEntry.getMessage()) && brooklynLogEntry.getMessage().contains(params.getTaskId()));
+        // Only enumerate child tasks once before preparing predicate
+        final Set<String> childTaskIds = findChildTaskIds(params);
 
-                    // Check child taskIds
-                    if (params.isRecursive() && !isSearchTaskIdMatch && !childTaskIds.isEmpty()) {
-                        isSearchTaskIdMatch = childTaskIds.stream().anyMatch(id ->
-                                    id.equals(brooklynLogEntry.getTaskId()) ||
-                                            (Strings.isNonBlank(brooklynLogEntry.getMessage()) && brooklynLogEntry.getMessage().contains(id)));
-                    }
+        Date dateTimeFrom = Strings.isNonBlank(params.getDateTimeFrom()) ? Time.parseDate(params.getDateTimeFrom()) : null;
+        Date dateTimeTo = Strings.isNonBlank(params.getDateTimeTo()) ? Time.parseDate(params.getDateTimeTo()) : null;
+        Predicate<BrooklynLogEntry> filter = newFilter(params, childTaskIds, dateTimeFrom, dateTimeTo);
 
-                    if (!isSearchTaskIdMatch) return false;
-                }
-
-                // Check search phrases.
-                if (Strings.isNonBlank(params.getSearchPhrase())) {
-                    if (Strings.isBlank(brooklynLogEntry.getMessage()) || !brooklynLogEntry.getMessage().contains(params.getSearchPhrase())) return false;
-                }
+        if (index != null) {
+            return queryIndexed(params, newBlockFilter(params, childTaskIds, dateTimeFrom, dateTimeTo), filter);
+        }
 
-                return true;
-            };
+        // TODO: do a correct multiline log reading
+        try (Stream<String> stream = Files.lines(path)) {
 
             // Use line count to supply identification of go lines.
             AtomicInteger lineCount = new AtomicInteger();
@@ -227,7 +237,288 @@ public class FileLogStore implements LogStore {
         }
     }
 
+    /**
+     * Reads only the blocks of the file which the index says can match: forwards for the head, or backwards from the end for the tail,
+     * stopping once enough entries are found.
+     */
+    private List<BrooklynLogEntry> queryIndexed(LogBookQueryParams params, Predicate<FileLogStoreIndex.Block> mayMatch,
+            Predicate<BrooklynLogEntry> filter) {
+        int numberOfItems = params.getNumberOfItems();
+        if (numberOfItems <= 0) return MutableList.of();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            index.update();
+            FileLogStoreIndex.Snapshot snapshot = index.snapshot();
+            List<FileLogStoreIndex.Block> blocks = MutableList.copyOf(snapshot.getBlocks());
+            blocks.add(snapshot.getUnindexedBlock(channel.size()));
+
+            if (params.isTail()) {
+                LinkedList<BrooklynLogEntry> result = new LinkedList<>();
+                for (int i = blocks.size() - 1; i >= 0 && result.size() < numberOfItems; i--) {
+                    if (!mayMatch.test(blocks.get(i))) continue;
+                    List<BrooklynLogEntry> matches = readBlock(channel, blocks.get(i), filter);
+                    for (int j = matches.size() - 1; j >= 0 && result.size() < numberOfItems; j--) {
+                        result.addFirst(matches.get(j));
+                    }
+                }
+                return MutableList.copyOf(result);
+            } else {
+                List<BrooklynLogEntry> result = MutableList.of();
+                for (FileLogStoreIndex.Block block : blocks) {
+                    if (result.size() >= numberOfItems) break;
+                    if (!mayMatch.test(block)) continue;
+                    for (BrooklynLogEntry entry : readBlock(channel, block, filter)) {
+                        if (result.size() >= numberOfItems) break;
+                        result.add(entry);
+                    }
+                }
+                return result;
+            }
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private List<BrooklynLogEntry> readBlock(FileChannel channel, FileLogStoreIndex.Block block, Predicate<BrooklynLogEntry> filter) throws IOException {
+        return readRange(channel, block.getStart(), block.getEnd(), block.getFirstOrdinal(), filter).stream()
+                .map(match -> match.entry)
+                .collect(Collectors.toList());
+    }
+
+    /** An entry read from the file, with where its line is and its ordinal (also its line id) */
+    private static class LineMatch {
+        final BrooklynLogEntry entry;
+        final long lineStart;
+        final long lineEnd;
+        final long ordinal;
+
+        LineMatch(BrooklynLogEntry entry, long lineStart, long lineEnd, long ordinal) {
+            this.entry = entry;
+            this.lineStart = lineStart;
+            this.lineEnd = lineEnd;
+            this.ordinal = ordinal;
+        }
+    }
+
+    /** Reads the entries matching the filter from the given range of whole lines, the first of which is after {@code firstOrdinal} entries */
+    private List<LineMatch> readRange(FileChannel channel, long start, long end, long firstOrdinal, Predicate<BrooklynLogEntry> filter) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) break;
+        }
+        byte[] bytes = buffer.array();
+        int length = buffer.position();
+        long ordinal = firstOrdinal;
+        List<LineMatch> result = MutableList.of();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && bytes[lineEnd] != '\n') lineEnd++;
+            int textEnd = (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') ? lineEnd - 1 : lineEnd;
+            int nextLineStart = Math.min(lineEnd + 1, length);
+            BrooklynLogEntry entry = parseLogLine(new String(bytes, lineStart, textEnd - lineStart, StandardCharsets.UTF_8));
+            if (entry != null) {
+                ordinal++;
+                entry.setLineId(String.valueOf(ordinal));
+                if (filter.test(entry)) result.add(new LineMatch(entry, start + lineStart, start + nextLineStart, ordinal));
+            }
+            lineStart = nextLineStart;
+        }
+        return result;
+    }
+
+    /**
+     * Reads a page of entries from the indexed part of the file, so pages end on whole lines;
+     * the cursor is the position in the file (and the number of entries before it) to continue from.
+     * When indexing is disabled the result of {@link #query(LogBookQueryParams)} is returned as a single page.
+     */
+    @Override
+    public LogBookQueryPage queryPage(LogBookQueryParams params) throws IOException {
+        if (index == null) return LogStore.super.queryPage(params);
+
+        Set<String> childTaskIds = findChildTaskIds(params);
+        Date dateTimeFrom = Strings.isNonBlank(params.getDateTimeFrom()) ? Time.parseDate(params.getDateTimeFrom()) : null;
+        Date dateTimeTo = Strings.isNonBlank(params.getDateTimeTo()) ? Time.parseDate(params.getDateTimeTo()) : null;
+        Predicate<BrooklynLogEntry> filter = newFilter(params, childTaskIds, dateTimeFrom, dateTimeTo);
+        Predicate<FileLogStoreIndex.Block> mayMatch = newBlockFilter(params, childTaskIds, dateTimeFrom, dateTimeTo);
+        int numberOfItems = params.getNumberOfItems();
+        if (numberOfItems <= 0) return new LogBookQueryPage(MutableList.of(), params.getCursor());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            index.update();
+            FileLogStoreIndex.Snapshot snapshot = index.snapshot();
+            List<FileLogStoreIndex.Block> blocks = snapshot.getBlocks();
+            long[] cursor = parseCursor(params.getCursor());
+
+            if (params.isTail()) {
+                long position = cursor != null ? Math.min(cursor[0], snapshot.getIndexedLength()) : snapshot.getIndexedLength();
+                LinkedList<BrooklynLogEntry> result = new LinkedList<>();
+                for (int i = blocks.size() - 1; i >= 0; i--) {
+                    FileLogStoreIndex.Block block = blocks.get(i);
+                    if (block.getStart() >= position || !mayMatch.test(block)) continue;
+                    List<LineMatch> matches = readRange(channel, block.getStart(), Math.min(block.getEnd(), position), block.getFirstOrdinal(), filter);
+                    for (int j = matches.size() - 1; j >= 0; j--) {
+                        LineMatch match = matches.get(j);
+                        result.addFirst(match.entry);
+                        if (result.size() >= numberOfItems) {
+                            return new LogBookQueryPage(MutableList.copyOf(result), toCursor(match.lineStart, match.ordinal - 1));
+                        }
+                    }
+                }
+                // reached the start of the file
+                return new LogBookQueryPage(MutableList.copyOf(result), null);
+
+            } else {
+                long position = cursor != null ? cursor[0] : 0;
+                long ordinal = cursor != null ? cursor[1] : 0;
+                if (position > snapshot.getIndexedLength()) {
+                    // the file has been rotated since the cursor was returned; continue from the end of the new file
+                    return new LogBookQueryPage(MutableList.of(), toCursor(snapshot.getIndexedLength(), snapshot.getEntryCount()));
+                }
+                List<BrooklynLogEntry> result = MutableList.of();
+                for (FileLogStoreIndex.Block block : blocks) {
+                    if (block.getEnd() <= position || !mayMatch.test(block)) continue;
+                    long start = Math.max(block.getStart(), position);
+                    for (LineMatch match : readRange(channel, start, block.getEnd(), start > block.getStart() ? ordinal : block.getFirstOrdinal(), filter)) {
+                        result.add(match.entry);
+                        if (result.size() >= numberOfItems) {
+                            return new LogBookQueryPage(result, toCursor(match.lineEnd, match.ordinal));
+                        }
+                    }
+                }
+                // reached the end of the file; new entries can be read from there later
+                return new LogBookQueryPage(result, toCursor(snapshot.getIndexedLength(), snapshot.getEntryCount()));
+            }
+        }
+    }
+
+    /** Only if indexing is enabled, as the index is what lets us read just the entries appended */
+    @Override
+    public boolean supportsTail() {
+        return index != null;
+    }
+
+    /** The end of the indexed part of the file, if indexing is enabled */
+    @Override
+    public String getEndCursor() throws IOException {
+        if (index == null) return null;
+        index.update();
+        FileLogStoreIndex.Snapshot snapshot = index.snapshot();
+        return toCursor(snapshot.getIndexedLength(), snapshot.getEntryCount());
+    }
+
+    private static String toCursor(long position, long ordinal) {
+        return position + "-" + ordinal;
+    }
+
+    /** returns the position and ordinal in the given cursor, or null if there is none */
+    private static long[] parseCursor(String cursor) {
+        if (Strings.isBlank(cursor)) return null;
+        int separator = cursor.indexOf('-');
+        try {
+            long[] result = new long[] { Long.parseLong(cursor.substring(0, separator)), Long.parseLong(cursor.substring(separator + 1)) };
+            if (result[0] < 0 || result[1] < 0) throw new NumberFormatException();
+            return result;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid logbook cursor: " + cursor);
+        }
+    }
+
+    private Set<String> findChildTaskIds(LogBookQueryParams params) {
+        Set<String> childTaskIds = MutableSet.of();
+        if (Strings.isNonBlank(params.getTaskId()) && params.isRecursive()) {
+            if (mgmt != null) {
+                // if a requested parent task is workflow, also include the workflow ID
+                Task<?> parent = mgmt.getExecutionManager().getTask(params.getTaskId());
+                BrooklynTaskTags.WorkflowTaskTag wf = BrooklynTaskTags.getWorkflowTaskTag(parent, false);
+                String workflowId = wf != null ? wf.getWorkflowId() : null;
+                childTaskIds.addAll(enumerateTaskIds(MutableSet.of().putIfNotNull(parent).putIfNotNull(workflowId), maxTasks));
+            }
+        }
+        return childTaskIds;
+    }
+
+    /** Whether the index says a block may contain entries matching the query */
+    private Predicate<FileLogStoreIndex.Block> newBlockFilter(LogBookQueryParams params, Set<String> childTaskIds, Date dateTimeFrom, Date dateTimeTo) {
+        Long from = dateTimeFrom != null ? dateTimeFrom.getTime() : null;
+        Long to = dateTimeTo != null ? dateTimeTo.getTime() : null;
+        Set<String> ids = MutableSet.of();
+        if (Strings.isNonBlank(params.getTaskId())) {
+            ids.add(params.getTaskId());
+            ids.addAll(childTaskIds);
+        }
+        return block -> block != null
+                && block.mayContainTimes(from, to)
+                && block.mayContainLevels(params.getLevels())
+                && (ids.isEmpty() || block.mayContainAnyId(ids))
+                && (Strings.isBlank(params.getEntityId()) || block.mayContainAnyId(Collections.singleton(params.getEntityId())));
+    }
+
+    private Predicate<BrooklynLogEntry> newFilter(LogBookQueryParams params, Set<String> childTaskIds, Date dateTimeFrom, Date dateTimeTo) {
+        return brooklynLogEntry -> {
+
+            // Excludes unrecognized items or items without a date, typically they are multiline log messages.
+            if (brooklynLogEntry == null || brooklynLogEntry.getDatetime() == null) {
+                // TODO: fix the RegEx to process multiline log messages like stack-traces, and remove this condition.
+                return false;
+            }
+
+            // Check log levels.
+            if (!params.getLevels().isEmpty() && !params.getLevels().contains("ALL")) {
+                if (!params.getLevels().contains(brooklynLogEntry.getLevel())) return false;
+            }
+
+            // Date-time from.
+            if (!Objects.isNull(dateTimeFrom)) {
+                if (brooklynLogEntry.getDatetime()==null || brooklynLogEntry.getDatetime().compareTo(dateTimeFrom) < 0) return false;
+            }
+            // Date-time to.
+            if (!Objects.isNull(dateTimeTo)) {
+                if (brooklynLogEntry.getDatetime()==null || brooklynLogEntry.getDatetime().compareTo(dateTimeTo) > 0) return false;
+            }
+
+            // Check search entityId as field or part of the message.
+            if (Strings.isNonBlank(params.getEntityId())) {
+                if ((Strings.isBlank(brooklynLogEntry.getEntityIds()) || !brooklynLogEntry.getEntityIds().contains(params.getEntityId())) &&
+                    (Strings.isBlank(brooklynLogEntry.getMessage()) || !brooklynLogEntry.getMessage().contains(params.getEntityId()))) return false;
+            }
+
+            // Check search taskId as field or part of the message.
+            if (Strings.isNonBlank(params.getTaskId())) {
+                boolean isSearchTaskIdMatch = false;
+
+                isSearchTaskIdMatch =
+                        params.getTaskId().equals(brooklynLogEntry.getTaskId()) ||
+                                (Strings.isNonBlank(brooklynLogEntry.getMessage()) && brooklynLogEntry.getMessage().contains(params.getTaskId()));
+
+                // Check child taskIds
+                if (params.isRecursive() && !isSearchTaskIdMatch && !childTaskIds.isEmpty()) {
+                    isSearchTaskIdMatch = childTaskIds.stream().anyMatch(id ->
+                                id.equals(brooklynLogEntry.getTaskId()) ||
+                                        (Strings.isNonBlank(brooklynLogEntry.getMessage()) && brooklynLogEntry.getMessage().contains(id)));
+                }
+
+                if (!isSearchTaskIdMatch) return false;
+            }
+
+            // Check search phrases.
+            if (Strings.isNonBlank(params.getSearchPhrase())) {
+                if (Strings.isBlank(brooklynLogEntry.getMessage()) || !brooklynLogEntry.getMessage().contains(params.getSearchPhrase())) return false;
+            }
+
+            return true;
+        };
+    }
+
     protected BrooklynLogEntry parseLogLine(String logLine, AtomicInteger lineCount) {
+        BrooklynLogEntry entry = parseLogLine(logLine);
+        if (entry != null) {
+            entry.setLineId(String.valueOf(lineCount.incrementAndGet()));
+        }
+        return entry;
+    }
+
+    /** Parses the line, without setting its line id; returns null if it is not the start of a log entry. */
+    protected BrooklynLogEntry parseLogLine(String logLine) {
         Pattern p = logLinePatternCompiled;
         Matcher m = p.matcher(logLine);
         BrooklynLogEntry entry = null;
@@ -235,7 +526,11 @@ public class FileLogStore implements LogStore {
         if (m.matches()) {
             entry = new BrooklynLogEntry();
             entry.setTimestampString(m.group("timestamp"));
-            Maybe<Calendar> calendarMaybe = Time.parseCalendarFormat(entry.getTimestampString(), dateFormat);
+            Maybe<Calendar> calendarMaybe;
+            // the date format is not thread-safe, and the index may be updated in the background while querying
+            synchronized (dateFormat) {
+                calendarMaybe = Time.parseCalendarFormat(entry.getTimestampString(), dateFormat);
+            }
             if (calendarMaybe.isPresentAndNonNull()) {
                 entry.setDatetime(calendarMaybe.get().getTime());
             }
@@ -246,7 +541,6 @@ public class FileLogStore implements LogStore {
             entry.setClazz(m.group("class"));
             entry.setThreadName(m.group("threadName"));
             entry.setMessage(m.group("message"));
-            entry.setLineId(String.valueOf(lineCount.incrementAndGet()));
         }
         return entry;
     }
@@ -273,6 +567,18 @@ public class FileLogStore implements LogStore {
                 return null;
             }).filter(x -> x!=null).collect(Collectors.toSet()));
 
+            if (index != null) {
+                // the index records which tasks were started from which, so there is no need to read the file for each level
+                try {
+                    index.update();
+                } catch (IOException e) {
+                    throw Exceptions.propagate(e);
+                }
+                Set<String> indexed = index.enumerateTaskIds(next, maxTasks);
+                if (indexed != null) return indexed;
+                // the index has dropped the children of some of these tasks, so read the file for them
+            }
+
             while (!next.isEmpty() && all.size() < maxTasks) {
                 Set<String> current = MutableSet.copyOf(next);
                 next.clear();
@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.logbook.file;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
+import org.apache.brooklyn.util.text.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental index of a log file for {@link FileLogStore}, so that queries read only the parts of the file which can match.
+ * <p>
+ * The file is divided into blocks of whole lines. For each block the index records its byte range, the number of log entries before it
+ * (to give entries their line ids), the range of timestamps and the levels of its entries, and a bloom filter of the substrings
+ * of {@value #MIN_INDEXED_WORD_LENGTH} characters of the id-shaped words in its task and entity ids and messages, sized for the number of them.
+ * As queries match ids anywhere in those fields, an id (or part of one) may be in a block only if all its substrings of that length are.
+ * Only words with a digit, or an upper-case letter after the first character, are indexed, as ids have these but most other words do not;
+ * any word containing an id (or part) of that shape is also of that shape, and ids of other shapes are not looked up.
+ * If a block has more than {@value #MAX_INDEXED_WORDS_PER_BLOCK} distinct substrings to index it has no filter, and is read for any id.
+ * It also records which tasks were started from which, to enumerate child tasks, up to a limit.
+ * <p>
+ * {@link #update()} indexes just what has been appended since the last update; if the file is rotated (replaced, or truncated)
+ * the index is rebuilt.
+ */
+@Beta
+public class FileLogStoreIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FileLogStoreIndex.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * The length of the substrings of words which are indexed, the length of the shortest (task) ids;
+     * ids shorter than this, or with other characters, are not looked up, and queries for them read all blocks.
+     */
+    static final int MIN_INDEXED_WORD_LENGTH = 8;
+    private static final Pattern INDEXED_WORD = Pattern.compile("[A-Za-z0-9]{" + MIN_INDEXED_WORD_LENGTH + ",}");
+    private static final Pattern ID_SHAPED = Pattern.compile(".*[0-9].*|.+[A-Z].*");
+    private static final Pattern NON_WORD = Pattern.compile("[^A-Za-z0-9]+");
+
+    /** Limit on the substrings indexed for a block, to bound the size of its filter (about 10KB) */
+    static final int MAX_INDEXED_WORDS_PER_BLOCK = 8192;
+
+    private static final double WORDS_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /** Number of links from parent to child task recorded, after which those of the parents seen first are dropped. */
+    public static final int DEFAULT_MAX_CHILD_TASK_LINKS = 100_000;
+
+    private static final List<String> KNOWN_LEVELS = Collections.unmodifiableList(MutableList.of("TRACE", "DEBUG", "INFO", "WARN", "ERROR"));
+    private static final int OTHER_LEVEL_BIT = 1 << KNOWN_LEVELS.size();
+
+    private static final String STARTING_TASK_PREFIX = "Starting task ";
+    private static final String FROM_TASK = "from task ";
+
+    /** A range of whole lines in the file, and what the index knows about the entries in it. */
+    public static class Block {
+        final long start;
+        final long end;
+        final long firstOrdinal;
+        final long minTime;
+        final long maxTime;
+        final int levels;
+        /** null if not known, i.e. any id may be in this block */
+        final BloomFilter<CharSequence> words;
+
+        Block(long start, long end, long firstOrdinal, long minTime, long maxTime, int levels, BloomFilter<CharSequence> words) {
+            this.start = start;
+            this.end = end;
+            this.firstOrdinal = firstOrdinal;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.levels = levels;
+            this.words = words;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /** number of log entries in the file before this block */
+        public long getFirstOrdinal() {
+            return firstOrdinal;
+        }
+
+        /** whether this block may contain entries between the given times (either of which may be null) */
+        public boolean mayContainTimes(Long from, Long to) {
+            if (from == null && to == null) return true;
+            if (minTime > maxTime) return false;
+            return (from == null || maxTime >= from) && (to == null || minTime <= to);
+        }
+
+        /** whether this block may contain entries with any of the given levels (empty meaning any level) */
+        public boolean mayContainLevels(Collection<String> levelsWanted) {
+            int mask = levelMask(levelsWanted);
+            return mask == 0 || (levels & mask) != 0;
+        }
+
+        /** whether this block may contain any of the given ids (or parts of ids), as task or entity ids or in messages */
+        public boolean mayContainAnyId(Collection<String> ids) {
+            if (words == null) return true;
+            for (String id : ids) {
+                if (!isIndexedWord(id) || mightContainAllSubstrings(id)) return true;
+            }
+            return false;
+        }
+
+        private boolean mightContainAllSubstrings(String id) {
+            for (int i = 0; i + MIN_INDEXED_WORD_LENGTH <= id.length(); i++) {
+                if (!words.mightContain(id.substring(i, i + MIN_INDEXED_WORD_LENGTH))) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "Block[" + start + "-" + end + "]";
+        }
+    }
+
+    /** The blocks indexed so far, and where the unindexed part of the file starts. */
+    public static class Snapshot {
+        private final List<Block> blocks;
+        private final long indexedLength;
+        private final long entryCount;
+
+        Snapshot(List<Block> blocks, long indexedLength, long entryCount) {
+            this.blocks = blocks;
+            this.indexedLength = indexedLength;
+            this.entryCount = entryCount;
+        }
+
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+
+        /** The length of the file indexed, i.e. the end of the last complete line when the index was updated. */
+        public long getIndexedLength() {
+            return indexedLength;
+        }
+
+        /** The number of log entries in the indexed part of the file. */
+        public long getEntryCount() {
+            return entryCount;
+        }
+
+        /** A block for the unindexed end of the file, up to the given length, about which nothing is known; or null if there is none. */
+        public Block getUnindexedBlock(long fileLength) {
+            if (fileLength <= indexedLength) return null;
+            return new Block(indexedLength, fileLength, entryCount, Long.MIN_VALUE, Long.MAX_VALUE, ~0, null);
+        }
+    }
+
+    private final Path path;
+    private final Function<String, BrooklynLogEntry> parser;
+    private final int blockSize;
+    private final int maxChildTaskLinks;
+
+    private Object fileKey;
+    private long indexedLength;
+    private long entryCount;
+    private final List<Block> blocks = MutableList.of();
+    private BlockBuilder openBlock;
+    /** in the order the parents were first seen */
+    private final Map<String, Set<String>> childTaskLinksByParent = MutableMap.of();
+    private int childTaskLinkCount;
+    /** parents whose links have been dropped, or null if none have been */
+    private BloomFilter<CharSequence> droppedParents;
+
+    /**
+     * @param parser parses one line of the file into an entry, or returns null if it is not the start of an entry
+     */
+    public FileLogStoreIndex(Path path, Function<String, BrooklynLogEntry> parser, int blockSize) {
+        this(path, parser, blockSize, DEFAULT_MAX_CHILD_TASK_LINKS);
+    }
+
+    public FileLogStoreIndex(Path path, Function<String, BrooklynLogEntry> parser, int blockSize, int maxChildTaskLinks) {
+        this.path = Objects.requireNonNull(path);
+        this.parser = Objects.requireNonNull(parser);
+        this.blockSize = blockSize;
+        this.maxChildTaskLinks = maxChildTaskLinks;
+    }
+
+    /** Indexes anything appended to the file since the last update, first discarding the index if the file has been rotated. */
+    public synchronized void update() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            if (indexedLength > 0) reset();
+            return;
+        }
+        long size = attributes.size();
+        Object key = attributes.fileKey();
+        if ((fileKey != null && key != null && !fileKey.equals(key)) || size < indexedLength) {
+            log.debug("Log file {} rotated, rebuilding index", path);
+            reset();
+        }
+        fileKey = key;
+        if (size <= indexedLength) return;
+
+        long startTime = System.currentTimeMillis();
+        long startLength = indexedLength;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+            long position = indexedLength;
+            long lineStart = indexedLength;
+            while (position < size) {
+                buffer.clear();
+                int count = channel.read(buffer, position);
+                if (count <= 0) break;
+                byte[] bytes = buffer.array();
+                int segmentStart = 0;
+                for (int i = 0; i < count; i++) {
+                    if (bytes[i] == '\n') {
+                        line.write(bytes, segmentStart, i - segmentStart);
+                        long lineEnd = position + i + 1;
+                        addLine(lineStart, lineEnd, line.toString(Charsets.UTF_8.name()));
+                        line.reset();
+                        lineStart = lineEnd;
+                        segmentStart = i + 1;
+                    }
+                }
+                line.write(bytes, segmentStart, count - segmentStart);
+                position += count;
+            }
+            // a trailing partial line is indexed when it is complete
+            indexedLength = lineStart;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Indexed {} bytes of log file {} in {}ms; {} blocks", indexedLength - startLength, path, System.currentTimeMillis() - startTime, blocks.size());
+        }
+    }
+
+    private void reset() {
+        fileKey = null;
+        indexedLength = 0;
+        entryCount = 0;
+        blocks.clear();
+        openBlock = null;
+        childTaskLinksByParent.clear();
+        childTaskLinkCount = 0;
+        droppedParents = null;
+    }
+
+    private void addLine(long lineStart, long lineEnd, String line) {
+        if (openBlock == null) {
+            openBlock = new BlockBuilder(lineStart, entryCount);
+        }
+        if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+        BrooklynLogEntry entry = parser.apply(line);
+        if (entry != null) {
+            entryCount++;
+            openBlock.add(entry);
+            noteChildTask(entry);
+        }
+        openBlock.end = lineEnd;
+        if (openBlock.end - openBlock.start >= blockSize) {
+            blocks.add(openBlock.build(false));
+            openBlock = null;
+        }
+    }
+
+    private void noteChildTask(BrooklynLogEntry entry) {
+        String msg = entry.getMessage();
+        if (msg == null || !msg.startsWith(STARTING_TASK_PREFIX)) return;
+        int fromTaskIndex = msg.lastIndexOf(FROM_TASK);
+        if (fromTaskIndex < 0) return;
+        String parent = Strings.getFirstWord(msg.substring(fromTaskIndex + FROM_TASK.length()));
+        String child = msg.substring(STARTING_TASK_PREFIX.length());
+        int nextWord = child.indexOf(' ');
+        if (parent == null || nextWord <= 0) return;
+        child = child.substring(0, nextWord);
+        if (childTaskLinksByParent.computeIfAbsent(parent, k -> MutableSet.of()).add(child)) {
+            childTaskLinkCount++;
+        }
+        Iterator<Map.Entry<String, Set<String>>> eldest = childTaskLinksByParent.entrySet().iterator();
+        while (childTaskLinkCount > maxChildTaskLinks && eldest.hasNext()) {
+            Map.Entry<String, Set<String>> dropped = eldest.next();
+            if (droppedParents == null) {
+                droppedParents = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), Math.max(maxChildTaskLinks, 1000), WORDS_FALSE_POSITIVE_PROBABILITY);
+            }
+            droppedParents.put(dropped.getKey());
+            childTaskLinkCount -= dropped.getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /** The blocks indexed, including the current partial block. */
+    public synchronized Snapshot snapshot() {
+        List<Block> result = MutableList.copyOf(blocks);
+        if (openBlock != null) result.add(openBlock.build(true));
+        return new Snapshot(Collections.unmodifiableList(result), indexedLength, entryCount);
+    }
+
+    /**
+     * Returns the given tasks and those started from them, recursively, in the order they were started, stopping once there are {@code maxTasks}
+     * (but always looking for children of the given tasks, as when reading through the file for them);
+     * or null if the children of any of them may have been dropped, in which case the file must be read.
+     */
+    @Nullable
+    public synchronized Set<String> enumerateTaskIds(Set<String> parents, int maxTasks) {
+        Set<String> all = MutableSet.of();
+        if (maxTasks <= 0) return all;
+        all.addAll(parents);
+        List<String> queue = MutableList.copyOf(parents);
+        enumerate: for (int i = 0; i < queue.size(); i++) {
+            if (droppedParents != null && droppedParents.mightContain(queue.get(i))) return null;
+            Set<String> children = childTaskLinksByParent.get(queue.get(i));
+            if (children == null) continue;
+            for (String child : children) {
+                if (all.add(child)) {
+                    if (all.size() >= maxTasks) break enumerate;
+                    queue.add(child);
+                }
+            }
+        }
+        return all;
+    }
+
+    static boolean isIndexedWord(String id) {
+        return id != null && INDEXED_WORD.matcher(id).matches() && ID_SHAPED.matcher(id).matches();
+    }
+
+    static int levelMask(Collection<String> levels) {
+        int mask = 0;
+        if (levels == null) return 0;
+        for (String level : levels) {
+            if ("ALL".equals(level)) return 0;
+            int index = KNOWN_LEVELS.indexOf(level);
+            mask |= (index >= 0 ? 1 << index : OTHER_LEVEL_BIT);
+        }
+        return mask;
+    }
+
+    private static class BlockBuilder {
+        final long start;
+        long end;
+        final long firstOrdinal;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        int levels = 0;
+        /** the distinct substrings to index, so the filter can be sized for them when the block is built; null if there are too many */
+        Set<String> words = new HashSet<>();
+        /** the last partial block built, if nothing has been added since */
+        Block partial;
+
+        BlockBuilder(long start, long firstOrdinal) {
+            this.start = start;
+            this.end = start;
+            this.firstOrdinal = firstOrdinal;
+        }
+
+        void add(BrooklynLogEntry entry) {
+            partial = null;
+            if (entry.getDatetime() != null) {
+                long time = entry.getDatetime().getTime();
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+            }
+            levels |= levelMask(Collections.singleton(entry.getLevel()));
+            addWords(entry.getTaskId());
+            addWords(entry.getEntityIds());
+            addWords(entry.getMessage());
+        }
+
+        private void addWords(String text) {
+            if (Strings.isBlank(text) || words == null) return;
+            for (String word : NON_WORD.split(text)) {
+                if (!isIndexedWord(word)) continue;
+                for (int i = 0; i + MIN_INDEXED_WORD_LENGTH <= word.length(); i++) {
+                    words.add(word.substring(i, i + MIN_INDEXED_WORD_LENGTH));
+                }
+                if (words.size() > MAX_INDEXED_WORDS_PER_BLOCK) {
+                    words = null;
+                    return;
+                }
+            }
+        }
+
+        /** builds the block, or a snapshot of it if partial (as it can still be added to) */
+        Block build(boolean isPartial) {
+            if (isPartial && partial != null && partial.end == end) return partial;
+            BloomFilter<CharSequence> filter = null;
+            if (words != null) {
+                filter = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), Math.max(words.size(), 1), WORDS_FALSE_POSITIVE_PROBABILITY);
+                words.forEach(filter::put);
+            }
+            Block result = new Block(start, end, firstOrdinal, minTime, maxTime, levels, filter);
+            if (isPartial) {
+                partial = result;
+            } else {
+                words = null;
+            }
+            return result;
+        }
+    }
+}
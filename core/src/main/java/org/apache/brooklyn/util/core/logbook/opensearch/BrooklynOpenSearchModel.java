@@ -33,6 +33,9 @@ class BrooklynOpenSearchModel {
     Integer took;
     @JsonProperty("timed_out")
     Boolean timedOut;
+    /** The point in time id to use for the next page, if searching a point in time */
+    @JsonProperty("pit_id")
+    String pitId;
 
     public OpenSearchHitsWrapper getHits() {
         return hits;
@@ -58,6 +61,14 @@ class BrooklynOpenSearchModel {
         this.timedOut = timedOut;
     }
 
+    public String getPitId() {
+        return pitId;
+    }
+
+    public void setPitId(String pitId) {
+        this.pitId = pitId;
+    }
+
     static class OpenSearchHitsWrapper {
         List<OpenSearchHit> hits;
 
@@ -83,6 +94,9 @@ class BrooklynOpenSearchModel {
         @JsonProperty("_source")
         BrooklynLogEntry source;
 
+        /** The sort values of the hit, to search after */
+        List<Object> sort;
+
         public String getIndex() {
             return index;
         }
@@ -115,6 +129,14 @@ class BrooklynOpenSearchModel {
             this.source = source;
         }
 
+        public List<Object> getSort() {
+            return sort;
+        }
+
+        public void setSort(List<Object> sort) {
+            this.sort = sort;
+        }
+
     }
 
 }
@@ -20,6 +20,7 @@ package org.apache.brooklyn.util.core.logbook.opensearch;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
@@ -34,6 +35,7 @@ import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
+import org.apache.brooklyn.util.core.logbook.LogBookQueryPage;
 import org.apache.brooklyn.util.core.logbook.LogBookQueryParams;
 import org.apache.brooklyn.util.core.logbook.LogStore;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -44,6 +46,7 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
@@ -54,15 +57,19 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -77,6 +84,8 @@ import static org.apache.brooklyn.util.core.logbook.LogbookConfig.LOGBOOK_MAX_RE
  */
 public class OpenSearchLogStore implements LogStore {
 
+    private static final Logger log = LoggerFactory.getLogger(OpenSearchLogStore.class);
+
     /*
      # example config for local default implementation
      brooklyn.logbook.logStore = org.apache.brooklyn.util.core.logbook.opensearch.OpenSearchLogStore
@@ -106,6 +115,11 @@ public class OpenSearchLogStore implements LogStore {
     public final static ConfigKey<Boolean> LOGBOOK_LOG_STORE_VERIFY_SSL = ConfigKeys.newBooleanConfigKey(
             BASE_NAME_OPEN_SEARCH_LOG_STORE + ".verifySsl", "Verify SSL", true);
 
+    @Beta
+    public final static ConfigKey<String> LOGBOOK_LOG_STORE_PIT_KEEP_ALIVE = ConfigKeys.newStringConfigKey(
+            BASE_NAME_OPEN_SEARCH_LOG_STORE + ".pointInTimeKeepAlive",
+            "How long to keep the point in time searched when paging through query results, between pages", "5m");
+
     private final ManagementContext mgmt;
     CloseableHttpClient httpClient;
     private String host;
@@ -115,11 +129,13 @@ public class OpenSearchLogStore implements LogStore {
     private Boolean verifySsl;
     private String indexName;
     private Integer maxTasks;
+    private String pitKeepAlive;
 
     @VisibleForTesting
     public OpenSearchLogStore() {
         this.mgmt = null;
         this.maxTasks = LOGBOOK_MAX_RECURSIVE_TASKS.getDefaultValue();
+        this.pitKeepAlive = LOGBOOK_LOG_STORE_PIT_KEEP_ALIVE.getDefaultValue();
     }
 
     public OpenSearchLogStore(ManagementContext mgmt) {
@@ -178,6 +194,7 @@ public class OpenSearchLogStore implements LogStore {
         this.password = mgmt.getConfig().getConfig(LOGBOOK_LOG_STORE_PASS); // TODO: this is not completely secure
         this.apiKey = mgmt.getConfig().getConfig(LOGBOOK_LOG_STORE_APIKEY);
         this.verifySsl = mgmt.getConfig().getConfig(LOGBOOK_LOG_STORE_VERIFY_SSL);
+        this.pitKeepAlive = mgmt.getConfig().getConfig(LOGBOOK_LOG_STORE_PIT_KEEP_ALIVE);
     }
 
     @Override
@@ -188,32 +205,172 @@ public class OpenSearchLogStore implements LogStore {
 
         try (CloseableHttpResponse response = httpClient.execute(request)) {
 
-            BrooklynOpenSearchModel jsonResponse = new ObjectMapper()
-                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                    .readValue(response.getEntity().getContent(), BrooklynOpenSearchModel.class);
+            BrooklynOpenSearchModel jsonResponse = readResponse(response);
 
             if (jsonResponse.hits != null && jsonResponse.hits.hits != null) {
+                return toLogEntries(jsonResponse.hits.hits, params.isTail());
+            } else {
+                return ImmutableList.of();
+            }
+        }
+    }
+
+    /**
+     * Pages through the results with {@code search_after}, in a point in time of the index if there is more than one page
+     * and one can be opened, so that pages are consistent even as new entries are indexed.
+     * The cursor holds the point in time and the sort values of the last entry returned;
+     * the point in time is deleted once the last page is returned, or the cursor is {@link #releaseCursor(String) released}.
+     */
+    @Override
+    public LogBookQueryPage queryPage(LogBookQueryParams params) throws IOException {
+        String pitId = null;
+        List<?> searchAfter = null;
+        if (Strings.isNonBlank(params.getCursor())) {
+            Map<?, ?> cursor = parseCursor(params.getCursor());
+            pitId = (String) cursor.get("pit");
+            searchAfter = (List<?>) cursor.get("after");
+        }
+        int size = params.getNumberOfItems();
+
+        // one more than requested, to tell whether there is another page
+        BrooklynOpenSearchModel jsonResponse = search(params, pitId, searchAfter, size + 1);
+        if (pitId == null && searchAfter == null && getHits(jsonResponse).size() > size) {
+            // there is more than one page, so search again in a point in time, which the later pages continue
+            // (sort values from outside a point in time cannot be used within it, as it adds a tie-breaker)
+            String newPitId = openPointInTime();
+            if (newPitId != null) {
+                pitId = newPitId;
+                jsonResponse = search(params, pitId, null, size + 1);
+            }
+        }
+        // the point in time id can change between searches
+        if (jsonResponse.pitId != null) pitId = jsonResponse.pitId;
+
+        List<BrooklynOpenSearchModel.OpenSearchHit> hits = getHits(jsonResponse);
+        String nextCursor = null;
+        if (hits.size() > size && size > 0) {
+            hits = hits.subList(0, size);
+            List<Object> lastSort = hits.get(size - 1).getSort();
+            if (lastSort != null) {
+                nextCursor = toCursor(pitId, lastSort);
+            }
+        }
+        if (nextCursor == null && pitId != null) {
+            closePointInTime(pitId);
+        }
+        return new LogBookQueryPage(toLogEntries(hits, params.isTail()), nextCursor);
+    }
+
+    @Override
+    public void releaseCursor(String cursor) {
+        Object pitId;
+        try {
+            pitId = parseCursor(cursor).get("pit");
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (pitId != null) closePointInTime((String) pitId);
+    }
+
+    private BrooklynOpenSearchModel search(LogBookQueryParams params, String pitId, List<?> searchAfter, int size) throws IOException {
+        // a point in time search is not against the index
+        HttpPost request = new HttpPost(host + (pitId != null ? "" : "/" + indexName) + "/_search");
+        request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+        request.setEntity(new StringEntity(getJsonQuery(params, pitId, searchAfter, size)));
 
-                // Get the filtered stream from elastic search query result.
-                List<BrooklynLogEntry> brooklynLogEntries = jsonResponse.hits.hits.stream()
-                        .map(openSearchHit -> {
-                            BrooklynLogEntry entry = openSearchHit.getSource();
-                            entry.setLineId(openSearchHit.getId());
-                            return entry;
-                        }).collect(Collectors.toList());
-
-                // Note, 'tail' requires to reverse the order back since elastic search requires 'sort' + 'desc' to get
-                // last number of items, when requested.
-                if (params.isTail()) {
-                    Collections.reverse(brooklynLogEntries);
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            return readResponse(response);
+        }
+    }
+
+    private static List<BrooklynOpenSearchModel.OpenSearchHit> getHits(BrooklynOpenSearchModel jsonResponse) {
+        return jsonResponse.hits != null && jsonResponse.hits.hits != null ? jsonResponse.hits.hits : ImmutableList.of();
+    }
+
+    /** Returns the id of a new point in time of the index, or null if one cannot be opened, e.g. for an older version of OpenSearch */
+    private String openPointInTime() {
+        HttpPost request = new HttpPost(host + "/" + indexName + "/_search/point_in_time?keep_alive=" + pitKeepAlive);
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            if (response.getStatusLine().getStatusCode() == 200) {
+                Object pitId = new ObjectMapper().readValue(response.getEntity().getContent(), Map.class).get("pit_id");
+                if (pitId instanceof String) return (String) pitId;
+            }
+            log.debug("Unable to open point in time for OpenSearch index " + indexName + " (paging without): " + response.getStatusLine());
+        } catch (IOException e) {
+            log.debug("Unable to open point in time for OpenSearch index " + indexName + " (paging without): " + e);
+        }
+        return null;
+    }
+
+    /** Deletes the point in time, rather than leaving it to expire after its keep alive */
+    private void closePointInTime(String pitId) {
+        HttpEntityEnclosingRequestBase request = new HttpEntityEnclosingRequestBase() {
+            @Override
+            public String getMethod() {
+                return "DELETE";
+            }
+        };
+        request.setURI(URI.create(host + "/_search/point_in_time"));
+        request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+        try {
+            request.setEntity(new StringEntity(new JSONObject(ImmutableMap.of("pit_id", ImmutableList.of(pitId))).toString()));
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                if (response.getStatusLine().getStatusCode() != 200) {
+                    log.debug("Unable to delete point in time for OpenSearch index " + indexName + " (will expire): " + response.getStatusLine());
                 }
+            }
+        } catch (IOException e) {
+            log.debug("Unable to delete point in time for OpenSearch index " + indexName + " (will expire): " + e);
+        }
+    }
 
-                // Collect the query result.
-                return brooklynLogEntries;
-            } else {
-                return ImmutableList.of();
+    private BrooklynOpenSearchModel readResponse(CloseableHttpResponse response) throws IOException {
+        return new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(response.getEntity().getContent(), BrooklynOpenSearchModel.class);
+    }
+
+    private List<BrooklynLogEntry> toLogEntries(List<BrooklynOpenSearchModel.OpenSearchHit> hits, boolean tail) {
+        // Get the filtered stream from elastic search query result.
+        List<BrooklynLogEntry> brooklynLogEntries = hits.stream()
+                .map(openSearchHit -> {
+                    BrooklynLogEntry entry = openSearchHit.getSource();
+                    entry.setLineId(openSearchHit.getId());
+                    return entry;
+                }).collect(Collectors.toList());
+
+        // Note, 'tail' requires to reverse the order back since elastic search requires 'sort' + 'desc' to get
+        // last number of items, when requested.
+        if (tail) {
+            Collections.reverse(brooklynLogEntries);
+        }
+
+        // Collect the query result.
+        return brooklynLogEntries;
+    }
+
+    @VisibleForTesting
+    static String toCursor(String pitId, List<?> searchAfter) {
+        Map<String, Object> cursor = MutableMap.<String, Object>of("after", searchAfter);
+        if (pitId != null) cursor.put("pit", pitId);
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(new ObjectMapper().writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @VisibleForTesting
+    static Map<?, ?> parseCursor(String cursor) {
+        try {
+            Map<?, ?> result = new ObjectMapper().readValue(Base64.getUrlDecoder().decode(cursor), Map.class);
+            if (result.get("after") instanceof List && (result.get("pit") == null || result.get("pit") instanceof String)) {
+                return result;
             }
+        } catch (IOException | IllegalArgumentException e) {
+            // invalid, as below
         }
+        throw new IllegalArgumentException("Invalid logbook cursor: " + cursor);
     }
 
     @Override
@@ -223,12 +380,26 @@ public class OpenSearchLogStore implements LogStore {
 
     @VisibleForTesting
     protected String getJsonQuery(LogBookQueryParams params) {
-        ImmutableMap qb = ImmutableMap.builder()
-                .put("size", params.getNumberOfItems())
+        return getJsonQuery(params, null, null);
+    }
+
+    @VisibleForTesting
+    protected String getJsonQuery(LogBookQueryParams params, String pitId, List<?> searchAfter) {
+        return getJsonQuery(params, pitId, searchAfter, params.getNumberOfItems());
+    }
+
+    private String getJsonQuery(LogBookQueryParams params, String pitId, List<?> searchAfter, Integer size) {
+        ImmutableMap.Builder qb = ImmutableMap.builder()
+                .put("size", size)
                 .put("sort", ImmutableMap.of("timestamp", params.isTail() ? "desc" : "asc"))
-                .put("query", buildQuery(params))
-                .build();
-        return new JSONObject(qb).toString();
+                .put("query", buildQuery(params));
+        if (pitId != null) {
+            qb.put("pit", ImmutableMap.of("id", pitId, "keep_alive", pitKeepAlive));
+        }
+        if (searchAfter != null) {
+            qb.put("search_after", searchAfter);
+        }
+        return new JSONObject(qb.build()).toString();
     }
 
     private ImmutableMap<String, Object> buildQuery(LogBookQueryParams params) {
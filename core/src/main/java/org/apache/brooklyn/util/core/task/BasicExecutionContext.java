@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -57,8 +58,6 @@ import org.apache.brooklyn.util.core.task.BasicExecutionManager.BrooklynTaskLogg
 import org.apache.brooklyn.util.core.task.ImmediateSupplier.ImmediateUnsupportedException;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
-import org.apache.brooklyn.util.time.CountdownTimer;
-import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -156,22 +155,25 @@ public class BasicExecutionContext extends AbstractExecutionContext {
     }
     
     // could perhaps use Guava's SettableFuture -- though would have to take care re 
-    // supporting set(Maybe<T>)
+    // supporting set(Maybe<T>);
+    // uses a latch rather than wait/notify so waiters on virtual threads do not pin their carrier
     private static class SimpleFuture<T> implements Future<T> {
-        boolean cancelled = false;
-        boolean done = false;
-        Maybe<T> result;
+        volatile boolean cancelled = false;
+        volatile boolean done = false;
+        volatile Maybe<T> result;
+        private final CountDownLatch completion = new CountDownLatch(1);
         
-        public synchronized Maybe<T> set(Maybe<T> result) {
+        public Maybe<T> set(Maybe<T> result) {
             this.result = result;
             done = true;
-            notifyAll();
+            completion.countDown();
             return result;
         }
 
         @Override
         public boolean cancel(boolean mayInterruptIfRunning) {
             cancelled = true;
+            completion.countDown();
             return true;
         }
 
@@ -187,13 +189,7 @@ public class BasicExecutionContext extends AbstractExecutionContext {
 
         @Override
         public T get() throws InterruptedException, ExecutionException {
-            if (!isDone()) {
-                synchronized (this) {
-                    while (!isDone()) {
-                        wait(1000);
-                    }
-                }
-            }
+            completion.await();
             if (isCancelled() && !done) {
                 throw new CancellationException();
             }
@@ -201,14 +197,11 @@ public class BasicExecutionContext extends AbstractExecutionContext {
         }
 
         @Override
-        public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-            if (isDone()) return get();
-            CountdownTimer time = CountdownTimer.newInstanceStarted( Duration.of(timeout, unit) );
-            while (!time.isExpired()) {
-                wait(time.getDurationRemaining().lowerBound(Duration.ONE_MILLISECOND).toMilliseconds());
-                if (isDone()) return get();
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!completion.await(timeout, unit)) {
+                throw new TimeoutException();
             }
-            throw new TimeoutException();
+            return get();
         }
     }
     
@@ -23,7 +23,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.collect.Iterables;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -38,6 +37,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -50,6 +50,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.internal.BrooklynLoggingCategories;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
@@ -58,9 +61,12 @@ import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.TaskAdaptable;
 import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
@@ -72,6 +78,7 @@ import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager.BrooklynTaskLoggingMdc;
 import org.apache.brooklyn.util.core.task.BasicTask.PlaceholderTask;
+import org.apache.brooklyn.util.core.task.PriorityTaskExecutor.TaskPriority;
 import org.apache.brooklyn.util.core.task.TaskInternal.TaskCancellationMode;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.RuntimeInterruptedException;
@@ -88,7 +95,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Function;
-import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
@@ -116,6 +123,44 @@ public class BasicExecutionManager implements ExecutionManager {
 
     private static final boolean SCHEDULED_TASKS_COUNT_AS_ACTIVE = true;
 
+    /** How tasks submitted to the execution manager are given threads. */
+    @Beta
+    public enum ExecutorMode {
+        /** a new thread is created whenever no idle thread is available (the default, and historic behaviour) */
+        UNBOUNDED,
+        /** a bounded pool with a priority queue; see {@link PriorityTaskExecutor} */
+        BOUNDED,
+        /** a new virtual thread for each task; requires Java 21 or later, falling back to {@link #UNBOUNDED} otherwise */
+        VIRTUAL
+    }
+
+    @Beta
+    public static final ConfigKey<ExecutorMode> EXECUTOR_MODE = ConfigKeys.newConfigKey(ExecutorMode.class,
+            "brooklyn.executionManager.mode",
+            "How task threads are managed: UNBOUNDED (a thread per concurrently running task), "
+            + "BOUNDED (a fixed-size pool with priority queueing, grown temporarily if all workers are blocked), "
+            + "or VIRTUAL (a virtual thread per task, if supported by the JVM)",
+            ExecutorMode.UNBOUNDED);
+
+    @Beta
+    public static final ConfigKey<Integer> BOUNDED_CORE_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.bounded.coreThreads",
+            "Number of worker threads normally used in BOUNDED mode",
+            Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+
+    @Beta
+    public static final ConfigKey<Integer> BOUNDED_MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.bounded.maxThreads",
+            "Maximum number of worker threads in BOUNDED mode, "
+            + "used only when all workers are blocked (e.g. waiting on queued children) and the queue is not progressing",
+            2000);
+
+    @Beta
+    public static final ConfigKey<Duration> BOUNDED_STALL_CHECK_PERIOD = ConfigKeys.newDurationConfigKey(
+            "brooklyn.executionManager.bounded.stallCheckPeriod",
+            "How often to check in BOUNDED mode whether the pool is stalled and needs to grow",
+            Duration.millis(250));
+
     private boolean jitterThreads = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_JITTER_THREADS);
     private int jitterThreadsMaxDelay = Integer.getInteger(JITTER_THREADS_MAX_DELAY_PROPERTY, 200);
 
@@ -263,12 +308,9 @@ public class BasicExecutionManager implements ExecutionManager {
     // many things in here could be more efficient however (different types of lookup etc),
     // do that when we need to.
 
-    //access to this field AND to members in this field is synchronized, 
-    //to allow us to preserve order while guaranteeing thread-safe
-    //(but more testing is needed before we are completely sure it is thread-safe!)
-    //synch blocks are as finely grained as possible for efficiency;
-    //NB CopyOnWriteArraySet is a perf bottleneck, and the simple map makes it easier to remove when a tag is empty
-    private Map<Object, Set<Task<?>>> tasksByTag = new HashMap<Object, Set<Task<?>>>();
+    //preserves submission order within a tag; reads are lock-free and writes only contend per tag
+    //(previously a map of synchronized sets, guarded by a single monitor which serialized the management plane)
+    private final TasksByTagIndex tasksByTag = new TasksByTagIndex();
 
     private ConcurrentMap<String, Task<?>> tasksById = new ConcurrentHashMap<String, Task<?>>();
 
@@ -301,23 +343,80 @@ public class BasicExecutionManager implements ExecutionManager {
     };
 
     public BasicExecutionManager(String contextid) {
+        this(contextid, null);
+    }
+
+    /**
+     * @param config used to determine the {@link #EXECUTOR_MODE} and related settings; may be null to use defaults
+     */
+    public BasicExecutionManager(String contextid, StringConfigMap config) {
         threadFactory = newThreadFactory(contextid);
         daemonThreadFactory = new ThreadFactoryBuilder()
                 .setThreadFactory(threadFactory)
                 .setDaemon(true)
                 .build();
 
-        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
-        runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
-                daemonThreadFactory);
-
         delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
 
+        ExecutorMode mode = getConfig(config, EXECUTOR_MODE);
+        ExecutorService virtualRunner = null;
+        if (mode == ExecutorMode.VIRTUAL) {
+            virtualRunner = newVirtualThreadPerTaskExecutor(contextid);
+            if (virtualRunner == null) {
+                log.warn("Virtual threads not supported in this JVM (" + System.getProperty("java.version") + "); "
+                        + "execution manager " + contextid + " falling back to " + ExecutorMode.UNBOUNDED);
+            }
+        }
+        if (virtualRunner != null) {
+            log.debug("Execution manager " + contextid + " using virtual threads");
+            runner = virtualRunner;
+        } else if (mode == ExecutorMode.BOUNDED) {
+            final PriorityTaskExecutor boundedRunner = new PriorityTaskExecutor(getConfig(config, BOUNDED_CORE_THREADS),
+                    getConfig(config, BOUNDED_MAX_THREADS), daemonThreadFactory);
+            long stallCheckMillis = getConfig(config, BOUNDED_STALL_CHECK_PERIOD).toMilliseconds();
+            delayedRunner.scheduleWithFixedDelay(() -> {
+                try {
+                    boundedRunner.checkForStall();
+                } catch (Exception e) {
+                    log.warn("Error checking task pool " + boundedRunner + " for stalls (continuing)", e);
+                }
+            }, stallCheckMillis, stallCheckMillis, TimeUnit.MILLISECONDS);
+            log.debug("Execution manager " + contextid + " using bounded task pool " + boundedRunner);
+            runner = boundedRunner;
+        } else {
+            // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
+            runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                    daemonThreadFactory);
+        }
+
         if (jitterThreads) {
             log.info("Task startup jittering enabled with a maximum of " + jitterThreadsMaxDelay + " delay.");
         }
     }
 
+    /**
+     * Creates an executor which starts a new virtual thread for each task,
+     * or returns null if virtual threads are not available.
+     * Done reflectively as we compile against Java versions without virtual threads.
+     */
+    protected ExecutorService newVirtualThreadPerTaskExecutor(String contextid) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "brooklyn-execmanager-" + contextid + "-virtual-", 0L);
+            builder = builderClass.getMethod("uncaughtExceptionHandler", Thread.UncaughtExceptionHandler.class).invoke(builder, new UncaughtExceptionHandlerImplementation());
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            if (log.isTraceEnabled()) log.trace("Virtual threads unavailable: " + e, e);
+            return null;
+        }
+    }
+
+    private static <T> T getConfig(StringConfigMap config, ConfigKey<T> key) {
+        return config == null ? key.getDefaultValue() : config.getConfig(key);
+    }
+
     private final static class UncaughtExceptionHandlerImplementation implements Thread.UncaughtExceptionHandler {
         @Override
         public void uncaughtException(Thread t, Throwable e) {
@@ -380,10 +479,7 @@ public class BasicExecutionManager implements ExecutionManager {
      */
     @Deprecated
     public void deleteTag(Object tag) {
-        Set<Task<?>> tasks;
-        synchronized (tasksByTag) {
-            tasks = tasksByTag.remove(tag);
-        }
+        Set<Task<?>> tasks = tasksByTag.removeTag(tag);
         if (tasks != null) {
             for (Task<?> task : tasks) {
                 deleteTask(task);
@@ -396,11 +492,8 @@ public class BasicExecutionManager implements ExecutionManager {
      * @return if all tasks were done and the tag has been deleted
      */
     public boolean deleteDoneInTag(Object tag) {
-        Set<Task<?>> tasks;
         boolean tagEmpty = true;
-        synchronized (tasksByTag) {
-            tasks = MutableSet.copyOf(tasksByTag.get(tag));
-        }
+        Set<Task<?>> tasks = MutableSet.copyOf(tasksByTag.getLiveOrNull(tag));
         if (tasks != null) {
             for (Task<?> task : tasks) {
                 if (task.isDone(true)) {
@@ -411,7 +504,7 @@ public class BasicExecutionManager implements ExecutionManager {
             }
         }
         if (tagEmpty) {
-            if (!tasksByTag.containsKey(tag)) {
+            if (!tasksByTag.containsTag(tag)) {
                 return true;
             }
         }
@@ -450,16 +543,8 @@ public class BasicExecutionManager implements ExecutionManager {
         Set<?> tags = TaskTags.getTagsFast(checkNotNull(task, "task"));
         int removedByTagCount = 0;
         for (Object tag : tags) {
-            synchronized (tasksByTag) {
-                Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
-                if (tasks != null) {
-                    if (tasks.remove(task)) {
-                        removedByTagCount++;
-                        if (tasks.isEmpty()) {
-                            tasksByTag.remove(tag);
-                        }
-                    }
-                }
+            if (tasksByTag.remove(tag, task)) {
+                removedByTagCount++;
             }
         }
         int removedByTagMissingCount = tags.size() - removedByTagCount;
@@ -498,6 +583,13 @@ public class BasicExecutionManager implements ExecutionManager {
             }
         }
         if (removedById != null) {
+            for (ExecutionListener listener : listeners) {
+                try {
+                    listener.onTaskDeleted(removedById);
+                } catch (Exception e) {
+                    log.warn("Error running execution listener " + listener + " of task " + removedById + " deleted", e);
+                }
+            }
             task.getTags().forEach(t -> {
                 // remove tags which might have references to entities etc (help out garbage collector)
                 if (t instanceof TaskInternal) {
@@ -568,27 +660,34 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
-    private Set<Task<?>> tasksWithTagCreating(Object tag) {
-        Preconditions.checkNotNull(tag);
-        synchronized (tasksByTag) {
-            Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
-            if (result == null) {
-                result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
-                tasksByTag.put(tag, result);
-            }
-            return result;
-        }
+    /**
+     * count of tasks submitted but waiting for a thread; always zero unless in {@link ExecutorMode#BOUNDED} mode
+     */
+    public long getNumQueuedTasks() {
+        return runner instanceof PriorityTaskExecutor ? ((PriorityTaskExecutor) runner).getQueueDepth() : 0;
     }
 
     /**
-     * exposes live view, for internal use only
+     * mean time tasks have waited for a thread; always zero unless in {@link ExecutorMode#BOUNDED} mode
+     */
+    public Duration getMeanTaskQueueWaitTime() {
+        return runner instanceof PriorityTaskExecutor ? ((PriorityTaskExecutor) runner).getMeanQueueWaitTime() : Duration.ZERO;
+    }
+
+    /**
+     * longest time any task has waited for a thread; always zero unless in {@link ExecutorMode#BOUNDED} mode
+     */
+    public Duration getMaxTaskQueueWaitTime() {
+        return runner instanceof PriorityTaskExecutor ? ((PriorityTaskExecutor) runner).getMaxQueueWaitTime() : Duration.ZERO;
+    }
+
+    /**
+     * exposes live (unmodifiable, concurrently iterable) view, for internal use only
      */
     @Beta
     public Set<Task<?>>
     tasksWithTagLiveOrNull(Object tag) {
-        synchronized (tasksByTag) {
-            return tasksByTag.get(tag);
-        }
+        return tasksByTag.getLiveOrNull(tag);
     }
 
     @Override
@@ -611,9 +710,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Set<Task<?>> getTasksWithTag(Object tag) {
         Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
         if (result == null) return Collections.emptySet();
-        synchronized (result) {
-            return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
-        }
+        return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
     }
 
     @Override
@@ -623,9 +720,7 @@ public class BasicExecutionManager implements ExecutionManager {
         while (ti.hasNext()) {
             Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(ti.next());
             if (tasksForTag != null) {
-                synchronized (tasksForTag) {
-                    result.addAll(tasksForTag);
-                }
+                result.addAll(tasksForTag);
             }
         }
         return Collections.unmodifiableSet(result);
@@ -654,6 +749,20 @@ public class BasicExecutionManager implements ExecutionManager {
         return Collections.unmodifiableSet(result);
     }
 
+    /**
+     * Returns a page of the tasks with the given tag, most interesting first (see {@link TasksByTagIndex.InterestKey}),
+     * continuing after the cursor from the previous page if supplied, in the given states (any if null),
+     * and accepted by the filter (if supplied), up to the limit (if positive).
+     * This reads only as many tasks as are returned or skipped by the filter, rather than all the tasks with the tag.
+     *
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    @Beta
+    public TasksByTagIndex.Page getTasksWithTagMostInterestingFirst(Object tag, @Nullable String afterCursor,
+            @Nullable Set<TasksByTagIndex.TaskState> states, @Nullable Predicate<? super Task<?>> filter, int limit) {
+        return tasksByTag.query(tag, afterCursor, states, filter, limit);
+    }
+
     /**
      * live view of all tasks, for internal use only
      */
@@ -664,9 +773,7 @@ public class BasicExecutionManager implements ExecutionManager {
 
     @Override
     public Set<Object> getTaskTags() {
-        synchronized (tasksByTag) {
-            return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet()));
-        }
+        return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.getTags()));
     }
 
     @Override
@@ -880,13 +987,20 @@ public class BasicExecutionManager implements ExecutionManager {
         }
     }
 
-    private final class SubmissionCallable<T> implements Callable<T> {
+    private final class SubmissionCallable<T> implements Callable<T>, PriorityTaskExecutor.HasTaskPriority {
         private final Map<?, ?> flags;
         private final Task<T> task;
+        private final TaskPriority priority;
 
-        private SubmissionCallable(Map<?, ?> flags, Task<T> task) {
+        private SubmissionCallable(Map<?, ?> flags, Task<T> task, TaskPriority priority) {
             this.flags = flags;
             this.task = task;
+            this.priority = priority;
+        }
+
+        @Override
+        public TaskPriority getTaskPriority() {
+            return priority;
         }
 
         @Override
@@ -1042,7 +1156,7 @@ public class BasicExecutionManager implements ExecutionManager {
         if (((TaskInternal<T>) task).getJob() == null)
             throw new NullPointerException("Task " + task + " submitted with with null job: job must be supplied.");
 
-        Callable<T> job = new SubmissionCallable<T>(flags, task);
+        Callable<T> job = new SubmissionCallable<T>(flags, task, runner instanceof PriorityTaskExecutor ? getTaskPriority(task) : TaskPriority.NORMAL);
 
         // If there's a scheduler then use that; otherwise execute it directly
         Set<TaskScheduler> schedulers = null;
@@ -1066,6 +1180,21 @@ public class BasicExecutionManager implements ExecutionManager {
         return task;
     }
 
+    /**
+     * Priority used for a task when running in {@link ExecutorMode#BOUNDED} mode:
+     * effectors and tasks acting for a user are {@link TaskPriority#INTERACTIVE},
+     * sensor-event deliveries and scheduled iterations are {@link TaskPriority#BACKGROUND}.
+     */
+    protected TaskPriority getTaskPriority(Task<?> task) {
+        Set<Object> tags = BrooklynTaskTags.getTagsFast(task);
+        if (tags.contains(BrooklynTaskTags.EFFECTOR_TAG)) return TaskPriority.INTERACTIVE;
+        EntitlementContext entitlement = BrooklynTaskTags.getEntitlement(tags);
+        if (entitlement != null && Strings.isNonBlank(entitlement.user())) return TaskPriority.INTERACTIVE;
+        if (tags.contains(BrooklynTaskTags.SENSOR_TAG)) return TaskPriority.BACKGROUND;
+        if (task.getSubmittedByTask() instanceof ScheduledTask) return TaskPriority.BACKGROUND;
+        return TaskPriority.NORMAL;
+    }
+
     protected <T> void afterSubmitRecordFuture(final Task<T> task, Future<T> future) {
         // SubmissionCallable (above) invokes the listeners on completion;
         // this future allows a caller to add custom listeners
@@ -1119,7 +1248,7 @@ public class BasicExecutionManager implements ExecutionManager {
             ((TaskInternal<?>) task).getMutableTags().addAll((Collection<?>) flags.remove("tags"));
 
         for (Object tag : BrooklynTaskTags.getTagsFast(task)) {
-            tasksWithTagCreating(tag).add(task);
+            tasksByTag.add(tag, task);
         }
 
         tasksById.put(task.getId(), task);
@@ -1202,6 +1331,14 @@ public class BasicExecutionManager implements ExecutionManager {
                 PerThreadCurrentTaskHolder.perThreadCurrentTask.set(task);
             }
             ((TaskInternal<?>) task).setStartTimeUtc(System.currentTimeMillis());
+            tasksByTag.update(BrooklynTaskTags.getTagsFast(task), task);
+            for (ExecutionListener listener : listeners) {
+                try {
+                    listener.onTaskStarting(task);
+                } catch (Exception e) {
+                    log.warn("Error running execution listener " + listener + " of task " + task + " starting", e);
+                }
+            }
         }
 
         if (allowJitter) {
@@ -1341,6 +1478,7 @@ public class BasicExecutionManager implements ExecutionManager {
             } else {
                 ((TaskInternal<?>) task).setEndTimeUtc(System.currentTimeMillis());
             }
+            tasksByTag.update(BrooklynTaskTags.getTagsFast(task), task);
 
             if (startedGuaranteedToEndInSameThreadAndEndingSameThread) {
                 PerThreadCurrentTaskHolder.perThreadCurrentTask.remove();
@@ -397,12 +397,22 @@ public class BasicTask<T> implements TaskInternal<T> {
     }
     
     @Override
-    public synchronized void blockUntilStarted() {
+    public void blockUntilStarted() {
         blockUntilStarted(null);
     }
 
     @Override
-    public synchronized boolean blockUntilStarted(Duration timeout) {
+    public boolean blockUntilStarted(Duration timeout) {
+        // fast path without the monitor, as this is called on every get();
+        // also means callers on virtual threads do not pin their carrier unless they actually have to wait
+        if (cancelled) throw new CancellationException();
+        if (internalFuture!=null) return true;
+        synchronized (this) {
+            return blockUntilStartedSynchronized(timeout);
+        }
+    }
+
+    private boolean blockUntilStartedSynchronized(Duration timeout) {
         Long endTime = timeout==null ? null : System.currentTimeMillis() + timeout.toMillisecondsRoundingUp();
         while (true) {
             if (cancelled) throw new CancellationException();
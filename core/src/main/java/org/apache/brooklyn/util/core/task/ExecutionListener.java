@@ -22,10 +22,17 @@ import org.apache.brooklyn.api.mgmt.Task;
 
 public interface ExecutionListener {
 
+    /** invoked in the task's thread when a task is starting to run, after {@link Task#getStartTimeUtc()} is set
+     * but before doing any of the task's work; so should return quickly */
+    public default void onTaskStarting(Task<?> task) {}
+
     /** invoked when a task completes: 
      * {@link Task#getEndTimeUtc()} and {@link Task#isDone()} are guaranteed to be set,
      * and {@link Task#get()} should return immediately for most Task implementations
      * (care has been taken to avoid potential deadlocks here, waiting for a result!)  */
     public void onTaskDone(Task<?> task);
+
+    /** invoked when the manager deletes its record of a task, in the deleting thread; so should return quickly */
+    public default void onTaskDeleted(Task<?> task) {}
     
 }
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A bounded thread pool used by {@link BasicExecutionManager} in place of the default unbounded cached pool.
+ * <p>
+ * Work is queued in priority order (see {@link TaskPriority}), and FIFO within a priority.
+ * Because Brooklyn tasks commonly block waiting on other tasks (e.g. a parent on its children),
+ * a fixed-size pool can deadlock when all workers are blocked on work which is still queued.
+ * To prevent this {@link #checkForStall()} should be invoked periodically: if work is queued,
+ * all workers are busy, and nothing has completed since the previous check, the pool is grown
+ * (up to the configured maximum), and it is shrunk back to the core size once the queue drains.
+ */
+@Beta
+public class PriorityTaskExecutor extends ThreadPoolExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PriorityTaskExecutor.class);
+
+    /** Scheduling priority of work submitted to the pool; earlier constants run first. */
+    public enum TaskPriority {
+        /** user-facing work, such as effectors and REST-initiated tasks */
+        INTERACTIVE,
+        NORMAL,
+        /** housekeeping work, such as sensor event delivery, feeds and other scheduled iterations */
+        BACKGROUND
+    }
+
+    /** Implemented by callables which know their priority; others are treated as {@link TaskPriority#NORMAL}. */
+    public interface HasTaskPriority {
+        TaskPriority getTaskPriority();
+    }
+
+    private final int coreThreads;
+    private final int maxThreads;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong totalDequeued = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    private long completedAtLastStallCheck = -1;
+
+    public PriorityTaskExecutor(int coreThreads, int maxThreads, ThreadFactory threadFactory) {
+        super(coreThreads, coreThreads, 10L, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), threadFactory);
+        if (coreThreads <= 0) throw new IllegalArgumentException("Core thread count must be positive: " + coreThreads);
+        if (maxThreads < coreThreads) throw new IllegalArgumentException("Max thread count " + maxThreads + " must not be less than core thread count " + coreThreads);
+        this.coreThreads = coreThreads;
+        this.maxThreads = maxThreads;
+        // let idle workers die so a quiet server (or a shutdown) does not hold threads
+        allowCoreThreadTimeOut(true);
+    }
+
+    public static TaskPriority getTaskPriority(Object job) {
+        if (job instanceof HasTaskPriority) {
+            TaskPriority result = ((HasTaskPriority) job).getTaskPriority();
+            if (result != null) return result;
+        }
+        return TaskPriority.NORMAL;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PrioritizedFutureTask<T>(callable, getTaskPriority(callable), sequence.getAndIncrement());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PrioritizedFutureTask<T>(runnable, value, getTaskPriority(runnable), sequence.getAndIncrement());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!(command instanceof PrioritizedFutureTask)) {
+            // the priority queue requires comparable entries
+            command = newTaskFor(command, null);
+        }
+        super.execute(command);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof PrioritizedFutureTask) {
+            long wait = System.nanoTime() - ((PrioritizedFutureTask<?>) r).queuedNanos;
+            totalDequeued.incrementAndGet();
+            totalQueueWaitNanos.addAndGet(wait);
+            maxQueueWaitNanos.accumulateAndGet(wait, Math::max);
+        }
+    }
+
+    /**
+     * Grows the pool if it appears to be starved (see class javadoc), or shrinks it back to its core size
+     * if there is no longer any queued work.
+     *
+     * @return whether the pool size was changed
+     */
+    public synchronized boolean checkForStall() {
+        long completed = getCompletedTaskCount();
+        boolean progressed = completed != completedAtLastStallCheck;
+        completedAtLastStallCheck = completed;
+
+        int queued = getQueue().size();
+        int poolSize = getCorePoolSize();
+        if (queued > 0 && !progressed && getActiveCount() >= poolSize) {
+            if (poolSize >= maxThreads) {
+                log.warn("Task pool " + this + " appears stalled with " + queued + " queued tasks but is already at its maximum of " + maxThreads + " threads");
+                return false;
+            }
+            int newSize = Math.min(maxThreads, poolSize + Math.min(queued, coreThreads));
+            log.debug("Task pool appears stalled with {} queued tasks and all {} workers busy; growing pool to {}", new Object[] {queued, poolSize, newSize});
+            setMaximumPoolSize(newSize);
+            setCorePoolSize(newSize);
+            return true;
+        }
+        if (queued == 0 && poolSize > coreThreads) {
+            log.debug("Task pool queue drained; shrinking pool from {} back to {}", poolSize, coreThreads);
+            setCorePoolSize(coreThreads);
+            setMaximumPoolSize(coreThreads);
+            return true;
+        }
+        return false;
+    }
+
+    public int getCoreThreads() {
+        return coreThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /** number of tasks waiting for a worker */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /** mean time tasks have waited in the queue before starting, or zero if none have started */
+    public Duration getMeanQueueWaitTime() {
+        long count = totalDequeued.get();
+        if (count == 0) return Duration.ZERO;
+        return Duration.nanos(totalQueueWaitNanos.get() / count);
+    }
+
+    /** longest time any task has waited in the queue before starting */
+    public Duration getMaxQueueWaitTime() {
+        return Duration.nanos(maxQueueWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[core=" + coreThreads + ", max=" + maxThreads + "]";
+    }
+
+    static class PrioritizedFutureTask<T> extends FutureTask<T> implements Comparable<PrioritizedFutureTask<?>> {
+        final TaskPriority priority;
+        final long sequence;
+        final long queuedNanos = System.nanoTime();
+
+        PrioritizedFutureTask(Callable<T> callable, TaskPriority priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        PrioritizedFutureTask(Runnable runnable, T value, TaskPriority priority, long sequence) {
+            super(runnable, value);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PrioritizedFutureTask<?> other) {
+            int result = priority.compareTo(other.priority);
+            if (result != 0) return result;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
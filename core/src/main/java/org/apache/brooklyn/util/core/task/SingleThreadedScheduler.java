@@ -110,14 +110,28 @@ public class SingleThreadedScheduler implements TaskScheduler, CanSetName {
     }
 
     private synchronized <T> Future<T> executeNow(final Callable<T> c) {
-        return executor.submit(new Callable<T>() {
-            @Override public T call() throws Exception {
-                try {
-                    return c.call();
-                } finally {
-                    onEnd();
-                }
-            }});
+        return executor.submit(new EndNotifyingCallable<T>(c));
+    }
+    
+    private class EndNotifyingCallable<T> implements Callable<T>, PriorityTaskExecutor.HasTaskPriority {
+        private final Callable<T> c;
+        
+        EndNotifyingCallable(Callable<T> c) {
+            this.c = c;
+        }
+        
+        @Override public T call() throws Exception {
+            try {
+                return c.call();
+            } finally {
+                onEnd();
+            }
+        }
+        
+        @Override public PriorityTaskExecutor.TaskPriority getTaskPriority() {
+            // keep the priority of the wrapped job if the executor is priority-aware
+            return PriorityTaskExecutor.getTaskPriority(c);
+        }
     }
     
     
@@ -0,0 +1,394 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.text.Strings;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+
+/**
+ * Index of tasks by tag, as used by {@link BasicExecutionManager}.
+ * <p>
+ * Reads ({@link #getLiveOrNull(Object)} and iterating the result) take no locks.
+ * Mutations are serialized per tag only, using {@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)},
+ * so submissions and deletions for different tags do not contend.
+ * Tasks for a tag are kept in the order they were added.
+ * <p>
+ * Tasks for a tag are also kept most interesting first, as {@link InterestKey} describes,
+ * so that {@link #query(Object, String, Set, Predicate, int)} can return the first page of these without scanning and sorting all of them.
+ * That order is by the state of the task when it was added or last {@link #update(Iterable, Task) updated}, which the execution manager
+ * does when a task starts and ends.
+ */
+@Beta
+public class TasksByTagIndex {
+
+    private final ConcurrentMap<Object, TasksForTag> tasksByTag = new ConcurrentHashMap<Object, TasksForTag>();
+
+    /** shared across tags; only used for ordering within a tag */
+    private final AtomicLong sequence = new AtomicLong();
+
+    public void add(Object tag, final Task<?> task) {
+        Preconditions.checkNotNull(tag);
+        tasksByTag.compute(tag, (k, tasks) -> {
+            if (tasks == null) tasks = new TasksForTag();
+            tasks.addInternal(task, sequence.getAndIncrement());
+            return tasks;
+        });
+    }
+
+    /** removes the task from the given tag, and the tag if it is then empty; returns whether the task was present */
+    public boolean remove(Object tag, final Task<?> task) {
+        final boolean[] removed = new boolean[1];
+        tasksByTag.computeIfPresent(tag, (k, tasks) -> {
+            removed[0] = tasks.removeInternal(task);
+            return tasks.isEmpty() ? null : tasks;
+        });
+        return removed[0];
+    }
+
+    /**
+     * re-orders the task in the most-interesting-first order of the given tags, after its state has changed;
+     * tags which the task was not added to, or has been removed from, are ignored
+     */
+    public void update(Iterable<?> tags, final Task<?> task) {
+        for (Object tag : tags) {
+            if (tag == null) continue;
+            tasksByTag.computeIfPresent(tag, (k, tasks) -> {
+                tasks.updateInternal(task);
+                return tasks;
+            });
+        }
+    }
+
+    /**
+     * Returns the tasks with the tag, most interesting first, continuing after the given cursor (from the page before) if supplied,
+     * in the given states (or in any state if null), and accepted by the filter (if supplied), up to the limit (if positive).
+     */
+    public Page query(Object tag, @Nullable String afterCursor, @Nullable Set<TaskState> states, @Nullable Predicate<? super Task<?>> filter, int limit) {
+        TasksForTag tasks = tasksByTag.get(tag);
+        if (tasks == null) return new Page(Collections.<Task<?>>emptyList(), null);
+        return page(tasks.tasksByInterest, afterCursor, states, filter, limit);
+    }
+
+    /** As {@link #query(Object, String, Set, Predicate, int)}, for the given tasks, ordered by their current state */
+    public static Page query(Collection<? extends Task<?>> tasks, @Nullable String afterCursor, @Nullable Set<TaskState> states, @Nullable Predicate<? super Task<?>> filter, int limit) {
+        InterestKey after = Strings.isBlank(afterCursor) ? null : InterestKey.fromCursor(afterCursor);
+        // keeps only the most interesting limit+1 (the extra one tells whether there are more), rather than sorting them all
+        NavigableMap<InterestKey, Task<?>> tasksByInterest = new TreeMap<>();
+        Set<Task<?>> seen = MutableSet.of();
+        for (Task<?> task : tasks) {
+            if (!seen.add(task)) continue;
+            InterestKey key = InterestKey.of(task);
+            if (states != null && !states.contains(key.getState())) continue;
+            if (after != null && key.compareTo(after) <= 0) continue;
+            if (filter != null && !filter.apply(task)) continue;
+            tasksByInterest.put(key, task);
+            if (limit > 0 && tasksByInterest.size() > limit + 1) {
+                tasksByInterest.pollLastEntry();
+            }
+        }
+        if (limit > 0 && tasksByInterest.size() > limit) {
+            tasksByInterest.pollLastEntry();
+            return new Page(MutableList.copyOf(tasksByInterest.values()), tasksByInterest.lastKey().toCursor());
+        }
+        return new Page(MutableList.copyOf(tasksByInterest.values()), null);
+    }
+
+    /** combines pages of the same query (same cursor, states, filter and limit) over different tasks into one page,
+     * taking the most interesting from each, and with a cursor if any of them had more */
+    public static Page merge(int limit, Page... pages) {
+        List<Task<?>> tasks = MutableList.of();
+        boolean more = false;
+        for (Page page : pages) {
+            tasks.addAll(page.getTasks());
+            more |= page.getCursor() != null;
+        }
+        Page result = query(tasks, null, null, null, limit);
+        if (more && result.getCursor() == null && !result.getTasks().isEmpty()) {
+            return new Page(result.getTasks(), InterestKey.of(Iterables.getLast(result.getTasks())).toCursor());
+        }
+        return result;
+    }
+
+    private static Page page(NavigableMap<InterestKey, Task<?>> tasksByInterest, @Nullable String afterCursor, @Nullable Set<TaskState> states, @Nullable Predicate<? super Task<?>> filter, int limit) {
+        InterestKey after = Strings.isBlank(afterCursor) ? null : InterestKey.fromCursor(afterCursor);
+        List<Task<?>> result = MutableList.of();
+        // a task being updated may briefly be present under its old and new keys
+        Set<Task<?>> seen = MutableSet.of();
+        InterestKey last = null;
+        // states are the leading part of the key, so each one asked for is a contiguous range which can be read directly
+        for (TaskState state : (states == null ? EnumSet.allOf(TaskState.class) : states.isEmpty() ? EnumSet.noneOf(TaskState.class) : EnumSet.copyOf(states))) {
+            if (after != null && after.state.compareTo(state) > 0) continue;
+            InterestKey from = after != null && after.state == state ? after : InterestKey.first(state);
+            InterestKey to = state.ordinal() + 1 < TaskState.values().length ? InterestKey.first(TaskState.values()[state.ordinal() + 1]) : null;
+            NavigableMap<InterestKey, Task<?>> range = to == null
+                    ? tasksByInterest.tailMap(from, from != after)
+                    : tasksByInterest.subMap(from, from != after, to, false);
+            for (Map.Entry<InterestKey, Task<?>> entry : range.entrySet()) {
+                if (seen.contains(entry.getValue()) || (filter != null && !filter.apply(entry.getValue()))) continue;
+                if (limit > 0 && result.size() >= limit) {
+                    return new Page(result, last.toCursor());
+                }
+                result.add(entry.getValue());
+                seen.add(entry.getValue());
+                last = entry.getKey();
+            }
+        }
+        return new Page(result, null);
+    }
+
+    /** removes the tag, returning its tasks (or null if the tag was not present) */
+    public Set<Task<?>> removeTag(Object tag) {
+        return tasksByTag.remove(tag);
+    }
+
+    /** live, unmodifiable view of the tasks with this tag, in the order added, or null if there are none */
+    public Set<Task<?>> getLiveOrNull(Object tag) {
+        return tasksByTag.get(tag);
+    }
+
+    public boolean containsTag(Object tag) {
+        return tasksByTag.containsKey(tag);
+    }
+
+    /** live view of the tags in use */
+    public Set<Object> getTags() {
+        return Collections.unmodifiableSet(tasksByTag.keySet());
+    }
+
+    /** The state of a task, in order of interest */
+    public enum TaskState {
+        /** submitted but not yet started */
+        QUEUED,
+        /** started and not yet ended */
+        ACTIVE,
+        /** ended without being started, e.g. cancelled */
+        ENDED_WITHOUT_STARTING,
+        /** started and ended */
+        ENDED,
+        /** not submitted (not normally indexed) */
+        UNSUBMITTED;
+
+        public static TaskState of(Task<?> task) {
+            if (task.getSubmitTimeUtc() < 0) return UNSUBMITTED;
+            if (task.getEndTimeUtc() > 0) return task.getStartTimeUtc() >= 0 ? ENDED : ENDED_WITHOUT_STARTING;
+            return task.getStartTimeUtc() >= 0 ? ACTIVE : QUEUED;
+        }
+
+        /** the time the task entered this state */
+        long timeUtc(Task<?> task) {
+            switch (this) {
+                case ENDED: case ENDED_WITHOUT_STARTING: return task.getEndTimeUtc();
+                case ACTIVE: return task.getStartTimeUtc();
+                default: return task.getSubmitTimeUtc();
+            }
+        }
+    }
+
+    /**
+     * Orders tasks most interesting first, approximating {@code EntityResource.InterestingTasksFirstComparator} in the REST API:
+     * by {@link TaskState}, then most recently entering that state, then by id
+     * (but without that comparator's preference for top-level and manually submitted tasks).
+     */
+    public static final class InterestKey implements Comparable<InterestKey> {
+        private final TaskState state;
+        private final long timeUtc;
+        private final String id;
+
+        private InterestKey(TaskState state, long timeUtc, String id) {
+            this.state = state;
+            this.timeUtc = timeUtc;
+            this.id = id;
+        }
+
+        public static InterestKey of(Task<?> task) {
+            TaskState state = TaskState.of(task);
+            return new InterestKey(state, state.timeUtc(task), task.getId());
+        }
+
+        /** sorts before all tasks in the given state */
+        static InterestKey first(TaskState state) {
+            return new InterestKey(state, Long.MAX_VALUE, "");
+        }
+
+        /** parses the result of {@link #toCursor()}, throwing {@link IllegalArgumentException} if it is not one */
+        public static InterestKey fromCursor(String cursor) {
+            String[] parts = cursor.split(":", 3);
+            try {
+                if (parts.length == 3) return new InterestKey(TaskState.valueOf(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            } catch (IllegalArgumentException e) {
+                // fall through
+            }
+            throw new IllegalArgumentException("Invalid task cursor '" + cursor + "'");
+        }
+
+        public String toCursor() {
+            return state + ":" + timeUtc + ":" + id;
+        }
+
+        public TaskState getState() {
+            return state;
+        }
+
+        @Override
+        public int compareTo(InterestKey o) {
+            int result = state.compareTo(o.state);
+            if (result != 0) return result;
+            // more recent first
+            result = Long.compare(o.timeUtc, timeUtc);
+            if (result != 0) return result;
+            return id.compareTo(o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InterestKey)) return false;
+            InterestKey other = (InterestKey) o;
+            return state == other.state && timeUtc == other.timeUtc && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(state, timeUtc, id);
+        }
+
+        @Override
+        public String toString() {
+            return toCursor();
+        }
+    }
+
+    /** Tasks from a {@link TasksByTagIndex#query(Object, String, Set, Predicate, int) query}, and the cursor to continue from */
+    public static class Page {
+        private final List<Task<?>> tasks;
+        private final String cursor;
+
+        public Page(List<Task<?>> tasks, @Nullable String cursor) {
+            this.tasks = Collections.unmodifiableList(tasks);
+            this.cursor = cursor;
+        }
+
+        public List<Task<?>> getTasks() {
+            return tasks;
+        }
+
+        /** The cursor to get the next page with, or null if there are no more tasks */
+        @Nullable
+        public String getCursor() {
+            return cursor;
+        }
+    }
+
+    /**
+     * The tasks for a single tag. Externally read-only; mutated only from within
+     * the {@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)} calls above,
+     * so the two maps are always updated together.
+     */
+    private static class TasksForTag extends AbstractSet<Task<?>> {
+        private final ConcurrentMap<Task<?>, Long> sequenceByTask = new ConcurrentHashMap<Task<?>, Long>();
+        private final ConcurrentNavigableMap<Long, Task<?>> tasksBySequence = new ConcurrentSkipListMap<Long, Task<?>>();
+        private final ConcurrentMap<Task<?>, InterestKey> interestKeyByTask = new ConcurrentHashMap<Task<?>, InterestKey>();
+        private final ConcurrentNavigableMap<InterestKey, Task<?>> tasksByInterest = new ConcurrentSkipListMap<InterestKey, Task<?>>();
+
+        void addInternal(Task<?> task, long seq) {
+            if (sequenceByTask.putIfAbsent(task, seq) == null) {
+                tasksBySequence.put(seq, task);
+                InterestKey key = InterestKey.of(task);
+                interestKeyByTask.put(task, key);
+                tasksByInterest.put(key, task);
+            }
+        }
+
+        void updateInternal(Task<?> task) {
+            InterestKey oldKey = interestKeyByTask.get(task);
+            if (oldKey == null) return;
+            InterestKey newKey = InterestKey.of(task);
+            if (newKey.equals(oldKey)) return;
+            // add before removing, so concurrent readers do not miss it (though they may see it twice)
+            interestKeyByTask.put(task, newKey);
+            tasksByInterest.put(newKey, task);
+            tasksByInterest.remove(oldKey);
+        }
+
+        boolean removeInternal(Object task) {
+            Long seq = sequenceByTask.remove(task);
+            if (seq == null) return false;
+            tasksBySequence.remove(seq);
+            InterestKey key = interestKeyByTask.remove(task);
+            if (key != null) tasksByInterest.remove(key);
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return sequenceByTask.containsKey(o);
+        }
+
+        @Override
+        public int size() {
+            return sequenceByTask.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return sequenceByTask.isEmpty();
+        }
+
+        @Override
+        public Iterator<Task<?>> iterator() {
+            final Iterator<Task<?>> delegate = tasksBySequence.values().iterator();
+            return new Iterator<Task<?>>() {
+                @Override
+                public boolean hasNext() {
+                    return delegate.hasNext();
+                }
+
+                @Override
+                public Task<?> next() {
+                    return delegate.next();
+                }
+            };
+        }
+    }
+}
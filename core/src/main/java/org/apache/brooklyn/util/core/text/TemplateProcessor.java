@@ -20,6 +20,9 @@ package org.apache.brooklyn.util.core.text;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Iterables;
 import com.google.common.io.Files;
 import freemarker.cache.StringTemplateLoader;
@@ -45,6 +48,7 @@ import org.apache.brooklyn.util.collections.ThreadLocalStack;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.RuntimeInterruptedException;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.internal.IntegerSystemProperty;
 import org.apache.brooklyn.util.javalang.Reflections;
 import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
@@ -56,6 +60,7 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Map;
+import java.util.Objects;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -77,6 +82,25 @@ public class TemplateProcessor {
         }
     }
 
+    /**
+     * Maximum total length (in characters) of the parsed templates to keep, keyed by template contents and context, for reuse when the same template
+     * is processed again (e.g. workflow expressions in loops); least recently used are evicted first. The memory used by a parsed template, and by its key,
+     * grows with its length, so this bounds the memory used however large the templates are; a template longer than this is not kept.
+     * Defaults to 1000000; 0 disables the cache.
+     */
+    @Beta
+    public static final IntegerSystemProperty TEMPLATE_CACHE_MAX_CHARS = new IntegerSystemProperty("brooklyn.template.cache.maxChars");
+    private static final int DEFAULT_TEMPLATE_CACHE_MAX_CHARS = 1000*1000;
+
+    // parsed templates are thread-safe, provided the configuration they were created with is not changed
+    private static final Configuration TEMPLATE_CONFIG_LOGGING_ERRORS = newTemplateConfiguration(true);
+    private static final Configuration TEMPLATE_CONFIG_NOT_LOGGING_ERRORS = newTemplateConfiguration(false);
+    private static final Cache<TemplateCacheKey,Template> TEMPLATE_CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(TEMPLATE_CACHE_MAX_CHARS.isAvailable() ? Math.max(0, TEMPLATE_CACHE_MAX_CHARS.getValue()) : DEFAULT_TEMPLATE_CACHE_MAX_CHARS)
+            .weigher((TemplateCacheKey key, Template template) -> key.length())
+            .recordStats()
+            .build();
+
     static BrooklynFreemarkerUnwrappableObjectWrapper BROOKLYN_WRAPPER = new BrooklynFreemarkerUnwrappableObjectWrapper();
 
     static ThreadLocalStack<Map<TemplateModel,Object>> TEMPLATE_MODEL_UNWRAP_CACHE = new ThreadLocalStack<>(true);
@@ -841,14 +865,7 @@ public class TemplateProcessor {
 
     public static Object processTemplateContents(String context, String templateContents, final TemplateHashModel substitutions, boolean allowSingleVariableObject, boolean logErrors) {
         try {
-            Configuration cfg = new Configuration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS);
-            cfg.setLogTemplateExceptions(logErrors);
-            cfg.setNumberFormat("computer");
-
-            StringTemplateLoader templateLoader = new StringTemplateLoader();
-            templateLoader.putTemplate(context, templateContents);
-            cfg.setTemplateLoader(templateLoader);
-            Template template = cfg.getTemplate(context);
+            Template template = getTemplate(context, templateContents, logErrors);
 
             if (allowSingleVariableObject && template.getRootTreeNode().getClass().getName().equals("freemarker.core.DollarVariable")) {
                 Object dollarVariable = template.getRootTreeNode();
@@ -903,4 +920,64 @@ public class TemplateProcessor {
         }
     }
 
+    private static Configuration newTemplateConfiguration(boolean logErrors) {
+        Configuration cfg = new Configuration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS);
+        cfg.setLogTemplateExceptions(logErrors);
+        cfg.setNumberFormat("computer");
+        // templates are created from strings; an empty loader prevents includes from reading files
+        cfg.setTemplateLoader(new StringTemplateLoader());
+        return cfg;
+    }
+
+    /** Returns the parsed template, from the cache if it has been parsed recently; parse errors are thrown and not cached. */
+    private static Template getTemplate(String context, String templateContents, boolean logErrors) throws IOException {
+        TemplateCacheKey key = new TemplateCacheKey(context, templateContents, logErrors);
+        Template template = TEMPLATE_CACHE.getIfPresent(key);
+        if (template==null) {
+            template = new Template(context, new StringReader(templateContents), logErrors ? TEMPLATE_CONFIG_LOGGING_ERRORS : TEMPLATE_CONFIG_NOT_LOGGING_ERRORS);
+            TEMPLATE_CACHE.put(key, template);
+        }
+        return template;
+    }
+
+    /** Hits, misses, evictions and current size of the cache of parsed templates (see {@link #TEMPLATE_CACHE_MAX_CHARS}). */
+    @Beta
+    public static Map<String,Object> getTemplateCacheMetrics() {
+        CacheStats stats = TEMPLATE_CACHE.stats();
+        return MutableMap.<String,Object>of(
+                "size", TEMPLATE_CACHE.size(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "evictions", stats.evictionCount());
+    }
+
+    private static final class TemplateCacheKey {
+        private final String context;
+        private final String contents;
+        private final boolean logErrors;
+
+        TemplateCacheKey(String context, String contents, boolean logErrors) {
+            this.context = context;
+            this.contents = contents;
+            this.logErrors = logErrors;
+        }
+
+        int length() {
+            return (context==null ? 0 : context.length()) + contents.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TemplateCacheKey)) return false;
+            TemplateCacheKey other = (TemplateCacheKey) o;
+            return logErrors == other.logErrors && Objects.equals(context, other.context) && Objects.equals(contents, other.contents);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(context, contents, logErrors);
+        }
+    }
+
 }
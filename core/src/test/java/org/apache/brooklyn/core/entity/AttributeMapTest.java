@@ -24,6 +24,7 @@ import static org.testng.Assert.assertTrue;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -64,9 +65,13 @@ public class AttributeMapTest {
         app = TestApplication.Factory.newManagedInstanceForTests();
         TestEntity entity = app.addChild(EntitySpec.create(TestEntity.class));
         entityImpl = (TestEntityImpl) Entities.deproxy(entity);
-        map = new AttributeMap(entityImpl, Collections.synchronizedMap(MutableMap.<Collection<String>,Object>of()));
+        map = new AttributeMap(entityImpl, newStorage());
         executor = Executors.newCachedThreadPool();
     }
+
+    protected Map<Collection<String>,Object> newStorage() {
+        return Collections.synchronizedMap(MutableMap.<Collection<String>,Object>of());
+    }
     
     @AfterMethod(alwaysRun=true)
     public void tearDown() {
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.sensor.AttributeSlots;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/** Runs the {@link AttributeMapTest} tests against {@link AttributeSlots} storage. */
+public class AttributeMapWithSlotsTest extends AttributeMapTest {
+
+    @Override
+    protected Map<Collection<String>, Object> newStorage() {
+        return new AttributeSlots();
+    }
+
+    @Test
+    public void testAsMapKeepsInsertionOrderAndNulls() throws Exception {
+        AttributeSensor<String> sensor1 = Sensors.newStringSensor("z", "");
+        AttributeSensor<String> sensor2 = Sensors.newStringSensor("a.b", "");
+        AttributeSensor<String> sensor3 = Sensors.newStringSensor("m", "");
+
+        map.update(sensor1, "1val");
+        map.update(sensor2, null);
+        map.update(sensor3, "3val");
+        map.update(sensor1, "1val-updated");
+
+        assertEquals(ImmutableList.copyOf(map.asMap().keySet()), ImmutableList.of("z", "a.b", "m"));
+        assertEquals(map.asMap().get("z"), "1val-updated");
+        assertNull(map.asMap().get("a.b"));
+        assertEquals(ImmutableList.copyOf(map.asRawMap().keySet()), 
+                ImmutableList.of(ImmutableList.of("z"), ImmutableList.of("a", "b"), ImmutableList.of("m")));
+
+        map.remove(sensor2);
+        assertNull(map.getValue(sensor2));
+        assertEquals(ImmutableList.copyOf(map.asMap().keySet()), ImmutableList.of("z", "m"));
+
+        map.update(sensor2, "2val");
+        assertEquals(ImmutableList.copyOf(map.asMap().keySet()), ImmutableList.of("z", "m", "a.b"));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.List;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.internal.EntityChangeStream.Change;
+import org.apache.brooklyn.core.mgmt.internal.EntityChangeStream.ChangeType;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class EntityChangeStreamTest extends BrooklynAppUnitTestSupport {
+
+    private EntityChangeStream.Subscription subscribe(List<String> entityIds, List<String> sensorGlobs, List<String> configGlobs, boolean includeTasks, int bufferSize) {
+        return EntityChangeStream.get(mgmt).subscribe(null, entityIds, sensorGlobs, configGlobs, includeTasks, bufferSize);
+    }
+
+    /** waits for a change of the given type and name on the entity, returning it and all changes received before it */
+    private List<Change> waitForChange(EntityChangeStream.Subscription s, ChangeType type, Entity entity, String name) throws Exception {
+        List<Change> result = MutableList.of();
+        while (true) {
+            Change change = s.poll(Asserts.DEFAULT_LONG_TIMEOUT);
+            Assert.assertNotNull(change, "No " + type + " " + name + " change; had " + result);
+            result.add(change);
+            if (change.getType() == type && change.getEntity().equals(entity) && name.equals(change.getName())) return result;
+        }
+    }
+
+    @Test
+    public void testEntityAddedRenamedAndRemoved() throws Exception {
+        try (EntityChangeStream.Subscription s = subscribe(ImmutableList.of(), ImmutableList.of(), ImmutableList.of(), false, 100)) {
+            TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class).displayName("child"));
+            waitForChange(s, ChangeType.ENTITY_ADDED, child, "child");
+
+            child.setDisplayName("renamed");
+            waitForChange(s, ChangeType.ENTITY_RENAMED, child, "renamed");
+
+            Entities.unmanage(child);
+            waitForChange(s, ChangeType.ENTITY_REMOVED, child, "renamed");
+        }
+    }
+
+    @Test
+    public void testSensorAndConfigChangesFilteredByGlobAndEntity() throws Exception {
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity other = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        try (EntityChangeStream.Subscription s = subscribe(ImmutableList.of(child.getId()), ImmutableList.of("test.n*"), ImmutableList.of("test.conf*"), false, 100)) {
+            other.sensors().set(TestEntity.NAME, "other");
+            child.sensors().set(TestEntity.SEQUENCE, 1);
+            child.sensors().set(TestEntity.NAME, "hello");
+            List<Change> changes = waitForChange(s, ChangeType.SENSOR, child, TestEntity.NAME.getName());
+            Asserts.assertEquals(changes.get(changes.size() - 1).getValue(), "hello");
+            Asserts.assertFalse(changes.stream().anyMatch(c -> c.getEntity().equals(other) || TestEntity.SEQUENCE.getName().equals(c.getName())),
+                    "changes=" + changes);
+
+            child.config().set(TestEntity.CONF_NAME, "world");
+            waitForChange(s, ChangeType.CONFIG, child, TestEntity.CONF_NAME.getName());
+        }
+    }
+
+    @Test
+    public void testTaskChanges() throws Exception {
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        try (EntityChangeStream.Subscription s = subscribe(ImmutableList.of(), ImmutableList.of(), ImmutableList.of(), true, 100)) {
+            child.invoke(TestEntity.MY_EFFECTOR, null).get();
+            List<Change> changes = waitForChange(s, ChangeType.TASK_ENDED, child, "myEffector");
+            Asserts.assertTrue(changes.stream().anyMatch(c -> c.getType() == ChangeType.TASK_STARTED && c.getTask().equals(changes.get(changes.size() - 1).getTask())),
+                    "changes=" + changes);
+        }
+    }
+
+    @Test
+    public void testOverflowRequestsResyncAndCloseStopsListening() throws Exception {
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        EntityChangeStream stream = EntityChangeStream.get(mgmt);
+        try (EntityChangeStream.Subscription s = subscribe(ImmutableList.of(), ImmutableList.of(), ImmutableList.of("test.conf*"), false, 2)) {
+            Asserts.assertEquals(stream.getSubscriberCount(), 1);
+            // config changes are published by the dispatcher thread, in order, so they overflow the buffer once
+            for (int i = 0; i < 5; i++) child.config().set(TestEntity.CONF_NAME, "v" + i);
+            Asserts.succeedsEventually(() -> Asserts.assertTrue(s.isResyncNeeded()));
+            Asserts.assertFalse(s.isResyncNeeded(), "should be cleared once reported");
+            Asserts.assertTrue(s.getDroppedCount() > 0);
+            Asserts.assertTrue(s.drain().size() <= 2);
+        }
+        Asserts.assertEquals(stream.getSubscriberCount(), 0);
+
+        // nothing is published when there are no subscribers
+        child.config().set(TestEntity.CONF_NAME, "after");
+        try (EntityChangeStream.Subscription s = subscribe(ImmutableList.of(), ImmutableList.of(), ImmutableList.of("test.conf*"), false, 2)) {
+            Assert.assertNull(s.poll(Duration.millis(10)));
+        }
+    }
+}
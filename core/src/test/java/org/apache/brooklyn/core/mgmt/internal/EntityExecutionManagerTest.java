@@ -217,6 +217,87 @@ public class EntityExecutionManagerTest extends BrooklynAppUnitTestSupport {
         assertNonSystemTaskCountForEntityEventuallyIsInRange(e, 0, 2);
     }
 
+    public void testIncrementalGcTaskAtNormalTagLimitWithoutSweep() throws Exception {
+        final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.INCREMENTAL, true);
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 2);
+
+        for (int count=0; count<10; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+
+        // no forceGc: tasks over capacity are deleted as they complete
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                Collection<Task<?>> tasks = removeSystemTasks( BrooklynTaskTags.getTasksInEntityContext(app.getManagementContext().getExecutionManager(), e) );
+                Assert.assertTrue(tasks.size() <= 2, "Tasks were "+tasks);
+                Assert.assertTrue(Iterables.any(tasks, t -> "task9".equals(t.getDisplayName())), "Tasks were "+tasks);
+            }});
+    }
+
+    public void testIncrementalGcDeletesTaskOnceNoLongerRetainedByGrace() throws Exception {
+        final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.INCREMENTAL, true);
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 2);
+
+        // over capacity for boring-tag, but each retained as under capacity for its other tag
+        final Task<?> first = runEmptyTaskWithNameAndTags(e, "task-1", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag", "other-tag-1");
+        runEmptyTaskWithNameAndTags(e, "task-2", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag", "other-tag-2");
+        runEmptyTaskWithNameAndTags(e, "task-3", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag", "other-tag-3");
+        Assert.assertNotNull(app.getManagementContext().getExecutionManager().getTask(first.getId()));
+
+        // once other-tag-1 is over capacity too, the first task is deleted, as it is still counted against boring-tag
+        for (int count=0; count<3; count++)
+            runEmptyTaskWithNameAndTags(e, "other-task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "other-tag-1");
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                Assert.assertNull(app.getManagementContext().getExecutionManager().getTask(first.getId()));
+                Set<Task<?>> tasks = app.getManagementContext().getExecutionManager().getTasksWithTag("other-tag-1");
+                Assert.assertTrue(tasks.size() <= 2, "Tasks were "+tasks);
+            }});
+    }
+
+    public void testIncrementalGcForgetsTasksDeletedElsewhere() throws Exception {
+        final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.INCREMENTAL, true);
+        final BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+
+        final Task<?> task = runEmptyTaskWithNameAndTags(e, "deleted-elsewhere", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                Assert.assertEquals(gc.getCompletedTaskCount("boring-tag"), 1);
+            }});
+
+        ((BasicExecutionManager)app.getManagementContext().getExecutionManager()).deleteTask(task);
+        Assert.assertEquals(gc.getCompletedTaskCount("boring-tag"), 0);
+    }
+
+    public void testIncrementalGcExpiresAgedTasksBetweenSweeps() throws Exception {
+        final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.INCREMENTAL, true);
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.MAX_TASK_AGE, Duration.millis(10));
+
+        final Task<?> task = runEmptyTaskWithNameAndTags(e, "aged", ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        Time.sleep(Duration.millis(20));
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                ((LocalManagementContext)mgmt).getGarbageCollector().gcTasksIncrementally();
+                Assert.assertNull(app.getManagementContext().getExecutionManager().getTask(task.getId()));
+            }});
+    }
+
     public void testGcTaskAtEntityLimit() throws Exception {
         final TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
 
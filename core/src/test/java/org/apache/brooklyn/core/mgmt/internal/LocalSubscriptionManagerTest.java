@@ -19,36 +19,47 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.SubscriptionManager;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.entity.RecordingSensorEventListener;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
 import org.apache.brooklyn.core.sensor.BasicSensorEvent;
+import org.apache.brooklyn.core.sensor.BatchSensorEventListener;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.entity.group.BasicGroup;
 import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.BasicExecutionContext;
+import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.time.Duration;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Range;
 
 /**
  * testing the {@link SubscriptionManager} and associated classes.
@@ -182,6 +193,46 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         if (threadException.get() != null) throw threadException.get();
     }
 
+    @Test
+    public void testSubscribingWhilePublishingDeliversEachSubscriberInOrder() throws Exception {
+        final int numEvents = 5000;
+        final List<String> problems = new CopyOnWriteArrayList<String>();
+        final List<AtomicInteger> lastValues = new CopyOnWriteArrayList<AtomicInteger>();
+
+        Thread publisher = new Thread(() -> {
+            for (int i = 1; i <= numEvents; i++) {
+                entity.sensors().set(TestEntity.SEQUENCE, i);
+            }
+        });
+        publisher.start();
+        try {
+            // each listener is its own subscriber, so has its own single-threaded delivery
+            for (int i = 0; i < 50; i++) {
+                final AtomicInteger lastValue = new AtomicInteger();
+                final AtomicInteger active = new AtomicInteger();
+                lastValues.add(lastValue);
+                app.subscriptions().subscribe(entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                    @Override public void onEvent(SensorEvent<Integer> event) {
+                        if (active.incrementAndGet() > 1) problems.add("concurrent delivery of "+event.getValue());
+                        int last = lastValue.getAndSet(event.getValue());
+                        if (event.getValue() <= last) problems.add("delivered "+event.getValue()+" after "+last);
+                        active.decrementAndGet();
+                    }});
+                Thread.yield();
+            }
+        } finally {
+            publisher.join();
+        }
+
+        Asserts.succeedsEventually(() -> {
+            for (AtomicInteger lastValue : lastValues) {
+                // a subscription made after the last publish receives nothing
+                Asserts.assertTrue(lastValue.get() == 0 || lastValue.get() == numEvents, "lastValues="+lastValues);
+            }
+        });
+        Asserts.assertEquals(problems, ImmutableList.of());
+    }
+
     @Test
     // same test as in PolicySubscriptionTest, but for entities / simpler
     public void testSubscriptionReceivesInitialValueEventsInOrder() {
@@ -275,4 +326,80 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         }
         Assert.assertEquals(result.get(), app.getExecutionContext());
     }
+
+    @Test
+    public void testCoalescedSubscriptionReceivesLatestValue() throws Exception {
+        final CountDownLatch firstDeliveryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstDelivery = new CountDownLatch(1);
+        final List<Integer> values = new CopyOnWriteArrayList<Integer>();
+        app.subscriptions().subscribe(ImmutableMap.of("coalesceEvents", true), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                @Override public void onEvent(SensorEvent<Integer> event) {
+                    values.add(event.getValue());
+                    firstDeliveryStarted.countDown();
+                    try {
+                        releaseFirstDelivery.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }});
+        entity.sensors().set(TestEntity.SEQUENCE, 0);
+        assertTrue(firstDeliveryStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i=1; i<=100; i++) {
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+        }
+        releaseFirstDelivery.countDown();
+
+        Asserts.succeedsEventually(() -> assertEquals(values.get(values.size()-1), (Integer)100));
+        // the first delivery, then only the latest of those published while it was blocked
+        assertEquals(values, ImmutableList.of(0, 100));
+    }
+
+    @Test
+    public void testBatchedSubscriptionReceivesAllEventsInOrder() throws Exception {
+        final CountDownLatch firstDeliveryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstDelivery = new CountDownLatch(1);
+        final List<List<Integer>> batches = new CopyOnWriteArrayList<List<Integer>>();
+        app.subscriptions().subscribe(ImmutableMap.of("batchEvents", true), entity, TestEntity.SEQUENCE, new BatchSensorEventListener<Integer>() {
+                @Override public void onEvent(SensorEvent<Integer> event) {
+                    fail("Should have been delivered as a batch: "+event);
+                }
+                @Override public void onEvents(List<SensorEvent<Integer>> events) {
+                    List<Integer> batch = MutableList.of();
+                    for (SensorEvent<Integer> event: events) batch.add(event.getValue());
+                    batches.add(batch);
+                    firstDeliveryStarted.countDown();
+                    try {
+                        releaseFirstDelivery.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }});
+        entity.sensors().set(TestEntity.SEQUENCE, 0);
+        assertTrue(firstDeliveryStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i=1; i<=100; i++) {
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+        }
+        releaseFirstDelivery.countDown();
+
+        Asserts.succeedsEventually(() -> assertEquals(batches.size(), 2));
+        assertEquals(batches.get(0), ImmutableList.of(0));
+        assertEquals(batches.get(1), ContiguousSet.create(Range.closed(1, 100), DiscreteDomain.integers()).asList());
+    }
+
+    @Test
+    public void testBatchedDeliveryTaskTargetsEventSource() throws Exception {
+        final AtomicReference<Set<Object>> deliveryTags = new AtomicReference<Set<Object>>();
+        // subscribed to all producers, so the source is known only from the events
+        app.subscriptions().subscribe(ImmutableMap.of("batchEvents", true), (Entity) null, TestEntity.SEQUENCE, new BatchSensorEventListener<Integer>() {
+                @Override public void onEvent(SensorEvent<Integer> event) {
+                    fail("Should have been delivered as a batch: "+event);
+                }
+                @Override public void onEvents(List<SensorEvent<Integer>> events) {
+                    deliveryTags.compareAndSet(null, MutableSet.copyOf(Tasks.current().getTags()));
+                }});
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+
+        Asserts.succeedsEventually(() -> Assert.assertNotNull(deliveryTags.get()));
+        assertTrue(deliveryTags.get().contains(BrooklynTaskTags.tagForTargetEntity(entity)), "tags="+deliveryTags.get());
+    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.util.javalang.JavaClassNames;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+/** As {@link BrooklynMementoPersisterFileBasedTest}, but committing each persistence cycle as a batch. */
+@Test
+public class BrooklynMementoPersisterFileBasedBatchedTest extends BrooklynMementoPersisterFileBasedTest {
+
+    @Override
+    protected ManagementContext newPersistingManagementContext() {
+        mementoDir = Os.newTempDir(JavaClassNames.cleanSimpleClassName(this));
+        Os.deleteOnExitRecursively(mementoDir);
+        BrooklynProperties properties = BrooklynProperties.Factory.newEmpty();
+        properties.put(BrooklynMementoPersisterToObjectStore.PERSISTER_BATCH_WRITES_ENABLED, true);
+        return RebindTestUtils.managementContextBuilder(classLoader, new FileBasedObjectStore(mementoDir))
+            .properties(properties)
+            .persistPeriod(Duration.millis(10)).buildStarted();
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.util.javalang.JavaClassNames;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+/** As {@link BrooklynMementoPersisterFileBasedTest}, but storing mementos with the compact encoding. */
+@Test
+public class BrooklynMementoPersisterFileBasedCompactTest extends BrooklynMementoPersisterFileBasedTest {
+
+    @Override
+    protected ManagementContext newPersistingManagementContext() {
+        mementoDir = Os.newTempDir(JavaClassNames.cleanSimpleClassName(this));
+        Os.deleteOnExitRecursively(mementoDir);
+        BrooklynProperties properties = BrooklynProperties.Factory.newEmpty();
+        properties.put(BrooklynMementoPersisterToObjectStore.PERSISTER_MEMENTO_ENCODING, CompactXmlMementoStoreEncoding.NAME);
+        return RebindTestUtils.managementContextBuilder(classLoader, new FileBasedObjectStore(mementoDir))
+            .properties(properties)
+            .persistPeriod(Duration.millis(10)).buildStarted();
+    }
+
+    @Test
+    public void testMementosStoredCompact() throws Exception {
+        RebindTestUtils.waitForPersisted(localManagementContext);
+        byte[] stored = Files.toByteArray(new File(new File(mementoDir, "entities"), entity.getId()));
+        assertTrue(MementoStoreEncodings.COMPACT.isEncoded(stored));
+        assertTrue(MementoStoreEncodings.decode(stored).contains(entity.getId()));
+    }
+
+}
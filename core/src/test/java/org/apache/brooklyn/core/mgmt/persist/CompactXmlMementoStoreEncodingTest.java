@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.workflow.store.WorkflowRecordDeltas;
+import org.apache.brooklyn.util.text.Strings;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+
+public class CompactXmlMementoStoreEncodingTest {
+
+    private static final String ENTITY = "<entity>\n"
+            + "  <brooklynVersion>1.0.0</brooklynVersion>\n"
+            + "  <type>org.example.MyEntity</type>\n"
+            + "  <id>e1</id>\n"
+            + "  <config>\n"
+            + "    <a>x &amp; &lt;y&gt;</a>\n"
+            + "    <b/>\n"
+            + "    <c class=\"string\" note=\"q&quot;&#xa;\">  </c>\n"
+            + "    <d>\n"
+            + "      <e class=\"string\">1</e>\n"
+            + "    </d>\n"
+            + "  </config>\n"
+            + "</entity>";
+
+    private final MementoStoreEncoding encoding = MementoStoreEncodings.COMPACT;
+
+    @Test
+    public void testRoundTrip() {
+        byte[] encoded = encoding.encode(ENTITY);
+        assertTrue(encoding.isEncoded(encoded));
+        assertFalse(MementoStoreEncodings.XML.isEncoded(encoded));
+        assertEquals(encoding.decode(encoded), ENTITY);
+        assertEquals(MementoStoreEncodings.decode(encoded), ENTITY);
+    }
+
+    @Test
+    public void testRoundTripLargeTextAndRepeatedNames() {
+        StringBuilder xml = new StringBuilder("<entity>\n  <attributes>\n");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("    <sensor").append(i % 10).append(" class=\"org.example.MyValue\">v").append(i).append("</sensor").append(i % 10).append(">\n");
+        }
+        xml.append("    <big>").append(Strings.repeat("z", 100*1000)).append("</big>\n  </attributes>\n</entity>");
+
+        byte[] encoded = encoding.encode(xml.toString());
+        assertTrue(encoded.length < xml.length() / 10, "size="+encoded.length);
+        assertEquals(encoding.decode(encoded), xml.toString());
+    }
+
+    @Test
+    public void testStoresXmlUnchangedIfNotParseable() {
+        // not valid XML 1.0 (but written by XStream)
+        String xml = "<entity><id>e1</id><name>&#x1b;</name></entity>";
+        byte[] encoded = encoding.encode(xml);
+        assertFalse(encoding.isEncoded(encoded));
+        assertEquals(MementoStoreEncodings.decode(encoded), xml);
+    }
+
+    @Test
+    public void testOfNameOrClass() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        assertEquals(MementoStoreEncodings.of("xml", classLoader), MementoStoreEncodings.XML);
+        assertEquals(MementoStoreEncodings.of(null, classLoader), MementoStoreEncodings.XML);
+        assertEquals(MementoStoreEncodings.of("compact", classLoader), MementoStoreEncodings.COMPACT);
+        assertTrue(MementoStoreEncodings.of(CompactXmlMementoStoreEncoding.class.getName(), classLoader) instanceof CompactXmlMementoStoreEncoding);
+    }
+
+    @Test
+    public void testRewriteStore() {
+        InMemoryObjectStore store = new InMemoryObjectStore();
+        store.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.MASTER);
+        store.newAccessor("entities/e1").put(ENTITY);
+        store.newAccessor("bundles/b1").put("<bundle><id>b1</id></bundle>");
+        store.newAccessor("bundles/b1.jar").put("not xml");
+        String workflowRecord = WorkflowRecordDeltas.newFullRecord("<workflow><workflowId>w1</workflowId></workflow>");
+        store.newAccessor("workflows/e1_w1").put(workflowRecord);
+
+        assertEquals(MementoStoreEncodings.rewrite(store, MementoStoreEncodings.COMPACT), 3);
+        assertTrue(encoding.isEncoded(store.newAccessor("entities/e1").getBytes()));
+        assertEquals(MementoStoreEncodings.decode(store.newAccessor("entities/e1").getBytes()), ENTITY);
+        assertTrue(encoding.isEncoded(store.newAccessor("workflows/e1_w1").getBytes()));
+        assertEquals(WorkflowRecordDeltas.splitRecords(MementoStoreEncodings.decode(store.newAccessor("workflows/e1_w1").getBytes())),
+                WorkflowRecordDeltas.splitRecords(workflowRecord));
+        assertEquals(new String(store.newAccessor("bundles/b1.jar").getBytes(), Charsets.UTF_8), "not xml");
+        assertEquals(MementoStoreEncodings.rewrite(store, MementoStoreEncodings.COMPACT), 0);
+
+        assertEquals(MementoStoreEncodings.rewrite(store, MementoStoreEncodings.XML), 3);
+        assertEquals(store.newAccessor("entities/e1").get(), ENTITY);
+        assertEquals(WorkflowRecordDeltas.splitRecords(store.newAccessor("workflows/e1_w1").get()), WorkflowRecordDeltas.splitRecords(workflowRecord));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.api.mgmt.rebind.mementos.EntityMemento;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.xstream.XmlUtil;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class EntityMementoDeltasTest {
+
+    private static final String BASE = "<entity><id>e1</id><type>my.Type</type>"
+            + "<config><conf.a>a1</conf.a><conf.b>b1</conf.b></config>"
+            + "<attributes><sensor.x>x1</sensor.x><entry key=\"sensor y\">y1</entry></attributes>"
+            + "</entity>";
+
+    @Test
+    public void testApplyReplacesAddsAndRemovesEntries() {
+        String record1 = EntityMementoDeltas.newDeltaRecord(null, ImmutableList.of("conf.a"), ImmutableList.of("sensor.x", "sensor y"),
+                "<entity><id>e1</id><config><conf.a>a2</conf.a></config><attributes><sensor.x>x2</sensor.x></attributes></entity>");
+        String record2 = EntityMementoDeltas.newDeltaRecord(null, ImmutableList.of("conf.b"), ImmutableList.of("sensor.z"),
+                "<entity><id>e1</id><attributes><sensor.z>z1</sensor.z></attributes></entity>");
+
+        List<String> records = EntityMementoDeltas.splitRecords(record1 + record2);
+        assertEquals(records.size(), 2);
+        String result = EntityMementoDeltas.applyDeltaRecords(BASE, records);
+
+        assertEquals(XmlUtil.xpath(result, "/entity/type"), "my.Type");
+        assertEquals(XmlUtil.xpath(result, "/entity/config/conf.a"), "a2");
+        assertEquals(XmlUtil.xpath(result, "count(/entity/config/conf.b)"), "0");
+        assertEquals(XmlUtil.xpath(result, "/entity/attributes/sensor.x"), "x2");
+        assertEquals(XmlUtil.xpath(result, "count(/entity/attributes/entry)"), "0");
+        assertEquals(XmlUtil.xpath(result, "/entity/attributes/sensor.z"), "z1");
+    }
+
+    @Test
+    public void testApplyAddsAndRemovesSections() {
+        String record = EntityMementoDeltas.newDeltaRecord(null, ImmutableList.of("conf.a", "conf.b", "dyn"), ImmutableList.<String>of(),
+                "<entity><id>e1</id><config><dyn>d1</dyn></config><configKeys><dyn>key</dyn></configKeys></entity>");
+
+        String result = EntityMementoDeltas.applyDeltaRecords(BASE, ImmutableList.of(record.trim()));
+
+        assertEquals(XmlUtil.xpath(result, "/entity/config/dyn"), "d1");
+        assertEquals(XmlUtil.xpath(result, "count(/entity/config/*)"), "1");
+        assertEquals(XmlUtil.xpath(result, "/entity/configKeys/dyn"), "key");
+
+        String removal = EntityMementoDeltas.newDeltaRecord(null, ImmutableList.of("dyn"), ImmutableList.<String>of(), "<entity><id>e1</id></entity>");
+        result = EntityMementoDeltas.applyDeltaRecords(result, ImmutableList.of(removal.trim()));
+        assertEquals(XmlUtil.xpath(result, "count(/entity/config)"), "0");
+        assertEquals(XmlUtil.xpath(result, "count(/entity/configKeys)"), "0");
+    }
+
+    @Test
+    public void testIncompleteRecordIgnored() {
+        String record = EntityMementoDeltas.newDeltaRecord(null, ImmutableList.of("conf.a"), ImmutableList.<String>of(),
+                "<entity><id>e1</id><config><conf.a>a2</conf.a></config></entity>");
+        List<String> records = EntityMementoDeltas.splitRecords(record + record.substring(0, record.length() / 2));
+        assertEquals(records, ImmutableList.of(record.trim()));
+    }
+
+    @Test
+    public void testRecordForOtherBaseIgnored() {
+        String newBase = BASE.replace("a1", "a3");
+        String stale = EntityMementoDeltas.newDeltaRecord(EntityMementoDeltas.fingerprint(BASE), ImmutableList.of("conf.a"), ImmutableList.<String>of(),
+                "<entity><id>e1</id><config><conf.a>a2</conf.a></config></entity>");
+        String current = EntityMementoDeltas.newDeltaRecord(EntityMementoDeltas.fingerprint(newBase), ImmutableList.<String>of(), ImmutableList.of("sensor.x"),
+                "<entity><id>e1</id><attributes><sensor.x>x2</sensor.x></attributes></entity>");
+        List<String> records = EntityMementoDeltas.splitRecords(stale + current);
+
+        String result = EntityMementoDeltas.applyDeltaRecords(newBase, records);
+        assertEquals(XmlUtil.xpath(result, "/entity/config/conf.a"), "a3");
+        assertEquals(XmlUtil.xpath(result, "/entity/attributes/sensor.x"), "x2");
+
+        assertEquals(XmlUtil.xpath(EntityMementoDeltas.applyDeltaRecords(BASE, records), "/entity/config/conf.a"), "a2");
+    }
+
+    @Test
+    public void testSafeForDeltas() {
+        List<Object> list = MutableList.<Object>of("a", 1, true, Duration.ONE_SECOND);
+        assertTrue(EntityMementoDeltas.isSafeForDeltas(newMemento(ImmutableMap.of("list", list, "map", MutableMap.of("k", 2L)))));
+        // repeated values are written as references to the first
+        assertFalse(EntityMementoDeltas.isSafeForDeltas(newMemento(ImmutableMap.of("list", list, "again", list))));
+        assertFalse(EntityMementoDeltas.isSafeForDeltas(newMemento(ImmutableMap.of("nested", MutableList.of(list, list)))));
+        // invalid in XML, so written as a character reference
+        assertFalse(EntityMementoDeltas.isSafeForDeltas(newMemento(ImmutableMap.of("escape", "\u001b"))));
+        // other types might contain anything
+        assertFalse(EntityMementoDeltas.isSafeForDeltas(newMemento(ImmutableMap.of("other", new Object()))));
+    }
+
+    private static EntityMemento newMemento(Map<String, Object> attributes) {
+        Map<AttributeSensor<?>, Object> attributesBySensor = MutableMap.of();
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            attributesBySensor.put(Sensors.newSensor(Object.class, entry.getKey()), entry.getValue());
+        }
+        EntityMemento result = mock(EntityMemento.class);
+        when(result.getDynamicConfigKeys()).thenReturn(ImmutableList.<ConfigKey<?>>of());
+        when(result.getConfig()).thenReturn(ImmutableMap.<ConfigKey<?>, Object>of());
+        when(result.getConfigUnmatched()).thenReturn(ImmutableMap.<String, Object>of());
+        when(result.getAttributes()).thenReturn(attributesBySensor);
+        return result;
+    }
+}
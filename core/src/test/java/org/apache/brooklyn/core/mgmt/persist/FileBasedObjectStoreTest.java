@@ -23,17 +23,23 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileNotFoundException;
 
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectBatch;
 import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.io.FileUtil;
 import org.apache.brooklyn.util.os.Os;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
 
 public class FileBasedObjectStoreTest {
@@ -89,6 +95,63 @@ public class FileBasedObjectStoreTest {
         assertFalse(FileBasedObjectStore.isMementoDirExistButEmpty(basedir.getAbsolutePath()));
     }
     
+    @Test
+    public void testBatchCommitsPutsAndDeletes() throws Exception {
+        store.createSubPath("mysubdir");
+        store.newAccessor("mysubdir/todelete").put("old");
+        store.newAccessor("mysubdir/toreplace").put("old");
+        
+        StoreObjectBatch batch = store.newBatch();
+        batch.put("mysubdir/toreplace", ByteSource.wrap("new".getBytes(Charsets.UTF_8)));
+        batch.put("mysubdir/tocreate", ByteSource.wrap("created".getBytes(Charsets.UTF_8)));
+        batch.delete("mysubdir/todelete");
+        assertEquals(batch.size(), 3);
+        batch.commit();
+        
+        assertEquals(store.newAccessor("mysubdir/toreplace").get(), "new");
+        assertEquals(store.newAccessor("mysubdir/tocreate").get(), "created");
+        assertFalse(store.newAccessor("mysubdir/todelete").exists());
+        Asserts.assertEqualsIgnoringOrder(store.listContentsWithSubPath("mysubdir"), ImmutableList.of("mysubdir/toreplace", "mysubdir/tocreate"));
+        assertEquals(listJournalFiles().length, 0);
+    }
+    
+    @Test
+    public void testRecoverCompletesBatchWithCompleteJournal() throws Exception {
+        store.createSubPath("mysubdir");
+        store.newAccessor("mysubdir/todelete").put("old");
+        Files.write("new", new File(basedir, "mysubdir/toreplace.batch.tmp"), Charsets.UTF_8);
+        Files.write(".batch.tmp\nP mysubdir/toreplace\nD mysubdir/todelete\nEND\n", new File(basedir, FileBasedStoreObjectBatch.JOURNAL_FILE_PREFIX), Charsets.UTF_8);
+        
+        FileBasedStoreObjectBatch.recoverIncompleteCommits(basedir);
+        
+        assertEquals(store.newAccessor("mysubdir/toreplace").get(), "new");
+        assertFalse(store.newAccessor("mysubdir/todelete").exists());
+        assertEquals(listJournalFiles().length, 0);
+    }
+    
+    @Test
+    public void testRecoverDiscardsIncompleteJournal() throws Exception {
+        store.createSubPath("mysubdir");
+        store.newAccessor("mysubdir/todelete").put("old");
+        Files.write("new", new File(basedir, "mysubdir/toreplace.batch.tmp"), Charsets.UTF_8);
+        Files.write(".batch.tmp\nP mysubdir/toreplace\nD mysubdir/tode", new File(basedir, FileBasedStoreObjectBatch.JOURNAL_FILE_PREFIX), Charsets.UTF_8);
+        
+        FileBasedStoreObjectBatch.recoverIncompleteCommits(basedir);
+        
+        assertFalse(store.newAccessor("mysubdir/toreplace").exists());
+        assertEquals(store.newAccessor("mysubdir/todelete").get(), "old");
+        assertEquals(store.listContentsWithSubPath("mysubdir"), ImmutableList.of("mysubdir/todelete"));
+        assertEquals(listJournalFiles().length, 0);
+    }
+    
+    private File[] listJournalFiles() {
+        return basedir.listFiles(new FileFilter() {
+            @Override public boolean accept(File file) {
+                return file.getName().startsWith(FileBasedStoreObjectBatch.JOURNAL_FILE_PREFIX);
+            }
+        });
+    }
+    
     static void assertFilePermission700(File file) throws FileNotFoundException {
         assertEquals(FileUtil.getFilePermissions(file).get().substring(1), "rwx------");
     }
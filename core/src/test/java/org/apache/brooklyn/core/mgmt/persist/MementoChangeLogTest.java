@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+
+public class MementoChangeLogTest {
+
+    @Test
+    public void testChangesSince() {
+        MementoChangeLog log0 = MementoChangeLog.newLog();
+        MementoChangeLog log1 = log0.withChanges(ImmutableMultimap.of(BrooklynObjectType.ENTITY, "e1", BrooklynObjectType.LOCATION, "l1"), 100);
+        MementoChangeLog log2 = log1.withChanges(ImmutableMultimap.of(BrooklynObjectType.ENTITY, "e2"), 100);
+
+        SetMultimap<BrooklynObjectType, String> changes = log2.getChangesSince(log0).get();
+        assertEquals(changes.get(BrooklynObjectType.ENTITY), ImmutableSet.of("e1", "e2"));
+        assertEquals(changes.get(BrooklynObjectType.LOCATION), ImmutableSet.of("l1"));
+
+        assertEquals(log2.getChangesSince(log1).get().get(BrooklynObjectType.ENTITY), ImmutableSet.of("e2"));
+        assertTrue(log2.getChangesSince(log2).get().isEmpty());
+        assertTrue(log2.isSameVersion(log2));
+        assertFalse(log2.isSameVersion(log1));
+    }
+
+    @Test
+    public void testChangesUnknownForOtherEpochOrAllChanged() {
+        MementoChangeLog log = MementoChangeLog.newLog().withChanges(ImmutableMultimap.of(BrooklynObjectType.ENTITY, "e1"), 100);
+        MementoChangeLog other = MementoChangeLog.newLog().withChanges(ImmutableMultimap.of(BrooklynObjectType.ENTITY, "e1"), 100);
+        assertFalse(other.getChangesSince(log).isPresent());
+        assertFalse(other.isSameVersion(log));
+
+        MementoChangeLog checkpointed = log.withAllChanged(100);
+        assertFalse(checkpointed.getChangesSince(log).isPresent());
+        MementoChangeLog changedAfterCheckpoint = checkpointed.withChanges(ImmutableMultimap.of(BrooklynObjectType.POLICY, "p1"), 100);
+        assertEquals(changedAfterCheckpoint.getChangesSince(checkpointed).get().get(BrooklynObjectType.POLICY), ImmutableSet.of("p1"));
+    }
+
+    @Test
+    public void testChangesUnknownWhenTrimmed() {
+        MementoChangeLog log0 = MementoChangeLog.newLog();
+        MementoChangeLog log1 = log0.withChanges(ImmutableMultimap.of(BrooklynObjectType.ENTITY, "e1", BrooklynObjectType.ENTITY, "e2"), 3);
+        MementoChangeLog log2 = log1.withChanges(ImmutableMultimap.of(BrooklynObjectType.ENTITY, "e3", BrooklynObjectType.ENTITY, "e4"), 3);
+
+        // log2 keeps e2 from sequence 1, but not e1, so cannot give the changes since log0
+        assertFalse(log2.getChangesSince(log0).isPresent());
+        assertEquals(log2.getChangesSince(log1).get().get(BrooklynObjectType.ENTITY), ImmutableSet.of("e3", "e4"));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        MementoChangeLog log0 = MementoChangeLog.newLog();
+        MementoChangeLog log1 = log0.withChanges(ImmutableMultimap.of(BrooklynObjectType.CATALOG_ITEM, "my item:1.0"), 100);
+
+        MementoChangeLog parsed = MementoChangeLog.parse(log1.toContents());
+        assertTrue(parsed.isSameVersion(log1));
+        assertEquals(parsed.getEpoch(), log1.getEpoch());
+        assertEquals(parsed.getChangesSince(log0).get().get(BrooklynObjectType.CATALOG_ITEM), ImmutableSet.of("my item:1.0"));
+    }
+
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testParseMalformed() {
+        MementoChangeLog.parse("not a change log");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.mgmt.persist.MementoManifestIndex.ManifestFields;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class MementoManifestIndexTest {
+
+    private static final String ENTITY = "<entity>"
+            + "<brooklynVersion>1.0.0</brooklynVersion>"
+            + "<type>org.example.MyEntity</type>"
+            + "<id>e1</id>"
+            + "<catalogItemId>my-item:1.0</catalogItemId>"
+            + "<searchPath><string>a:1.0</string><string>b:1.0</string></searchPath>"
+            + "<parent>p1</parent>"
+            + "<config><id>not-this</id><type>nor-this</type></config>"
+            + "</entity>";
+
+    @Test
+    public void testExtractsFields() {
+        assertFields(MementoManifestIndex.extract(BrooklynObjectType.ENTITY, ENTITY));
+    }
+
+    @Test
+    public void testExtractsFieldsWithIllegalChars() {
+        // not valid XML 1.0, so needs the XPath fallback
+        String xml = ENTITY.replace("<config>", "<config><name>&#x1b;</name>");
+        assertFields(MementoManifestIndex.extract(BrooklynObjectType.ENTITY, xml));
+    }
+
+    @Test
+    public void testAbsentFieldsAreEmpty() {
+        ManifestFields fields = MementoManifestIndex.extract(BrooklynObjectType.LOCATION, "<location><id>l1</id><type>org.example.MyLocation</type></location>");
+        assertEquals(fields.getId(), "l1");
+        assertEquals(fields.getType(), "org.example.MyLocation");
+        assertEquals(fields.getParent(), "");
+        assertEquals(fields.getCatalogItemId(), "");
+        assertEquals(fields.getSearchPath(), ImmutableList.of());
+    }
+
+    @Test
+    public void testOtherRootElementIgnored() {
+        ManifestFields fields = MementoManifestIndex.extract(BrooklynObjectType.POLICY, "<enricher><id>x1</id></enricher>");
+        assertEquals(fields.getId(), "");
+    }
+
+    @Test
+    public void testIndexedById() {
+        MementoManifestIndex index = new MementoManifestIndex();
+        index.index(BrooklynObjectType.ENTITY, ENTITY);
+        assertFields(index.get(BrooklynObjectType.ENTITY, "e1"));
+        assertEquals(index.get(BrooklynObjectType.LOCATION, "e1"), null);
+        assertEquals(index.size(), 1);
+    }
+
+    private void assertFields(ManifestFields fields) {
+        assertEquals(fields.getId(), "e1");
+        assertEquals(fields.getType(), "org.example.MyEntity");
+        assertEquals(fields.getParent(), "p1");
+        assertEquals(fields.getCatalogItemId(), "my-item:1.0");
+        assertEquals(fields.getSearchPath(), ImmutableList.of("a:1.0", "b:1.0"));
+    }
+}
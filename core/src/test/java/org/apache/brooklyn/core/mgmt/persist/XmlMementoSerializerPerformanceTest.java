@@ -22,12 +22,19 @@ import java.io.StringWriter;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.brooklyn.api.catalog.CatalogItem;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.LookupContext;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
+import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.policy.PolicySpec;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.EnricherSpec;
+import org.apache.brooklyn.api.sensor.Feed;
+import org.apache.brooklyn.api.typereg.ManagedBundle;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
@@ -70,6 +77,106 @@ public class XmlMementoSerializerPerformanceTest extends AbstractPerformanceTest
          int numIterations = numIterations();
          double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
 
+         // Create the memento for that entity (only once)
+         final Memento memento = newEntityMemento();
+         int serializedLength = serializeToString(memento).length();
+
+         // Run the performance test
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoSerializer.serializeEntityMemento(size="+serializedLength+"chars)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         serializeToString(memento);
+                     }}));
+     }
+
+     /**
+      * Deserializes with the same serializer each time, as the persister does (with its cache of serializers
+      * for custom class loaders) when rebinding many objects from the same catalog bundles;
+      * compare with {@link #testDeserializeEntityMementoWithNewSerializerEachTime()}.
+      */
+     @Test(groups={"Live", "Acceptance"})
+     public void testDeserializeEntityMemento() throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+
+         final String serialized = serializeToString(newEntityMemento());
+         serializer.setLookupContext(newLookupContext());
+
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoSerializer.deserializeEntityMemento(size="+serialized.length()+"chars)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         serializer.fromString(serialized);
+                     }}));
+     }
+
+     /** As the persister did for each object with a custom class loader before it cached serializers. */
+     @Test(groups={"Live", "Acceptance"})
+     public void testDeserializeEntityMementoWithNewSerializerEachTime() throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = PERFORMANCE_EXPECTATION;
+
+         final String serialized = serializeToString(newEntityMemento());
+         final LookupContext lookupContext = newLookupContext();
+
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoSerializer.deserializeEntityMementoWithNewSerializer(size="+serialized.length()+"chars)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         XmlMementoSerializer<Object> newSerializer = XmlMementoSerializerBuilder.empty()
+                                 .withBrooklynDeserializingClassRenames()
+                                 .withClassLoader(XmlMementoSerializerPerformanceTest.class.getClassLoader()).build();
+                         newSerializer.setLookupContext(lookupContext);
+                         newSerializer.fromString(serialized);
+                     }}));
+     }
+
+     /** Compare with {@link #testSerializeEntityMemento()}; the summary gives the stored size with each encoding. */
+     @Test(groups={"Live", "Acceptance"})
+     public void testCompactEncodeEntityMemento() throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+
+         final String serialized = serializeToString(newEntityMemento());
+         int xmlSize = MementoStoreEncodings.XML.encode(serialized).length;
+         int compactSize = MementoStoreEncodings.COMPACT.encode(serialized).length;
+
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoStoreEncoding.compactEncodeEntityMemento(size="+xmlSize+"bytes xml, "+compactSize+"bytes compact)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         MementoStoreEncodings.COMPACT.encode(serialized);
+                     }}));
+     }
+
+     /** Compare with {@link #testDeserializeEntityMemento()}, for the additional cost of reading the compact encoding. */
+     @Test(groups={"Live", "Acceptance"})
+     public void testCompactDecodeEntityMemento() throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+
+         final byte[] stored = MementoStoreEncodings.COMPACT.encode(serializeToString(newEntityMemento()));
+
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoStoreEncoding.compactDecodeEntityMemento(size="+stored.length+"bytes)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         MementoStoreEncodings.COMPACT.decode(stored);
+                     }}));
+     }
+
+     private Memento newEntityMemento() {
          // Create an entity with lots of config/parameters, and sensors
          Map<ConfigKey<?>, String> config = Maps.newLinkedHashMap();
          List<BasicSpecParameter<?>> params = Lists.newArrayList();
@@ -91,21 +198,16 @@ public class XmlMementoSerializerPerformanceTest extends AbstractPerformanceTest
              entity.sensors().set(sensor, "valsensor"+i);
          }
 
-         // Create the memento for that entity (only once)
-         final Memento memento = MementosGenerators.newBasicMemento(Entities.deproxy(entity));
-         int serializedLength = serializeToString(memento).length();
+         return MementosGenerators.newBasicMemento(Entities.deproxy(entity));
+     }
 
-         // Run the performance test
-         measure(PerformanceTestDescriptor.create()
-                 .summary("mementoSerializer.serializeEntityMemento(size="+serializedLength+"chars)")
-                 .iterations(numIterations)
-                 .minAcceptablePerSecond(minRatePerSec)
-                 .job(new Runnable() {
-                     @Override public void run() {
-                         serializeToString(memento);
-                     }}));
+     private LookupContext newLookupContext() {
+         Entity entity = app.getChildren().iterator().next();
+         return new XmlMementoSerializerTest.LookupContextImpl("performance test", mgmt,
+                 ImmutableList.of(app, entity), ImmutableList.<Location>of(), ImmutableList.<Policy>of(),
+                 ImmutableList.<Enricher>of(), ImmutableList.<Feed>of(), ImmutableList.<CatalogItem<?, ?>>of(), ImmutableList.<ManagedBundle>of(), false);
      }
-     
+
      private String serializeToString(Object val) {
          StringWriter writer = new StringWriter();
          serializer.serialize(val, writer);
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.PersistMode;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** Tests that a read-only persister (as for a hot standby) uses the master's change log to load just the changed mementos. */
+public class RebindChangeLogTest extends RebindTestFixtureWithApp {
+
+    private LocalManagementContextForTests standbyMgmt;
+    private FileBasedObjectStore standbyStore;
+    private BrooklynMementoPersisterToObjectStore standbyPersister;
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(BrooklynMementoPersisterToObjectStore.PERSISTER_CHANGE_LOG_ENABLED, true);
+        return result;
+    }
+
+    @Override
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        super.setUp();
+        standbyMgmt = new LocalManagementContextForTests(BrooklynProperties.Factory.newEmpty());
+        standbyStore = new FileBasedObjectStore(mementoDir);
+        standbyStore.injectManagementContext(standbyMgmt);
+        standbyStore.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.HOT_STANDBY);
+        standbyPersister = new BrooklynMementoPersisterToObjectStore(standbyStore, standbyMgmt, classLoader);
+    }
+
+    @Override
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (standbyPersister != null) standbyPersister.stop(false);
+        if (standbyStore != null) standbyStore.close();
+        if (standbyMgmt != null) Entities.destroyAll(standbyMgmt);
+        super.tearDown();
+    }
+
+    @Test
+    public void testLoadsChangedMementos() throws Exception {
+        TestEntity changing = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity unchanging = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        changing.sensors().set(TestEntity.NAME, "v1");
+        RebindTestUtils.waitForPersisted(origApp);
+
+        final BrooklynMementoRawData data1 = loadWhenUnchanged();
+        assertTrue(data1.getEntities().get(changing.getId()).contains("v1"));
+
+        changing.sensors().set(TestEntity.NAME, "v2");
+        RebindTestUtils.waitForPersisted(origApp);
+        assertFalse(standbyPersister.isUnchangedSinceLastLoad());
+
+        BrooklynMementoRawData data2 = loadWhenUnchanged();
+        assertTrue(data2.getEntities().get(changing.getId()).contains("v2"));
+        // not re-read, as not changed
+        assertSame(data2.getEntities().get(unchanging.getId()), data1.getEntities().get(unchanging.getId()));
+
+        Entities.unmanage(changing);
+        RebindTestUtils.waitForPersisted(origApp);
+        BrooklynMementoRawData data3 = loadWhenUnchanged();
+        assertFalse(data3.getEntities().containsKey(changing.getId()));
+        assertTrue(data3.getEntities().containsKey(unchanging.getId()));
+    }
+
+    @Test
+    public void testLoadsAllWhenCleared() throws Exception {
+        TestEntity entity = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        RebindTestUtils.waitForPersisted(origApp);
+
+        BrooklynMementoRawData data1 = loadWhenUnchanged();
+        standbyPersister.clearIncrementalLoadState();
+        assertFalse(standbyPersister.isUnchangedSinceLastLoad());
+
+        BrooklynMementoRawData data2 = standbyPersister.loadMementoRawData(RebindExceptionHandlerImpl.builder().build());
+        assertTrue(data2.getEntities().containsKey(entity.getId()));
+        assertNotSame(data2.getEntities().get(entity.getId()), data1.getEntities().get(entity.getId()));
+    }
+
+    /** loads until the change log shows nothing changed since, as the master may also be persisting other changes */
+    private BrooklynMementoRawData loadWhenUnchanged() {
+        final BrooklynMementoRawData[] result = new BrooklynMementoRawData[1];
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = standbyPersister.loadMementoRawData(RebindExceptionHandlerImpl.builder().build());
+                assertTrue(standbyPersister.isUnchangedSinceLastLoad());
+            }
+        });
+        return result[0];
+    }
+}
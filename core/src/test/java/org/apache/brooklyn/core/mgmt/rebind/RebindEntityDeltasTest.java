@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Set;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.EntityMementoDeltas;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedStoreObjectAccessor;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+
+public class RebindEntityDeltasTest extends RebindTestFixtureWithApp {
+
+    private static final int MAX_RECORDS = 5;
+
+    private static final AttributeSensor<String> DYNAMIC_SENSOR = Sensors.newStringSensor("test.deltas.dynamic");
+
+    private TestEntity origE;
+
+    /** paths (relative to the memento dir) where writes by the original management context fail */
+    private final Set<String> failingPutPaths = Sets.newConcurrentHashSet();
+
+    @Override
+    protected LocalManagementContext createOrigManagementContext() {
+        return RebindTestUtils.managementContextBuilder(classLoader, new FailingPutObjectStore(mementoDir))
+                .persistPeriodMillis(getPersistPeriodMillis())
+                .haMode(getHaMode())
+                .forLive(useLiveManagementContext())
+                .emptyCatalog(useEmptyCatalog())
+                .properties(createBrooklynProperties())
+                .setOsgiEnablementAndReuse(useOsgi(), !disallowOsgiReuse())
+                .buildStarted(this::decorateOrigOrNewManagementContext);
+    }
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(BrooklynMementoPersisterToObjectStore.PERSISTER_ENTITY_DELTAS_ENABLED, true);
+        result.put(BrooklynMementoPersisterToObjectStore.PERSISTER_ENTITY_DELTAS_MAX_RECORDS, MAX_RECORDS);
+        return result;
+    }
+
+    @Override
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        super.setUp();
+        origE = origApp.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(TestEntity.CONF_NAME, "initialConf"));
+        origE.sensors().set(TestEntity.NAME, "initialName");
+        RebindTestUtils.waitForPersisted(origApp);
+    }
+
+    @Test
+    public void testConfigAndAttributeChangesRebindFromDeltas() throws Exception {
+        origE.sensors().set(TestEntity.NAME, "newName");
+        origE.config().set(TestEntity.CONF_NAME, "newConf");
+        RebindTestUtils.waitForPersisted(origApp);
+        origE.sensors().set(DYNAMIC_SENSOR, "dynamicVal");
+        origE.sensors().set(TestEntity.SEQUENCE, 1);
+        RebindTestUtils.waitForPersisted(origApp);
+
+        assertTrue(getDeltasFile(origE).exists());
+        assertFalse(readEntityFile(origE).contains("newName"));
+
+        newApp = rebind();
+        Entity newE = Iterables.getOnlyElement(newApp.getChildren());
+        assertEquals(newE.getId(), origE.getId());
+        assertEquals(newE.sensors().get(TestEntity.NAME), "newName");
+        assertEquals(newE.sensors().get(TestEntity.SEQUENCE), (Integer) 1);
+        assertEquals(newE.sensors().get(DYNAMIC_SENSOR), "dynamicVal");
+        assertEquals(newE.config().get(TestEntity.CONF_NAME), "newConf");
+    }
+
+    @Test
+    public void testDeltasCompactedIntoFullMemento() throws Exception {
+        // other changes to the entity may also be written as deltas, so check the count as well as that compaction happens
+        boolean compacted = false;
+        String lastName = null;
+        for (int i = 1; i <= 2 * (MAX_RECORDS + 1); i++) {
+            lastName = "name" + i;
+            origE.sensors().set(TestEntity.NAME, lastName);
+            RebindTestUtils.waitForPersisted(origApp);
+            File deltasFile = getDeltasFile(origE);
+            if (deltasFile.exists()) {
+                String deltas = Files.asCharSource(deltasFile, Charsets.UTF_8).read();
+                assertTrue(EntityMementoDeltas.splitRecords(deltas).size() <= MAX_RECORDS, "deltas="+deltas);
+            } else if (i > 1) {
+                assertTrue(readEntityFile(origE).contains(lastName));
+                compacted = true;
+            }
+        }
+        assertTrue(compacted);
+
+        newApp = rebind();
+        Entity newE = Iterables.getOnlyElement(newApp.getChildren());
+        assertEquals(newE.sensors().get(TestEntity.NAME), lastName);
+    }
+
+    @Test
+    public void testDeltasDeletedWhenEntityUnmanaged() throws Exception {
+        origE.sensors().set(TestEntity.NAME, "newName");
+        RebindTestUtils.waitForPersisted(origApp);
+        assertTrue(getDeltasFile(origE).exists());
+
+        Entities.unmanage(origE);
+        RebindTestUtils.waitForPersisted(origApp);
+        assertFalse(getDeltasFile(origE).exists());
+    }
+
+    @Test
+    public void testDeltasKeptWhenFullMementoWriteFails() throws Exception {
+        origE.sensors().set(TestEntity.NAME, "newName");
+        RebindTestUtils.waitForPersisted(origApp);
+        assertTrue(getDeltasFile(origE).exists());
+
+        failingPutPaths.add("entities/" + origE.getId());
+        origE.setDisplayName("newDisplayName");
+        RebindTestUtils.waitForPersisted(origApp);
+        assertTrue(getDeltasFile(origE).exists());
+        assertFalse(readEntityFile(origE).contains("newName"));
+
+        newApp = rebind();
+        Entity newE = Iterables.getOnlyElement(newApp.getChildren());
+        assertEquals(newE.sensors().get(TestEntity.NAME), "newName");
+    }
+
+    private class FailingPutObjectStore extends FileBasedObjectStore {
+        FailingPutObjectStore(File basedir) {
+            super(basedir);
+        }
+
+        @Override
+        public StoreObjectAccessor newAccessor(final String path) {
+            return new FileBasedStoreObjectAccessor(new File(getBaseDir(), path), null) {
+                @Override
+                public void put(ByteSource bytes) {
+                    if (failingPutPaths.contains(path)) throw new IllegalStateException("Simulated failure writing " + path);
+                    super.put(bytes);
+                }
+            };
+        }
+    }
+
+    private File getDeltasFile(Entity entity) {
+        return new File(new File(mementoDir, BrooklynMementoPersisterToObjectStore.ENTITY_DELTAS_SUB_PATH), entity.getId());
+    }
+
+    private String readEntityFile(Entity entity) throws Exception {
+        return Files.asCharSource(new File(new File(mementoDir, "entities"), entity.getId()), Charsets.UTF_8).read();
+    }
+}
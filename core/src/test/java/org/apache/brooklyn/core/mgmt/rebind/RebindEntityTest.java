@@ -131,6 +131,31 @@ public class RebindEntityTest extends RebindTestFixtureWithApp {
         assertNotSame(origE, newE);
         assertNotSame(origE2, newE2);
     }
+
+    @Test
+    public void testRestoresEntityHierarchyInstantiatedInParallel() throws Exception {
+        List<String> origIds = MutableList.of();
+        for (int i = 0; i < 5; i++) {
+            TestEntity origE = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+            origIds.add(origE.getId());
+            for (int j = 0; j < 10; j++) {
+                origIds.add(origE.createAndManageChild(EntitySpec.create(TestEntity.class)).getId());
+            }
+        }
+
+        newApp = rebind(RebindOptions.create()
+                .additionalProperties(ImmutableMap.of(RebindManagerImpl.REBIND_INSTANTIATION_THREADS.getName(), 4)));
+
+        List<String> newIds = MutableList.of();
+        for (Entity newE : newApp.getChildren()) {
+            newIds.add(newE.getId());
+            for (Entity newE2 : newE.getChildren()) {
+                assertEquals(newE2.getParent(), newE);
+                newIds.add(newE2.getId());
+            }
+        }
+        assertEquals(newIds, origIds);
+    }
     
     @Test
     public void testRestoresGroupMembers() throws Exception {
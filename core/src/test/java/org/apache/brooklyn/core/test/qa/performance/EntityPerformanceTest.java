@@ -102,6 +102,36 @@ public class EntityPerformanceTest extends AbstractPerformanceTest {
                     }}));
     }
 
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetAttributeConcurrently() {
+        int numIterations = numIterations() * 100;
+        double minRatePerSec = 10000 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger i = new AtomicInteger();
+        for (TestEntity e : entities) {
+            e.sensors().set(TestEntity.SEQUENCE, 0);
+            e.sensors().set(TestEntity.NAME, "name");
+        }
+        
+        // mostly reads, as done by enrichers, DSL and REST; with occasional writes
+        measure(PerformanceTestDescriptor.create()
+                .summary("EntityPerformanceTest.testGetAttributeConcurrently")
+                .iterations(numIterations)
+                .numConcurrentJobs(8)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        int count = i.getAndIncrement();
+                        TestEntity e = entities.get(count % entities.size());
+                        if (count % 100 == 0) {
+                            e.sensors().set(TestEntity.SEQUENCE, count);
+                        } else {
+                            e.sensors().get(TestEntity.SEQUENCE);
+                            e.sensors().get(TestEntity.NAME);
+                        }
+                    }}));
+    }
+
     @Test(groups={"Integration", "Acceptance"})
     public void testUpdateAttributeWithNoopListeners() {
         final int numIterations = numIterations();
@@ -23,13 +23,18 @@ import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.FileBasedStoreObjectAccessor;
+import org.apache.brooklyn.core.mgmt.persist.PersistMode;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectBatch;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.internal.ssh.process.ProcessTool;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.io.FileUtil;
+import org.apache.brooklyn.util.os.Os;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -37,6 +42,7 @@ import org.testng.annotations.Test;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
 
 public class FilePersistencePerformanceTest extends AbstractPerformanceTest {
@@ -83,6 +89,53 @@ public class FilePersistencePerformanceTest extends AbstractPerformanceTest {
                      }}));
      }
  
+     // compare with testFileBasedStoreObjectBatchPuts; each iteration writes the same number of objects
+     @Test(groups={"Integration", "Acceptance"})
+     public void testFileBasedStoreObjectPutsOfManyObjects() throws Exception {
+         runManyObjectPuts("FilePersistencePerformanceTest.testFileBasedStoreObjectPutsOfManyObjects", false);
+     }
+ 
+     @Test(groups={"Integration", "Acceptance"})
+     public void testFileBasedStoreObjectBatchPuts() throws Exception {
+         runManyObjectPuts("FilePersistencePerformanceTest.testFileBasedStoreObjectBatchPuts", true);
+     }
+ 
+     protected void runManyObjectPuts(String summary, final boolean batched) throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+         final int objectsPerIteration = 10;
+         final AtomicInteger i = new AtomicInteger();
+         
+         File storeDir = Os.newTempDir(getClass());
+         final FileBasedObjectStore store = new FileBasedObjectStore(storeDir);
+         try {
+             store.injectManagementContext(mgmt);
+             store.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.DISABLED);
+             store.createSubPath("objects");
+             
+             measure(PerformanceTestDescriptor.create()
+                     .summary(summary)
+                     .iterations(numIterations)
+                     .minAcceptablePerSecond(minRatePerSec)
+                     .job(new Runnable() {
+                         @Override public void run() {
+                             String val = ""+i.incrementAndGet();
+                             StoreObjectBatch batch = batched ? store.newBatch() : null;
+                             for (int j = 0; j < objectsPerIteration; j++) {
+                                 if (batch != null) {
+                                     batch.put("objects/object-"+j, ByteSource.wrap(val.getBytes(Charsets.UTF_8)));
+                                 } else {
+                                     store.newAccessor("objects/object-"+j).put(val);
+                                 }
+                             }
+                             if (batch != null) batch.commit();
+                         }}));
+         } finally {
+             store.close();
+             Os.deleteRecursively(storeDir);
+         }
+     }
+ 
      @Test(groups={"Integration", "Acceptance"})
      public void testFileBasedStoreObjectGet() throws Exception {
          // The file system will have done a lot of caching here - we are unlikely to touch the disk more than once.
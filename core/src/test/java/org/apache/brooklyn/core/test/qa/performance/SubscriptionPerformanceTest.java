@@ -18,15 +18,20 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import static org.testng.Assert.assertTrue;
+
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.SubscriptionManager;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.mgmt.internal.LocalSubscriptionManager;
+import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -158,4 +163,97 @@ public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
             throw exception.get();
         }
     }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testPublishWithManySubscriptions() throws Exception {
+        int numUnrelatedSubscriptionsPerEntity = 1000;
+        int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        final AtomicReference<RuntimeException> exception = new AtomicReference<RuntimeException>();
+
+        // 10k+ subscriptions: per entity, one per distinct sensor name (as with many enrichers/policies)
+        for (int e = 0; e < entities.size(); e++) {
+            for (int i = 0; i < numUnrelatedSubscriptionsPerEntity; i++) {
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "unrelated-"+e),
+                        entities.get(e), Sensors.newIntegerSensor("unrelated.sensor."+i), new SensorEventListener<Integer>() {
+                    @Override
+                    public void onEvent(SensorEvent<Integer> event) {
+                        exception.set(new RuntimeException("Unrelated subscriber called with "+event));
+                        throw exception.get();
+                    }});
+            }
+        }
+
+        // plus a subscriber on each entity for the published sensor, and one wildcard-producer subscriber
+        final int numSubscribers = entities.size() + 1;
+        final int expectedCount = numIterations;
+        final AtomicInteger listenerCount = new AtomicInteger();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        SensorEventListener<Integer> listener = new SensorEventListener<Integer>() {
+            @Override
+            public void onEvent(SensorEvent<Integer> event) {
+                if (event.getSource() != entity) return;
+                int count = listenerCount.incrementAndGet();
+                if (count >= expectedCount * 2) completionLatch.countDown();
+            }};
+        for (int e = 0; e < entities.size(); e++) {
+            subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "related-"+e), entities.get(e), TestEntity.SEQUENCE, listener);
+        }
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "related-wildcard"), null, TestEntity.SEQUENCE, listener);
+
+        assertTrue(((LocalSubscriptionManager)subscriptionManager).getNumSubscriptions() >= entities.size()*numUnrelatedSubscriptionsPerEntity + numSubscribers,
+                "subscriptions="+((LocalSubscriptionManager)subscriptionManager).getNumSubscriptions());
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("SubscriptionPerformanceTest.testPublishWithManySubscriptions")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        entity.sensors().set(TestEntity.SEQUENCE, (iter.incrementAndGet()));
+                    }})
+                .completionLatch(completionLatch));
+
+        if (exception.get() != null) {
+            throw exception.get();
+        }
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testConcurrentPublishAndSubscribeWithManySubscriptions() throws Exception {
+        int numUnrelatedSubscriptionsPerEntity = 1000;
+        int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        final SensorEventListener<Object> noopListener = new SensorEventListener<Object>() {
+            @Override public void onEvent(SensorEvent<Object> event) {}
+        };
+
+        for (int e = 0; e < entities.size(); e++) {
+            for (int i = 0; i < numUnrelatedSubscriptionsPerEntity; i++) {
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "unrelated-"+e),
+                        entities.get(e), Sensors.newIntegerSensor("unrelated.sensor."+i), noopListener);
+            }
+        }
+
+        // half the jobs publish; the others subscribe and unsubscribe on other entities, as during a large deployment
+        measure(PerformanceTestDescriptor.create()
+                .summary("SubscriptionPerformanceTest.testConcurrentPublishAndSubscribeWithManySubscriptions")
+                .iterations(numIterations)
+                .numConcurrentJobs(8)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        int i = iter.incrementAndGet();
+                        if (i % 2 == 0) {
+                            entity.sensors().set(TestEntity.SEQUENCE, i);
+                        } else {
+                            TestEntity other = entities.get(1 + i % (entities.size()-1));
+                            SubscriptionHandle handle = subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "churn"),
+                                    other, Sensors.newIntegerSensor("churn.sensor."+(i % 100)), noopListener);
+                            subscriptionManager.unsubscribe(handle);
+                        }
+                    }}));
+    }
 }
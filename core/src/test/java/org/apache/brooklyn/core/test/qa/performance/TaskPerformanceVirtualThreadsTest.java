@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.ExecutorMode;
+
+/**
+ * Runs the {@link TaskPerformanceTest} tests with the execution manager in {@link ExecutorMode#VIRTUAL} mode,
+ * for comparison with the default mode. On JVMs without virtual threads this falls back to the default.
+ */
+public class TaskPerformanceVirtualThreadsTest extends TaskPerformanceTest {
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = super.getBrooklynProperties();
+        result.put(BasicExecutionManager.EXECUTOR_MODE, ExecutorMode.VIRTUAL);
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.core.text.TemplateProcessor;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class TemplateProcessorPerformanceTest extends AbstractPerformanceTest {
+
+    protected int numIterations() {
+        return 10000;
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testRepeatedTemplate() throws Exception {
+        int numIterations = numIterations();
+        double minRatePerSec = 10000 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger i = new AtomicInteger();
+
+        // as for a workflow step in a loop, where only the variables change
+        measure(PerformanceTestDescriptor.create()
+                .summary("TemplateProcessorPerformanceTest.testRepeatedTemplate")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        TemplateProcessor.processTemplateContents("workflow", "${x} and ${y}",
+                                ImmutableMap.of("x", i.incrementAndGet(), "y", "why"));
+                    }}));
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testDistinctTemplates() throws Exception {
+        int numIterations = numIterations();
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger i = new AtomicInteger();
+
+        // for comparison with the above, each template is new so must be parsed
+        measure(PerformanceTestDescriptor.create()
+                .summary("TemplateProcessorPerformanceTest.testDistinctTemplates")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        TemplateProcessor.processTemplateContents("workflow", "${x} and ${y} "+i.incrementAndGet(),
+                                ImmutableMap.of("x", 1, "y", "why"));
+                    }}));
+    }
+}
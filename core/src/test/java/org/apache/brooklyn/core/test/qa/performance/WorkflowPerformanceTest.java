@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.effector.Effector;
+import org.apache.brooklyn.api.entity.EntityLocal;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedStoreObjectAccessor;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectBatch;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestFixtureWithApp;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.core.workflow.WorkflowBasicTest;
+import org.apache.brooklyn.core.workflow.WorkflowCommonConfig;
+import org.apache.brooklyn.core.workflow.WorkflowEffector;
+import org.apache.brooklyn.core.workflow.store.WorkflowStatePersistenceViaObjectStore;
+import org.apache.brooklyn.test.performance.PerformanceMeasurer;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.core.http.BetterMockWebServer;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
+import com.google.mockwebserver.Dispatcher;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.RecordedRequest;
+
+/**
+ * Measures representative workflows, reporting steps per second, step latency, and the bytes allocated and written per step.
+ * <p>
+ * Step latency is from the start and end times of the tasks of the steps (including those of sub-workflows),
+ * so is to the millisecond. Workflows are persisted to the object store (see {@link WorkflowStatePersistenceViaObjectStore});
+ * the bytes written are all those put or appended to the object store, workflow records and entity mementos alike,
+ * once all pending writes are done. Allocation is summed over the live threads, so is approximate,
+ * as threads which end during a run are not counted.
+ */
+public class WorkflowPerformanceTest extends RebindTestFixtureWithApp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowPerformanceTest.class);
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(WorkflowStatePersistenceViaObjectStore.WORKFLOW_PERSISTENCE_OBJECT_STORE_ENABLED, true);
+        return result;
+    }
+
+    @Override
+    protected LocalManagementContext createOrigManagementContext() {
+        return RebindTestUtils.managementContextBuilder(classLoader, new CountingObjectStore(mementoDir))
+                .persistPeriodMillis(getPersistPeriodMillis())
+                .haMode(getHaMode())
+                .forLive(useLiveManagementContext())
+                .emptyCatalog(useEmptyCatalog())
+                .properties(createBrooklynProperties())
+                .setOsgiEnablementAndReuse(useOsgi(), !disallowOsgiReuse())
+                .buildStarted(this::decorateOrigOrNewManagementContext);
+    }
+
+    @Override
+    protected LocalManagementContext decorateOrigOrNewManagementContext(LocalManagementContext mgmt) {
+        WorkflowBasicTest.addWorkflowStepTypes(mgmt);
+        return super.decorateOrigOrNewManagementContext(mgmt);
+    }
+
+    protected int numIterations() {
+        return 50;
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testSetSensorSteps() throws Exception {
+        List<Object> steps = MutableList.of();
+        for (int i = 0; i < 20; i++) steps.add("set-sensor counter = " + i);
+        measureWorkflow("testSetSensorSteps", steps, 20, 500);
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testTargetListWithConcurrency() throws Exception {
+        measureWorkflow("testTargetListWithConcurrency", MutableList.of(
+                MutableMap.of("type", "workflow",
+                        "target", "1..20",
+                        "concurrency", 5,
+                        "steps", MutableList.of("let integer x = ${target} * 2", "return ${x}"))),
+                1 + 20 * 2, 200);
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testNestedWorkflows() throws Exception {
+        measureWorkflow("testNestedWorkflows", MutableList.of(
+                "let a = 1",
+                MutableMap.of("type", "workflow",
+                        "steps", MutableList.of(
+                                "let b = 2",
+                                MutableMap.of("type", "workflow",
+                                        "steps", MutableList.of("let c = 3", "return ${c}"))))),
+                6, 200);
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testExpressionsAndTransforms() throws Exception {
+        measureWorkflow("testExpressionsAndTransforms", MutableList.of(
+                "let map a = { i: 1, z: { a: 1 } }",
+                "let map b = { ii: 2, z: { b: 2 } }",
+                "transform map c = ${a} ${b} | merge deep",
+                "let s = ${entity.id} ${c.i} ${c.ii} ${c.z.a} ${c.z.b}",
+                "transform t = ${s} | trim",
+                "return ${t}"),
+                6, 500);
+    }
+
+    @Test(groups = { "Integration", "Acceptance" })
+    public void testHttpSteps() throws Exception {
+        BetterMockWebServer server = BetterMockWebServer.newInstanceLocalhost();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setBody("ack");
+            }
+        });
+        server.play();
+        try {
+            List<Object> steps = MutableList.of();
+            for (int i = 0; i < 5; i++) steps.add("http " + server.getUrl("/" + i));
+            measureWorkflow("testHttpSteps", steps, 5, 100);
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    protected PerformanceTestResult measureWorkflow(String name, List<Object> steps, int stepsPerRun, double minStepsPerSec) throws Exception {
+        new WorkflowEffector(ConfigBag.newInstance()
+                .configure(WorkflowEffector.EFFECTOR_NAME, name)
+                .configure(WorkflowEffector.STEPS, steps)
+                // keep all, so the bytes written are not reduced by expiry
+                .configure(WorkflowCommonConfig.RETENTION, "forever"))
+                .apply((EntityLocal) origApp);
+        Effector<?> effector = origApp.getEntityType().getEffectorByName(name).get();
+
+        Map<String, Long> stepMillisByTaskId = new ConcurrentHashMap<>();
+        AtomicLong writtenBefore = new AtomicLong(getBytesWritten());
+        AtomicLong allocatedBefore = new AtomicLong(getAllocatedBytes());
+
+        PerformanceTestResult result = PerformanceMeasurer.run(PerformanceTestDescriptor.create()
+                .summary("WorkflowPerformanceTest." + name)
+                .iterations(numIterations())
+                .minAcceptablePerSecond(minStepsPerSec / stepsPerRun * AbstractPerformanceTest.PERFORMANCE_EXPECTATION)
+                .postWarmup(() -> {
+                    // read the warmup's steps so they are not counted later
+                    addStepMillis(stepMillisByTaskId);
+                    stepMillisByTaskId.replaceAll((id, millis) -> -1L);
+                    writtenBefore.set(getBytesWritten());
+                    allocatedBefore.set(getAllocatedBytes());
+                })
+                .job(() -> {
+                    origApp.invoke(effector, null).getUnchecked();
+                    // read while the step tasks are certain to be known (not yet garbage collected)
+                    addStepMillis(stepMillisByTaskId);
+                }));
+
+        long stepsRun = (long) result.iterations * stepsPerRun;
+        long allocated = getAllocatedBytes() - allocatedBefore.get();
+        List<Long> sortedStepMillis = MutableList.of();
+        for (Long millis : stepMillisByTaskId.values()) {
+            if (millis >= 0) sortedStepMillis.add(millis);
+        }
+        Collections.sort(sortedStepMillis);
+        LOG.info("test=" + name + "; result=" + result
+                + "; stepsPerSecond=" + (result.ratePerSecond * stepsPerRun)
+                + "; stepsTimed=" + sortedStepMillis.size()
+                + "; stepLatency(p50/p90/p99)=" + getPercentile(sortedStepMillis, 0.5) + "/" + getPercentile(sortedStepMillis, 0.9) + "/" + getPercentile(sortedStepMillis, 0.99)
+                + "; bytesAllocatedPerStep=" + (stepsRun == 0 ? "-" : "" + allocated / stepsRun)
+                + "; bytesWrittenPerStep=" + (stepsRun == 0 ? "-" : "" + (getBytesWritten() - writtenBefore.get()) / stepsRun));
+        return result;
+    }
+
+    /** adds the duration of each ended step task on the app not already recorded, including steps of sub-workflows;
+     * the tasks of workflows themselves, and of sub-steps (submitted by a step of the same workflow) and error handlers, are not counted */
+    private void addStepMillis(Map<String, Long> result) {
+        for (Task<?> task : mgmt().getExecutionManager().getTasksWithAllTags(ImmutableList.of(
+                BrooklynTaskTags.WORKFLOW_TAG, BrooklynTaskTags.tagForContextEntity(origApp)))) {
+            if (result.containsKey(task.getId()) || !task.isDone() || task.getStartTimeUtc() <= 0 || task.getEndTimeUtc() < task.getStartTimeUtc()) continue;
+            BrooklynTaskTags.WorkflowTaskTag tag = BrooklynTaskTags.getWorkflowTaskTag(task, false);
+            if (tag == null || tag.getStepIndex() == null || tag.getErrorHandlerIndex() != null) continue;
+            BrooklynTaskTags.WorkflowTaskTag submitterTag = BrooklynTaskTags.getWorkflowTaskTag(task.getSubmittedByTask(), false);
+            if (submitterTag != null && submitterTag.getStepIndex() != null && tag.getWorkflowId().equals(submitterTag.getWorkflowId())) continue;
+            result.put(task.getId(), task.getEndTimeUtc() - task.getStartTimeUtc());
+        }
+    }
+
+    private static Duration getPercentile(List<Long> sortedMillis, double fraction) {
+        if (sortedMillis.isEmpty()) return null;
+        int index = (int) Math.ceil(fraction * sortedMillis.size()) - 1;
+        return Duration.millis(sortedMillis.get(Math.max(0, index)));
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        long result = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) result += bytes;
+        }
+        return result;
+    }
+
+    /** the bytes written to the object store, once all pending writes (which are asynchronous) have been done */
+    private long getBytesWritten() {
+        try {
+            RebindTestUtils.waitForPersisted(mgmt());
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+        return bytesWritten.get();
+    }
+
+    private static long size(ByteSource bytes) {
+        try {
+            return bytes.size();
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /** counts the bytes put or appended, directly or in batches (when the batch is committed) */
+    private class CountingObjectStore extends FileBasedObjectStore {
+        CountingObjectStore(File basedir) {
+            super(basedir);
+        }
+
+        @Override
+        public StoreObjectAccessor newAccessor(String path) {
+            return new FileBasedStoreObjectAccessor(new File(getBaseDir(), path), null) {
+                @Override
+                public void put(ByteSource bytes) {
+                    super.put(bytes);
+                    bytesWritten.addAndGet(size(bytes));
+                }
+
+                @Override
+                public void append(String val) {
+                    super.append(val);
+                    bytesWritten.addAndGet(val.getBytes(Charsets.UTF_8).length);
+                }
+            };
+        }
+
+        @Override
+        public StoreObjectBatch newBatch() {
+            StoreObjectBatch delegate = super.newBatch();
+            Map<String, Long> sizes = MutableMap.of();
+            return new StoreObjectBatch() {
+                @Override
+                public void put(String path, ByteSource bytes) {
+                    delegate.put(path, bytes);
+                    sizes.put(path, size(bytes));
+                }
+
+                @Override
+                public void delete(String path) {
+                    delegate.delete(path);
+                    sizes.remove(path);
+                }
+
+                @Override
+                public int size() {
+                    return delegate.size();
+                }
+
+                @Override
+                public void commit() {
+                    delegate.commit();
+                    for (long size : sizes.values()) bytesWritten.addAndGet(size);
+                }
+            };
+        }
+    }
+}
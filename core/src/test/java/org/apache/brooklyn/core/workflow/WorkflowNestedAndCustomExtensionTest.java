@@ -61,6 +61,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class WorkflowNestedAndCustomExtensionTest extends RebindTestFixture<TestApplication> {
 
@@ -309,6 +310,9 @@ public class WorkflowNestedAndCustomExtensionTest extends RebindTestFixture<Test
         return addTargetManyChildrenWorkflow(replayRoot ? "from start" : null, replayAtNested, replayInNested, target, concurrency);
     }
     private Object addTargetManyChildrenWorkflow(String replayRoot, boolean replayAtNested, boolean replayInNested, String target, String concurrency) throws Exception {
+        return addTargetManyChildrenWorkflow(replayRoot, replayAtNested, replayInNested, target, concurrency, false);
+    }
+    private Object addTargetManyChildrenWorkflow(String replayRoot, boolean replayAtNested, boolean replayInNested, String target, String concurrency, boolean streaming) throws Exception {
         return invokeWorkflowStepsWithLogging((List<Object>) Yamls.parseAll(Strings.lines(
                 // count outermost invocations (to see where replay started replays)
                 "  - let invocations = ${entity.sensor.invocations} ?? 0",
@@ -318,6 +322,7 @@ public class WorkflowNestedAndCustomExtensionTest extends RebindTestFixture<Test
                 "    target: "+target,
                 "    " + (replayAtNested ? "replayable: from here" : ""),
                 "    concurrency: "+concurrency,
+                "    " + (streaming ? "streaming: true" : ""),
                 "    steps:",
                 // count subworkflow invocations for concurrency and for replays
                 "    - let count = ${entity.parent.sensor.count}",
@@ -344,7 +349,10 @@ public class WorkflowNestedAndCustomExtensionTest extends RebindTestFixture<Test
     }
 
     protected Task<?> doTestTargetManyChildrenConcurrentlyWithReplay(boolean replayRoot, boolean replayAtNested, boolean replayInNested, String target, int numChildren, String concurrency, int numExpectedWhenWaiting) throws Exception {
-        Object output = addTargetManyChildrenWorkflow(replayRoot, replayAtNested, replayInNested, target, concurrency);
+        return doTestTargetManyChildrenConcurrentlyWithReplay(replayRoot, replayAtNested, replayInNested, target, numChildren, concurrency, numExpectedWhenWaiting, false);
+    }
+    protected Task<?> doTestTargetManyChildrenConcurrentlyWithReplay(boolean replayRoot, boolean replayAtNested, boolean replayInNested, String target, int numChildren, String concurrency, int numExpectedWhenWaiting, boolean streaming) throws Exception {
+        Object output = addTargetManyChildrenWorkflow(replayRoot ? "from start" : null, replayAtNested, replayInNested, target, concurrency, streaming);
         if ("children".equals(target)) Asserts.assertEquals(output, MutableList.of());
 
         app.sensors().set(COUNT, 0);
@@ -430,6 +438,39 @@ public class WorkflowNestedAndCustomExtensionTest extends RebindTestFixture<Test
         EntityAsserts.assertAttributeEquals(app, INVOCATIONS, 1);
     }
 
+    @Test
+    void testStreamingReplayInNestedOnly() throws Exception {
+        Object result = doTestTargetManyChildrenConcurrentlyWithReplay(false, false, true, "children", 10, "max(1,50%)", 5, true).get();
+        Asserts.assertEquals(result, app.getChildren().stream().map(Entity::getId).collect(Collectors.toList()));
+        // only those in progress are resumed, and the rest are created afterwards
+        EntityAsserts.assertAttributeEquals(app, COUNT, 10);
+        EntityAsserts.assertAttributeEquals(app, INVOCATIONS, 1);
+    }
+
+    @Test
+    public void testStreamingTargetCreatesSubWorkflowsAsNeeded() throws Exception {
+        Object output = invokeWorkflowStepsWithLogging(MutableList.of(
+                MutableMap.of("type", "workflow",
+                        "target", "1..20",
+                        "concurrency", 3,
+                        "streaming", true,
+                        "condition", MutableMap.of("target", "${target}", "not", MutableMap.of("equals", 5)),
+                        "steps", MutableList.of("let integer x = ${target} * 2", "return ${x}"))));
+        Asserts.assertEquals(output, IntStream.rangeClosed(1, 20).filter(i -> i != 5).map(i -> i * 2).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testStreamingTargetAcrossBatches() throws Exception {
+        // more targets than are created in one batch
+        Object output = invokeWorkflowStepsWithLogging(MutableList.of(
+                MutableMap.of("type", "workflow",
+                        "target", "1..120",
+                        "concurrency", 7,
+                        "streaming", true,
+                        "steps", MutableList.of("return ${target}"))));
+        Asserts.assertEquals(output, IntStream.rangeClosed(1, 120).boxed().collect(Collectors.toList()));
+    }
+
     @Test
     public void testCustomWorkflowLock() {
         // based on WorkflowInputOutputTest.testSetSensorAtomicRequire
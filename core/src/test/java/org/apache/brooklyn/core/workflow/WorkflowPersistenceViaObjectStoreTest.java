@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.workflow;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.brooklyn.api.entity.EntityLocal;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.rebind.RebindOptions;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestFixture;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.core.workflow.store.WorkflowRecordDeltas;
+import org.apache.brooklyn.core.workflow.store.WorkflowStatePersistenceViaObjectStore;
+import org.apache.brooklyn.core.workflow.store.WorkflowStatePersistenceViaSensors;
+import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+public class WorkflowPersistenceViaObjectStoreTest extends RebindTestFixture<BasicApplication> {
+
+    private BasicApplication app;
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(WorkflowStatePersistenceViaObjectStore.WORKFLOW_PERSISTENCE_OBJECT_STORE_ENABLED, true);
+        return result;
+    }
+
+    @Override
+    protected LocalManagementContext decorateOrigOrNewManagementContext(LocalManagementContext mgmt) {
+        WorkflowBasicTest.addWorkflowStepTypes(mgmt);
+        return super.decorateOrigOrNewManagementContext(mgmt);
+    }
+
+    @Override
+    protected BasicApplication createApp() {
+        return null;
+    }
+
+    @Override protected BasicApplication rebind() throws Exception {
+        return rebind(RebindOptions.create().terminateOrigManagementContext(true));
+    }
+
+    private Task<?> runWorkflow() {
+        app = mgmt().getEntityManager().createEntity(EntitySpec.create(BasicApplication.class));
+        new WorkflowEffector(ConfigBag.newInstance()
+                .configure(WorkflowEffector.EFFECTOR_NAME, "myWorkflow")
+                .configure(WorkflowEffector.STEPS, MutableList.<Object>of(
+                        "let integer x = 1",
+                        // so the workflow is written by more than one delta
+                        "sleep 50ms",
+                        "let x = ${x} + 1",
+                        "sleep 50ms",
+                        "set-sensor x = ${x}",
+                        "return ${x}"))
+        ).apply((EntityLocal)app);
+        return app.invoke(app.getEntityType().getEffectorByName("myWorkflow").get(), null);
+    }
+
+    private File getRecordFile(String workflowId) {
+        return new File(new File(mementoDir, WorkflowStatePersistenceViaObjectStore.WORKFLOWS_SUB_PATH), app.getId()+"_"+workflowId);
+    }
+
+    private List<String> readRecords(String workflowId) throws Exception {
+        return WorkflowRecordDeltas.splitRecords(Files.asCharSource(getRecordFile(workflowId), Charsets.UTF_8).read());
+    }
+
+    @Test
+    public void testWorkflowPersistedAsRecordWithDeltasAndLoadedOnRebind() throws Exception {
+        Task<?> invocation = runWorkflow();
+        Asserts.assertEquals(invocation.get(), 2);
+        String workflowId = invocation.getId();
+        RebindTestUtils.waitForPersisted(mgmt());
+
+        // written by the persister, with changes after the first write appended as deltas, and the sensor is not used
+        Asserts.assertTrue(readRecords(workflowId).size() > 1, "records="+readRecords(workflowId));
+        Asserts.assertNull(app.sensors().get(WorkflowStatePersistenceViaSensors.INTERNAL_WORKFLOWS));
+
+        app = rebind();
+        WorkflowExecutionContext w = new WorkflowStatePersistenceViaSensors(mgmt()).getWorkflows(app).get(workflowId);
+        Asserts.assertNotNull(w, "Workflow not loaded after rebind");
+        Asserts.assertEquals(w.getStatus(), WorkflowExecutionContext.WorkflowStatus.SUCCESS);
+        Asserts.assertEquals(w.getOutput(), 2);
+        Asserts.assertEquals(w.getEntity(), app);
+    }
+
+    @Test
+    public void testWorkflowRecordDeletedWithWorkflow() throws Exception {
+        Task<?> invocation = runWorkflow();
+        invocation.get();
+        RebindTestUtils.waitForPersisted(mgmt());
+        WorkflowExecutionContext w = new WorkflowStatePersistenceViaSensors(mgmt()).getWorkflows(app).get(invocation.getId());
+        Asserts.assertTrue(getRecordFile(w.getWorkflowId()).exists());
+
+        Asserts.assertTrue(WorkflowStatePersistenceViaSensors.get(mgmt()).deleteWorkflow(w));
+        RebindTestUtils.waitForPersisted(mgmt());
+        Asserts.assertFalse(getRecordFile(w.getWorkflowId()).exists());
+        Map<String, WorkflowExecutionContext> workflows = new WorkflowStatePersistenceViaSensors(mgmt()).getWorkflows(app);
+        Asserts.assertFalse(workflows.containsKey(w.getWorkflowId()), "workflows="+workflows);
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.logbook;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.TimeZone;
+
+import com.google.common.collect.ImmutableList;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.logbook.file.FileLogStore;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.apache.brooklyn.util.core.logbook.file.FileLogStore.LOGBOOK_LOG_STORE_INDEX_ENABLED;
+import static org.apache.brooklyn.util.core.logbook.file.FileLogStore.LOGBOOK_LOG_STORE_PATH;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class LogbookTailTest extends BrooklynMgmtUnitTestSupport {
+
+    private final String JAVA_LOG_SAMPLE_PATH = "brooklyn/util/core/logbook/file/log-sample.txt";
+
+    private Path logFile;
+    private LogbookTail tail;
+
+    @Override
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        File sample = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(JAVA_LOG_SAMPLE_PATH)).getFile());
+        logFile = Files.createTempFile("brooklyn-logbook-tail-test", ".log");
+        Files.copy(sample.toPath(), logFile, StandardCopyOption.REPLACE_EXISTING);
+
+        mgmt = LocalManagementContextForTests.newInstance();
+        mgmt.getBrooklynProperties().put(LOGBOOK_LOG_STORE_PATH.getName(), logFile.toString());
+        tail = new LogbookTail(new FileLogStore(mgmt), Duration.millis(10));
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        if (logFile != null) Files.deleteIfExists(logFile);
+    }
+
+    private void log(String level, String taskId, String message) throws Exception {
+        Files.write(logFile, ("2021-08-30T11:29:54,466Z " + taskId + "-[zzzzzzzzzz] " + String.format("%-5s", level) + " 282 o.a.b.X [t-1] " + message + "\n")
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private List<String> waitForMessages(LogbookTail.Subscription subscription, int count) throws Exception {
+        List<String> result = MutableList.of();
+        while (result.size() < count) {
+            BrooklynLogEntry entry = subscription.poll(Asserts.DEFAULT_LONG_TIMEOUT);
+            if (entry == null) Asserts.fail("Received only " + result);
+            result.add(entry.getMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void testPublishesNewMatchingEntries() throws Exception {
+        LogBookQueryParams filter = new LogBookQueryParams();
+        filter.setLevels(ImmutableList.of("INFO"));
+        try (LogbookTail.Subscription subscription = tail.subscribe(filter, 10)) {
+            log("DEBUG", "aaaaaaaa", "not at the level");
+            log("INFO", "aaaaaaaa", "first");
+            log("INFO", "bbbbbbbb", "second");
+            assertEquals(waitForMessages(subscription, 2), ImmutableList.of("first", "second"));
+            assertNull(subscription.poll(Duration.millis(100)));
+            assertEquals(subscription.getDroppedCount(), 0);
+        }
+        assertEquals(tail.getSubscriberCount(), 0);
+    }
+
+    @Test
+    public void testFiltersByTaskIncludingChildren() throws Exception {
+        LogBookQueryParams filter = new LogBookQueryParams();
+        filter.setTaskId("parent00");
+        filter.setRecursive(true);
+        try (LogbookTail.Subscription subscription = tail.subscribe(filter, 10)) {
+            log("INFO", "other000", "unrelated");
+            log("INFO", "parent00", "Starting task child000 (effector) from task parent00");
+            log("INFO", "child000", "in the child");
+            log("INFO", "other000", "unrelated again");
+            assertEquals(waitForMessages(subscription, 2), ImmutableList.of("Starting task child000 (effector) from task parent00", "in the child"));
+            assertNull(subscription.poll(Duration.millis(100)));
+        }
+    }
+
+    @Test
+    public void testStopsFollowingChildWhenEnded() throws Exception {
+        LogBookQueryParams filter = new LogBookQueryParams();
+        filter.setTaskId("parent00");
+        filter.setRecursive(true);
+        try (LogbookTail.Subscription subscription = tail.subscribe(filter, 10)) {
+            log("INFO", "parent00", "Starting task child000 (effector) from task parent00");
+            log("INFO", "child000", "in the child");
+            log("INFO", "child000", "Ending task child000");
+            log("INFO", "child000", "logged for the child after it ended");
+            log("INFO", "parent00", "Ending task parent00");
+            log("INFO", "parent00", "still following the requested task");
+            assertEquals(waitForMessages(subscription, 5), ImmutableList.of("Starting task child000 (effector) from task parent00", "in the child",
+                    "Ending task child000", "Ending task parent00", "still following the requested task"));
+            assertNull(subscription.poll(Duration.millis(100)));
+        }
+    }
+
+    @Test
+    public void testFiltersByTaskIncludingItsWorkflow() throws Exception {
+        BrooklynTaskTags.WorkflowTaskTag workflowTag = new BrooklynTaskTags.WorkflowTaskTag() {{ workflowId = "workflow"; }};
+        Task<Void> task = mgmt.getExecutionManager().submit(Tasks.<Void>builder().displayName("workflow").tag(workflowTag).body(() -> null).build());
+        task.get();
+        tail = new LogbookTail(mgmt, new FileLogStore(mgmt), Duration.millis(10));
+
+        LogBookQueryParams filter = new LogBookQueryParams();
+        filter.setTaskId(task.getId());
+        filter.setRecursive(true);
+        try (LogbookTail.Subscription subscription = tail.subscribe(filter, 10)) {
+            log("INFO", "other000", "unrelated");
+            log("INFO", "other000", "Replaying workflow workflow");
+            assertEquals(waitForMessages(subscription, 1), ImmutableList.of("Replaying workflow workflow"));
+            assertNull(subscription.poll(Duration.millis(100)));
+        }
+    }
+
+    @Test
+    public void testNotSupportedWithoutIndex() throws Exception {
+        mgmt.getBrooklynProperties().put(LOGBOOK_LOG_STORE_INDEX_ENABLED.getName(), false);
+        tail = new LogbookTail(new FileLogStore(mgmt), Duration.millis(10));
+
+        assertFalse(tail.isSupported());
+        Asserts.assertFailsWith(() -> tail.subscribe(new LogBookQueryParams(), 10),
+                e -> e instanceof IllegalStateException);
+        assertEquals(tail.getSubscriberCount(), 0);
+    }
+
+    @Test
+    public void testLimitsSubscribers() throws Exception {
+        mgmt.getBrooklynProperties().put(LogbookConfig.LOGBOOK_TAIL_MAX_SUBSCRIBERS.getName(), 1);
+        tail = new LogbookTail(mgmt, new FileLogStore(mgmt), Duration.millis(10));
+
+        try (LogbookTail.Subscription subscription = tail.subscribe(new LogBookQueryParams(), 10)) {
+            assertTrue(tail.isSubscriberLimitReached());
+            Asserts.assertFailsWith(() -> tail.subscribe(new LogBookQueryParams(), 10),
+                    e -> e instanceof IllegalStateException);
+        }
+        assertFalse(tail.isSubscriberLimitReached());
+        tail.subscribe(new LogBookQueryParams(), 10).close();
+    }
+
+    @Test
+    public void testDropsEntriesWhenBufferFull() throws Exception {
+        LogBookQueryParams filter = new LogBookQueryParams();
+        try (LogbookTail.Subscription slow = tail.subscribe(filter, 2);
+             LogbookTail.Subscription fast = tail.subscribe(filter, 10)) {
+            for (int i = 0; i < 5; i++) {
+                log("INFO", "aaaaaaaa", "message " + i);
+            }
+            assertEquals(waitForMessages(fast, 5).size(), 5);
+            Asserts.succeedsEventually(() -> assertEquals(slow.getDroppedCount(), 3));
+            assertEquals(slow.drain().size(), 2);
+            assertEquals(fast.getDroppedCount(), 0);
+        }
+    }
+}
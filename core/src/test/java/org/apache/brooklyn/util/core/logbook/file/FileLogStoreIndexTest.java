@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.logbook.file;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class FileLogStoreIndexTest {
+
+    private final String JAVA_LOG_SAMPLE_PATH = "brooklyn/util/core/logbook/file/log-sample.txt";
+
+    private Path logFile;
+    private FileLogStoreIndex index;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        File sample = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(JAVA_LOG_SAMPLE_PATH)).getFile());
+        logFile = Files.createTempFile("brooklyn-log-index-test", ".log");
+        Files.copy(sample.toPath(), logFile, StandardCopyOption.REPLACE_EXISTING);
+        // small blocks, so entries are in different blocks
+        index = new FileLogStoreIndex(logFile, new FileLogStore()::parseLogLine, 300);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (logFile != null) Files.deleteIfExists(logFile);
+    }
+
+    @Test
+    public void testBlocksSkippedByIdLevelAndTime() throws Exception {
+        index.update();
+        List<FileLogStoreIndex.Block> blocks = index.snapshot().getBlocks();
+        assertTrue(blocks.size() > 3, "blocks="+blocks);
+        assertNull(index.snapshot().getUnindexedBlock(Files.size(logFile)));
+
+        List<FileLogStoreIndex.Block> withTask = blocks.stream().filter(b -> b.mayContainAnyId(ImmutableList.of("CMeSRJNF"))).collect(Collectors.toList());
+        assertFalse(withTask.isEmpty());
+        assertTrue(withTask.size() < blocks.size());
+
+        // the first block is just the license header, with no entries
+        assertFalse(blocks.get(0).mayContainLevels(ImmutableList.of("DEBUG")));
+        assertTrue(blocks.get(0).mayContainLevels(ImmutableList.of()));
+        assertFalse(blocks.get(0).mayContainTimes(null, Long.MAX_VALUE));
+
+        // the first entry is DEBUG, from May; the last ones are from August
+        FileLogStoreIndex.Block first = blocks.stream().filter(b -> b.mayContainLevels(ImmutableList.of("DEBUG"))).findFirst().get();
+        assertFalse(first.mayContainLevels(ImmutableList.of("INFO")));
+        Long from = Instant.parse("2021-08-30T11:28:00Z").toEpochMilli();
+        Long to = Instant.parse("2021-06-01T00:00:00Z").toEpochMilli();
+        assertTrue(first.mayContainTimes(null, to));
+        assertFalse(first.mayContainTimes(from, null));
+        assertTrue(blocks.get(blocks.size()-1).mayContainTimes(from, null));
+        assertFalse(blocks.get(blocks.size()-1).mayContainTimes(null, to));
+    }
+
+    @Test
+    public void testOrdinalsCountEntries() throws Exception {
+        index.update();
+        List<FileLogStoreIndex.Block> blocks = index.snapshot().getBlocks();
+        assertEquals(blocks.get(0).getFirstOrdinal(), 0);
+        for (int i = 1; i < blocks.size(); i++) {
+            assertEquals(blocks.get(i).getStart(), blocks.get(i-1).getEnd());
+            assertTrue(blocks.get(i).getFirstOrdinal() >= blocks.get(i-1).getFirstOrdinal());
+        }
+    }
+
+    @Test
+    public void testIndexesAppendedLinesAndRebuildsWhenTruncated() throws Exception {
+        index.update();
+        long indexedLength = Files.size(logFile);
+
+        Files.write(logFile, ("2021-08-30T11:29:54,466Z ABCDEFGH-[zzzzzzzzzz] INFO  282 o.a.b.X [t-1] appended\n"
+                + "2021-08-30T11:29:55,466Z ABCDEFGH-[zzzzzzzzzz] INFO  282 o.a.b.X [t-1] partial").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        index.update();
+        FileLogStoreIndex.Snapshot snapshot = index.snapshot();
+        FileLogStoreIndex.Block last = snapshot.getBlocks().get(snapshot.getBlocks().size()-1);
+        assertTrue(last.getEnd() > indexedLength);
+        assertTrue(last.mayContainAnyId(ImmutableList.of("ABCDEFGH")));
+        // the partial last line is not indexed until it is complete
+        FileLogStoreIndex.Block unindexed = snapshot.getUnindexedBlock(Files.size(logFile));
+        assertNotNull(unindexed);
+        assertEquals(unindexed.getStart(), last.getEnd());
+
+        Files.write(logFile, "2021-08-30T11:29:56,466Z - INFO  282 o.a.b.X [t-1] rotated\n".getBytes(StandardCharsets.UTF_8));
+        index.update();
+        snapshot = index.snapshot();
+        assertEquals(snapshot.getBlocks().size(), 1);
+        assertFalse(snapshot.getBlocks().get(0).mayContainAnyId(ImmutableList.of("CMeSRJNF")));
+    }
+
+    @Test
+    public void testEnumerateTaskIds() throws Exception {
+        index.update();
+        assertEquals(index.enumerateTaskIds(ImmutableSet.of("CMeSRJNF"), 100), ImmutableSet.of("CMeSRJNF", "THGMmYiu"));
+        assertEquals(index.enumerateTaskIds(ImmutableSet.of("CMeSRJNF"), 1), ImmutableSet.of("CMeSRJNF", "THGMmYiu"));
+        assertEquals(index.enumerateTaskIds(ImmutableSet.of("CMeSRJNF"), 0), ImmutableSet.of());
+        assertEquals(index.enumerateTaskIds(ImmutableSet.of("THGMmYiu"), 100), ImmutableSet.of("THGMmYiu"));
+    }
+
+    @Test
+    public void testBlocksSkippedByPartOfId() throws Exception {
+        index.update();
+        List<FileLogStoreIndex.Block> blocks = index.snapshot().getBlocks();
+
+        // queries match ids anywhere in the task and entity ids, so parts of ids must find the blocks the whole ids are in
+        List<FileLogStoreIndex.Block> withEntity = blocks.stream().filter(b -> b.mayContainAnyId(ImmutableList.of("l8442kq0zu"))).collect(Collectors.toList());
+        assertFalse(withEntity.isEmpty());
+        assertTrue(withEntity.size() < blocks.size());
+        for (FileLogStoreIndex.Block b : withEntity) {
+            assertTrue(b.mayContainAnyId(ImmutableList.of("8442kq0zu")));
+            assertTrue(b.mayContainAnyId(ImmutableList.of("l8442kq0")));
+        }
+        // ids too short to look up, or not just letters and digits, read every block
+        assertTrue(blocks.stream().allMatch(b -> b.mayContainAnyId(ImmutableList.of("zzzz"))));
+        assertTrue(blocks.stream().allMatch(b -> b.mayContainAnyId(ImmutableList.of("[zzzzzzzzzz]"))));
+    }
+
+    @Test
+    public void testBlockWithTooManyWordsReadForAnyId() throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i <= FileLogStoreIndex.MAX_INDEXED_WORDS_PER_BLOCK; i++) {
+            lines.append("2021-08-30T11:29:54,466Z Task").append(10000 + i).append("-[zzzzzzzzzz] INFO  282 o.a.b.X [t-1] line\n");
+        }
+        Files.write(logFile, lines.toString().getBytes(StandardCharsets.UTF_8));
+        index = new FileLogStoreIndex(logFile, new FileLogStore()::parseLogLine, Integer.MAX_VALUE);
+        index.update();
+        List<FileLogStoreIndex.Block> blocks = index.snapshot().getBlocks();
+        assertEquals(blocks.size(), 1);
+        assertTrue(blocks.get(0).mayContainAnyId(ImmutableList.of("CMeSRJNF")));
+    }
+
+    @Test
+    public void testOnlyIdShapedWordsLookedUp() throws Exception {
+        Files.write(logFile, "2021-08-30T11:29:54,466Z ABCDEFGH-[zzzzzzzzzz] INFO  282 o.a.b.X [t-1] something happened\n".getBytes(StandardCharsets.UTF_8));
+        index.update();
+        FileLogStoreIndex.Block block = index.snapshot().getBlocks().get(0);
+        assertTrue(block.mayContainAnyId(ImmutableList.of("ABCDEFGH")));
+        assertFalse(block.mayContainAnyId(ImmutableList.of("CMeSRJNF")));
+        assertFalse(block.mayContainAnyId(ImmutableList.of("l8442kq0zu")));
+        // words without digits or inner capitals are not indexed, so must be read for
+        assertTrue(block.mayContainAnyId(ImmutableList.of("somethingelse")));
+    }
+
+    @Test
+    public void testEnumerateTaskIdsWhenChildLinksDropped() throws Exception {
+        index = new FileLogStoreIndex(logFile, new FileLogStore()::parseLogLine, 300, 0);
+        index.update();
+        // the link from CMeSRJNF has been dropped, so the file must be read for its children
+        assertNull(index.enumerateTaskIds(ImmutableSet.of("CMeSRJNF"), 100));
+    }
+}
@@ -19,13 +19,16 @@
 package org.apache.brooklyn.util.core.logbook.file;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Callables;
 
 import org.apache.brooklyn.api.mgmt.ManagementContext;
@@ -43,15 +46,18 @@ import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
+import org.apache.brooklyn.util.core.logbook.LogBookQueryPage;
 import org.apache.brooklyn.util.core.logbook.LogBookQueryParams;
 import org.apache.brooklyn.util.core.task.BasicTask;
 import org.apache.brooklyn.util.core.task.SequentialTask;
 
 import static org.apache.brooklyn.test.Asserts.assertFalse;
+import static org.apache.brooklyn.test.Asserts.assertNotNull;
 import static org.apache.brooklyn.test.Asserts.assertNull;
 import static org.apache.brooklyn.test.Asserts.assertTrue;
 import static org.apache.brooklyn.util.core.logbook.LogbookConfig.LOGBOOK_MAX_RECURSIVE_TASKS;
 import static org.apache.brooklyn.util.core.logbook.file.FileLogStore.LOGBOOK_LOG_STORE_DATEFORMAT;
+import static org.apache.brooklyn.util.core.logbook.file.FileLogStore.LOGBOOK_LOG_STORE_INDEX_ENABLED;
 import static org.apache.brooklyn.util.core.logbook.file.FileLogStore.LOGBOOK_LOG_STORE_PATH;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.eq;
@@ -270,6 +276,73 @@ public class FileLogStoreTest extends BrooklynMgmtUnitTestSupport {
         assertEquals("INFO", brooklynLogEntries.get(3).getLevel());
     }
 
+    @Test
+    public void testQueryTailOfLogSampleWithoutIndex() {
+        File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(JAVA_LOG_SAMPLE_PATH)).getFile());
+        mgmt = LocalManagementContextForTests.newInstance();
+        mgmt.getBrooklynProperties().put(LOGBOOK_LOG_STORE_PATH.getName(), file.getAbsolutePath());
+        mgmt.getBrooklynProperties().put(LOGBOOK_LOG_STORE_INDEX_ENABLED.getName(), false);
+        LogBookQueryParams logBookQueryParams = new LogBookQueryParams();
+        logBookQueryParams.setNumberOfItems(4);
+        logBookQueryParams.setTail(true);
+        logBookQueryParams.setLevels(ImmutableList.of());
+        List<BrooklynLogEntry> unindexed = new FileLogStore(mgmt).query(logBookQueryParams);
+
+        mgmt.getBrooklynProperties().put(LOGBOOK_LOG_STORE_INDEX_ENABLED.getName(), true);
+        List<BrooklynLogEntry> indexed = new FileLogStore(mgmt).query(logBookQueryParams);
+
+        assertEquals(4, unindexed.size());
+        assertEquals(unindexed.stream().map(BrooklynLogEntry::getLineId).collect(Collectors.toList()),
+                indexed.stream().map(BrooklynLogEntry::getLineId).collect(Collectors.toList()));
+        assertEquals(unindexed.stream().map(BrooklynLogEntry::getMessage).collect(Collectors.toList()),
+                indexed.stream().map(BrooklynLogEntry::getMessage).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testQueryPagesOfLogSample() throws Exception {
+        File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(JAVA_LOG_SAMPLE_PATH)).getFile());
+        mgmt = LocalManagementContextForTests.newInstance();
+        mgmt.getBrooklynProperties().put(LOGBOOK_LOG_STORE_PATH.getName(), file.getAbsolutePath());
+        FileLogStore fileLogStore = new FileLogStore(mgmt);
+        LogBookQueryParams logBookQueryParams = new LogBookQueryParams();
+        logBookQueryParams.setNumberOfItems(1000);
+        logBookQueryParams.setTail(false);
+        logBookQueryParams.setLevels(ImmutableList.of("INFO", "DEBUG"));
+        List<String> all = fileLogStore.query(logBookQueryParams).stream().map(BrooklynLogEntry::getLineId).collect(Collectors.toList());
+        assertTrue(all.size() > 4);
+
+        // head, in pages of 3
+        logBookQueryParams.setNumberOfItems(3);
+        List<String> paged = MutableList.of();
+        LogBookQueryPage page;
+        do {
+            page = fileLogStore.queryPage(logBookQueryParams);
+            page.getEntries().forEach(entry -> paged.add(entry.getLineId()));
+            logBookQueryParams.setCursor(page.getCursor());
+        } while (page.getEntries().size() == 3);
+        assertEquals(all, paged);
+        // the cursor at the end is kept, for anything logged later
+        assertNotNull(page.getCursor());
+        assertEquals(0, fileLogStore.queryPage(logBookQueryParams).getEntries().size());
+
+        // tail, back through the file in pages of 3
+        logBookQueryParams.setTail(true);
+        logBookQueryParams.setCursor(null);
+        List<String> pagedBack = MutableList.of();
+        do {
+            page = fileLogStore.queryPage(logBookQueryParams);
+            pagedBack.addAll(0, page.getEntries().stream().map(BrooklynLogEntry::getLineId).collect(Collectors.toList()));
+            logBookQueryParams.setCursor(page.getCursor());
+        } while (page.getCursor() != null);
+        assertEquals(all, pagedBack);
+
+        // iterating through the tail returns the latest first
+        logBookQueryParams.setCursor(null);
+        logBookQueryParams.setNumberOfItems(null);
+        Iterator<BrooklynLogEntry> iterator = fileLogStore.queryIterator(logBookQueryParams, 2);
+        assertEquals(Lists.reverse(all), MutableList.copyOf(iterator).stream().map(BrooklynLogEntry::getLineId).collect(Collectors.toList()));
+    }
+
     @Test
     public void testQueryLogSampleWithSearchSinglePhrase() {
         File file = new File(Objects.requireNonNull(getClass().getClassLoader().getResource(JAVA_LOG_SAMPLE_PATH)).getFile());
@@ -18,11 +18,34 @@
  */
 package org.apache.brooklyn.util.core.logbook.opensearch;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
 import org.apache.brooklyn.util.core.logbook.LogBookQueryParams;
+import org.apache.brooklyn.util.core.logbook.LogStore;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import static org.apache.brooklyn.test.Asserts.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class OpenSearchLogStoreTest {
 
@@ -182,4 +205,93 @@ public class OpenSearchLogStoreTest {
         String query = cut.getJsonQuery(p);
         assertEquals(query, "{\"sort\":{\"timestamp\":\"asc\"},\"size\":10,\"query\":{\"bool\":{\"must\":[{\"bool\":{\"should\":[{\"match_phrase\":{\"taskId\":\"taskIdxxxx\"}},{\"match_phrase\":{\"message\":\"taskIdxxxx\"}}]}},{\"match_phrase\":{\"message\":\"some phrase\"}}]}}}");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void queryWithPointInTimeAndSearchAfter() {
+        OpenSearchLogStore cut = new OpenSearchLogStore();
+        LogBookQueryParams p = new LogBookQueryParams();
+        p.setNumberOfItems(10);
+        p.setTail(false);
+        p.setLevels(ImmutableList.of());
+        String query = cut.getJsonQuery(p, "pit123", ImmutableList.of(1622553528482L));
+        assertEquals(query, "{\"search_after\":[1622553528482],\"pit\":{\"id\":\"pit123\",\"keep_alive\":\"5m\"},\"sort\":{\"timestamp\":\"asc\"},\"size\":10,\"query\":{\"match_all\":{}}}");
+    }
+
+    @Test
+    public void cursorRoundTrip() {
+        String cursor = OpenSearchLogStore.toCursor("pit123", ImmutableList.of(1622553528482L, "x"));
+        Map<?, ?> parsed = OpenSearchLogStore.parseCursor(cursor);
+        assertEquals(parsed.get("pit"), "pit123");
+        assertEquals(parsed.get("after"), ImmutableList.of(1622553528482L, "x"));
+
+        Asserts.assertFailsWith(() -> OpenSearchLogStore.parseCursor("not-a-cursor"), IllegalArgumentException.class);
+    }
+
+    @Test
+    public void pointInTimeOnlyOpenedForMoreThanOnePage() throws IOException {
+        OpenSearchLogStore cut = new OpenSearchLogStore();
+        List<String> requests = MutableList.of();
+        cut.httpClient = newFakeClient(5, requests);
+        LogBookQueryParams p = new LogBookQueryParams();
+        p.setTail(false);
+        p.setLevels(ImmutableList.of());
+
+        p.setNumberOfItems(5);
+        assertEquals(cut.queryPage(p).getCursor(), null);
+        assertEquals(requests, ImmutableList.of("POST _search"));
+
+        requests.clear();
+        p.setNumberOfItems(null);
+        List<String> ids = MutableList.copyOf(cut.queryIterator(p, 2)).stream().map(BrooklynLogEntry::getLineId).collect(Collectors.toList());
+        assertEquals(ids, ImmutableList.of("line0", "line1", "line2", "line3", "line4"));
+        assertEquals(requests, ImmutableList.of("POST _search", "POST point_in_time", "POST pit _search", "POST pit _search", "POST pit _search", "DELETE point_in_time"));
+    }
+
+    @Test
+    public void pointInTimeDeletedWhenIteratorClosed() throws IOException {
+        OpenSearchLogStore cut = new OpenSearchLogStore();
+        List<String> requests = MutableList.of();
+        cut.httpClient = newFakeClient(5, requests);
+        LogBookQueryParams p = new LogBookQueryParams();
+        p.setTail(false);
+        p.setLevels(ImmutableList.of());
+
+        LogStore.QueryIterator iterator = cut.queryIterator(p, 2);
+        assertEquals(iterator.next().getLineId(), "line0");
+        iterator.close();
+        assertEquals(Lists.reverse(requests).get(0), "DELETE point_in_time");
+    }
+
+    /** Serves the given number of entries, sorted by their index, recording a summary of each request */
+    private static CloseableHttpClient newFakeClient(int numEntries, List<String> requests) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        CloseableHttpClient result = mock(CloseableHttpClient.class);
+        when(result.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            HttpUriRequest request = invocation.getArgument(0);
+            if (request.getURI().toString().contains("/_search/point_in_time")) {
+                requests.add(request.getMethod() + " point_in_time");
+                return newResponse(request.getMethod().equals("POST") ? "{\"pit_id\":\"pit1\"}" : "{}");
+            }
+            Map<?, ?> body = mapper.readValue(((HttpEntityEnclosingRequest) request).getEntity().getContent(), Map.class);
+            requests.add(request.getMethod() + (body.containsKey("pit") ? " pit" : "") + " _search");
+            List<?> after = (List<?>) body.get("search_after");
+            int from = after == null ? 0 : ((Number) after.get(0)).intValue() + 1;
+            int to = Math.min(numEntries, from + ((Number) body.get("size")).intValue());
+            List<Object> hits = MutableList.of();
+            for (int i = from; i < to; i++) {
+                hits.add(ImmutableMap.of("_id", "line" + i, "_source", ImmutableMap.of("message", "message " + i), "sort", ImmutableList.of(i)));
+            }
+            Map<String, Object> response = MutableMap.of("hits", ImmutableMap.of("hits", hits));
+            if (body.containsKey("pit")) response.put("pit_id", "pit1");
+            return newResponse(mapper.writeValueAsString(response));
+        });
+        return result;
+    }
+
+    private static CloseableHttpResponse newResponse(String json) throws IOException {
+        CloseableHttpResponse result = mock(CloseableHttpResponse.class);
+        when(result.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        when(result.getEntity()).thenReturn(new StringEntity(json));
+        return result;
+    }
+}
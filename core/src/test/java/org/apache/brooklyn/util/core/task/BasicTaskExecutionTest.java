@@ -265,6 +265,28 @@ public class BasicTaskExecutionTest {
         }
     }
     
+    @Test
+    public void testTasksByTagIndexOrderAndRemoval() {
+        TasksByTagIndex index = new TasksByTagIndex();
+        Task<?> t1 = new BasicTask<Void>(() -> null);
+        Task<?> t2 = new BasicTask<Void>(() -> null);
+        Task<?> t3 = new BasicTask<Void>(() -> null);
+        index.add("a", t2);
+        index.add("a", t1);
+        index.add("a", t3);
+        index.add("b", t1);
+        assertEquals(ImmutableList.copyOf(index.getLiveOrNull("a")), ImmutableList.of(t2, t1, t3));
+
+        assertTrue(index.remove("a", t1));
+        assertFalse(index.remove("a", t1));
+        assertEquals(ImmutableList.copyOf(index.getLiveOrNull("a")), ImmutableList.of(t2, t3));
+
+        assertTrue(index.remove("b", t1));
+        assertNull(index.getLiveOrNull("b"));
+        assertFalse(index.containsTag("b"));
+        assertEquals(index.getTags(), Collections.singleton("a"));
+    }
+
     @Test
     public void cancelBeforeRun() throws Exception {
         final CountDownLatch blockForever = new CountDownLatch(1);
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.ExecutorMode;
+import org.apache.brooklyn.util.core.task.PriorityTaskExecutor.HasTaskPriority;
+import org.apache.brooklyn.util.core.task.PriorityTaskExecutor.TaskPriority;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class PriorityTaskExecutorTest {
+
+    private PriorityTaskExecutor executor;
+    private BasicExecutionManager em;
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (executor != null) executor.shutdownNow();
+        if (em != null) em.shutdownNow();
+    }
+
+    @Test
+    public void testRunsHigherPriorityFirst() throws Exception {
+        executor = new PriorityTaskExecutor(1, 1, Executors.defaultThreadFactory());
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<String> order = new CopyOnWriteArrayList<String>();
+
+        // occupy the only worker so everything else queues
+        executor.submit(() -> { latch.await(); return null; });
+        executor.submit(new RecordingCallable(order, "bg1", TaskPriority.BACKGROUND));
+        executor.submit(new RecordingCallable(order, "normal", TaskPriority.NORMAL));
+        executor.submit(new RecordingCallable(order, "bg2", TaskPriority.BACKGROUND));
+        Future<?> last = executor.submit(new RecordingCallable(order, "interactive", TaskPriority.INTERACTIVE));
+        assertEquals(executor.getQueueDepth(), 4);
+
+        latch.countDown();
+        Asserts.succeedsEventually(() -> assertEquals(order.size(), 4));
+        last.get();
+        assertEquals(order, ImmutableList.of("interactive", "normal", "bg1", "bg2"));
+        assertTrue(executor.getMaxQueueWaitTime().toNanoseconds() > 0);
+    }
+
+    @Test
+    public void testGrowsWhenWorkersBlockedOnQueuedWork() throws Exception {
+        executor = new PriorityTaskExecutor(1, 2, Executors.defaultThreadFactory());
+        Future<String> parent = executor.submit(() -> {
+            // blocks the only worker on work which can only run on another worker
+            Future<String> child = executor.submit(() -> "child-done");
+            return child.get();
+        });
+        Asserts.succeedsEventually(() -> assertEquals(executor.getQueueDepth(), 1));
+
+        // first check records progress; second sees no progress and grows
+        executor.checkForStall();
+        assertTrue(executor.checkForStall());
+        assertEquals(parent.get(10, TimeUnit.SECONDS), "child-done");
+
+        Asserts.succeedsEventually(() -> {
+            executor.checkForStall();
+            assertEquals(executor.getCorePoolSize(), 1);
+        });
+    }
+
+    @Test
+    public void testExecutionManagerInBoundedModeRunsNestedTasks() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.EXECUTOR_MODE, ExecutorMode.BOUNDED);
+        props.put(BasicExecutionManager.BOUNDED_CORE_THREADS, 1);
+        em = new BasicExecutionManager("mycontextid", props);
+
+        Task<String> parent = em.submit("parent", () -> {
+            Task<String> child = em.submit("child", () -> "child-done");
+            return child.get();
+        });
+        assertEquals(parent.get(10, TimeUnit.SECONDS), "child-done");
+        assertEquals(em.getNumQueuedTasks(), 0);
+    }
+
+    private static class RecordingCallable implements Callable<Void>, HasTaskPriority {
+        private final List<String> order;
+        private final String name;
+        private final TaskPriority priority;
+
+        RecordingCallable(List<String> order, String name, TaskPriority priority) {
+            this.order = order;
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public Void call() {
+            order.add(name);
+            return null;
+        }
+
+        @Override
+        public TaskPriority getTaskPriority() {
+            return priority;
+        }
+    }
+}
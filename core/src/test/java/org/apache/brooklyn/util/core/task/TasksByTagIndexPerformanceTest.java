@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.test.performance.PerformanceMeasurer;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Compares concurrent submit/query/delete throughput of {@link TasksByTagIndex}
+ * against the previous approach in {@link BasicExecutionManager}
+ * (a map of synchronized sets guarded by one monitor), replicated here as {@link SynchronizedIndex}.
+ */
+public class TasksByTagIndexPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TasksByTagIndexPerformanceTest.class);
+
+    private static final int NUM_ENTITY_TAGS = 200;
+    private static final int NUM_CONCURRENT_JOBS = 16;
+    private static final int NUM_ITERATIONS = 200000;
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testConcurrentSubmitAndQueryWithSynchronizedIndex() {
+        runConcurrentSubmitAndQuery("synchronized", new SynchronizedIndex());
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testConcurrentSubmitAndQueryWithConcurrentIndex() {
+        runConcurrentSubmitAndQuery("concurrent", new ConcurrentIndex());
+    }
+
+    protected PerformanceTestResult runConcurrentSubmitAndQuery(String name, final Index index) {
+        final Object commonTag = "common";
+        PerformanceTestResult result = PerformanceMeasurer.run(PerformanceTestDescriptor.create()
+                .summary("TasksByTagIndexPerformanceTest.concurrentSubmitAndQuery(" + name + ")")
+                .warmup(Duration.FIVE_SECONDS)
+                .iterations(NUM_ITERATIONS)
+                .numConcurrentJobs(NUM_CONCURRENT_JOBS)
+                .job(() -> {
+                    // mimics a submission, a REST listing of an entity's tasks, and a GC deletion
+                    String entityTag = "entity-" + ThreadLocalRandom.current().nextInt(NUM_ENTITY_TAGS);
+                    Task<?> task = new BasicTask<Void>(() -> null);
+                    index.add(entityTag, task);
+                    index.add(commonTag, task);
+                    index.snapshot(entityTag);
+                    index.remove(entityTag, task);
+                    index.remove(commonTag, task);
+                }));
+        LOG.info("Tasks-by-tag index " + name + ": " + result);
+        return result;
+    }
+
+    interface Index {
+        void add(Object tag, Task<?> task);
+        void remove(Object tag, Task<?> task);
+        Set<Task<?>> snapshot(Object tag);
+    }
+
+    static class ConcurrentIndex implements Index {
+        final TasksByTagIndex index = new TasksByTagIndex();
+
+        @Override
+        public void add(Object tag, Task<?> task) {
+            index.add(tag, task);
+        }
+
+        @Override
+        public void remove(Object tag, Task<?> task) {
+            index.remove(tag, task);
+        }
+
+        @Override
+        public Set<Task<?>> snapshot(Object tag) {
+            Set<Task<?>> result = index.getLiveOrNull(tag);
+            if (result == null) return Collections.emptySet();
+            return new LinkedHashSet<Task<?>>(result);
+        }
+    }
+
+    /** the previous implementation in {@link BasicExecutionManager} */
+    static class SynchronizedIndex implements Index {
+        final Map<Object, Set<Task<?>>> tasksByTag = new HashMap<Object, Set<Task<?>>>();
+
+        @Override
+        public void add(Object tag, Task<?> task) {
+            Set<Task<?>> result;
+            synchronized (tasksByTag) {
+                result = tasksByTag.get(tag);
+                if (result == null) {
+                    result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
+                    tasksByTag.put(tag, result);
+                }
+            }
+            result.add(task);
+        }
+
+        @Override
+        public void remove(Object tag, Task<?> task) {
+            synchronized (tasksByTag) {
+                Set<Task<?>> tasks = tasksByTag.get(tag);
+                if (tasks != null && tasks.remove(task) && tasks.isEmpty()) {
+                    tasksByTag.remove(tag);
+                }
+            }
+        }
+
+        @Override
+        public Set<Task<?>> snapshot(Object tag) {
+            Set<Task<?>> result;
+            synchronized (tasksByTag) {
+                result = tasksByTag.get(tag);
+            }
+            if (result == null) return Collections.emptySet();
+            synchronized (result) {
+                return new LinkedHashSet<Task<?>>(result);
+            }
+        }
+    }
+}
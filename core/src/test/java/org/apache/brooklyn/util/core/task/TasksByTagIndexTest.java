@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.TasksByTagIndex.Page;
+import org.apache.brooklyn.util.core.task.TasksByTagIndex.TaskState;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class TasksByTagIndexTest {
+
+    private static BasicTask<Void> newTask(long submitTime, long startTime, long endTime) {
+        BasicTask<Void> result = new BasicTask<Void>(() -> null);
+        result.setSubmitTimeUtc(submitTime);
+        if (startTime >= 0) result.setStartTimeUtc(startTime);
+        if (endTime >= 0) result.setEndTimeUtc(endTime);
+        return result;
+    }
+
+    @Test
+    public void testQueryMostInterestingFirst() {
+        TasksByTagIndex index = new TasksByTagIndex();
+        Task<?> endedEarlier = newTask(1, 2, 3);
+        Task<?> endedLater = newTask(1, 2, 5);
+        Task<?> active = newTask(1, 2, -1);
+        Task<?> queued = newTask(1, -1, -1);
+        Task<?> cancelledBeforeStart = newTask(1, -1, 4);
+        for (Task<?> t : ImmutableList.of(endedEarlier, endedLater, active, queued, cancelledBeforeStart)) {
+            index.add("a", t);
+        }
+
+        assertEquals(index.query("a", null, null, null, -1).getTasks(),
+                ImmutableList.of(queued, active, cancelledBeforeStart, endedLater, endedEarlier));
+        assertEquals(index.query("a", null, EnumSet.of(TaskState.ACTIVE, TaskState.ENDED), null, -1).getTasks(),
+                ImmutableList.of(active, endedLater, endedEarlier));
+        assertEquals(index.query("a", null, null, t -> t != endedLater, -1).getTasks(),
+                ImmutableList.of(queued, active, cancelledBeforeStart, endedEarlier));
+        assertEquals(index.query("b", null, null, null, -1).getTasks(), ImmutableList.of());
+    }
+
+    @Test
+    public void testQueryPagesWithCursor() {
+        TasksByTagIndex index = new TasksByTagIndex();
+        List<Task<?>> tasks = MutableList.of();
+        for (int i = 0; i < 10; i++) {
+            Task<?> t = newTask(i, i, 100 - i);
+            tasks.add(t);
+            index.add("a", t);
+        }
+
+        List<Task<?>> result = MutableList.of();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page page = index.query("a", cursor, null, null, 3);
+            result.addAll(page.getTasks());
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(pages, 4);
+        assertEquals(result, tasks);
+
+        Page last = index.query("a", null, null, null, 10);
+        assertEquals(last.getTasks(), tasks);
+        assertNull(last.getCursor());
+    }
+
+    @Test
+    public void testQueryCollectionAndMergePages() {
+        List<Task<?>> tasks = MutableList.of();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(newTask(i, i, 100 - i));
+        }
+        List<Task<?>> odd = MutableList.of();
+        List<Task<?>> even = MutableList.of();
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            (i % 2 == 0 ? even : odd).add(tasks.get(i));
+        }
+
+        List<Task<?>> result = MutableList.of();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page page = TasksByTagIndex.merge(3,
+                    TasksByTagIndex.query(odd, cursor, null, null, 3),
+                    TasksByTagIndex.query(even, cursor, null, null, 3));
+            result.addAll(page.getTasks());
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(pages, 4);
+        assertEquals(result, tasks);
+
+        Page all = TasksByTagIndex.query(MutableList.<Task<?>>builder().addAll(odd).addAll(odd).build(), null, null, null, 5);
+        assertEquals(all.getTasks(), ImmutableList.of(tasks.get(1), tasks.get(3), tasks.get(5), tasks.get(7), tasks.get(9)));
+        assertNull(all.getCursor());
+    }
+
+    @Test
+    public void testUpdateReordersTask() {
+        TasksByTagIndex index = new TasksByTagIndex();
+        BasicTask<Void> t1 = newTask(1, -1, -1);
+        BasicTask<Void> t2 = newTask(2, -1, -1);
+        index.add("a", t1);
+        index.add("a", t2);
+        assertEquals(index.query("a", null, null, null, -1).getTasks(), ImmutableList.of(t2, t1));
+
+        t2.setStartTimeUtc(3);
+        t2.setEndTimeUtc(4);
+        index.update(ImmutableList.of("a", "not-added"), t2);
+        assertEquals(index.query("a", null, null, null, -1).getTasks(), ImmutableList.of(t1, t2));
+        assertEquals(index.query("a", null, EnumSet.of(TaskState.ENDED), null, -1).getTasks(), ImmutableList.of(t2));
+
+        assertEquals(index.remove("a", t2), true);
+        assertEquals(index.query("a", null, null, null, -1).getTasks(), ImmutableList.of(t1));
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        TasksByTagIndex index = new TasksByTagIndex();
+        index.add("a", newTask(1, -1, -1));
+        Asserts.assertFailsWith(() -> index.query("a", "not-a-cursor", null, null, -1),
+                e -> e instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testExecutionManagerUpdatesOrderAsTasksEnd() throws Exception {
+        BasicExecutionManager em = new BasicExecutionManager("mycontextid");
+        try {
+            Task<?> t1 = em.submit(MutableMap.of("tag", "a"), new BasicTask<Void>(() -> null));
+            t1.get();
+            Task<?> t2 = em.submit(MutableMap.of("tag", "a"), new BasicTask<Void>(() -> null));
+            t2.get();
+            Asserts.succeedsEventually(() -> assertEquals(
+                    em.getTasksWithTagMostInterestingFirst("a", null, EnumSet.of(TaskState.ENDED), null, -1).getTasks(),
+                    ImmutableList.of(t2, t1)));
+        } finally {
+            em.shutdownNow();
+        }
+    }
+}
@@ -34,13 +34,16 @@ import org.apache.brooklyn.core.test.entity.TestApplication;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.entity.group.DynamicCluster;
 import org.apache.brooklyn.location.localhost.LocalhostMachineProvisioningLocation;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.test.FixedLocaleTest;
+import org.apache.brooklyn.util.text.Identifiers;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 
 public class TemplateProcessorTest extends BrooklynAppUnitTestSupport {
@@ -292,4 +295,43 @@ public class TemplateProcessorTest extends BrooklynAppUnitTestSupport {
         assertEquals(result, "war = peace");
     }
 
+    @Test
+    public void testParsedTemplateReusedFromCache() {
+        String templateContents = "${mykey} for "+Identifiers.makeRandomId(8);
+        long hits = (Long) TemplateProcessor.getTemplateCacheMetrics().get("hits");
+        long misses = (Long) TemplateProcessor.getTemplateCacheMetrics().get("misses");
+
+        assertEquals(TemplateProcessor.processTemplateContents(templateContents, ImmutableMap.of("mykey", "a")), templateContents.replace("${mykey}", "a"));
+        assertEquals(TemplateProcessor.processTemplateContents(templateContents, ImmutableMap.of("mykey", "b")), templateContents.replace("${mykey}", "b"));
+        // a different context is parsed separately, as it appears in error messages
+        TemplateProcessor.processTemplateContents("other", templateContents, ImmutableMap.of("mykey", "c"));
+
+        Assert.assertTrue((Long) TemplateProcessor.getTemplateCacheMetrics().get("hits") >= hits + 1);
+        Assert.assertTrue((Long) TemplateProcessor.getTemplateCacheMetrics().get("misses") >= misses + 2);
+    }
+
+    @Test
+    public void testTemplateLongerThanCacheNotKept() {
+        // longer than the default maximum total length of cached templates
+        String templateContents = "${mykey} " + Strings.repeat("x", 1000*1000 + 1);
+        long evictions = (Long) TemplateProcessor.getTemplateCacheMetrics().get("evictions");
+
+        assertEquals(TemplateProcessor.processTemplateContents(templateContents, ImmutableMap.of("mykey", "a")), templateContents.replace("${mykey}", "a"));
+
+        Assert.assertTrue((Long) TemplateProcessor.getTemplateCacheMetrics().get("evictions") >= evictions + 1);
+    }
+
+    @Test
+    public void testTemplateParseErrorNotCached() {
+        String templateContents = "${unclosed "+Identifiers.makeRandomId(8);
+        for (int i=0; i<2; i++) {
+            try {
+                TemplateProcessor.processTemplateContents(templateContents, ImmutableMap.of());
+                Assert.fail("Should have failed to parse template");
+            } catch (Exception e) {
+                Asserts.expectedFailureContainsIgnoreCase(e, "syntax");
+            }
+        }
+    }
+
 }
@@ -35,6 +35,7 @@ import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 
 import javax.annotation.Nullable;
 
@@ -86,13 +87,22 @@ import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
 import org.apache.brooklyn.util.web.ContextHandlerCollectionHotSwappable;
-import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.webapp.WebAppContext;
@@ -102,6 +112,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
+import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
@@ -169,6 +180,12 @@ public class BrooklynWebServer {
     @SetFromFlag
     private Boolean httpsEnabled;
 
+    @SetFromFlag
+    private Boolean http2Enabled;
+
+    @SetFromFlag
+    private Boolean gzipEnabled;
+
     @SetFromFlag
     private String sslCertificate;
 
@@ -203,6 +220,12 @@ public class BrooklynWebServer {
 
     private ShutdownHandler shutdownHandler;
 
+    private ConnectionStatistics connectionStatistics;
+    private StatisticsHandler statisticsHandler;
+    /** protocols offered by the connector, once started */
+    private List<String> protocols;
+    private Supplier<Map<String,Object>> metricsSupplier;
+
     public BrooklynWebServer(ManagementContext managementContext) {
         this(Maps.newLinkedHashMap(), managementContext);
     }
@@ -263,6 +286,24 @@ public class BrooklynWebServer {
     public boolean getHttpsEnabled() {
         return getConfig(httpsEnabled, BrooklynWebConfig.HTTPS_REQUIRED);
     }
+
+    public BrooklynWebServer setHttp2Enabled(Boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+        return this;
+    }
+
+    public boolean getHttp2Enabled() {
+        return getConfig(http2Enabled, BrooklynWebConfig.HTTP2_ENABLED);
+    }
+
+    public BrooklynWebServer setGzipEnabled(Boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
+        return this;
+    }
+
+    public boolean getGzipEnabled() {
+        return getConfig(gzipEnabled, BrooklynWebConfig.GZIP_ENABLED);
+    }
     
     public PortRange getRequestedPort() {
         return requestedPort;
@@ -374,29 +415,33 @@ public class BrooklynWebServer {
         }
 
 
-        // use a nice name in the thread pool (otherwise this is exactly the same as Server defaults)
-        QueuedThreadPool threadPool = new QueuedThreadPool();
-        threadPool.setName("brooklyn-jetty-server-"+actualPort+"-"+threadPool.getName());
-
-        server = new Server(threadPool);
+        server = new Server(createThreadPool());
+        // the statistics handler makes stopping graceful; stop at once, as before, rather than waiting for long-lived requests such as event streams
+        server.setStopTimeout(0);
 
+        HttpConfiguration httpConfig = new HttpConfiguration();
         final ServerConnector connector;
 
         if (getHttpsEnabled()) {
-            HttpConfiguration sslHttpConfig = new HttpConfiguration();
-            sslHttpConfig.setSecureScheme("https");
-            sslHttpConfig.setSecurePort(actualPort);
+            httpConfig.setSecureScheme("https");
+            httpConfig.setSecurePort(actualPort);
 
             SslContextFactory sslContextFactory = createContextFactory();
-            connector = new ServerConnector(server, new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString()), new HttpConnectionFactory(sslHttpConfig));
+            connector = new ServerConnector(server, createSslConnectionFactories(sslContextFactory, httpConfig));
         } else {
-            connector = new ServerConnector(server, new HttpConnectionFactory());
+            HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+            connector = getHttp2Enabled()
+                    ? new ServerConnector(server, http1, new HTTP2CServerConnectionFactory(httpConfig))
+                    : new ServerConnector(server, http1);
         }
 
         if (bindAddress != null) {
             connector.setHost(bindAddress.getHostName());
         }
         connector.setPort(actualPort);
+        connectionStatistics = new ConnectionStatistics();
+        connector.addBean(connectionStatistics);
+        protocols = ImmutableList.copyOf(connector.getProtocols());
         server.setConnectors(new Connector[]{connector});
 
         if (shouldBindToAll()) {
@@ -430,7 +475,7 @@ public class BrooklynWebServer {
         deployRestApi(rootContext);
         rootContext.setTempDirectory(Os.mkdirs(new File(webappTempDir, "war-root")));
 
-        server.setHandler(handlers);
+        server.setHandler(wrapHandlers(handlers));
         try {
             server.start();
         } catch (BindException e) {
@@ -439,6 +484,8 @@ public class BrooklynWebServer {
             Time.sleep(Duration.millis(500));
             server.start();
         }
+        metricsSupplier = this::getMetrics;
+        managementContext.getScratchpad().put(BrooklynWebConfig.WEB_SERVER_METRICS, metricsSupplier);
         //reinit required because some webapps (eg grails) might wipe our language extension bindings
         BrooklynInitialization.reinitAll();
 
@@ -447,6 +494,118 @@ public class BrooklynWebServer {
         }
 
         log.info("Started Brooklyn rest server at "+getRootUrl()+", running " + rootWar + (allWars!=null && !allWars.isEmpty() ? " and " + wars.values() : ""));
+        if (log.isDebugEnabled())
+            log.debug("Brooklyn rest server at "+getRootUrl()+" offering "+protocols+(getGzipEnabled() ? ", with gzip" : ""));
+    }
+
+    private QueuedThreadPool createThreadPool() {
+        int minThreads = getConfig(null, BrooklynWebConfig.THREAD_POOL_MIN_THREADS);
+        int maxThreads = getConfig(null, BrooklynWebConfig.THREAD_POOL_MAX_THREADS);
+        Duration idleTimeout = getConfig(null, BrooklynWebConfig.THREAD_POOL_IDLE_TIMEOUT);
+        int maxQueued = getConfig(null, BrooklynWebConfig.THREAD_POOL_MAX_QUEUED);
+        if (minThreads > maxThreads) {
+            throw new IllegalArgumentException("Invalid "+BrooklynWebConfig.THREAD_POOL_MIN_THREADS.getName()+" "+minThreads
+                    +": must not be more than "+BrooklynWebConfig.THREAD_POOL_MAX_THREADS.getName()+" "+maxThreads);
+        }
+        // as the Jetty default (growable and unbounded) unless a limit is set
+        BlockingQueue<Runnable> queue = maxQueued > 0 ? new BlockingArrayQueue<>(Math.min(minThreads, maxQueued), minThreads, maxQueued) : null;
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, (int) idleTimeout.toMilliseconds(), queue);
+        // use a nice name in the thread pool
+        threadPool.setName("brooklyn-jetty-server-"+actualPort+"-"+threadPool.getName());
+        return threadPool;
+    }
+
+    private ConnectionFactory[] createSslConnectionFactories(SslContextFactory sslContextFactory, HttpConfiguration httpConfig) {
+        HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+        if (getHttp2Enabled()) {
+            ALPNServerConnectionFactory alpn;
+            try {
+                alpn = new ALPNServerConnectionFactory();
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                // needs Java 9+ (or an ALPN implementation on the classpath)
+                log.warn("HTTP/2 requested but ALPN is not available in this JVM; offering only HTTP/1.1 over HTTPS ("+Exceptions.collapseText(e)+")");
+                alpn = null;
+            }
+            if (alpn!=null) {
+                alpn.setDefaultProtocol(http1.getProtocol());
+                // prefer the ciphers which HTTP/2 permits, so h2 can be negotiated with the configured ciphers
+                sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+                sslContextFactory.setUseCipherSuitesOrder(true);
+                return new ConnectionFactory[] { new SslConnectionFactory(sslContextFactory, alpn.getProtocol()), alpn,
+                        new HTTP2ServerConnectionFactory(httpConfig), http1 };
+            }
+        }
+        return new ConnectionFactory[] { new SslConnectionFactory(sslContextFactory, http1.getProtocol()), http1 };
+    }
+
+    /** adds compression (if enabled) and request statistics around the given handler */
+    private Handler wrapHandlers(Handler handler) {
+        if (getGzipEnabled()) {
+            GzipHandler gzipHandler = new GzipHandler();
+            gzipHandler.setMinGzipSize(getConfig(null, BrooklynWebConfig.GZIP_MIN_SIZE));
+            gzipHandler.setIncludedMimeTypes(parseArray(getConfig(null, BrooklynWebConfig.GZIP_MIME_TYPES)));
+            // some large responses, e.g. logbook queries, are from POSTs
+            gzipHandler.setIncludedMethods("GET", "POST");
+            gzipHandler.setHandler(handler);
+            handler = gzipHandler;
+        }
+        statisticsHandler = new StatisticsHandler();
+        statisticsHandler.setHandler(handler);
+        return statisticsHandler;
+    }
+
+    /**
+     * Returns connection, request and thread pool metrics for the running server, as published to the REST API
+     * under {@link BrooklynWebConfig#WEB_SERVER_METRICS}; empty if not running.
+     */
+    public Map<String,Object> getMetrics() {
+        Server s = server;
+        if (s==null) return MutableMap.of();
+
+        Map<String,Object> result = MutableMap.of();
+        result.put("protocols", protocols);
+        result.put("gzip", getGzipEnabled());
+
+        if (s.getThreadPool() instanceof QueuedThreadPool) {
+            QueuedThreadPool threadPool = (QueuedThreadPool) s.getThreadPool();
+            result.put("threads", MutableMap.of(
+                    "current", threadPool.getThreads(),
+                    "idle", threadPool.getIdleThreads(),
+                    "busy", threadPool.getBusyThreads(),
+                    "min", threadPool.getMinThreads(),
+                    "max", threadPool.getMaxThreads(),
+                    "queued", threadPool.getQueueSize()));
+        }
+        ConnectionStatistics cs = connectionStatistics;
+        if (cs!=null) {
+            result.put("connections", MutableMap.of(
+                    "open", cs.getConnections(),
+                    "openMax", cs.getConnectionsMax(),
+                    "total", cs.getConnectionsTotal(),
+                    "durationMeanMillis", cs.getConnectionDurationMean(),
+                    "bytesReceived", cs.getReceivedBytes(),
+                    "bytesSent", cs.getSentBytes()));
+        }
+        StatisticsHandler sh = statisticsHandler;
+        if (sh!=null) {
+            result.put("requests", MutableMap.builder()
+                    .put("total", sh.getRequests())
+                    .put("active", sh.getRequestsActive())
+                    .put("activeMax", sh.getRequestsActiveMax())
+                    .put("timeMeanMillis", sh.getRequestTimeMean())
+                    .put("timeMaxMillis", sh.getRequestTimeMax())
+                    .put("responses1xx", sh.getResponses1xx())
+                    .put("responses2xx", sh.getResponses2xx())
+                    .put("responses3xx", sh.getResponses3xx())
+                    .put("responses4xx", sh.getResponses4xx())
+                    .put("responses5xx", sh.getResponses5xx())
+                    .put("responseBytesTotal", sh.getResponsesBytesTotal())
+                    .put("sinceMillis", sh.getStatsOnMs())
+                    .build());
+        }
+        return result;
     }
 
     private boolean shouldBindToAll() {
@@ -607,6 +766,11 @@ public class BrooklynWebServer {
         if (log.isDebugEnabled())
             log.debug("Stopping Brooklyn rest server at "+root+ " (" + war + (wars != null ? " and " + wars.values() : "") + ")");
 
+        if (metricsSupplier!=null && managementContext.getScratchpad().get(BrooklynWebConfig.WEB_SERVER_METRICS)==metricsSupplier) {
+            managementContext.getScratchpad().put(BrooklynWebConfig.WEB_SERVER_METRICS, null);
+        }
+        metricsSupplier = null;
+
         server.stop();
         try {
             server.join();
@@ -614,6 +778,8 @@ public class BrooklynWebServer {
             /* NPE may be thrown e.g. if threadpool not started */
         }
         server = null;
+        connectionStatistics = null;
+        statisticsHandler = null;
         LocalhostMachineProvisioningLocation.releasePort(getAddress(), actualPort);
         actualPort = -1;
         if (log.isDebugEnabled())
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.launcher;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.qa.performance.AbstractPerformanceTest;
+import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.apache.brooklyn.entity.stock.BasicEntity;
+import org.apache.brooklyn.rest.BrooklynWebConfig;
+import org.apache.brooklyn.test.performance.PerformanceMeasurer;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.core.file.ArchiveBuilder;
+import org.apache.brooklyn.util.http.HttpTool;
+import org.apache.brooklyn.util.http.HttpToolResponse;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Puts load on a local {@link BrooklynWebServer} to compare its settings, logging the requests per second
+ * and the bytes sent per request with many concurrent clients (each keeping its connection open, as a browser does):
+ * for a REST listing of many entities and for a large static file (as the UI serves),
+ * with and without compression, and with smaller and larger thread pools.
+ * <p>
+ * REST responses are also compressed by CXF when the client accepts gzip, so the web server's own compression
+ * mainly makes a difference for static content. HTTP/2 is not measured, as the HTTP client used here does not support it.
+ */
+public class BrooklynWebServerLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BrooklynWebServerLoadTest.class);
+
+    private static final int NUM_ENTITIES = 1000;
+    private static final int NUM_CONCURRENT_CLIENTS = 20;
+    private static final Duration DURATION = Duration.seconds(10);
+
+    private LocalManagementContext mgmt;
+    private BasicApplication app;
+    private String war;
+    private BrooklynWebServer webServer;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        mgmt = LocalManagementContextForTests.newInstance();
+        app = mgmt.getEntityManager().createEntity(EntitySpec.create(BasicApplication.class).displayName("app"));
+        for (int i = 0; i < NUM_ENTITIES; i++) {
+            app.addChild(EntitySpec.create(BasicEntity.class).displayName("entity-" + i));
+        }
+        war = createWarWithLargeScript();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (webServer != null) webServer.stop();
+        webServer = null;
+        if (mgmt != null) Entities.destroyAll(mgmt);
+        mgmt = null;
+    }
+
+    @Test(groups={"Integration"})
+    public void testRestListingWithAndWithoutCompression() throws Exception {
+        String path = "v1/applications/" + app.getId() + "/descendants";
+        runLoad("rest.gzipAccepted", path, true);
+        runLoad("rest.gzipNotAccepted", path, false);
+    }
+
+    @Test(groups={"Integration"})
+    public void testStaticContentWithAndWithoutCompression() throws Exception {
+        setConfig(BrooklynWebConfig.GZIP_ENABLED, true);
+        runLoad("static.gzipEnabled", "app.js", true);
+        setConfig(BrooklynWebConfig.GZIP_ENABLED, false);
+        runLoad("static.gzipDisabled", "app.js", true);
+    }
+
+    @Test(groups={"Integration"})
+    public void testThreadPoolSizes() throws Exception {
+        String path = "v1/applications/" + app.getId() + "/descendants";
+        setConfig(BrooklynWebConfig.THREAD_POOL_MIN_THREADS, 8);
+        setConfig(BrooklynWebConfig.THREAD_POOL_MAX_THREADS, 32);
+        runLoad("rest.maxThreads32", path, true);
+        setConfig(BrooklynWebConfig.THREAD_POOL_MAX_THREADS, 200);
+        runLoad("rest.maxThreads200", path, true);
+    }
+
+    private <T> void setConfig(ConfigKey<T> key, T value) {
+        ((ManagementContextInternal) mgmt).getBrooklynProperties().put(key, value);
+    }
+
+    /** starts a server with the current config, measures GETs of the given path, then stops the server */
+    protected PerformanceTestResult runLoad(String summary, String path, final boolean acceptGzip) throws Exception {
+        webServer = new BrooklynWebServer(mgmt);
+        webServer.skipSecurity();
+        webServer.setWar(war);
+        webServer.start();
+        try {
+            final String url = webServer.getRootUrl() + path;
+            final ThreadLocal<HttpClient> clients = ThreadLocal.withInitial(() -> HttpTool.httpClientBuilder().build());
+
+            PerformanceTestResult result = PerformanceMeasurer.run(PerformanceTestDescriptor.create()
+                    .summary("BrooklynWebServerLoadTest." + summary)
+                    .duration(DURATION)
+                    .numConcurrentJobs(NUM_CONCURRENT_CLIENTS)
+                    .minAcceptablePerSecond(1 * AbstractPerformanceTest.PERFORMANCE_EXPECTATION)
+                    .job(() -> {
+                        HttpGet get = new HttpGet(url);
+                        if (acceptGzip) get.setHeader("Accept-Encoding", "gzip");
+                        HttpToolResponse response = HttpTool.execAndConsume(clients.get(), get);
+                        assertEquals(response.getResponseCode(), 200);
+                    }));
+
+            Map<String, Object> metrics = webServer.getMetrics();
+            long requests = ((Number) ((Map<?,?>) metrics.get("requests")).get("total")).longValue();
+            long bytesSent = ((Number) ((Map<?,?>) metrics.get("connections")).get("bytesSent")).longValue();
+            log.info("test=" + summary + "; rate=" + result.ratePerSecond + "/sec; bytesSentPerRequest=" + (requests > 0 ? bytesSent / requests : 0)
+                    + "; metrics=" + metrics);
+            return result;
+        } finally {
+            webServer.stop();
+            webServer = null;
+        }
+    }
+
+    /** creates a WAR with an index page and a script of about 1MB, repetitive as real scripts are */
+    private static String createWarWithLargeScript() throws IOException {
+        File dir = Files.createTempDir();
+        dir.deleteOnExit();
+        Files.write("<html><body><script src=\"app.js\"></script></body></html>", new File(dir, "index.html"), Charsets.UTF_8);
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; script.length() < 1024 * 1024; i++) {
+            script.append("function handler").append(i).append("(event) { return render('").append(Identifiers.makeRandomId(8))
+                    .append("', event.target, { index: ").append(i).append(" }); }\n");
+        }
+        Files.write(script.toString(), new File(dir, "app.js"), Charsets.UTF_8);
+        File archive = ArchiveBuilder.zip().addDirContentsAt(dir, ".").create();
+        archive.deleteOnExit();
+        return archive.getAbsolutePath();
+    }
+}
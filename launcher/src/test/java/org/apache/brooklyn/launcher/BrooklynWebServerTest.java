@@ -19,6 +19,7 @@
 package org.apache.brooklyn.launcher;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -40,6 +41,7 @@ import org.apache.brooklyn.core.internal.BrooklynProperties;
 import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
 import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
 import org.apache.brooklyn.rest.BrooklynWebConfig;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.http.HttpTool;
@@ -51,6 +53,8 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.AfterMethod;
@@ -58,6 +62,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
@@ -179,6 +184,65 @@ public class BrooklynWebServerTest {
         verifyHttpsFromConfig(brooklynProperties);
     }
 
+    @Test
+    public void verifyHttpsWithHttp2FromConfig() throws Exception {
+        // offers h2 where the JVM supports ALPN, but HTTP/1.1 clients must be served either way
+        brooklynProperties.put(BrooklynWebConfig.HTTP2_ENABLED, true);
+        verifyHttpsFromConfig();
+    }
+
+    @Test
+    public void verifyHttp2AndThreadPoolFromConfig() throws Exception {
+        brooklynProperties.put(BrooklynWebConfig.HTTP2_ENABLED, true);
+        brooklynProperties.put(BrooklynWebConfig.THREAD_POOL_MIN_THREADS, 4);
+        brooklynProperties.put(BrooklynWebConfig.THREAD_POOL_MAX_THREADS, 50);
+        webServer = new BrooklynWebServer(newManagementContext(brooklynProperties));
+        webServer.skipSecurity();
+        webServer.start();
+        try {
+            QueuedThreadPool threadPool = (QueuedThreadPool) webServer.getServer().getThreadPool();
+            assertEquals(threadPool.getMinThreads(), 4);
+            assertEquals(threadPool.getMaxThreads(), 50);
+            List<String> protocols = ((ServerConnector) webServer.getServer().getConnectors()[0]).getProtocols();
+            assertTrue(protocols.contains("h2c"), "protocols="+protocols);
+
+            HttpToolResponse response = HttpTool.execAndConsume(HttpTool.httpClientBuilder().build(), new HttpGet(webServer.getRootUrl()));
+            assertEquals(response.getResponseCode(), 200);
+        } finally {
+            webServer.stop();
+        }
+    }
+
+    @Test
+    public void verifyGzipAndMetrics() throws Exception {
+        brooklynProperties.put(BrooklynWebConfig.GZIP_MIN_SIZE, 1);
+        final LocalManagementContext mgmt = newManagementContext(brooklynProperties);
+        webServer = new BrooklynWebServer(mgmt);
+        webServer.skipSecurity();
+        webServer.start();
+        try {
+            HttpGet gzipGet = new HttpGet(webServer.getRootUrl());
+            gzipGet.setHeader("Accept-Encoding", "gzip");
+            HttpToolResponse response = HttpTool.execAndConsume(HttpTool.httpClientBuilder().build(), gzipGet);
+            assertEquals(response.getResponseCode(), 200);
+            assertEquals(response.getHeaderLists().get("Content-Encoding"), ImmutableList.of("gzip"));
+
+            response = HttpTool.execAndConsume(HttpTool.httpClientBuilder().build(), new HttpGet(webServer.getRootUrl()));
+            assertEquals(response.getResponseCode(), 200);
+            assertNull(response.getHeaderLists().get("Content-Encoding"));
+
+            // statistics are recorded once the response completes, which may be just after the client has it
+            Asserts.succeedsEventually(() -> {
+                Map<String, Object> metrics = mgmt.getScratchpad().get(BrooklynWebConfig.WEB_SERVER_METRICS).get();
+                assertEquals(((Map<?,?>) metrics.get("requests")).get("responses2xx"), 2, "metrics="+metrics);
+                assertTrue(((Number) ((Map<?,?>) metrics.get("connections")).get("total")).longValue() >= 2, "metrics="+metrics);
+            });
+        } finally {
+            webServer.stop();
+        }
+        assertNull(mgmt.getScratchpad().get(BrooklynWebConfig.WEB_SERVER_METRICS));
+    }
+
     @Test
     public void verifyHttpsCiphers() throws Exception {
         brooklynProperties.put(BrooklynWebConfig.HTTPS_REQUIRED, true);
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.domain.TaskSummaryPage;
 
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -30,6 +31,8 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.apache.brooklyn.util.core.task.TaskInternal;
 
+import com.google.common.annotations.Beta;
+
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -81,6 +84,33 @@ public interface ActivityApi {
             @ApiParam(value = "Whether to suppress secrets", required = false)
             @QueryParam("suppressSecrets") final Boolean suppressSecrets);
 
+    @GET
+    @Path("/{task}/children/page")
+    @ApiOperation(value = "Fetch a page of children tasks of this task, continuing from the cursor if set; "
+            + "tasks are ordered most interesting first: queued, then active, then ended, and the most recent first within each; "
+            + "the result includes the cursor for the next page",
+            response = org.apache.brooklyn.rest.domain.TaskSummaryPage.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 404, message = "Could not find task"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    @Beta
+    public TaskSummaryPage childrenPage(
+            @ApiParam(value = "Task ID", required = true) @PathParam("task") String taskId,
+            @ApiParam(value = "Whether to include non-subtask backgrounded tasks submitted by this task", required = false)
+            @QueryParam("includeBackground") @DefaultValue("false") Boolean includeBackground,
+            @ApiParam(value = "Max number of tasks in the page, or -1 for all (default 200)", required = false)
+            @QueryParam("limit") @DefaultValue("200") int limit,
+            @ApiParam(value = "Cursor from the previous page, to continue from", required = false)
+            @QueryParam("cursor") String cursor,
+            @ApiParam(value = "Statuses of tasks to include, any of 'queued', 'active', 'ended' and 'failed'; all if none", required = false)
+            @QueryParam("status") List<String> status,
+            @ApiParam(value = "Whether to suppress secrets", required = false)
+            @QueryParam("suppressSecrets") final Boolean suppressSecrets);
+
     @GET
     @Path("/{task}/children/recurse")
     @ApiOperation(
@@ -116,7 +116,46 @@ public interface ApplicationApi {
                 + "current sensor values if present are returned for each entity in a name-value map under the 'sensors' key", required=false)
             @DefaultValue("")
             @QueryParam("sensors") String sensors);
-    
+
+    @GET
+    @Path("/changes")
+    @Produces(LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+    @Beta
+    @ApiOperation(
+            value = "Follow changes to entities, as server-sent events: first a 'snapshot' event with the current state, as returned by the `details` endpoint "
+                + "at full depth; then an 'entity-added', 'entity-removed', 'entity-renamed', 'sensor', 'config', 'task-started' or 'task-ended' event "
+                + "for each change matching the filter, with an increasing event id; "
+                + "another 'snapshot' event if the client does not keep up and its buffer fills, replacing the changes dropped; "
+                + "and an 'end' event when the subscription times out. "
+                + "A client reconnecting gets a new snapshot, so it need not track the changes it missed."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    public Response changes(
+            @ApiParam(value="Entity ID's whose changes to include, with those of their descendants, as JSON or comma-separated list; "
+                + "all entities if none", required=false)
+            @DefaultValue("")
+            @QueryParam("items") String items,
+            @ApiParam(value="Sensors whose changes to include, as JSON or comma-separated list, accepting globs (* and ?)", required=false)
+            @DefaultValue("")
+            @QueryParam("sensors") String sensors,
+            @ApiParam(value="Config whose changes to include, as JSON or comma-separated list, accepting globs (* and ?)", required=false)
+            @DefaultValue("")
+            @QueryParam("config") String config,
+            @ApiParam(value="Whether to include effector and workflow tasks starting and ending", required=false)
+            @DefaultValue("false")
+            @QueryParam("tasks") boolean tasks,
+            @ApiParam(value="Number of changes to buffer if the client does not keep up, after which a new snapshot is sent", required=false)
+            @DefaultValue("1000")
+            @QueryParam("bufferSize") int bufferSize,
+            @ApiParam(value="How long to follow changes before ending the stream, e.g. 10m", required=false)
+            @DefaultValue("10m")
+            @QueryParam("timeout") String timeout);
+
     @GET
     @ApiOperation(
             value = "List a summary object for applications managed here, optionally filtered by a type regex. "
@@ -24,6 +24,9 @@ import org.apache.brooklyn.rest.domain.RelationSummary;
 import org.apache.brooklyn.rest.domain.EntitySummary;
 import org.apache.brooklyn.rest.domain.LocationSummary;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.domain.TaskSummaryPage;
+
+import com.google.common.annotations.Beta;
 
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
@@ -162,6 +165,32 @@ public interface EntityApi {
             @ApiParam(value = "Whether to suppress secrets", required = false)
             @QueryParam("suppressSecrets") final Boolean suppressSecrets);
 
+    @GET
+    @Path("/{entity}/activities/page")
+    @ApiOperation(value = "Fetch a page of tasks for this entity, continuing from the cursor if set; "
+            + "tasks are ordered most interesting first: queued, then active, then ended, and the most recent first within each; "
+            + "the result includes the cursor for the next page",
+            response = org.apache.brooklyn.rest.domain.TaskSummaryPage.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 404, message = "Application or entity missing"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    @Beta
+    public TaskSummaryPage listTasksPage(
+            @ApiParam(value = "Application ID or name", required = true) @PathParam("application") String applicationId,
+            @ApiParam(value = "Entity ID or name", required = true) @PathParam("entity") String entityId,
+            @ApiParam(value = "Max number of tasks in the page, or -1 for all (default 200)", required = false)
+            @QueryParam("limit") @DefaultValue("200") int limit,
+            @ApiParam(value = "Cursor from the previous page, to continue from", required = false)
+            @QueryParam("cursor") String cursor,
+            @ApiParam(value = "Statuses of tasks to include, any of 'queued', 'active', 'ended' and 'failed'; all if none", required = false)
+            @QueryParam("status") List<String> status,
+            @ApiParam(value = "Whether to suppress secrets", required = false)
+            @QueryParam("suppressSecrets") final Boolean suppressSecrets);
+
     @GET
     @Path("/{entity}/activities/{task}")
     @ApiOperation(value = "Fetch task details", response = org.apache.brooklyn.rest.domain.TaskSummary.class)
@@ -26,6 +26,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.List;
 
 @Path("/logbook")
 @Api("Logbook")
@@ -33,6 +34,12 @@ import javax.ws.rs.core.Response;
 @Consumes(MediaType.APPLICATION_JSON)
 public interface LogbookApi {
 
+    /** Newline-delimited JSON, i.e. one JSON object per line */
+    String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
+    /** Server-sent events */
+    String MEDIA_TYPE_EVENT_STREAM = "text/event-stream";
+
     @POST
     @ApiOperation(value = "Execute query for getting log data",
             response = org.apache.brooklyn.rest.domain.SensorSummary.class)
@@ -47,4 +54,68 @@ public interface LogbookApi {
             @Context HttpServletRequest request,
             @ApiParam(name = "params", value = "Query filter", required = true)
                     LogBookQueryParams params);
+
+    @POST
+    @Path("/page")
+    @ApiOperation(value = "Execute query for getting a page of log data, continuing from the cursor in the query if set; "
+            + "the result includes the cursor for the next page",
+            response = org.apache.brooklyn.util.core.logbook.LogBookQueryPage.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    Response logbookQueryPage(
+            @Context HttpServletRequest request,
+            @ApiParam(name = "params", value = "Query filter, with the number of items to return in the page", required = true)
+                    LogBookQueryParams params);
+
+    @POST
+    @Path("/stream")
+    @Produces(MEDIA_TYPE_NDJSON)
+    @ApiOperation(value = "Execute query for getting log data, streamed as newline-delimited JSON as it is read; "
+            + "all matching items are returned if the number of items is not set, the most recent first for 'tail' queries")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    Response logbookQueryStream(
+            @Context HttpServletRequest request,
+            @ApiParam(name = "params", value = "Query filter", required = true)
+                    LogBookQueryParams params,
+            @ApiParam(name = "pageSize", value = "Number of items to read from the log store at a time")
+            @QueryParam("pageSize") @DefaultValue("1000")
+                    int pageSize);
+
+    @GET
+    @Path("/tail")
+    @Produces(MEDIA_TYPE_EVENT_STREAM)
+    @ApiOperation(value = "Follow the log, as server-sent events: an 'entry' event for each new log item matching the filter, "
+            + "with its line id as the event id; a 'dropped' event with the number of matching items dropped so far, "
+            + "if the client does not keep up and its buffer fills; and an 'end' event when the subscription times out")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    Response logbookTail(
+            @Context HttpServletRequest request,
+            @ApiParam(name = "levels", value = "Log levels to include; all if none")
+            @QueryParam("levels") List<String> levels,
+            @ApiParam(name = "taskId", value = "Task whose log items to include")
+            @QueryParam("taskId") String taskId,
+            @ApiParam(name = "recursive", value = "Whether to include log items of sub-tasks of the task")
+            @QueryParam("recursive") @DefaultValue("false") boolean recursive,
+            @ApiParam(name = "entityId", value = "Entity whose log items to include")
+            @QueryParam("entityId") String entityId,
+            @ApiParam(name = "searchPhrase", value = "Phrase the log message must contain")
+            @QueryParam("searchPhrase") String searchPhrase,
+            @ApiParam(name = "bufferSize", value = "Number of log items to buffer if the client does not keep up, after which they are dropped")
+            @QueryParam("bufferSize") @DefaultValue("1000") int bufferSize,
+            @ApiParam(name = "timeout", value = "How long to follow the log before ending the stream, e.g. 10m; at most brooklyn.logbook.tail.maxTimeout, by default 1h")
+            @QueryParam("timeout") @DefaultValue("10m") String timeout);
 }
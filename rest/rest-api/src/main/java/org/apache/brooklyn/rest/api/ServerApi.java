@@ -199,6 +199,18 @@ public interface ServerApi {
             @ApiResponse(code = 500, message = "Internal Server Error")
     })
     public Map<String,Object> getHighAvailabilityMetrics();
+
+    @GET
+    @Path("/web/metrics")
+    @ApiOperation(value = "Returns connection, request and thread pool metrics for the web server, "
+            + "or an empty map if the web server does not supply them")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad Request"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal Server Error")
+    })
+    public Map<String,Object> getWebServerMetrics();
     
     @POST
     @Path("/ha/state")
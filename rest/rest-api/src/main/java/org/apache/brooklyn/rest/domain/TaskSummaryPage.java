@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.domain;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+/** A page of tasks, and the cursor to continue from */
+public class TaskSummaryPage implements Serializable {
+
+    private static final long serialVersionUID = 4721553604193720312L;
+
+    private final List<TaskSummary> tasks;
+    private final String cursor;
+
+    public TaskSummaryPage(@JsonProperty("tasks") List<TaskSummary> tasks,
+                           @JsonProperty("cursor") String cursor) {
+        this.tasks = tasks == null ? ImmutableList.<TaskSummary> of() : ImmutableList.copyOf(tasks);
+        this.cursor = cursor;
+    }
+
+    public List<TaskSummary> getTasks() {
+        return tasks;
+    }
+
+    /** The cursor to get the next page with, or null if there are no more tasks */
+    public String getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TaskSummaryPage)) return false;
+        TaskSummaryPage that = (TaskSummaryPage) o;
+        return Objects.equals(tasks, that.tasks) &&
+                Objects.equals(cursor, that.cursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tasks, cursor);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskSummaryPage{" +
+                "tasks=" + tasks +
+                ", cursor=" + cursor +
+                '}';
+    }
+}
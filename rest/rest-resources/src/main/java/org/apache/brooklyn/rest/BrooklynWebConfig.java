@@ -18,6 +18,8 @@
  */
 package org.apache.brooklyn.rest;
 
+import com.google.common.annotations.Beta;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
 import org.apache.brooklyn.api.location.PortRange;
@@ -29,8 +31,10 @@ import org.apache.brooklyn.rest.security.provider.DelegatingSecurityProvider;
 import org.apache.brooklyn.rest.security.provider.ExplicitUsersSecurityProvider;
 import org.apache.brooklyn.rest.security.provider.SecurityProvider;
 import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
 
 import java.util.List;
+import java.util.Map;
 
 public class BrooklynWebConfig {
 
@@ -189,6 +193,63 @@ public class BrooklynWebConfig {
             "SSL_DHE_DSS_WITH_CAMELLIA_128_CBC_SHA,SSL_RSA_WITH_CAMELLIA_128_CBC_SHA," +
             "SSL_RSA_WITH_3DES_EDE_CBC_SHA");
 
+    @Beta
+    public final static ConfigKey<Boolean> HTTP2_ENABLED = ConfigKeys.newBooleanConfigKey(
+            BASE_NAME+".http2.enabled",
+            "Whether to offer HTTP/2 as well as HTTP/1.1: negotiated by ALPN when using HTTPS (if the JVM supports it, "
+            + "otherwise only HTTP/1.1 is offered), or as cleartext HTTP/2 (h2c) when using HTTP",
+            false);
+
+    @Beta
+    public final static ConfigKey<Boolean> GZIP_ENABLED = ConfigKeys.newBooleanConfigKey(
+            BASE_NAME+".gzip.enabled",
+            "Whether to compress responses for clients which accept gzip, if not already compressed",
+            true);
+
+    @Beta
+    public final static ConfigKey<Integer> GZIP_MIN_SIZE = ConfigKeys.newIntegerConfigKey(
+            BASE_NAME+".gzip.minSize",
+            "Size in bytes below which responses are not compressed",
+            1024);
+
+    @Beta
+    public final static ConfigKey<String> GZIP_MIME_TYPES = ConfigKeys.newStringConfigKey(
+            BASE_NAME+".gzip.mimeTypes",
+            "Comma-separated MIME types of responses to compress",
+            "text/html,text/plain,text/css,text/javascript,application/javascript,application/json,"
+            + "application/x-ndjson,application/x-yaml,application/yaml,image/svg+xml");
+
+    @Beta
+    public final static ConfigKey<Integer> THREAD_POOL_MIN_THREADS = ConfigKeys.newIntegerConfigKey(
+            BASE_NAME+".threads.min",
+            "Minimum number of threads the web console keeps for handling requests",
+            8);
+
+    @Beta
+    public final static ConfigKey<Integer> THREAD_POOL_MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+            BASE_NAME+".threads.max",
+            "Maximum number of threads for the web console, including those accepting and selecting connections",
+            200);
+
+    @Beta
+    public final static ConfigKey<Duration> THREAD_POOL_IDLE_TIMEOUT = ConfigKeys.newDurationConfigKey(
+            BASE_NAME+".threads.idleTimeout",
+            "Time after which idle web console threads above the minimum are stopped",
+            Duration.ONE_MINUTE);
+
+    @Beta
+    public final static ConfigKey<Integer> THREAD_POOL_MAX_QUEUED = ConfigKeys.newIntegerConfigKey(
+            BASE_NAME+".threads.maxQueued",
+            "Maximum number of jobs waiting for a web console thread, after which new work is rejected; 0 for no limit",
+            0);
+
+    /** Scratchpad key for the metrics of the running web console server, if it supplies them */
+    @Beta
+    public final static ConfigKey<Supplier<Map<String,Object>>> WEB_SERVER_METRICS = ConfigKeys.newConfigKey(
+            new TypeToken<Supplier<Map<String,Object>>>() {},
+            "internals.brooklyn.webconsole.metrics",
+            "Supplies connection, request and thread pool metrics for the web console server");
+
     public final static boolean hasNoSecurityOptions(ConfigMap config) {
         return config.findKeysPresent(ConfigPredicates.nameStartsWith(BASE_NAME_SECURITY)).isEmpty();
     }
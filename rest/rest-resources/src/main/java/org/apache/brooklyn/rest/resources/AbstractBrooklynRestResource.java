@@ -18,9 +18,20 @@
  */
 package org.apache.brooklyn.rest.resources;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.ContextResolver;
 
@@ -28,16 +39,25 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.gson.Gson;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.TaskAdaptable;
+import org.apache.brooklyn.api.mgmt.TaskFactory;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.BrooklynDslDeferredSupplier;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.config.render.RendererHints;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.resolve.jackson.BeanWithTypeUtils;
 import org.apache.brooklyn.rest.domain.ApiError;
 import org.apache.brooklyn.rest.util.BrooklynRestResourceUtils;
 import org.apache.brooklyn.rest.util.DefaultExceptionMapper;
+import org.apache.brooklyn.rest.util.EntitySummaryCache;
 import org.apache.brooklyn.rest.util.ManagementContextProvider;
 import org.apache.brooklyn.rest.util.json.BrooklynJacksonJsonProvider;
+import org.apache.brooklyn.util.core.task.DeferredSupplier;
+import org.apache.brooklyn.util.core.task.ImmediateSupplier;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
@@ -48,6 +68,7 @@ import org.apache.brooklyn.util.time.Duration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
 
 public abstract class AbstractBrooklynRestResource {
 
@@ -56,6 +77,12 @@ public abstract class AbstractBrooklynRestResource {
     @Context
     private ContextResolver<ManagementContext> mgmt;
 
+    @Context
+    private Request jaxrsRequest;
+
+    @Context
+    private HttpServletResponse servletResponse;
+
     private BrooklynRestResourceUtils brooklynRestResourceUtils;
     private ObjectMapper mapper;
 
@@ -82,6 +109,11 @@ public abstract class AbstractBrooklynRestResource {
         return brooklynRestResourceUtils;
     }
     
+    /** the summaries of entities kept for the management context, to be used in preference to building them with the transformers */
+    protected EntitySummaryCache summaries() {
+        return EntitySummaryCache.get(mgmt());
+    }
+
     /** returns a bad request Response wrapping the given exception */
     protected Response badRequest(Exception e) {
         DefaultExceptionMapper.logExceptionDetailsForDebugging(e);
@@ -98,6 +130,60 @@ public abstract class AbstractBrooklynRestResource {
         return mapper;
     }
 
+    /**
+     * Supports conditional GET for a read whose result depends only on the request, the user, and the given versions
+     * (such as those from {@link #getChangeVersion(Entity)}): if the request is <code>If-None-Match</code> the strong ETag
+     * computed from these, this throws so that 304 Not Modified is returned without the caller building or serializing the result;
+     * otherwise it sets that ETag on the response and returns, for the caller to build the result.
+     * <p>
+     * The versions must be read before the result is built, so a change while building gives a new ETag next time.
+     * Does nothing if the versions are null or contain null, e.g. because an entity is read-only so its version is not reliable.
+     * Callers must pass null if the result includes values which are resolved when read, as those may refer to other entities
+     * (see {@link #isDeferred(Object)}).
+     */
+    protected void checkNotModified(@Nullable List<?> versions) {
+        if (versions==null || versions.contains(null) || jaxrsRequest==null || servletResponse==null) return;
+        EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        String tagSource = mgmt().getManagementNodeId()
+                + "\n" + (entitlementContext==null ? "" : entitlementContext.user())
+                + "\n" + ui.getRequestUri()
+                + "\n" + versions;
+        EntityTag tag = new EntityTag(Hashing.sha256().hashString(tagSource, StandardCharsets.UTF_8).toString());
+        ResponseBuilder notModified = jaxrsRequest.evaluatePreconditions(tag);
+        if (notModified!=null) {
+            throw new WebApplicationException(notModified.tag(tag).build());
+        }
+        servletResponse.setHeader(HttpHeaders.ETAG, tag.toString());
+    }
+
+    /**
+     * Whether the value is (or contains) something which is resolved when read, such as a task or a DSL expression,
+     * so may change without the entity it is on changing, e.g. if it refers to another entity's sensor.
+     */
+    protected static boolean isDeferred(Object value) {
+        if (value instanceof TaskAdaptable || value instanceof TaskFactory || value instanceof DeferredSupplier
+                || value instanceof ImmediateSupplier || value instanceof Future) {
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+                if (isDeferred(entry.getKey()) || isDeferred(entry.getValue())) return true;
+            }
+        } else if (value instanceof Iterable) {
+            for (Object item : (Iterable<?>) value) {
+                if (isDeferred(item)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** The version of the entity for {@link #checkNotModified(List)}, or null if it is read-only, as then changes are not noted;
+     * versions are per entity, so the entity's id must be passed with it */
+    protected static Long getChangeVersion(Entity entity) {
+        if (Entities.isReadOnly(entity)) return null;
+        return ((EntityInternal) entity).getManagementSupport().getChangeVersion();
+    }
+
     protected RestValueResolver resolving(Object v) {
         return resolving(v, mgmt());
     }
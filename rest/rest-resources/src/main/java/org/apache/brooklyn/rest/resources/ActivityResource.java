@@ -18,6 +18,7 @@
  */
 package org.apache.brooklyn.rest.resources;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import org.apache.brooklyn.api.entity.Entity;
@@ -28,10 +29,13 @@ import org.apache.brooklyn.core.mgmt.BrooklynTaskTags.WrappedStream;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.rest.api.ActivityApi;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.domain.TaskSummaryPage;
 import org.apache.brooklyn.rest.transform.TaskTransformer;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.TasksByTagIndex;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
@@ -115,6 +119,34 @@ public class ActivityResource extends AbstractBrooklynRestResource implements Ac
         return TaskTransformer.fromTasks(result, limit, false, null, ui, resolving(null), suppressSecrets);
     }
 
+    @Override
+    public TaskSummaryPage childrenPage(String taskId, Boolean includeBackground, int limit, String cursor, List<String> status, Boolean suppressSecrets) {
+        Task<?> t = findTask(taskId);
+        Set<TasksByTagIndex.TaskState> states = TaskTransformer.statesForStatuses(status);
+        Predicate<Task<?>> filter = TaskTransformer.filterForStatuses(status);
+
+        // sub-task children are not indexed, but are only held by their parent so are few enough to select from directly
+        TasksByTagIndex.Page page = TasksByTagIndex.query(MutableList.copyOf(getSubTaskChildren(t)), cursor, states, filter, limit);
+        if (Boolean.TRUE.equals(includeBackground)) {
+            page = TasksByTagIndex.merge(limit, page, getBackgroundedChildrenPage(t, cursor, states, filter, limit));
+        }
+        return TaskTransformer.fromTasksPage(page, ui, resolving(null), suppressSecrets);
+    }
+
+    /** background children are read from the index of the entity's tasks, in order, rather than collecting all of the entity's tasks */
+    private TasksByTagIndex.Page getBackgroundedChildrenPage(Task<?> t, String cursor, Set<TasksByTagIndex.TaskState> states, Predicate<Task<?>> filter, int limit) {
+        Entity entity = BrooklynTaskTags.getContextEntity(t);
+        if (entity == null) {
+            return new TasksByTagIndex.Page(Collections.emptyList(), null);
+        }
+        if (mgmt().getExecutionManager() instanceof BasicExecutionManager) {
+            Predicate<Task<?>> submittedByT = ti -> t.equals(ti.getSubmittedByTask()) && (filter == null || filter.apply(ti));
+            return ((BasicExecutionManager) mgmt().getExecutionManager()).getTasksWithTagMostInterestingFirst(
+                    BrooklynTaskTags.tagForContextEntity(entity), cursor, states, submittedByT, limit);
+        }
+        return TasksByTagIndex.query(getBackgroundedChildren(t), cursor, states, filter, limit);
+    }
+
     private Collection<Task<?>> getBackgroundedChildren(Task<?> t) {
         Entity entity = BrooklynTaskTags.getContextEntity(t);
         List<Task<?>> result = MutableList.of();
@@ -26,6 +26,7 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
@@ -33,11 +34,13 @@ import org.apache.brooklyn.api.entity.Group;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.ConfigPredicates;
 import org.apache.brooklyn.core.config.ConstraintViolationException;
 import org.apache.brooklyn.core.config.Sanitizer;
@@ -52,21 +55,24 @@ import org.apache.brooklyn.core.mgmt.entitlement.EntitlementPredicates;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.EntityAndItem;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements.StringAndArgument;
+import org.apache.brooklyn.core.mgmt.internal.EntityChangeStream;
 import org.apache.brooklyn.core.mgmt.internal.IdAlreadyExistsException;
 import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
 import org.apache.brooklyn.core.typereg.RegisteredTypeLoadingContexts;
 import org.apache.brooklyn.core.typereg.RegisteredTypes;
 import org.apache.brooklyn.entity.group.AbstractGroup;
 import org.apache.brooklyn.rest.api.ApplicationApi;
+import org.apache.brooklyn.rest.api.LogbookApi;
 import org.apache.brooklyn.rest.domain.*;
 import org.apache.brooklyn.rest.filter.HaHotStateRequired;
-import org.apache.brooklyn.rest.transform.ApplicationTransformer;
 import org.apache.brooklyn.rest.transform.EntityTransformer;
 import org.apache.brooklyn.rest.transform.TaskTransformer;
 import org.apache.brooklyn.rest.util.BrooklynRestResourceUtils;
 import org.apache.brooklyn.rest.util.EntityAttributesUtils;
 import org.apache.brooklyn.rest.util.EntityRelationUtils;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
+import org.apache.brooklyn.rest.util.json.BrooklynJacksonJsonProvider;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.ResourceUtils;
@@ -79,6 +85,7 @@ import org.apache.brooklyn.util.repeat.Repeater;
 import org.apache.brooklyn.util.text.StringEscapes.JavaStringEscapes;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.text.WildcardGlobs;
+import org.apache.brooklyn.util.time.CountdownTimer;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,7 +93,12 @@ import org.slf4j.LoggerFactory;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
@@ -105,6 +117,8 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
 
     private static final Logger log = LoggerFactory.getLogger(ApplicationResource.class);
     private static final String AUTHORIZATION_ERR_MSG = "User '%s' is not authorized to start application %s";
+    private static final int MAX_CHANGES_BUFFER_SIZE = 100 * 1000;
+    private static final Duration CHANGES_KEEP_ALIVE_PERIOD = Duration.seconds(15);
 
     @Context
     private UriInfo uriInfo;
@@ -121,16 +135,8 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
                 MutableMap.of("self", EntityTransformer.entityUri(entity, ui.getBaseUriBuilder())) );
         }
 
-        Boolean serviceUp = EntityAttributesUtils.tryGetAttribute(entity, Attributes.SERVICE_UP);
-
-        Lifecycle serviceState = EntityAttributesUtils.tryGetAttribute(entity, Attributes.SERVICE_STATE_ACTUAL);
-
-        String iconUrl = RegisteredTypes.getIconUrl(entity);
-        if (iconUrl!=null) {
-            if (brooklyn().isUrlServerSideAndSafe(iconUrl))
-                // route to server if it is a server-side url
-                iconUrl = EntityTransformer.entityUri(entity, ui.getBaseUriBuilder())+"/icon";
-        }
+        // the parts which depend only on the entity are cached; children and members are filtered and named for each request
+        EntityDetail own = summaries().get("detail", entity, ui.getBaseUriBuilder(), () -> ownDetail(entity));
 
         List<EntitySummary> children = Lists.newArrayList();
         if (!entity.getChildren().isEmpty()) {
@@ -141,16 +147,6 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
             }
         }
 
-        String parentId = null;
-        if (entity.getParent()!= null) {
-            parentId = entity.getParent().getId();
-        }
-
-        List<String> groupIds = Lists.newArrayList();
-        if (!entity.groups().isEmpty()) {
-            groupIds.addAll(entitiesIdAsArray(entity.groups()));
-        }
-
         List<Map<String, String>> members = Lists.newArrayList();
         if (entity instanceof Group) {
             // use attribute instead of method in case it is read-only
@@ -160,19 +156,19 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
         }
 
         EntityDetail result = new EntityDetail(
-                entity.getApplicationId(),
-                entity.getId(),
-                parentId,
-                entity.getDisplayName(),
-                entity.getEntityType().getName(),
-                serviceUp,
-                serviceState,
-                iconUrl,
-                entity.getCatalogItemId(),
+                own.getApplicationId(),
+                own.getId(),
+                own.getParentId(),
+                own.getName(),
+                own.getType(),
+                own.getServiceUp(),
+                own.getServiceState(),
+                own.getIconUrl(),
+                own.getCatalogItemId(),
                 children,
-                groupIds,
+                own.getGroupIds(),
                 members,
-                MutableMap.of("self", EntityTransformer.entityUri(entity, ui.getBaseUriBuilder())) );
+                own.getLinks());
         
         if (includeTags) {
             result.setExtraField("tags", resolving(MutableList.copyOf(entity.tags().getTags())).preferJson(true).resolve() );
@@ -186,6 +182,45 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
         return result;
     }
 
+    /** the detail of the entity without its children or members, as these depend on what the user is entitled to see and on other entities */
+    private EntityDetail ownDetail(Entity entity) {
+        Boolean serviceUp = EntityAttributesUtils.tryGetAttribute(entity, Attributes.SERVICE_UP);
+
+        Lifecycle serviceState = EntityAttributesUtils.tryGetAttribute(entity, Attributes.SERVICE_STATE_ACTUAL);
+
+        String iconUrl = RegisteredTypes.getIconUrl(entity);
+        if (iconUrl!=null) {
+            if (brooklyn().isUrlServerSideAndSafe(iconUrl))
+                // route to server if it is a server-side url
+                iconUrl = EntityTransformer.entityUri(entity, ui.getBaseUriBuilder())+"/icon";
+        }
+
+        String parentId = null;
+        if (entity.getParent()!= null) {
+            parentId = entity.getParent().getId();
+        }
+
+        List<String> groupIds = Lists.newArrayList();
+        if (!entity.groups().isEmpty()) {
+            groupIds.addAll(entitiesIdAsArray(entity.groups()));
+        }
+
+        return new EntityDetail(
+                entity.getApplicationId(),
+                entity.getId(),
+                parentId,
+                entity.getDisplayName(),
+                entity.getEntityType().getName(),
+                serviceUp,
+                serviceState,
+                iconUrl,
+                entity.getCatalogItemId(),
+                null,
+                groupIds,
+                null,
+                MutableMap.of("self", EntityTransformer.entityUri(entity, ui.getBaseUriBuilder())) );
+    }
+
     private List<Map<String, String>> entitiesIdAndNameAsList(Collection<? extends Entity> entities) {
         List<Map<String, String>> members = Lists.newArrayList();
         for (Entity entity : entities) {
@@ -206,6 +241,112 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
         return ids;
     }
 
+    @Override
+    public Response changes(String entityIds, String sensorGlobsS, String configGlobsS, boolean includeTasks, int bufferSize, String timeout) {
+        if (bufferSize <= 0 || bufferSize > MAX_CHANGES_BUFFER_SIZE) {
+            throw WebResourceUtils.badRequest("bufferSize must be between 1 and %s", MAX_CHANGES_BUFFER_SIZE);
+        }
+        Duration requestedTimeout;
+        try {
+            requestedTimeout = Preconditions.checkNotNull(Duration.parse(timeout));
+        } catch (Exception e) {
+            throw WebResourceUtils.badRequest("Invalid timeout '%s'", timeout);
+        }
+        // so that clients cannot hold a thread and a subscription indefinitely
+        Duration timeoutDuration = Duration.min(requestedTimeout, mgmt().getConfig().getConfig(EntityChangeStream.ENTITY_CHANGE_STREAM_MAX_TIMEOUT));
+        List<String> ids = MutableList.of();
+        JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(entityIds).forEach(id -> ids.add(id.trim()));
+
+        // the entitlement context is cleared when this method returns, before the output is written
+        EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        List<String> sensorGlobs = JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(sensorGlobsS);
+        List<String> configGlobs = JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(configGlobsS);
+
+        ObjectMapper mapper = BrooklynJacksonJsonProvider.findAnyObjectMapper(mgmt());
+        StreamingOutput output = out -> {
+            Entitlements.setEntitlementContext(entitlementContext);
+            // subscribed only once writing, so that it is closed even if the output is never written
+            try (EntityChangeStream.Subscription s = EntityChangeStream.get(mgmt()).subscribe(entitlementContext, ids,
+                    sensorGlobs, configGlobs, includeTasks, bufferSize)) {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                CountdownTimer timer = timeoutDuration.countdownTimer();
+                // subscribed before taking the snapshot, so no change is missed; changes already in the snapshot may be repeated
+                s.isResyncNeeded();
+                writeChangeEvent(writer, null, "snapshot", mapper.writeValueAsString(
+                        getDetails(entityIds, ids.isEmpty(), sensorGlobsS, configGlobsS, -1)));
+                writer.flush();
+                while (!timer.isExpired()) {
+                    EntityChangeStream.Change first = s.poll(Duration.min(CHANGES_KEEP_ALIVE_PERIOD, timer.getDurationRemaining()));
+                    if (s.isResyncNeeded()) {
+                        s.drain();
+                        writeChangeEvent(writer, null, "snapshot", mapper.writeValueAsString(
+                                getDetails(entityIds, ids.isEmpty(), sensorGlobsS, configGlobsS, -1)));
+                    } else if (first == null) {
+                        // lets the client know we are still here, and us know if the client has gone
+                        writer.write(": keep-alive\n\n");
+                    } else {
+                        writeChange(writer, mapper, first);
+                        for (EntityChangeStream.Change change : s.drain()) {
+                            writeChange(writer, mapper, change);
+                        }
+                    }
+                    writer.flush();
+                }
+                writeChangeEvent(writer, null, "end", "{}");
+                writer.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.debug("Entity change stream client disconnected: " + e);
+            } finally {
+                Entitlements.clearEntitlementContext();
+            }
+        };
+        return Response
+                .ok(output, LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+
+    private void writeChange(Writer writer, ObjectMapper mapper, EntityChangeStream.Change change) throws IOException {
+        Entity entity = change.getEntity();
+        Map<String, Object> data = MutableMap.of(
+                "applicationId", entity.getApplicationId(),
+                "entityId", entity.getId(),
+                "name", change.getName());
+        switch (change.getType()) {
+            case SENSOR:
+                data.put("value", resolving(change.getValue()).preferJson(true).asJerseyOutermostReturnValue(false).useDisplayHints(false)
+                        .context(entity).immediately(true).timeout(Duration.ZERO).resolve());
+                break;
+            case CONFIG:
+                // the value at the time of writing, as the change does not record it
+                Maybe<Object> vRaw = ((EntityInternal)entity).config().getRaw(ConfigKeys.newConfigKey(Object.class, change.getName()));
+                data.put("value", vRaw.isPresent() ? resolving(vRaw.get(), mgmt()).preferJson(true).asJerseyOutermostReturnValue(false).useDisplayHints(false)
+                        .context(entity).immediately(true).timeout(Duration.ZERO).resolve() : null);
+                break;
+            case TASK_STARTED:
+            case TASK_ENDED:
+                Task<?> task = change.getTask();
+                data.put("taskId", task.getId());
+                data.put("startTimeUtc", task.getStartTimeUtc());
+                if (task.isDone()) {
+                    data.put("endTimeUtc", task.getEndTimeUtc());
+                    data.put("isError", task.isError());
+                }
+                break;
+            default:
+        }
+        writeChangeEvent(writer, ""+change.getSequence(), change.getType().name().toLowerCase().replace('_', '-'), mapper.writeValueAsString(data));
+    }
+
+    private static void writeChangeEvent(Writer writer, String id, String event, String json) throws IOException {
+        if (id != null) writer.write("id: " + id + "\n");
+        writer.write("event: " + event + "\n");
+        // the JSON is on a single line, as the object mapper does not indent
+        writer.write("data: " + json + "\n\n");
+    }
+
     @Override
     public List<EntityDetail> fetch(String entityIds, String extraSensorsS) {
         List<String> extraSensorNames = JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(extraSensorsS);
@@ -235,6 +376,55 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
     
     @Override
     public List<EntitySummary> details(String entityIds, boolean includeAllApps, String extraSensorsGlobsS, String extraConfigGlobsS, int depth) {
+        // extra sensor and config values are resolved, and may refer to other entities, whose changes the versions do not cover
+        if (Strings.isBlank(extraSensorsGlobsS) && Strings.isBlank(extraConfigGlobsS)) {
+            checkNotModified(getDetailsVersions(entityIds, includeAllApps));
+        }
+        return getDetails(entityIds, includeAllApps, extraSensorsGlobsS, extraConfigGlobsS, depth);
+    }
+
+    /** The versions of the entities {@link #details(String, boolean, String, String, int)} could include, and of the type registry for their icons */
+    private List<Object> getDetailsVersions(String entityIds, boolean includeAllApps) {
+        List<Object> result = MutableList.<Object>of(mgmt().getTypeRegistry() instanceof BasicBrooklynTypeRegistry
+                ? ((BasicBrooklynTypeRegistry) mgmt().getTypeRegistry()).getChangeVersion() : null);
+        if (includeAllApps) {
+            for (Entity application : mgmt().getApplications()) {
+                addTreeVersions(result, application);
+            }
+        }
+        if (Strings.isNonBlank(entityIds)) {
+            for (String entityId : JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(entityIds)) {
+                Entity entity = mgmt().getEntityManager().getEntity(entityId.trim());
+                if (entity == null) {
+                    result.add(entityId.trim());
+                    continue;
+                }
+                addTreeVersions(result, entity);
+                for (Entity ancestor = entity.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                    result.add(ancestor.getId());
+                    result.add(getChangeVersion(ancestor));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** adds versions for the entity, its members if a group, and recursively its children, as their names are included in its detail */
+    private void addTreeVersions(List<Object> result, Entity entity) {
+        result.add(entity.getId());
+        result.add(getChangeVersion(entity));
+        if (entity instanceof Group) {
+            for (Entity member : ((Group) entity).getMembers()) {
+                result.add(member.getId());
+                result.add(getChangeVersion(member));
+            }
+        }
+        for (Entity child : entity.getChildren()) {
+            addTreeVersions(result, child);
+        }
+    }
+
+    private List<EntitySummary> getDetails(String entityIds, boolean includeAllApps, String extraSensorsGlobsS, String extraConfigGlobsS, int depth) {
         List<String> extraSensorGlobs = JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(extraSensorsGlobsS);
         List<String> extraConfigGlobs = JavaStringEscapes.unwrapOptionallyQuotedJavaStringList(extraConfigGlobsS);
 
@@ -353,17 +543,18 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
         if (Strings.isBlank(typeRegex)) {
             typeRegex = ".*";
         }
+        UriBuilder ub = ui.getBaseUriBuilder();
         return FluentIterable
                 .from(mgmt().getApplications())
                 .filter(EntitlementPredicates.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY))
                 .filter(EntityPredicates.hasInterfaceMatching(typeRegex))
-                .transform(ApplicationTransformer.fromApplication(ui.getBaseUriBuilder()))
+                .transform(application -> summaries().applicationSummary(application, ub))
                 .toList();
     }
 
     @Override
     public ApplicationSummary get(String application) {
-        return ApplicationTransformer.summaryFromApplication(brooklyn().getApplication(application), ui.getBaseUriBuilder());
+        return summaries().applicationSummary(brooklyn().getApplication(application), ui.getBaseUriBuilder());
     }
 
     /** @deprecated since 0.7.0 see #create */ @Deprecated
@@ -669,7 +860,7 @@ public class ApplicationResource extends AbstractBrooklynRestResource implements
             throw WebResourceUtils.forbidden("User '%s' is not authorized to see the descendants of entity '%s'",
                     Entitlements.getEntitlementContext().user(), entity);
         }
-        return EntityTransformer.entitySummaries(brooklyn().descendantsOfType(application, application, typeRegex), ui.getBaseUriBuilder());
+        return summaries().entitySummaries(brooklyn().descendantsOfType(application, application, typeRegex), ui.getBaseUriBuilder());
     }
 
     @Override
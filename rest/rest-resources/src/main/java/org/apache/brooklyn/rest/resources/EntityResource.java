@@ -21,6 +21,7 @@ package org.apache.brooklyn.rest.resources;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -47,8 +48,8 @@ import org.apache.brooklyn.rest.domain.EntitySummary;
 import org.apache.brooklyn.rest.domain.LocationSummary;
 import org.apache.brooklyn.rest.domain.RelationSummary;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.domain.TaskSummaryPage;
 import org.apache.brooklyn.rest.filter.HaHotStateRequired;
-import org.apache.brooklyn.rest.transform.EntityTransformer;
 import org.apache.brooklyn.rest.transform.LocationTransformer;
 import org.apache.brooklyn.rest.transform.LocationTransformer.LocationDetailLevel;
 import org.apache.brooklyn.rest.transform.TaskTransformer;
@@ -58,7 +59,9 @@ import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.ResourceUtils;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.core.task.DynamicTasks;
+import org.apache.brooklyn.util.core.task.TasksByTagIndex;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.Duration;
@@ -70,12 +73,14 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static javax.ws.rs.core.Response.Status.ACCEPTED;
 import static javax.ws.rs.core.Response.created;
@@ -93,10 +98,11 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
     
     @Override
     public List<EntitySummary> list(final String application) {
+        UriBuilder ub = ui.getBaseUriBuilder();
         return FluentIterable
                 .from(brooklyn().getApplication(application).getChildren())
                 .filter(EntitlementPredicates.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY))
-                .transform(EntityTransformer.fromEntity(ui.getBaseUriBuilder()))
+                .transform(entity -> summaries().entitySummary(entity, ub))
                 .toList();
     }
 
@@ -104,7 +110,7 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
     public EntitySummary get(String application, String entityName) {
         Entity entity = brooklyn().getEntity(application, entityName);
         if (Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY, entity)) {
-            return EntityTransformer.entitySummary(entity, ui.getBaseUriBuilder());
+            return summaries().entitySummary(entity, ui.getBaseUriBuilder());
         }
         throw WebResourceUtils.forbidden("User '%s' is not authorized to get entity '%s'",
                 Entitlements.getEntitlementContext().user(), entity);
@@ -112,10 +118,11 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
 
     @Override
     public List<EntitySummary> getChildren(final String application, final String entity) {
+        UriBuilder ub = ui.getBaseUriBuilder();
         return FluentIterable
                 .from(brooklyn().getEntity(application, entity).getChildren())
                 .filter(EntitlementPredicates.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ENTITY))
-                .transform(EntityTransformer.fromEntity(ui.getBaseUriBuilder()))
+                .transform(child -> summaries().entitySummary(child, ub))
                 .toList();
     }
 
@@ -157,6 +164,21 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
             limit, recurse, entity, ui, resolving(null), suppressSecrets);
     }
 
+    @Override
+    public TaskSummaryPage listTasksPage(String applicationId, String entityId, int limit, String cursor, List<String> status, Boolean suppressSecrets) {
+        Entity entity = brooklyn().getEntity(applicationId, entityId);
+        Set<TasksByTagIndex.TaskState> states = TaskTransformer.statesForStatuses(status);
+        Predicate<Task<?>> filter = TaskTransformer.filterForStatuses(status);
+        TasksByTagIndex.Page page;
+        if (mgmt().getExecutionManager() instanceof BasicExecutionManager) {
+            page = ((BasicExecutionManager) mgmt().getExecutionManager()).getTasksWithTagMostInterestingFirst(
+                    BrooklynTaskTags.tagForContextEntity(entity), cursor, states, filter, limit);
+        } else {
+            page = TasksByTagIndex.query(BrooklynTaskTags.getTasksInEntityContext(mgmt().getExecutionManager(), entity), cursor, states, filter, limit);
+        }
+        return TaskTransformer.fromTasksPage(page, ui, resolving(null), suppressSecrets);
+    }
+
     /** API does not guarantee order, but this is a the one we use (when there are lots of tasks):
      * prefer top-level tasks and to recent tasks, 
      * balanced such that the following are equal:
@@ -178,6 +200,10 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
      * It's far from perfect but provides a way -- when there are lots of tasks --
      * that we can show important things, where important things are the top level
      * and very recent.
+     * <p>
+     * {@link #listTasksPage(String, String, int, String, List, Boolean)} uses the order of {@link TasksByTagIndex.InterestKey},
+     * which only approximates this one: it has the same precedence of states, but within a state it orders purely by
+     * how recently the task entered it, without the preference for top-level and manually submitted tasks.
      */
     @Beta  
     public static class InterestingTasksFirstComparator implements Comparator<Task<?>> {
@@ -347,7 +373,7 @@ public class EntityResource extends AbstractBrooklynRestResource implements Enti
 
     @Override
     public List<EntitySummary> getDescendants(String application, String entity, String typeRegex) {
-        return EntityTransformer.entitySummaries(brooklyn().descendantsOfType(application, entity, typeRegex), ui.getBaseUriBuilder());
+        return summaries().entitySummaries(brooklyn().descendantsOfType(application, entity, typeRegex), ui.getBaseUriBuilder());
     }
 
     @Override
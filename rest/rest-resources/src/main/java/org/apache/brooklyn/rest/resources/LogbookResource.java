@@ -18,32 +18,47 @@
  */
 package org.apache.brooklyn.rest.resources;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.rest.api.LogbookApi;
 import org.apache.brooklyn.rest.util.WebResourceUtils;
+import org.apache.brooklyn.rest.util.json.BrooklynJacksonJsonProvider;
 import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
 import org.apache.brooklyn.util.core.logbook.DelegatingLogStore;
+import org.apache.brooklyn.util.core.logbook.LogBookQueryPage;
 import org.apache.brooklyn.util.core.logbook.LogBookQueryParams;
 import org.apache.brooklyn.util.core.logbook.LogStore;
+import org.apache.brooklyn.util.core.logbook.LogbookConfig;
+import org.apache.brooklyn.util.core.logbook.LogbookTail;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.CountdownTimer;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
 
 public class LogbookResource extends AbstractBrooklynRestResource implements LogbookApi {
 
+    private static final Logger log = LoggerFactory.getLogger(LogbookResource.class);
+
+    private static final int MAX_TAIL_BUFFER_SIZE = 100 * 1000;
+    private static final Duration TAIL_KEEP_ALIVE_PERIOD = Duration.seconds(15);
+
     @Override
     public Response logbookQuery(HttpServletRequest request, LogBookQueryParams params) {
-
-        if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.LOGBOOK_LOG_STORE_QUERY, null)) {
-            throw WebResourceUtils.unauthorized("User '%s' is not authorized to perform this operation",
-                    !Objects.isNull(Entitlements.getEntitlementContext()) ? Entitlements.getEntitlementContext().user() : "");
-        }
+        checkEntitled();
 
         Preconditions.checkNotNull(params, "params must not be null");
 
@@ -57,4 +72,161 @@ public class LogbookResource extends AbstractBrooklynRestResource implements Log
             throw Exceptions.propagate(e);
         }
     }
+
+    @Override
+    public Response logbookQueryPage(HttpServletRequest request, LogBookQueryParams params) {
+        checkEntitled();
+
+        Preconditions.checkNotNull(params, "params must not be null");
+        Preconditions.checkNotNull(params.getNumberOfItems(), "numberOfItems must be set");
+
+        LogStore logStore = new DelegatingLogStore(mgmt()).getDelegate();
+        try {
+            LogBookQueryPage page = logStore.queryPage(params);
+            return Response
+                    .ok(page, MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw WebResourceUtils.badRequest(e);
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public Response logbookQueryStream(HttpServletRequest request, LogBookQueryParams params, int pageSize) {
+        checkEntitled();
+
+        Preconditions.checkNotNull(params, "params must not be null");
+        if (pageSize <= 0) {
+            throw WebResourceUtils.badRequest("pageSize must be positive");
+        }
+
+        LogStore logStore = new DelegatingLogStore(mgmt()).getDelegate();
+        ObjectMapper mapper = BrooklynJacksonJsonProvider.findAnyObjectMapper(mgmt());
+        LogStore.QueryIterator entries = logStore.queryIterator(params, pageSize);
+        try {
+            // read the first page now, so that errors in the query are reported with an error status
+            entries.hasNext();
+        } catch (IllegalArgumentException e) {
+            entries.close();
+            throw WebResourceUtils.badRequest(e);
+        }
+        StreamingOutput output = out -> {
+            try {
+                int count = 0;
+                while (entries.hasNext()) {
+                    out.write(mapper.writeValueAsBytes(entries.next()));
+                    out.write('\n');
+                    // send each page as it is read
+                    if (++count % pageSize == 0) out.flush();
+                }
+            } catch (Exception e) {
+                // too late to report an error status, so end the stream early
+                Exceptions.propagateIfFatal(e);
+                log.warn("Error streaming logbook query results; stream ended early: " + e);
+                log.debug("Trace for error streaming logbook query results", e);
+            } finally {
+                // e.g. if the client went away
+                entries.close();
+            }
+        };
+        return Response
+                .ok(output, MEDIA_TYPE_NDJSON)
+                .build();
+    }
+
+    @Override
+    public Response logbookTail(HttpServletRequest request, List<String> levels, String taskId, boolean recursive, String entityId,
+            String searchPhrase, int bufferSize, String timeout) {
+        checkEntitled();
+
+        if (bufferSize <= 0 || bufferSize > MAX_TAIL_BUFFER_SIZE) {
+            throw WebResourceUtils.badRequest("bufferSize must be between 1 and %s", MAX_TAIL_BUFFER_SIZE);
+        }
+        Duration requestedTimeout;
+        try {
+            requestedTimeout = Preconditions.checkNotNull(Duration.parse(timeout));
+        } catch (Exception e) {
+            throw WebResourceUtils.badRequest("Invalid timeout '%s'", timeout);
+        }
+        // so that clients cannot hold a thread and a subscription indefinitely
+        Duration timeoutDuration = Duration.min(requestedTimeout, mgmt().getConfig().getConfig(LogbookConfig.LOGBOOK_TAIL_MAX_TIMEOUT));
+
+        LogbookTail tail = LogbookTail.get(mgmt());
+        if (!tail.isSupported()) {
+            throw WebResourceUtils.badRequest("The configured log store does not support following the log");
+        }
+        if (tail.isSubscriberLimitReached()) {
+            throw WebResourceUtils.throwWebApplicationException(Response.Status.SERVICE_UNAVAILABLE, "Too many clients are following the log; try again later");
+        }
+
+        LogBookQueryParams filter = new LogBookQueryParams();
+        filter.setLevels(levels);
+        filter.setTaskId(taskId);
+        filter.setRecursive(recursive);
+        filter.setEntityId(entityId);
+        filter.setSearchPhrase(searchPhrase);
+
+        ObjectMapper mapper = BrooklynJacksonJsonProvider.findAnyObjectMapper(mgmt());
+        StreamingOutput output = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            LogbookTail.Subscription subscription;
+            try {
+                subscription = tail.subscribe(filter, bufferSize);
+            } catch (IllegalStateException e) {
+                // others subscribed since it was checked
+                writeTailEvent(writer, null, "end", mapper.writeValueAsString(ImmutableMap.of("error", e.getMessage())));
+                writer.flush();
+                return;
+            }
+            // subscribed only once writing, so that it is closed even if the output is never written
+            try (LogbookTail.Subscription s = subscription) {
+                CountdownTimer timer = timeoutDuration.countdownTimer();
+                long droppedReported = 0;
+                while (!timer.isExpired()) {
+                    BrooklynLogEntry first = s.poll(Duration.min(TAIL_KEEP_ALIVE_PERIOD, timer.getDurationRemaining()));
+                    if (first == null) {
+                        // lets the client know we are still here, and us know if the client has gone
+                        writer.write(": keep-alive\n\n");
+                    } else {
+                        writeTailEvent(writer, first.getLineId(), "entry", mapper.writeValueAsString(first));
+                        for (BrooklynLogEntry entry : s.drain()) {
+                            writeTailEvent(writer, entry.getLineId(), "entry", mapper.writeValueAsString(entry));
+                        }
+                    }
+                    long dropped = s.getDroppedCount();
+                    if (dropped > droppedReported) {
+                        writeTailEvent(writer, null, "dropped", mapper.writeValueAsString(ImmutableMap.of("dropped", dropped)));
+                        droppedReported = dropped;
+                    }
+                    writer.flush();
+                }
+                writeTailEvent(writer, null, "end", "{}");
+                writer.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.debug("Logbook tail client disconnected: " + e);
+            }
+        };
+        return Response
+                .ok(output, MEDIA_TYPE_EVENT_STREAM)
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+
+    private static void writeTailEvent(Writer writer, String id, String event, String json) throws IOException {
+        if (id != null) writer.write("id: " + id + "\n");
+        writer.write("event: " + event + "\n");
+        // the JSON is on a single line, as the object mapper does not indent
+        writer.write("data: " + json + "\n\n");
+    }
+
+    private void checkEntitled() {
+        if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.LOGBOOK_LOG_STORE_QUERY, null)) {
+            throw WebResourceUtils.unauthorized("User '%s' is not authorized to perform this operation",
+                    !Objects.isNull(Entitlements.getEntitlementContext()) ? Entitlements.getEntitlementContext().user() : "");
+        }
+    }
 }
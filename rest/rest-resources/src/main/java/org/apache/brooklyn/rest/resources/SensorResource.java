@@ -20,6 +20,7 @@ package org.apache.brooklyn.rest.resources;
 
 import static com.google.common.collect.Iterables.filter;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -79,6 +80,9 @@ public class SensorResource extends AbstractBrooklynRestResource implements Sens
             throw WebResourceUtils.forbidden("User '%s' is not authorized to see entity '%s'",
                     Entitlements.getEntitlementContext().user(), entity);
         }
+        // values resolved when read may refer to other entities, whose changes the entity's version does not cover
+        boolean anyDeferred = entity.sensors().getAll().values().stream().anyMatch(AbstractBrooklynRestResource::isDeferred);
+        checkNotModified(anyDeferred ? null : Arrays.asList(entity.getId(), getChangeVersion(entity)));
 
         Map<String, Object> sensorMap = Maps.newHashMap();
         @SuppressWarnings("rawtypes")
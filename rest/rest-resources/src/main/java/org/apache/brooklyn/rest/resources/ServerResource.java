@@ -69,6 +69,7 @@ import org.apache.brooklyn.core.mgmt.rebind.PersistenceExceptionHandlerImpl;
 import org.apache.brooklyn.core.mgmt.rebind.RebindIteration;
 import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
 import org.apache.brooklyn.core.server.BrooklynServerPaths;
+import org.apache.brooklyn.rest.BrooklynWebConfig;
 import org.apache.brooklyn.rest.api.ServerApi;
 import org.apache.brooklyn.rest.domain.*;
 import org.apache.brooklyn.rest.transform.BrooklynFeatureTransformer;
@@ -98,6 +99,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.FluentIterable;
 
 import static org.apache.brooklyn.api.mgmt.ha.ManagementNodeState.INITIALIZING;
@@ -471,6 +473,16 @@ public class ServerResource extends AbstractBrooklynRestResource implements Serv
             throw WebResourceUtils.forbidden(USER_OPERATION_NOT_AUTHORIZED_MSG, Entitlements.getEntitlementContext().user());
     }
     
+    @Override
+    public Map<String, Object> getWebServerMetrics() {
+        if (!Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.SEE_ALL_SERVER_INFO, null))
+            throw WebResourceUtils.forbidden(USER_OPERATION_NOT_AUTHORIZED_MSG, Entitlements.getEntitlementContext().user());
+
+        Supplier<Map<String, Object>> metrics = mgmt().getScratchpad().get(BrooklynWebConfig.WEB_SERVER_METRICS);
+        if (metrics==null) return MutableMap.of();
+        return metrics.get();
+    }
+
     @Override
     public long getHighAvailabilityPriority() {
         if (Entitlements.isEntitled(mgmt().getEntitlementManager(), Entitlements.HA_STATS, null)) {
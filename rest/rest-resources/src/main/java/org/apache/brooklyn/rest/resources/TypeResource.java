@@ -36,6 +36,7 @@ import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
+import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
 import org.apache.brooklyn.core.typereg.RegisteredTypePredicates;
 import org.apache.brooklyn.core.typereg.RegisteredTypes;
 import org.apache.brooklyn.rest.api.TypeApi;
@@ -82,6 +83,7 @@ public class TypeResource extends AbstractBrooklynRestResource implements TypeAp
     
     @Override
     public List<TypeSummary> list(String supertype, String versions, String regex, String fragment) {
+        checkNotModified(getTypeRegistryVersions());
         List<Predicate<RegisteredType>> filters = MutableList.<Predicate<RegisteredType>>of()
             .append(RegisteredTypePredicates.entitledToSee(mgmt()));
         if (Strings.isNonBlank(supertype)) {
@@ -118,6 +120,11 @@ public class TypeResource extends AbstractBrooklynRestResource implements TypeAp
         return toTypeSummary(brooklyn(), sortedItems, ui.getBaseUriBuilder());
     }
 
+    private List<Long> getTypeRegistryVersions() {
+        if (!(mgmt().getTypeRegistry() instanceof BasicBrooklynTypeRegistry)) return null;
+        return MutableList.of(((BasicBrooklynTypeRegistry) mgmt().getTypeRegistry()).getChangeVersion());
+    }
+
     static List<TypeSummary> toTypeSummary(BrooklynRestResourceUtils brooklyn, Iterable<RegisteredType> sortedItems, UriBuilder uriBuilder) {
         List<TypeSummary> result = MutableList.of();
         for (RegisteredType t: sortedItems) {
@@ -128,6 +135,7 @@ public class TypeResource extends AbstractBrooklynRestResource implements TypeAp
 
     @Override
     public List<TypeSummary> listVersions(String nameOrAlias) {
+        checkNotModified(getTypeRegistryVersions());
         Predicate<RegisteredType> filter = Predicates.and(RegisteredTypePredicates.entitledToSee(mgmt()), 
             RegisteredTypePredicates.nameOrAlias(nameOrAlias));
         ImmutableList<RegisteredType> sortedItems =
@@ -138,6 +146,7 @@ public class TypeResource extends AbstractBrooklynRestResource implements TypeAp
 
     @Override
     public TypeDetail detail(String symbolicName, String version) {
+        checkNotModified(getTypeRegistryVersions());
         RegisteredType item = lookup(symbolicName, version);
         return TypeTransformer.detail(brooklyn(), item, ui.getBaseUriBuilder());
     }
@@ -20,6 +20,7 @@ package org.apache.brooklyn.rest.transform;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Ordering;
@@ -32,11 +33,13 @@ import org.apache.brooklyn.rest.api.ActivityApi;
 import org.apache.brooklyn.rest.api.EntityApi;
 import org.apache.brooklyn.rest.domain.LinkWithMetadata;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.domain.TaskSummaryPage;
 import org.apache.brooklyn.rest.resources.AbstractBrooklynRestResource;
 import org.apache.brooklyn.rest.resources.EntityResource.InterestingTasksFirstComparator;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.task.TaskInternal;
+import org.apache.brooklyn.util.core.task.TasksByTagIndex;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.text.StringEscapes;
 import org.apache.brooklyn.util.text.Strings;
@@ -223,4 +226,65 @@ public class TaskTransformer {
         return new LinkedList<TaskSummary>(Collections2.transform(tasksLoaded.values(), 
             TaskTransformer.fromTask(ui.getBaseUriBuilder(), resolver, suppressSecrets)));
     }
+
+    /** The summaries of the tasks in the page, in order, with its cursor */
+    public static TaskSummaryPage fromTasksPage(TasksByTagIndex.Page page, UriInfo ui, AbstractBrooklynRestResource.RestValueResolver resolver, Boolean suppressSecrets) {
+        List<TaskSummary> tasks = MutableList.of();
+        for (Task<?> task : page.getTasks()) {
+            tasks.add(taskSummary(task, ui.getBaseUriBuilder(), resolver, suppressSecrets));
+        }
+        return new TaskSummaryPage(tasks, page.getCursor());
+    }
+
+    /**
+     * The task states to read from the index for the given statuses (each of which may be a comma-separated list), or null for all:
+     * 'queued', 'active', 'ended', and 'failed' (ended with an error; see {@link #filterForStatuses(List)}).
+     *
+     * @throws IllegalArgumentException if a status is not known
+     */
+    public static Set<TasksByTagIndex.TaskState> statesForStatuses(@Nullable List<String> statuses) {
+        Set<String> names = statusNames(statuses);
+        if (names.isEmpty()) return null;
+        Set<TasksByTagIndex.TaskState> result = EnumSet.noneOf(TasksByTagIndex.TaskState.class);
+        for (String name : names) {
+            switch (name) {
+                case "queued": result.add(TasksByTagIndex.TaskState.QUEUED); break;
+                case "active": result.add(TasksByTagIndex.TaskState.ACTIVE); break;
+                case "ended": case "failed":
+                    result.add(TasksByTagIndex.TaskState.ENDED_WITHOUT_STARTING);
+                    result.add(TasksByTagIndex.TaskState.ENDED);
+                    break;
+                default: throw new IllegalArgumentException("Unknown task status '" + name + "'; must be one of queued, active, ended or failed");
+            }
+        }
+        return result;
+    }
+
+    /** A filter for the given statuses, for the tasks in the {@link #statesForStatuses(List) states} for them, or null if none is needed */
+    @Nullable
+    public static Predicate<Task<?>> filterForStatuses(@Nullable List<String> statuses) {
+        Set<String> names = statusNames(statuses);
+        if (!names.contains("failed") || names.contains("ended")) return null;
+        return task -> {
+            switch (TasksByTagIndex.TaskState.of(task)) {
+                case QUEUED: return names.contains("queued");
+                case ACTIVE: return names.contains("active");
+                case ENDED: case ENDED_WITHOUT_STARTING: return task.isError();
+                default: return false;
+            }
+        };
+    }
+
+    private static Set<String> statusNames(@Nullable List<String> statuses) {
+        Set<String> result = new LinkedHashSet<>();
+        if (statuses != null) {
+            for (String status : statuses) {
+                if (status == null) continue;
+                for (String name : status.split(",")) {
+                    if (Strings.isNonBlank(name)) result.add(name.trim().toLowerCase());
+                }
+            }
+        }
+        return result;
+    }
 }
@@ -69,6 +69,12 @@ public class DefaultExceptionMapper implements ExceptionMapper<Throwable> {
             return null;
         }
 
+        // thrown for conditional requests when the client is up to date; not an error
+        if (throwable1 instanceof WebApplicationException && 
+                ((WebApplicationException) throwable1).getResponse().getStatus() == Status.NOT_MODIFIED.getStatusCode()) {
+            return ((WebApplicationException) throwable1).getResponse();
+        }
+
         Throwable throwable2 = Exceptions.getFirstInteresting(throwable1);
         if (isSevere(throwable2)) {
             LOG.warn("REST request running as {} threw: {}", Entitlements.getEntitlementContext(), 
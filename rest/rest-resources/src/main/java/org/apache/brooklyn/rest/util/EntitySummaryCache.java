@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.UriBuilder;
+
+import org.apache.brooklyn.api.entity.Application;
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
+import org.apache.brooklyn.rest.domain.ApplicationSummary;
+import org.apache.brooklyn.rest.domain.EntitySummary;
+import org.apache.brooklyn.rest.transform.ApplicationTransformer;
+import org.apache.brooklyn.rest.transform.EntityTransformer;
+import org.apache.brooklyn.util.collections.MutableList;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Keeps the summaries the REST API builds for each entity, so that listing many entities does not rebuild
+ * their links, types and icons on every request.
+ * <p>
+ * Each summary is stored with the entity's change version (see {@link org.apache.brooklyn.core.mgmt.internal.EntityManagementSupport#getChangeVersion()}),
+ * its parent, and the type registry version, all read before the summary is built; it is reused only while these are unchanged,
+ * so any sensor, config, tag, child, membership or location change to the entity, or a catalog change, rebuilds it the next time it is asked for.
+ * Summaries are keyed by the request base URI as their links depend on it. They are shared between users, so must not
+ * include anything which depends on the user: callers still check entitlements for each entity, and must not modify what is returned.
+ * <p>
+ * Read-only and unmanaged entities are not cached, as their changes are not noted.
+ */
+@Beta
+public class EntitySummaryCache {
+
+    public static final ConfigKey<EntitySummaryCache> ENTITY_SUMMARY_CACHE_INSTANCE = ConfigKeys.newConfigKey(EntitySummaryCache.class, "internals.brooklyn.rest.entitySummaryCache");
+
+    public static final ConfigKey<Integer> MAX_SIZE = ConfigKeys.newIntegerConfigKey("brooklyn.rest.entitySummaryCache.maxSize",
+            "Maximum number of entity summaries the REST API keeps, across all kinds of summary and base URIs; 0 disables caching", 100 * 1000);
+
+    /** The shared instance for the management context, sized according to its {@link #MAX_SIZE} */
+    public static EntitySummaryCache get(ManagementContext mgmt) {
+        EntitySummaryCache sharedInstance = mgmt.getScratchpad().get(ENTITY_SUMMARY_CACHE_INSTANCE);
+        if (sharedInstance==null) {
+            synchronized (ENTITY_SUMMARY_CACHE_INSTANCE) {
+                sharedInstance = mgmt.getScratchpad().get(ENTITY_SUMMARY_CACHE_INSTANCE);
+                if (sharedInstance==null) {
+                    sharedInstance = new EntitySummaryCache(mgmt, mgmt.getConfig().getConfig(MAX_SIZE));
+                    mgmt.getScratchpad().put(ENTITY_SUMMARY_CACHE_INSTANCE, sharedInstance);
+                }
+            }
+        }
+        return sharedInstance;
+    }
+
+    private static class CachedSummary {
+        final List<Object> versions;
+        final Object summary;
+        CachedSummary(List<Object> versions, Object summary) {
+            this.versions = versions;
+            this.summary = summary;
+        }
+    }
+
+    private final ManagementContext mgmt;
+    private final boolean enabled;
+    private final Cache<List<String>, CachedSummary> cache;
+
+    public EntitySummaryCache(ManagementContext mgmt, Integer maxSize) {
+        this.mgmt = mgmt;
+        this.enabled = maxSize==null || maxSize > 0;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(enabled ? (maxSize==null ? MAX_SIZE.getDefaultValue() : maxSize) : 0)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /** As {@link EntityTransformer#entitySummary(Entity, UriBuilder)} */
+    public EntitySummary entitySummary(Entity entity, UriBuilder ub) {
+        return get("entity", entity, ub, () -> EntityTransformer.entitySummary(entity, ub));
+    }
+
+    /** As {@link EntityTransformer#entitySummaries(Iterable, UriBuilder)} */
+    public List<EntitySummary> entitySummaries(Iterable<? extends Entity> entities, UriBuilder ub) {
+        List<EntitySummary> result = MutableList.of();
+        for (Entity entity : entities) {
+            result.add(entitySummary(entity, ub));
+        }
+        return result;
+    }
+
+    /** As {@link ApplicationTransformer#summaryFromApplication(Application, UriBuilder)} */
+    public ApplicationSummary applicationSummary(Application application, UriBuilder ub) {
+        if (application.getId()==null) return ApplicationTransformer.summaryFromApplication(application, ub);
+        return get("application", application, ub, () -> ApplicationTransformer.summaryFromApplication(application, ub));
+    }
+
+    /**
+     * Returns the summary of the given kind for the entity, as built by the supplier when it was last asked for,
+     * if the entity has not changed since; otherwise builds and keeps it.
+     * The summary must depend only on the entity, its parent, the type registry, and the base URI of the given builder.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String kind, Entity entity, UriBuilder ub, Supplier<T> builder) {
+        List<Object> versions = enabled ? getVersions(entity) : null;
+        if (versions==null) return builder.get();
+
+        List<String> key = Arrays.asList(kind, entity.getId(), ub.build().toString());
+        CachedSummary cached = cache.getIfPresent(key);
+        if (cached!=null && cached.versions.equals(versions)) {
+            return (T) cached.summary;
+        }
+        T result = builder.get();
+        if (result!=null) cache.put(key, new CachedSummary(versions, result));
+        return result;
+    }
+
+    private List<Object> getVersions(Entity entity) {
+        if (!Entities.isManaged(entity) || Entities.isReadOnly(entity)) return null;
+        if (!(mgmt.getTypeRegistry() instanceof BasicBrooklynTypeRegistry)) return null;
+        Entity parent = entity.getParent();
+        return Arrays.asList(
+                ((EntityInternal) entity).getManagementSupport().getChangeVersion(),
+                parent==null ? null : parent.getId(),
+                ((BasicBrooklynTypeRegistry) mgmt.getTypeRegistry()).getChangeVersion());
+    }
+}
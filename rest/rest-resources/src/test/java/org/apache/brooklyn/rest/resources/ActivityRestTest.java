@@ -37,11 +37,13 @@ import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.core.effector.SampleManyTasksEffector;
 import org.apache.brooklyn.core.entity.Dumper;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.mgmt.EntityManagementUtils;
 import org.apache.brooklyn.core.mgmt.EntityManagementUtils.CreationResult;
 import org.apache.brooklyn.core.mgmt.internal.TestEntityWithEffectors;
 import org.apache.brooklyn.entity.stock.BasicApplication;
 import org.apache.brooklyn.rest.domain.TaskSummary;
+import org.apache.brooklyn.rest.domain.TaskSummaryPage;
 import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableList;
@@ -351,6 +353,53 @@ Task[eatand]@J90TKfIX: Waiting on Task[eat-sleep-rave-repeat]@QPa5o4kF
         Assert.assertFalse(tasksContain(tasks, leaf), "tasks should not have included leaf " + leaf + "; was " + tasks);
     }
 
+    @Test
+    public void testGetEntityActivitiesPaged() {
+        Task<?> t = entity.invoke(effector, null);
+        waitForCompletedDescendantWithChildAndSibling(t, t, CountdownTimer.newInstanceStarted(Duration.ONE_SECOND), 0);
+        t.blockUntilEnded();
+        int total = BrooklynTaskTags.getTasksInEntityContext(getManagementContext().getExecutionManager(), entity).size();
+
+        // reads all pages of 3, checking none are repeated
+        List<TaskSummary> tasks = MutableList.of();
+        String cursor = null;
+        do {
+            Response response = client().path("/applications/" + entity.getApplicationId() +
+                            "/entities/" + entity.getId() + "/activities/page")
+                    .query("limit", 3)
+                    .query("cursor", cursor==null ? "" : cursor)
+                    .query("status", "ended")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .get();
+            assertHealthy(response);
+            TaskSummaryPage page = response.readEntity(TaskSummaryPage.class);
+            Assert.assertTrue(page.getTasks().size() <= 3, "page=" + page);
+            for (TaskSummary task : page.getTasks()) {
+                Assert.assertFalse(tasksContain(tasks, task.getId()), "task " + task + " repeated");
+                Assert.assertNotNull(task.getEndTimeUtc(), "task " + task + " should have ended");
+            }
+            tasks.addAll(page.getTasks());
+            cursor = page.getCursor();
+        } while (cursor != null);
+        Assert.assertTrue(tasks.size() > 4, "tasks should have been big; was " + tasks);
+        Assert.assertTrue(tasks.size() <= total, "tasks=" + tasks.size() + "; total=" + total);
+        Assert.assertTrue(tasksContain(tasks, t.getId()), "tasks should have included effector task " + t + "; was " + tasks);
+
+        // most recently ended first, after any which ended without starting
+        List<TaskSummary> started = MutableList.copyOf(Iterables.filter(tasks, task -> task.getStartTimeUtc() != null));
+        Assert.assertEquals(tasks.subList(tasks.size() - started.size(), tasks.size()), started);
+        for (int i = 1; i < started.size(); i++) {
+            Assert.assertTrue(started.get(i - 1).getEndTimeUtc() >= started.get(i).getEndTimeUtc(), "tasks=" + started);
+        }
+
+        Response response = client().path("/applications/" + entity.getApplicationId() +
+                        "/entities/" + entity.getId() + "/activities/page")
+                .query("cursor", "not-a-cursor")
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        Assert.assertEquals(response.getStatus(), 400);
+    }
+
     private void assertHealthy(Response response) {
         if (!HttpAsserts.isHealthyStatusCode(response.getStatus())) {
             Asserts.fail("Bad response: " + response.getStatus() + " " + response.readEntity(String.class));
@@ -358,8 +407,12 @@ Task[eatand]@J90TKfIX: Waiting on Task[eat-sleep-rave-repeat]@QPa5o4kF
     }
 
     private static boolean tasksContain(List<TaskSummary> tasks, Task<?> leaf) {
+        return tasksContain(tasks, leaf.getId());
+    }
+
+    private static boolean tasksContain(List<TaskSummary> tasks, String taskId) {
         for (TaskSummary ts : tasks) {
-            if (ts.getId().equals(leaf.getId())) return true;
+            if (ts.getId().equals(taskId)) return true;
         }
         return false;
     }
@@ -63,6 +63,7 @@ import org.apache.brooklyn.core.location.internal.LocationInternal;
 import org.apache.brooklyn.core.mgmt.internal.IdAlreadyExistsException;
 import org.apache.brooklyn.entity.stock.BasicApplication;
 import org.apache.brooklyn.entity.stock.BasicEntity;
+import org.apache.brooklyn.rest.api.LogbookApi;
 import org.apache.brooklyn.rest.domain.ApiError;
 import org.apache.brooklyn.rest.domain.ApplicationSpec;
 import org.apache.brooklyn.rest.domain.ApplicationSummary;
@@ -164,6 +165,30 @@ public class ApplicationResourceTest extends BrooklynRestResourceTest {
         }
     }
 
+    @Test
+    public void testChangesStartsWithSnapshotAndEndsAfterTimeout() {
+        Response response = client().path("/applications/changes")
+                .query("sensors", "service.*")
+                .query("timeout", "100ms")
+                .accept(LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+                .get();
+
+        assertEquals(response.getStatus(), 200);
+        String body = response.readEntity(String.class);
+        assertTrue(body.startsWith("event: snapshot\ndata: ["), body);
+        assertTrue(body.endsWith("event: end\ndata: {}\n\n"), body);
+    }
+
+    @Test
+    public void testChangesInvalidBufferSize() {
+        Response response = client().path("/applications/changes")
+                .query("bufferSize", 0)
+                .accept(LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+                .get();
+
+        assertEquals(response.getStatus(), 400);
+    }
+
     private static void assertRegexMatches(String actual, String patternExpected) {
         if (actual==null) Assert.fail("Actual value is null; expected "+patternExpected);
         if (!actual.matches(patternExpected)) {
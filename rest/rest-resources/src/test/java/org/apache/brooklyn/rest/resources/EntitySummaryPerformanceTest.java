@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.resources;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import javax.ws.rs.core.GenericType;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.test.qa.performance.AbstractPerformanceTest;
+import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.apache.brooklyn.entity.stock.BasicEntity;
+import org.apache.brooklyn.rest.domain.ApplicationSummary;
+import org.apache.brooklyn.rest.domain.EntityDetail;
+import org.apache.brooklyn.rest.domain.EntitySummary;
+import org.apache.brooklyn.rest.util.EntitySummaryCache;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Measures listing the entities of an application with 10k entities, first building each summary for every request
+ * (as was done before the {@link EntitySummaryCache}), then with the cache.
+ */
+//by using a different suite name we disallow interleaving other tests between the methods of this test class, which wrecks the test fixtures
+@Test(suiteName = "EntitySummaryPerformanceTest")
+public class EntitySummaryPerformanceTest extends BrooklynRestResourcePerformanceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EntitySummaryPerformanceTest.class);
+
+    private static final int NUM_CHILDREN = 100;
+    private static final int NUM_GRANDCHILDREN_PER_CHILD = 99;
+
+    private BasicApplication app;
+    private Entity firstChild;
+
+    protected int numIterations() {
+        return 20;
+    }
+
+    @Override
+    protected void initClass() throws Exception {
+        super.initClass();
+
+        app = getManagementContext().getEntityManager().createEntity(EntitySpec.create(BasicApplication.class).displayName("app"));
+        for (int i = 0; i < NUM_CHILDREN; i++) {
+            Entity child = app.addChild(EntitySpec.create(BasicEntity.class).displayName("child-" + i));
+            for (int j = 0; j < NUM_GRANDCHILDREN_PER_CHILD; j++) {
+                child.addChild(EntitySpec.create(BasicEntity.class).displayName("grandchild-" + i + "-" + j));
+            }
+        }
+        firstChild = app.getChildren().iterator().next();
+        log.info("Created app " + app + " with " + (1 + NUM_CHILDREN * (1 + NUM_GRANDCHILDREN_PER_CHILD)) + " entities");
+    }
+
+    @Test(groups={"Integration"})
+    public void testListApplications() {
+        runBeforeAndAfter("testListApplications", client -> {
+            List<ApplicationSummary> result = client.path("/applications").get(new GenericType<List<ApplicationSummary>>() {});
+            assertEquals(result.size(), 1);
+        });
+    }
+
+    @Test(groups={"Integration"})
+    public void testListEntities() {
+        runBeforeAndAfter("testListEntities", client -> {
+            List<EntitySummary> result = client.path("/applications/" + app.getId() + "/entities").get(new GenericType<List<EntitySummary>>() {});
+            assertEquals(result.size(), NUM_CHILDREN);
+        });
+    }
+
+    @Test(groups={"Integration"})
+    public void testGetChildren() {
+        runBeforeAndAfter("testGetChildren", client -> {
+            List<EntitySummary> result = client.path("/applications/" + app.getId() + "/entities/" + firstChild.getId() + "/children").get(new GenericType<List<EntitySummary>>() {});
+            assertEquals(result.size(), NUM_GRANDCHILDREN_PER_CHILD);
+        });
+    }
+
+    @Test(groups={"Integration"})
+    public void testGetDescendants() {
+        runBeforeAndAfter("testGetDescendants", client -> {
+            List<EntitySummary> result = client.path("/applications/" + app.getId() + "/descendants").get(new GenericType<List<EntitySummary>>() {});
+            assertEquals(result.size(), 1 + NUM_CHILDREN * (1 + NUM_GRANDCHILDREN_PER_CHILD));
+        });
+    }
+
+    @Test(groups={"Integration"})
+    public void testFetch() {
+        runBeforeAndAfter("testFetch", client -> {
+            List<EntityDetail> result = client.path("/applications/fetch").get(new GenericType<List<EntityDetail>>() {});
+            assertEquals(result.size(), 1);
+        });
+    }
+
+    /** measures the job without caching, then with caching, logging both */
+    protected void runBeforeAndAfter(String methodName, final Consumer<WebClient> job) {
+        EntitySummaryCache cache = EntitySummaryCache.get(getManagementContext());
+        try {
+            getManagementContext().getScratchpad().put(EntitySummaryCache.ENTITY_SUMMARY_CACHE_INSTANCE, new EntitySummaryCache(getManagementContext(), 0));
+            PerformanceTestResult before = runPerformanceTest("EntitySummaryPerformanceTest." + methodName + ".uncached", job);
+
+            cache.clear();
+            getManagementContext().getScratchpad().put(EntitySummaryCache.ENTITY_SUMMARY_CACHE_INSTANCE, cache);
+            PerformanceTestResult after = runPerformanceTest("EntitySummaryPerformanceTest." + methodName + ".cached", job);
+
+            log.info("test=" + methodName + "; uncached=" + before.ratePerSecond + "/sec; cached=" + after.ratePerSecond + "/sec; cacheStats=" + cache.getStats());
+        } finally {
+            getManagementContext().getScratchpad().put(EntitySummaryCache.ENTITY_SUMMARY_CACHE_INSTANCE, cache);
+        }
+    }
+
+    protected PerformanceTestResult runPerformanceTest(String summary, final Consumer<WebClient> job) {
+        final AtomicReference<WebClient> client = new AtomicReference<>();
+
+        return measure(PerformanceTestDescriptor.create()
+                .summary(summary)
+                .iterations(numIterations())
+                .minAcceptablePerSecond(1 * AbstractPerformanceTest.PERFORMANCE_EXPECTATION)
+                .preJob(() -> client.set(client()))
+                .job(() -> job.accept(client.get())));
+    }
+}
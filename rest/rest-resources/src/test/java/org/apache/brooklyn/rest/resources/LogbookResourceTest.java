@@ -28,6 +28,8 @@ import org.apache.brooklyn.rest.api.LogbookApi;
 import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
 import org.apache.brooklyn.util.core.ResourceUtils;
 import org.apache.brooklyn.util.core.logbook.BrooklynLogEntry;
+import org.apache.brooklyn.util.core.logbook.LogBookQueryPage;
+import org.apache.brooklyn.util.core.logbook.LogbookConfig;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.os.Os;
 import org.apache.brooklyn.util.stream.Streams;
@@ -42,6 +44,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Tests the {@link LogbookApi} implementation.
@@ -77,6 +81,7 @@ public class LogbookResourceTest extends BrooklynRestResourceTest {
     protected BrooklynProperties getBrooklynProperties() {
         BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
         LogbookResourceTestHelper.installSampleLog(brooklynProperties);
+        brooklynProperties.put(LogbookConfig.LOGBOOK_TAIL_MAX_TIMEOUT.getName(), "1s");
         return brooklynProperties;
     }
 
@@ -129,6 +134,104 @@ public class LogbookResourceTest extends BrooklynRestResourceTest {
         assertEquals(brooklynLogEntries.size(), 3);
     }
 
+    @Test
+    public void testQueryLogbookPages() throws IOException {
+
+        // Prepare a query for the first page.
+        ImmutableMap<Object, Object> qb = ImmutableMap.builder()
+                .put("numberOfItems", 2)
+                .put("tail", false)
+                .put("levels", ImmutableList.of())
+                .build();
+
+        Response response = client()
+                .path("/logbook/page")
+                .accept(MediaType.APPLICATION_JSON)
+                .post(toJsonEntity(qb));
+
+        assertEquals(response.getStatus(), HttpStatus.SC_OK);
+        LogBookQueryPage page = response.readEntity(LogBookQueryPage.class);
+        assertEquals(page.getEntries().size(), 2);
+        assertNotNull(page.getCursor());
+
+        // And the next page.
+        qb = ImmutableMap.builder()
+                .putAll(qb)
+                .put("cursor", page.getCursor())
+                .build();
+        response = client()
+                .path("/logbook/page")
+                .accept(MediaType.APPLICATION_JSON)
+                .post(toJsonEntity(qb));
+
+        assertEquals(response.getStatus(), HttpStatus.SC_OK);
+        LogBookQueryPage nextPage = response.readEntity(LogBookQueryPage.class);
+        assertEquals(nextPage.getEntries().size(), 2);
+        assertEquals(Integer.parseInt(nextPage.getEntries().get(0).getLineId()), Integer.parseInt(page.getEntries().get(1).getLineId()) + 1);
+    }
+
+    @Test
+    public void testQueryLogbookStream() throws IOException {
+
+        ImmutableMap<Object, Object> qb = ImmutableMap.builder()
+                .put("numberOfItems", 3)
+                .put("tail", false)
+                .put("levels", ImmutableList.of("WARN", "DEBUG"))
+                .build();
+
+        Response response = client()
+                .path("/logbook/stream")
+                .query("pageSize", 2)
+                .accept(LogbookApi.MEDIA_TYPE_NDJSON)
+                .post(toJsonEntity(qb));
+
+        assertEquals(response.getStatus(), HttpStatus.SC_OK);
+        String[] lines = response.readEntity(String.class).split("\n");
+        assertEquals(lines.length, 3);
+        for (String line : lines) {
+            assertTrue(line.startsWith("{") && line.contains("\"lineId\""), line);
+        }
+    }
+
+    @Test
+    public void testTailLogbookEndsAfterTimeout() {
+
+        Response response = client()
+                .path("/logbook/tail")
+                .query("levels", "INFO")
+                .query("timeout", "100ms")
+                .accept(LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+                .get();
+
+        assertEquals(response.getStatus(), HttpStatus.SC_OK);
+        assertTrue(response.readEntity(String.class).endsWith("event: end\ndata: {}\n\n"));
+    }
+
+    @Test
+    public void testTailLogbookTimeoutLimited() {
+
+        Response response = client()
+                .path("/logbook/tail")
+                .query("timeout", "1h")
+                .accept(LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+                .get();
+
+        assertEquals(response.getStatus(), HttpStatus.SC_OK);
+        assertTrue(response.readEntity(String.class).endsWith("event: end\ndata: {}\n\n"));
+    }
+
+    @Test
+    public void testTailLogbookInvalidBufferSize() {
+
+        Response response = client()
+                .path("/logbook/tail")
+                .query("bufferSize", 0)
+                .accept(LogbookApi.MEDIA_TYPE_EVENT_STREAM)
+                .get();
+
+        assertEquals(response.getStatus(), HttpStatus.SC_BAD_REQUEST);
+    }
+
     // ------------ THE TEST GROUP BELOW IS FOR UNAUTHORIZED ACCESS CASES -----------------------
 
     /**
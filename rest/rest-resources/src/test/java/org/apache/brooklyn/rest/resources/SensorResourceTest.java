@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -52,7 +53,10 @@ import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
 import org.apache.brooklyn.rest.testing.mocks.RestMockSimpleEntity;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.DeferredSupplier;
+import org.apache.brooklyn.util.core.task.ImmediateSupplier;
 import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.http.HttpAsserts;
 import org.apache.brooklyn.util.stream.Streams;
 import org.apache.brooklyn.util.text.StringFunctions;
@@ -179,6 +183,87 @@ public class SensorResourceTest extends BrooklynRestResourceTest {
         Asserts.assertEquals(found, 2);
     }
 
+    @Test
+    public void testBatchSensorReadConditional() throws Exception {
+        // on a new entity, as other tests set sensors here to tasks, which are resolved when read so get no ETag
+        TestEntity child = entity.addChild(org.apache.brooklyn.api.entity.EntitySpec.create(TestEntity.class));
+        String currentStateEndpoint = "/applications/simple-app/entities/" + child.getId() + "/sensors/current-state";
+        AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("etag.test");
+        child.sensors().set(sensor, 1);
+
+        // retried in case something else on the entity changes between the reads
+        String etag = Asserts.succeedsEventually(() -> {
+            Response response = client().path(currentStateEndpoint)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .get();
+            assertEquals(response.getStatus(), 200);
+            String tag = response.getHeaderString(HttpHeaders.ETAG);
+            Assert.assertNotNull(tag);
+
+            Response notModified = client().path(currentStateEndpoint)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.IF_NONE_MATCH, tag)
+                    .get();
+            assertEquals(notModified.getStatus(), 304);
+            assertEquals(notModified.getHeaderString(HttpHeaders.ETAG), tag);
+            return tag;
+        });
+
+        child.sensors().set(sensor, 2);
+        Response response = client().path(currentStateEndpoint)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get();
+        assertEquals(response.getStatus(), 200);
+        Assert.assertNotEquals(response.getHeaderString(HttpHeaders.ETAG), etag);
+        Map<String, ?> currentState = response.readEntity(new GenericType<Map<String,?>>(Map.class) {});
+        assertEquals(currentState.get("etag.test"), 2);
+    }
+
+    @Test
+    public void testBatchSensorReadNotCachedWhenValueRefersToOtherEntity() throws Exception {
+        TestEntity child = entity.addChild(org.apache.brooklyn.api.entity.EntitySpec.create(TestEntity.class));
+        TestEntity referenced = entity.addChild(org.apache.brooklyn.api.entity.EntitySpec.create(TestEntity.class));
+        String currentStateEndpoint = "/applications/simple-app/entities/" + child.getId() + "/sensors/current-state";
+        referenced.sensors().set(TestEntity.NAME, "before");
+        child.sensors().set(Sensors.newSensor(Object.class, "etag.referring"), new ReferringSupplier(referenced));
+
+        Response response = client().path(currentStateEndpoint)
+                .accept(MediaType.APPLICATION_JSON)
+                .get();
+        assertEquals(response.getStatus(), 200);
+        Assert.assertNull(response.getHeaderString(HttpHeaders.ETAG));
+        assertEquals(response.readEntity(new GenericType<Map<String,?>>(Map.class) {}).get("etag.referring"), "before");
+
+        // only the referenced entity changes, so the referring entity's version is the same
+        referenced.sensors().set(TestEntity.NAME, "after");
+        response = client().path(currentStateEndpoint)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "*")
+                .get();
+        assertEquals(response.getStatus(), 200);
+        assertEquals(response.readEntity(new GenericType<Map<String,?>>(Map.class) {}).get("etag.referring"), "after");
+    }
+
+    /** reads another entity's sensor when resolved, as DSL expressions can */
+    static class ReferringSupplier implements DeferredSupplier<Object>, ImmediateSupplier<Object> {
+        private final Entity referenced;
+
+        ReferringSupplier(Entity referenced) {
+            this.referenced = referenced;
+        }
+
+        @Override
+        public Object get() {
+            return referenced.sensors().get(TestEntity.NAME);
+        }
+
+        @Override
+        public Maybe<Object> getImmediately() {
+            return Maybe.of(get());
+        }
+    }
+
     protected Response doSensorTest(Boolean displayHints, Boolean raw, MediaType acceptsType, Object expectedValue) {
         return doSensorTestUntyped(
                 displayHints==null ? null : (""+displayHints).toLowerCase(),
@@ -26,6 +26,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
@@ -57,6 +58,7 @@ import org.apache.brooklyn.entity.software.base.EmptySoftwareProcessDriver;
 import org.apache.brooklyn.entity.software.base.EmptySoftwareProcessImpl;
 import org.apache.brooklyn.entity.stock.BasicApplication;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.rest.BrooklynWebConfig;
 import org.apache.brooklyn.rest.domain.HighAvailabilitySummary;
 import org.apache.brooklyn.rest.domain.VersionSummary;
 import org.apache.brooklyn.rest.testing.BrooklynRestResourceTest;
@@ -74,6 +76,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
@@ -138,6 +141,19 @@ public class ServerResourceTest extends BrooklynRestResourceTest {
         assertEquals(reloadCount.get(), 1);
     }
 
+    @Test
+    public void testGetWebServerMetrics() throws Exception {
+        // no web server publishes metrics in these tests unless we supply them
+        assertEquals(client().path("/server/web/metrics").get(Map.class), ImmutableMap.of());
+
+        getManagementContext().getScratchpad().put(BrooklynWebConfig.WEB_SERVER_METRICS, () -> ImmutableMap.of("requests", ImmutableMap.of("total", 3)));
+        try {
+            assertEquals(client().path("/server/web/metrics").get(Map.class), ImmutableMap.of("requests", ImmutableMap.of("total", 3)));
+        } finally {
+            getManagementContext().getScratchpad().put(BrooklynWebConfig.WEB_SERVER_METRICS, null);
+        }
+    }
+
     @Test
     void testGetConfig() throws Exception {
         ((ManagementContextInternal)getManagementContext()).getBrooklynProperties().put("foo.bar.baz", "quux");
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.rest.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import javax.ws.rs.core.UriBuilder;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.rest.domain.ApplicationSummary;
+import org.apache.brooklyn.rest.domain.EntitySummary;
+import org.apache.brooklyn.test.Asserts;
+import org.testng.annotations.Test;
+
+public class EntitySummaryCacheTest extends BrooklynAppUnitTestSupport {
+
+    private static UriBuilder base(String uri) {
+        return UriBuilder.fromUri(uri);
+    }
+
+    @Test
+    public void testSummaryReusedUntilEntityChanges() {
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class).displayName("child"));
+        EntitySummaryCache cache = EntitySummaryCache.get(mgmt);
+
+        // enrichers may still be setting sensors on the new entity
+        EntitySummary summary = Asserts.succeedsEventually(() -> {
+            EntitySummary result = cache.entitySummary(child, base("http://localhost/v1/"));
+            assertSame(cache.entitySummary(child, base("http://localhost/v1/")), result);
+            return result;
+        });
+
+        child.sensors().set(TestEntity.NAME, "changed");
+        EntitySummary afterSensor = cache.entitySummary(child, base("http://localhost/v1/"));
+        assertNotSame(afterSensor, summary);
+        assertEquals(afterSensor, summary);
+
+        child.setDisplayName("renamed");
+        assertEquals(cache.entitySummary(child, base("http://localhost/v1/")).getName(), "renamed");
+    }
+
+    @Test
+    public void testSummaryKeyedByBaseUri() {
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        EntitySummaryCache cache = EntitySummaryCache.get(mgmt);
+
+        EntitySummary summary1 = cache.entitySummary(child, base("http://host1/v1/"));
+        EntitySummary summary2 = cache.entitySummary(child, base("http://host2/v1/"));
+        assertEquals(summary1.getLinks().get("self").getHost(), "host1");
+        assertEquals(summary2.getLinks().get("self").getHost(), "host2");
+    }
+
+    @Test
+    public void testApplicationSummaryFollowsChanges() {
+        EntitySummaryCache cache = EntitySummaryCache.get(mgmt);
+
+        app.setDisplayName("app");
+        ApplicationSummary summary = Asserts.succeedsEventually(() -> {
+            ApplicationSummary result = cache.applicationSummary(app, base("http://localhost/v1/"));
+            assertSame(cache.applicationSummary(app, base("http://localhost/v1/")), result);
+            return result;
+        });
+        assertEquals(summary.getSpec().getName(), "app");
+
+        app.setDisplayName("renamed");
+        assertEquals(cache.applicationSummary(app, base("http://localhost/v1/")).getSpec().getName(), "renamed");
+    }
+
+    @Test
+    public void testDisabledCacheBuildsEachTime() {
+        TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        EntitySummaryCache cache = new EntitySummaryCache(mgmt, 0);
+
+        EntitySummary summary = cache.entitySummary(child, base("http://localhost/v1/"));
+        assertNotSame(cache.entitySummary(child, base("http://localhost/v1/")), summary);
+        assertEquals(cache.getStats().requestCount(), 0);
+    }
+}
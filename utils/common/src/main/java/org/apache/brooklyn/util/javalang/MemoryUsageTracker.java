@@ -18,6 +18,10 @@
  */
 package org.apache.brooklyn.util.javalang;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.List;
@@ -88,6 +92,24 @@ public class MemoryUsageTracker {
         return bytesUsed.get();
     }
 
+    /** fraction of the heap in use after the most recent collection, as reported for the largest heap pool
+     * (normally the old generation); this excludes garbage so is a better signal of memory pressure
+     * than {@link Runtime#freeMemory()}, which it falls back to if the JVM does not report collection usage */
+    public static double getUsedHeapFraction() {
+        MemoryUsage largest = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) continue;
+            if (largest == null || usage.getMax() > largest.getMax()) largest = usage;
+        }
+        if (largest != null) {
+            return 1.0 * largest.getUsed() / largest.getMax();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return 1.0 * (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+    }
+
     /** forces all soft references to be cleared by trying to allocate an enormous chunk of memory,
      * returns a description of what was done 
      * (tune with {@link #forceClearSoftReferences(long, int)} 